@@ -0,0 +1,92 @@
+-- ========================
+-- BENCHMARK DE register_order_with_products
+-- ========================
+-- Prepara una base ya cargada con script.sql y datos*.sql para comparar el procedimiento basado en conjuntos
+-- con la versión anterior, que recorría los productos con FOREACH (tres sentencias por producto).
+-- Usar una base de pruebas: el benchmark crea pedidos y repone el stock de todos los productos.
+--
+--   psql -d <base> -f bench/register_order_setup.sql
+--   pgbench -n -d <base> -c 16 -j 4 -T 60 -D cart=20 -D products=<n> -D clients=<m> -f bench/register_order_set_based.pgbench
+--   pgbench -n -d <base> -c 16 -j 4 -T 60 -D cart=20 -D products=<n> -D clients=<m> -f bench/register_order_loop.pgbench
+--
+-- products y clients son los ids máximos de productos y clientes (los clientes 1..clients deben tener ubicación).
+-- Comparar las transacciones por segundo (tps) y la latencia de ambos, repitiendo con distintos tamaños de carro.
+
+-- Stock suficiente para toda la corrida
+UPDATE products SET stock = 100000000;
+
+-- Versión anterior del procedimiento, solo para comparar
+CREATE OR REPLACE PROCEDURE register_order_with_products_loop(
+    p_order_date TIMESTAMP,
+    p_status VARCHAR,
+    p_client_id INT,
+    p_product_ids INT[],
+    p_dealer_id INT DEFAULT NULL,
+    p_estimated_route GEOMETRY DEFAULT NULL
+)
+LANGUAGE plpgsql
+AS $$
+DECLARE
+v_order_id INT;
+    v_product_id INT;
+    v_total_price FLOAT := 0.0;
+    v_client_location GEOMETRY;
+    v_company_location GEOMETRY;
+    v_estimated_route GEOMETRY;
+BEGIN
+    IF array_length(p_product_ids, 1) IS NULL OR array_length(p_product_ids, 1) = 0 THEN
+        RAISE EXCEPTION 'La orden debe contener al menos un producto';
+END IF;
+
+SELECT ubication INTO v_client_location
+FROM clients
+WHERE id = p_client_id;
+
+IF v_client_location IS NULL THEN
+        RAISE EXCEPTION 'El cliente con ID % no tiene ubicación registrada', p_client_id;
+END IF;
+
+SELECT c.ubication INTO v_company_location
+FROM products p
+         JOIN companies c ON p.company_id = c.id
+WHERE p.id = p_product_ids[array_length(p_product_ids, 1)]
+    LIMIT 1;
+
+IF v_company_location IS NULL THEN
+        RAISE EXCEPTION 'No se pudo determinar la ubicación de la empresa para el producto ID %',
+                        p_product_ids[array_length(p_product_ids, 1)];
+END IF;
+
+    IF p_estimated_route IS NULL THEN
+        v_estimated_route := ST_MakeLine(v_company_location, v_client_location);
+ELSE
+        v_estimated_route := p_estimated_route;
+END IF;
+
+SELECT COALESCE(SUM(price), 0)
+INTO v_total_price
+FROM products
+WHERE id = ANY(p_product_ids);
+
+INSERT INTO orders (order_date, status, client_id, dealer_id, total_price, estimated_route)
+VALUES (p_order_date, p_status, p_client_id, p_dealer_id, v_total_price, v_estimated_route)
+    RETURNING id INTO v_order_id;
+
+FOREACH v_product_id IN ARRAY p_product_ids LOOP
+        IF NOT EXISTS (SELECT 1 FROM products WHERE id = v_product_id) THEN
+            RAISE EXCEPTION 'Producto con ID % no existe', v_product_id;
+END IF;
+
+INSERT INTO order_products (order_id, product_id)
+VALUES (v_order_id, v_product_id);
+
+UPDATE products
+SET stock = stock - 1
+WHERE id = v_product_id AND stock > 0;
+
+IF NOT FOUND THEN
+            RAISE EXCEPTION 'Sin stock para el producto ID %', v_product_id;
+END IF;
+END LOOP;
+END;
+$$;
@@ -0,0 +1,90 @@
+-- ========================
+-- VERIFICACIÓN DE ÍNDICES ESPACIALES
+-- ========================
+-- Ejecutar después de script.sql y de cargar datos (ANALYZE primero).
+-- Cada consulta indica el índice que debe aparecer en el plan; si el plan muestra un
+-- Seq Scan sobre la tabla indicada, la consulta del repositorio dejó de usar el índice.
+
+ANALYZE clients;
+ANALYZE companies;
+ANALYZE dealers;
+ANALYZE orders;
+
+-- CompanyRepository.findNearestDeliveryPoints
+-- Esperado: Index Scan using idx_clients_ubication_geog on clients (Order By: ... <-> ...)
+EXPLAIN
+SELECT c.id, c.name, ST_Distance(c.ubication::geography, comp.geog) AS distance_meters
+FROM (SELECT name, ubication::geography AS geog
+      FROM companies
+      WHERE id = 1 AND ubication IS NOT NULL) comp
+CROSS JOIN LATERAL (
+    SELECT id, name, ubication
+    FROM clients
+    WHERE ubication IS NOT NULL
+    ORDER BY ubication::geography <-> comp.geog
+    LIMIT 5
+) c
+ORDER BY distance_meters ASC;
+
+-- ClientRepository.findClientsBeyond5KmFromCompanies
+-- Esperado: Index Scan using idx_companies_ubication_geog on companies co (Index Cond: ... && _st_expand ...)
+EXPLAIN
+SELECT c.id, c.name
+FROM clients c
+WHERE NOT EXISTS (
+    SELECT 1
+    FROM companies co
+    WHERE ST_DWithin(co.ubication::geography, c.ubication::geography, 5000)
+)
+ORDER BY c.name;
+
+-- CoverageAreaRepository.isClientInCoverageWithRadius
+-- Esperado: Index Scan using clients_pkey y companies_pkey (sin Seq Scan sobre clients)
+EXPLAIN
+SELECT EXISTS (
+    SELECT 1
+    FROM clients c
+    JOIN companies comp ON comp.id = 1
+    WHERE c.id = 1
+    AND ST_DWithin(comp.ubication::geography, c.ubication::geography, 5000)
+) OR EXISTS (
+    SELECT 1
+    FROM clients c
+    JOIN coverage_area_company cac ON cac.company_id = 1
+    JOIN coverage_area ca ON ca.coverage_id = cac.coverage_id
+    WHERE c.id = 1
+    AND ST_Within(c.ubication, ca.coverageArea)
+);
+
+-- DealerRepository.findAllWithDistance
+-- Esperado: Bitmap Index Scan / Index Scan on idx_orders_delivered_dealer_date
+EXPLAIN
+SELECT d.id, d.name, COALESCE(m.distance_meters, 0.0) AS distance_meters
+FROM dealers d
+LEFT JOIN (
+    SELECT o.dealer_id, SUM(ST_Length(o.estimated_route::geography)) AS distance_meters
+    FROM orders o
+    WHERE o.status = 'ENTREGADO'
+        AND o.delivery_date >= date_trunc('month', CURRENT_DATE)
+        AND o.delivery_date < date_trunc('month', CURRENT_DATE) + interval '1 month'
+        AND o.estimated_route IS NOT NULL
+    GROUP BY o.dealer_id
+) m ON m.dealer_id = d.id
+ORDER BY distance_meters DESC;
+
+-- Pedidos cuya ruta pasa a menos de 500 m de un punto (uso de idx_orders_estimated_route_geog)
+-- Esperado: Index Scan / Bitmap Index Scan using idx_orders_estimated_route_geog
+EXPLAIN
+SELECT o.id
+FROM orders o
+WHERE ST_DWithin(o.estimated_route::geography, ST_SetSRID(ST_MakePoint(-70.65, -33.45), 4326)::geography, 500);
+
+-- OrdersRepository.findOrdersCrossingMoreThanTwoCoverageAreas
+-- Esperado: Index Scan / Bitmap Index Scan using idx_order_coverage_crossings_count (Index Cond: crossing_count > 2)
+ANALYZE order_coverage_crossings;
+EXPLAIN
+SELECT o.id, c.name
+FROM order_coverage_crossings x
+JOIN orders o ON o.id = x.order_id
+LEFT JOIN clients c ON o.client_id = c.id
+WHERE x.crossing_count > 2;
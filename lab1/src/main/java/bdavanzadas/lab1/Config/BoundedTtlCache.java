@@ -0,0 +1,109 @@
+package bdavanzadas.lab1.Config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ *
+ * Caché en memoria acotada por tamaño y por tiempo de vida.
+ * Cuando se supera el tamaño máximo se descarta la entrada guardada hace más tiempo (orden de inserción),
+ * y las entradas vencidas se descartan al leerlas. Es segura para uso concurrente: las lecturas no toman
+ * bloqueos ni modifican el orden, así que no se serializan entre hilos.
+ * */
+public class BoundedTtlCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Entradas en orden de inserción. Una entrada reemplazada o eliminada queda en la cola hasta que se descarta;
+     * al sacarla solo se elimina del mapa si sigue siendo la entrada vigente de su clave.
+     */
+    private final ConcurrentLinkedQueue<Map.Entry<K, Entry<V>>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * Crea una caché vacía.
+     * @param maxSize Cantidad máxima de entradas
+     * @param ttlMillis Tiempo de vida de cada entrada en milisegundos
+     */
+    public BoundedTtlCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+    }
+
+    /**
+     * Obtiene un valor vigente.
+     * @param key Clave
+     * @return El valor, o null si no existe o venció
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.createdAt > ttlNanos) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Guarda un valor, reemplazando el anterior si existía.
+     * @param key Clave
+     * @param value Valor (no nulo)
+     */
+    public void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, System.nanoTime());
+        entries.put(key, entry);
+        insertionOrder.add(Map.entry(key, entry));
+        queued.incrementAndGet();
+        // La cola contiene a todas las entradas vigentes, así que acotarla acota también el mapa
+        while (queued.get() > maxSize) {
+            Map.Entry<K, Entry<V>> oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            queued.decrementAndGet();
+            entries.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    /**
+     * Elimina una entrada.
+     * @param key Clave
+     */
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Elimina las entradas cuyo valor cumple la condición.
+     * @param condition Condición sobre el valor
+     */
+    public void removeIfValue(Predicate<V> condition) {
+        entries.values().removeIf(entry -> condition.test(entry.value));
+    }
+
+    /**
+     * Elimina todas las entradas.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long createdAt;
+
+        private Entry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
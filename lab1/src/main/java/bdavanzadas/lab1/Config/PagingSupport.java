@@ -0,0 +1,84 @@
+package bdavanzadas.lab1.Config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ *
+ * Utilidades compartidas por los endpoints de listado.
+ * Normaliza el tamaño de página de la paginación por cursor (?after=&limit=) y construye respuestas NDJSON
+ * (un objeto JSON por línea) que se escriben a medida que se leen los registros, sin armar la lista completa en memoria.
+ * */
+@Component
+public class PagingSupport {
+
+    /**
+     * Tipo de contenido de las respuestas en streaming.
+     */
+    public static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * Tamaño de página cuando el cliente no indica uno.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * Tamaño de página máximo permitido.
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    private static final byte[] NEW_LINE = {'\n'};
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructor que inyecta el ObjectMapper configurado por Spring.
+     * @param objectMapper Serializador JSON de la aplicación
+     */
+    public PagingSupport(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Ajusta el tamaño de página pedido al rango permitido.
+     * @param requested Tamaño pedido, o null
+     * @return Tamaño de página entre 1 y MAX_LIMIT
+     */
+    public int limit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(requested, MAX_LIMIT));
+    }
+
+    /**
+     * Construye una respuesta NDJSON a partir de una fuente que entrega los registros uno a uno.
+     * La fuente se ejecuta cuando se escribe la respuesta, por lo que debe abrir (y cerrar) su propio cursor,
+     * por ejemplo un método de servicio transaccional que recorre un Stream del repositorio.
+     * @param source Fuente que recibe el consumidor al que debe entregar cada registro
+     * @return Respuesta en streaming con un objeto JSON por línea
+     */
+    public <T> ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = out -> source.accept(item -> writeLine(out, item));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    private void writeLine(OutputStream out, Object item) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(item));
+            out.write(NEW_LINE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package bdavanzadas.lab1.Config;
 
+import bdavanzadas.lab1.Security.AuthenticatedProfile;
 import bdavanzadas.lab1.Security.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -84,14 +86,18 @@ public class SecurityConfig {
                 if (authHeader != null && authHeader.startsWith("Bearer ")) {
                     String token = authHeader.substring(7); // Extraer el token después de "Bearer "
 
-                    // Validar el token
-                    if (jwtUtil.validateToken(token)) {
-                        // Extraer el rol y el ID del usuario del token
-                        String role = jwtUtil.extractRole(token);
-                        Long userId = jwtUtil.extractUserId(token); // Extraer el ID del usuario
+                    // Validar el token y extraer sus claims en una sola lectura
+                    Claims claims = jwtUtil.parseValidClaims(token);
+                    if (claims != null) {
+                        // Extraer el rol, el ID del usuario y los ids de perfil del token
+                        String role = claims.get("role", String.class);
+                        Long userId = claims.get("userId", Long.class); // Extraer el ID del usuario
 
                         // Configurar el contexto de seguridad con el ID del usuario y el rol
                         var auth = new UsernamePasswordAuthenticationToken(userId, null, Collections.singletonList(() -> role));
+                        auth.setDetails(new AuthenticatedProfile(
+                                claims.get("clientId", Integer.class),
+                                claims.get("dealerId", Integer.class)));
                         SecurityContextHolder.getContext().setAuthentication(auth);
                     }
                 }
@@ -10,6 +10,7 @@ import bdavanzadas.lab1.entities.UserEntity;
 import bdavanzadas.lab1.Security.JwtUtil;
 
 import bdavanzadas.lab1.services.ClientService;
+import bdavanzadas.lab1.services.ProfileIdResolver;
 
 import org.springframework.http.HttpStatus;
 
@@ -49,6 +50,14 @@ public class AuthController {
     private JwtUtil jwtUtil;
 
 
+    /**
+     * Resolutor del cliente o dealer asociado a un usuario.
+     * Se utiliza para incluir esos ids en el token y evitar buscarlos en cada solicitud.
+     */
+    @Autowired
+    private ProfileIdResolver profileIdResolver;
+
+
 
 
 
@@ -119,8 +128,12 @@ public class AuthController {
         // Validar las credenciales del usuario
         UserEntity user = userService.validateCredentials(username, password);
         if (user != null) {
-            // Generar el token JWT con el username, role y userId
-            String token = jwtUtil.generateToken(user.getUsername(), user.getRole(), (long) user.getId());
+            // Obtener el cliente o dealer asociado según el rol
+            Integer clientId = "CLIENT".equals(user.getRole()) ? profileIdResolver.getClientId(user.getId()) : null;
+            Integer dealerId = "DEALER".equals(user.getRole()) ? profileIdResolver.getDealerId(user.getId()) : null;
+
+            // Generar el token JWT con el username, role, userId y el id de perfil
+            String token = jwtUtil.generateToken(user.getUsername(), user.getRole(), (long) user.getId(), clientId, dealerId);
 
             // Devolver el token y el rol en la respuesta
             return ResponseEntity.ok(Map.of(
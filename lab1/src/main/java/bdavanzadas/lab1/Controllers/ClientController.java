@@ -1,11 +1,14 @@
 package bdavanzadas.lab1.Controllers;
 
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.entities.ClientEntity;
 import bdavanzadas.lab1.services.ClientService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -29,14 +32,37 @@ public class ClientController {
     }
 
     /**
-     * Obtiene todas las entidades de clientes.
-     * @return Lista de entidades de clientes
+     * Utilidades de paginación por cursor y de respuestas NDJSON.
      */
+    @Autowired
+    private PagingSupport pagingSupport;
 
+
+    /**
+     * Endpoint para obtener los clientes.
+     * Sin parámetros devuelve todos los clientes. Con after y/o limit devuelve una página ordenada por id
+     * (paginación por cursor): la siguiente página se pide con after igual al id del último registro recibido.
+     * @param after Id del último registro de la página anterior (opcional)
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000)
+     */
     @GetMapping
-    public ResponseEntity<List<ClientEntity>> getAllClients() {
-        List<ClientEntity> clients = clientService.getAllClients();
-        return new ResponseEntity<>(clients, HttpStatus.OK);
+    public ResponseEntity<List<ClientEntity>> getAllClients(@RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            List<ClientEntity> clients = clientService.getAllClients();
+            return new ResponseEntity<>(clients, HttpStatus.OK);
+        }
+        return ResponseEntity.ok(clientService.getClientsPage(after == null ? 0 : after, pagingSupport.limit(limit)));
+    }
+
+
+    /**
+     * Endpoint para obtener todos los clientes en streaming (NDJSON, un objeto JSON por línea).
+     * Los registros se leen con un cursor y se escriben a medida que llegan, sin cargar la tabla en memoria.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamClients() {
+        return pagingSupport.ndjson(clientService::forEachClient);
     }
 
     /**
@@ -1,5 +1,6 @@
 package bdavanzadas.lab1.Controllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.dtos.NearestDeliveryPointDTO;
 import bdavanzadas.lab1.entities.CompanyEntity;
 import bdavanzadas.lab1.services.CompanyService;
@@ -7,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Collections;
 import java.util.List;
@@ -35,15 +37,37 @@ public class CompanyController {
 
 
     /**
-     *
-     * Endpoint para obtener todas las compañías.
-     * Este endpoint devuelve una lista de todas las compañías en la base de datos.
-     *
-     * */
+     * Utilidades de paginación por cursor y de respuestas NDJSON.
+     */
+    @Autowired
+    private PagingSupport pagingSupport;
+
+
+    /**
+     * Endpoint para obtener los compañías.
+     * Sin parámetros devuelve todos los compañías. Con after y/o limit devuelve una página ordenada por id
+     * (paginación por cursor): la siguiente página se pide con after igual al id del último registro recibido.
+     * @param after Id del último registro de la página anterior (opcional)
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000)
+     */
     @GetMapping
-    public ResponseEntity<List<CompanyEntity>> getAllCompanies() {
-        List<CompanyEntity> companies = service.getAllCompanies();
-        return ResponseEntity.ok(companies);
+    public ResponseEntity<List<CompanyEntity>> getAllCompanies(@RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            List<CompanyEntity> companies = service.getAllCompanies();
+            return ResponseEntity.ok(companies);
+        }
+        return ResponseEntity.ok(service.getCompaniesPage(after == null ? 0 : after, pagingSupport.limit(limit)));
+    }
+
+
+    /**
+     * Endpoint para obtener todos los compañías en streaming (NDJSON, un objeto JSON por línea).
+     * Los registros se leen con un cursor y se escriben a medida que llegan, sin cargar la tabla en memoria.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamCompanies() {
+        return pagingSupport.ndjson(service::forEachCompany);
     }
 
 
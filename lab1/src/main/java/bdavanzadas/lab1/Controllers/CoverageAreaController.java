@@ -1,5 +1,6 @@
 package bdavanzadas.lab1.Controllers;
 
+import bdavanzadas.lab1.dtos.CoverageBatchRequestDTO;
 import bdavanzadas.lab1.dtos.CoverageCheckDTO;
 import bdavanzadas.lab1.entities.CoverageAreaEntity;
 import bdavanzadas.lab1.services.CoverageAreaService;
@@ -118,6 +119,37 @@ public class CoverageAreaController {
         return ResponseEntity.ok(Collections.singletonMap("isCovered", isCovered));
     }
 
+    /**
+     * Verificación de cobertura de un cliente para varias compañías en una sola solicitud
+     * @param "clientId" ID del cliente
+     * @param "companyIds" IDs de las compañías separados por coma
+     * @return Resultado con las compañías que cubren al cliente
+     */
+    @GetMapping("/check/batch/{clientId}")
+    public ResponseEntity<?> checkCoverageBatch(
+            @PathVariable int clientId,
+            @RequestParam List<Integer> companyIds) {
+        try {
+            return ResponseEntity.ok(coverageAreaService.checkCoverageBatch(List.of(clientId), companyIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Verificación de cobertura para una matriz de clientes × compañías en una sola solicitud
+     * @param "request" Clientes y compañías a evaluar
+     * @return Resultado con las compañías que cubren a cada cliente
+     */
+    @PostMapping("/check/batch")
+    public ResponseEntity<?> checkCoverageMatrix(@RequestBody CoverageBatchRequestDTO request) {
+        try {
+            return ResponseEntity.ok(coverageAreaService.checkCoverageBatch(request.getClientIds(), request.getCompanyIds()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     /**
      * Obtiene los detalles de cobertura de un cliente en una compañía específica
      * @param "companyId" ID de la compañía
@@ -1,12 +1,17 @@
 package bdavanzadas.lab1.Controllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.dtos.DealerWithDistanceDTO;
+import bdavanzadas.lab1.dtos.PositionIngestResultDTO;
 import bdavanzadas.lab1.entities.DealerEntity;
+import bdavanzadas.lab1.services.DealerPositionIngestionService;
 import bdavanzadas.lab1.services.DealerService;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -48,15 +53,43 @@ public class DealerController {
 
 
     /**
-     *
-     * Endpoint para obtener todos los dealers.
-     * Este endpoint devuelve una lista de todos los dealers en la base de datos.
-     *
-     * */
+     * Utilidades de paginación por cursor y de respuestas NDJSON.
+     */
+    @Autowired
+    private PagingSupport pagingSupport;
+
+    /**
+     * Servicio de recepción de posiciones GPS.
+     */
+    @Autowired
+    private DealerPositionIngestionService positionIngestionService;
+
+
+    /**
+     * Endpoint para obtener los dealers.
+     * Sin parámetros devuelve todos los dealers. Con after y/o limit devuelve una página ordenada por id
+     * (paginación por cursor): la siguiente página se pide con after igual al id del último registro recibido.
+     * @param after Id del último registro de la página anterior (opcional)
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000)
+     */
     @GetMapping
-    public ResponseEntity<List<DealerEntity>> getAllDealers() {
-        List<DealerEntity> dealers = dealerService.getAllDealers();
-        return new ResponseEntity<>(dealers, HttpStatus.OK);
+    public ResponseEntity<List<DealerEntity>> getAllDealers(@RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            List<DealerEntity> dealers = dealerService.getAllDealers();
+            return new ResponseEntity<>(dealers, HttpStatus.OK);
+        }
+        return ResponseEntity.ok(dealerService.getDealersPage(after == null ? 0 : after, pagingSupport.limit(limit)));
+    }
+
+
+    /**
+     * Endpoint para obtener todos los dealers en streaming (NDJSON, un objeto JSON por línea).
+     * Los registros se leen con un cursor y se escriben a medida que llegan, sin cargar la tabla en memoria.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamDealers() {
+        return pagingSupport.ndjson(dealerService::forEachDealer);
     }
 
     /**
@@ -87,6 +120,51 @@ public class DealerController {
         return new ResponseEntity<>(dealer, HttpStatus.CREATED);
     }
 
+    /**
+     *
+     * Endpoint para recibir un lote de posiciones GPS en JSON compacto.
+     * El cuerpo es un arreglo de posiciones [dealerId, longitud, latitud] o [dealerId, longitud, latitud, fechaEnMilisegundos];
+     * las posiciones se encolan y se escriben en segundo plano.
+     * @return 202 ACCEPTED con el resultado, 503 si no se pudo encolar ninguna por falta de espacio.
+     *
+     * */
+    @PostMapping(value = "/positions", consumes = "application/json")
+    public ResponseEntity<PositionIngestResultDTO> ingestPositions(@RequestBody double[][] pings) {
+        return ingestResponse(positionIngestionService.ingest(pings));
+    }
+
+    /**
+     *
+     * Endpoint para recibir un lote de posiciones GPS en formato binario
+     * (registros de 28 bytes big-endian: id int, longitud double, latitud double, fecha en milisegundos long).
+     * @return 202 ACCEPTED con el resultado, 400 si el lote está mal formado, 503 si no se pudo encolar ninguna.
+     *
+     * */
+    @PostMapping(value = "/positions", consumes = "application/octet-stream")
+    public ResponseEntity<PositionIngestResultDTO> ingestBinaryPositions(@RequestBody byte[] payload) {
+        try {
+            return ingestResponse(positionIngestionService.ingest(payload));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     *
+     * Endpoint con las métricas de la recepción de posiciones.
+     *
+     * */
+    @GetMapping("/positions/metrics")
+    public ResponseEntity<Map<String, Long>> getPositionMetrics() {
+        return ResponseEntity.ok(positionIngestionService.getMetrics());
+    }
+
+    private static ResponseEntity<PositionIngestResultDTO> ingestResponse(PositionIngestResultDTO result) {
+        HttpStatus status = result.getAccepted() == 0 && result.getDropped() > 0
+                ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(status).body(result);
+    }
+
     /**
      *
      * Endpoint para actualizar un dealer existente.
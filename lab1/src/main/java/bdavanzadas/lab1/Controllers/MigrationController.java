@@ -1,11 +1,11 @@
 package bdavanzadas.lab1.Controllers;
 
-import bdavanzadas.lab1.entities.ClientEntity;
-import bdavanzadas.lab1.entities.*;
-import bdavanzadas.lab1.services.ClientService;
-import bdavanzadas.lab1.services.CompanyService;
-import bdavanzadas.lab1.services.*;
+import bdavanzadas.lab1.documents.MigrationStateDocument;
+import bdavanzadas.lab1.dtos.MigrationReportDTO;
+import bdavanzadas.lab1.dtos.OutboxMetricsDTO;
+import bdavanzadas.lab1.dtos.ReconciliationReportDTO;
 import bdavanzadas.lab1.services.MigrationService;
+import bdavanzadas.lab1.services.OutboxRelayService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,6 +17,7 @@ import java.util.List;
  * La clase MigrationController maneja las solicitudes de migración de datos desde PostgreSQL a MongoDB.
  * Esta clase contiene métodos para migrar diferentes entidades como clientes, concesionarios, empresas, áreas de cobertura, informes de emergencia, detalles de pedidos, pedidos, métodos de pago, productos, calificaciones y usuarios.
  * * Cada método realiza una migración de una entidad específica desde la base de datos PostgreSQL a MongoDB.
+ * * Las migraciones son incrementales: solo se leen filas nuevas o modificadas desde el último punto de control.
  *
  * */
 @RestController
@@ -25,266 +26,238 @@ public class MigrationController {
 
 
     /**
-     *
-     *
-     * Servicios utilizados para la migración de datos.
-     * Estos servicios interactúan con las bases de datos PostgreSQL y MongoDB para realizar la migración de las diferentes entidades.
-     * */
-    private final ClientService clientService;
-    private final DealerService dealerService;
-    private final CompanyService companyService;
+     * Servicio de migración.
+     * Lee cada tabla de PostgreSQL en streaming y escribe los documentos en MongoDB por bloques.
+     */
     private final MigrationService migrationService;
-    private final CoverageAreaService coverageAreaService;
-    private final EmergencyReportService emergencyReportService;
-    private final OrderDetailsService orderDetailsService;
-    private final OrdersService ordersService;
-    private final PaymentMethodService paymentMethodService;
-    private final ProductService productService;
-    private final RatingService ratingService;
-    private final UserService userService;
+
+
+    /**
+     * Relay del outbox, que mantiene MongoDB sincronizado entre migraciones.
+     */
+    private final OutboxRelayService outboxRelayService;
 
 
     /**
      * Constructor de la clase MigrationController.
-     * Este constructor inicializa los servicios necesarios para la migración de datos.
      *
-     * @param clientService Servicio de clientes
      * @param migrationService Servicio de migración
-     * @param dealerService Servicio de concesionarios
-     * @param companyService Servicio de empresas
-     * @param coverageAreaService Servicio de áreas de cobertura
-     * @param emergencyReportService Servicio de informes de emergencia
-     * @param orderDetailsService Servicio de detalles de pedidos
-     * @param ordersService Servicio de pedidos
-     * @param paymentMethodService Servicio de métodos de pago
-     * @param productService Servicio de productos
-     * @param ratingService Servicio de calificaciones
-     * @param userService Servicio de usuarios
+     * @param outboxRelayService Relay del outbox
      */
-    public MigrationController(ClientService clientService,
-                               MigrationService migrationService,
-                               DealerService dealerService,
-                               CompanyService companyService,
-                               CoverageAreaService coverageAreaService,
-                               EmergencyReportService emergencyReportService,
-                               OrderDetailsService orderDetailsService,
-                               OrdersService ordersService,
-                               PaymentMethodService paymentMethodService,
-                               ProductService productService,
-                               RatingService ratingService,
-                               UserService userService) {
-        this.clientService = clientService;
+    public MigrationController(MigrationService migrationService, OutboxRelayService outboxRelayService) {
         this.migrationService = migrationService;
-        this.dealerService = dealerService;
-        this.companyService = companyService;
-        this.coverageAreaService = coverageAreaService;
-        this.emergencyReportService = emergencyReportService;
-        this.orderDetailsService = orderDetailsService;
-        this.ordersService = ordersService;
-        this.paymentMethodService = paymentMethodService;
-        this.productService = productService;
-        this.ratingService = ratingService;
-        this.userService = userService;
+        this.outboxRelayService = outboxRelayService;
+    }
 
+
+    /**
+     * Endpoint para migrar todas las entidades desde PostgreSQL a MongoDB en una sola ejecución.
+     * Las entidades se migran por etapas respetando sus dependencias y cada tabla se divide en rangos de id
+     * que se procesan en paralelo.
+     *
+     * @return Un reporte por entidad con las filas migradas y el rendimiento en filas por segundo
+     */
+    @PostMapping("/all")
+    public ResponseEntity<List<MigrationReportDTO>> migrateAllToMongo() {
+        return ResponseEntity.ok(migrationService.migrateAll());
     }
 
 
     /**
-     * Endpoint para migrar clientes desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todos los clientes de la base de datos PostgreSQL y los migra a MongoDB.
+     * Endpoint para consultar los puntos de control de la migración.
+     * Cada punto de control indica el último id migrado y el watermark de updated_at de una entidad.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Lista de puntos de control por entidad
      */
-    @PostMapping("/clients")
-    public ResponseEntity<String> migrateClientsToMongo() {
-        List<ClientEntity> postgresClients = clientService.getAllClients();
+    @GetMapping("/checkpoints")
+    public ResponseEntity<List<MigrationStateDocument>> getCheckpoints() {
+        return ResponseEntity.ok(migrationService.getCheckpoints());
+    }
 
-        for (ClientEntity client : postgresClients) {
-            migrationService.migrateClientToMongo(client);
-        }
 
-        return ResponseEntity.ok("Clientes migrados a MongoDB");
+    /**
+     * Endpoint para eliminar el punto de control de una entidad.
+     * La siguiente migración de esa entidad vuelve a recorrer la tabla completa.
+     *
+     * @param entity Nombre de la entidad (ej: "orders", "clients")
+     * @return Respuesta con el estado de la operación
+     */
+    @DeleteMapping("/checkpoints/{entity}")
+    public ResponseEntity<String> resetCheckpoint(@PathVariable String entity) {
+        migrationService.resetCheckpoint(entity);
+        return ResponseEntity.ok("Punto de control eliminado para " + entity);
     }
 
 
     /**
-     * Endpoint para migrar concesionarios desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todos los concesionarios de la base de datos PostgreSQL y los migra a MongoDB.
+     * Endpoint para reconciliar todas las entidades entre PostgreSQL y MongoDB.
+     * Compara cada fila mapeada con su documento y reporta los documentos faltantes, sobrantes y distintos.
      *
-     * @return Respuesta con el estado de la migración
+     * @param repair Si es verdadero, corrige en MongoDB las diferencias encontradas
+     * @return Un reporte por entidad
      */
-    @PostMapping("/dealers")
-    public ResponseEntity<String> migrateDealersToMongo() {
-        List<DealerEntity> postgresDealers = dealerService.getAllDealers();
+    @PostMapping("/reconcile")
+    public ResponseEntity<List<ReconciliationReportDTO>> reconcileAll(@RequestParam(defaultValue = "false") boolean repair) {
+        return ResponseEntity.ok(migrationService.reconcileAll(repair));
+    }
 
-        for (DealerEntity dealer : postgresDealers) {
-            migrationService.migrateDealerToMongo(dealer);
-        }
 
-        return ResponseEntity.ok("Concesionarios migrados a MongoDB");
+    /**
+     * Endpoint para reconciliar una entidad entre PostgreSQL y MongoDB.
+     *
+     * @param entity Nombre de la entidad (ej: "orders", "clients")
+     * @param repair Si es verdadero, corrige en MongoDB las diferencias encontradas
+     * @return Reporte con los conteos y una muestra de ids con diferencias
+     */
+    @PostMapping("/reconcile/{entity}")
+    public ResponseEntity<ReconciliationReportDTO> reconcile(@PathVariable String entity,
+                                                             @RequestParam(defaultValue = "false") boolean repair) {
+        return ResponseEntity.ok(migrationService.reconcile(entity, repair));
     }
 
 
     /**
-     * Endpoint para migrar empresas desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todas las empresas de la base de datos PostgreSQL y las migra a MongoDB.
+     * Endpoint para consultar las métricas del relay del outbox.
+     * Indica cuántos cambios faltan por aplicar en MongoDB, el retraso del más antiguo y el rendimiento del relay.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Métricas del relay
      */
-    @PostMapping("/companies")
-    public ResponseEntity<String> migrateCompaniesToMongo() {
-        List<CompanyEntity> postgresCompanies = companyService.getAllCompanies();
+    @GetMapping("/outbox/metrics")
+    public ResponseEntity<OutboxMetricsDTO> getOutboxMetrics() {
+        return ResponseEntity.ok(outboxRelayService.getMetrics());
+    }
+
+
+    /**
+     * Endpoint para migrar clientes desde PostgreSQL a MongoDB.
+     * Este endpoint recorre todos los clientes de PostgreSQL en streaming y los escribe en MongoDB por bloques.
+     *
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
+     */
+    @PostMapping("/clients")
+    public ResponseEntity<MigrationReportDTO> migrateClientsToMongo() {
+        return ResponseEntity.ok(migrationService.migrateClients());
+    }
 
-        for (CompanyEntity company : postgresCompanies) {
-            migrationService.migrateCompanyToMongo(company);
-        }
 
-        return ResponseEntity.ok("Empresas migradas a MongoDB");
+    /**
+     * Endpoint para migrar concesionarios desde PostgreSQL a MongoDB.
+     * Este endpoint recorre todos los concesionarios de PostgreSQL en streaming y los escribe en MongoDB por bloques.
+     *
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
+     */
+    @PostMapping("/dealers")
+    public ResponseEntity<MigrationReportDTO> migrateDealersToMongo() {
+        return ResponseEntity.ok(migrationService.migrateDealers());
     }
 
 
     /**
-     * Endpoint para migrar áreas de cobertura desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todas las áreas de cobertura de la base de datos PostgreSQL y las migra a MongoDB.
+     * Endpoint para migrar empresas desde PostgreSQL a MongoDB.
+     * Este endpoint recorre todas las empresas de PostgreSQL en streaming y las escribe en MongoDB por bloques.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
      */
-    @PostMapping("/coverage-areas")
-    public ResponseEntity<String> migrateCoverageAreasToMongo() {
-        List<CoverageAreaEntity> postgresCoverageAreas = coverageAreaService.getAllCoverageAreas();
+    @PostMapping("/companies")
+    public ResponseEntity<MigrationReportDTO> migrateCompaniesToMongo() {
+        return ResponseEntity.ok(migrationService.migrateCompanies());
+    }
 
-        for (CoverageAreaEntity coverageArea : postgresCoverageAreas) {
-            migrationService.migrateCoverageAreaToMongo(coverageArea);
-        }
 
-        return ResponseEntity.ok("Áreas de cobertura migradas a MongoDB");
+    /**
+     * Endpoint para migrar áreas de cobertura desde PostgreSQL a MongoDB.
+     * Este endpoint recorre todas las áreas de cobertura de PostgreSQL en streaming y las escribe en MongoDB por bloques.
+     *
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
+     */
+    @PostMapping("/coverage-areas")
+    public ResponseEntity<MigrationReportDTO> migrateCoverageAreasToMongo() {
+        return ResponseEntity.ok(migrationService.migrateCoverageAreas());
     }
 
 
     /**
      * Endpoint para migrar informes de emergencia desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todos los informes de emergencia de la base de datos PostgreSQL y los migra a MongoDB.
+     * Este endpoint recorre todos los informes de emergencia de PostgreSQL en streaming y los escribe en MongoDB por bloques.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
      */
     @PostMapping("/emergency-reports")
-    public ResponseEntity<String> migrateEmergencyReportsToMongo() {
-        List<EmergencyReportEntity> postgresEmergencyReports = emergencyReportService.getAllEmergencyReports();
-
-        for (EmergencyReportEntity emergencyReport : postgresEmergencyReports) {
-            migrationService.migrateEmergencyReportToMongo(emergencyReport);
-        }
-
-        return ResponseEntity.ok("Informes de emergencia migrados a MongoDB");
+    public ResponseEntity<MigrationReportDTO> migrateEmergencyReportsToMongo() {
+        return ResponseEntity.ok(migrationService.migrateEmergencyReports());
     }
 
 
     /**
      * Endpoint para migrar detalles de pedidos desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todos los detalles de pedidos de la base de datos PostgreSQL y los migra a MongoDB.
+     * Este endpoint recorre todos los detalles de pedidos de PostgreSQL en streaming y los escribe en MongoDB por bloques.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
      */
     @PostMapping("/order-details")
-    public ResponseEntity<String> migrateOrderDetailsToMongo() {
-        List<OrderDetailsEntity> postgresOrderDetails = orderDetailsService.getAllOrderDetails();
-
-        for (OrderDetailsEntity orderDetails : postgresOrderDetails) {
-            migrationService.migrateOrderDetailToMongo(orderDetails);
-        }
-
-        return ResponseEntity.ok("Detalles de pedidos migrados a MongoDB");
+    public ResponseEntity<MigrationReportDTO> migrateOrderDetailsToMongo() {
+        return ResponseEntity.ok(migrationService.migrateOrderDetails());
     }
 
 
     /**
      * Endpoint para migrar pedidos desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todos los pedidos de la base de datos PostgreSQL y los migra a MongoDB.
+     * Este endpoint recorre todos los pedidos de PostgreSQL en streaming y los escribe en MongoDB por bloques.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
      */
     @PostMapping("/order")
-    public ResponseEntity<String> migrateOrdersToMongo() {
-        List<OrdersEntity> postgresOrders = ordersService.getAllOrders();
-
-        for (OrdersEntity order : postgresOrders) {
-            migrationService.migrateOrderToMongo(order);
-        }
-
-        return ResponseEntity.ok("Pedidos migrados a MongoDB");
+    public ResponseEntity<MigrationReportDTO> migrateOrdersToMongo() {
+        return ResponseEntity.ok(migrationService.migrateOrders());
     }
 
 
 
     /**
      * Endpoint para migrar métodos de pago desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todos los métodos de pago de la base de datos PostgreSQL y los migra a MongoDB.
+     * Este endpoint recorre todos los métodos de pago de PostgreSQL en streaming y los escribe en MongoDB por bloques.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
      */
     @PostMapping("/payment-methods")
-    public ResponseEntity<String> migratePaymentMethodsToMongo() {
-        List<PaymentMethodEntity> postgresPaymentMethods = paymentMethodService.getallPaymentMethods();
-
-        for (PaymentMethodEntity paymentMethod : postgresPaymentMethods) {
-            migrationService.migratePaymentMethodToMongo(paymentMethod);
-        }
-
-        return ResponseEntity.ok("Métodos de pago migrados a MongoDB");
+    public ResponseEntity<MigrationReportDTO> migratePaymentMethodsToMongo() {
+        return ResponseEntity.ok(migrationService.migratePaymentMethods());
     }
 
 
     /**
      * Endpoint para migrar productos desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todos los productos de la base de datos PostgreSQL y los migra a MongoDB.
+     * Este endpoint recorre todos los productos de PostgreSQL en streaming y los escribe en MongoDB por bloques.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
      */
     @PostMapping("/products")
-    public ResponseEntity<String> migrateProductsToMongo() {
-        List<ProductEntity> postgresProducts = productService.getAllProducts();
-
-        for (ProductEntity product : postgresProducts) {
-            migrationService.migrateProductToMongo(product);
-        }
-
-        return ResponseEntity.ok("Productos migrados a MongoDB");
+    public ResponseEntity<MigrationReportDTO> migrateProductsToMongo() {
+        return ResponseEntity.ok(migrationService.migrateProducts());
     }
 
 
     /**
      * Endpoint para migrar calificaciones desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todas las calificaciones de la base de datos PostgreSQL y las migra a MongoDB.
+     * Este endpoint recorre todas las calificaciones de PostgreSQL en streaming y las escribe en MongoDB por bloques.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
      */
     @PostMapping("/ratings")
-    public ResponseEntity<String> migrateRatingsToMongo() {
-        List<RatingEntity> postgresRatings = ratingService.getAllRatings();
-
-        for (RatingEntity rating : postgresRatings) {
-            migrationService.migrateRatingToMongo(rating);
-        }
-
-        return ResponseEntity.ok("Calificaciones migradas a MongoDB");
+    public ResponseEntity<MigrationReportDTO> migrateRatingsToMongo() {
+        return ResponseEntity.ok(migrationService.migrateRatings());
     }
 
 
     /**
      * Endpoint para migrar usuarios desde PostgreSQL a MongoDB.
-     * Este endpoint obtiene todos los usuarios de la base de datos PostgreSQL y los migra a MongoDB.
+     * Este endpoint recorre todos los usuarios de PostgreSQL en streaming y los escribe en MongoDB por bloques.
      *
-     * @return Respuesta con el estado de la migración
+     * @return Reporte con las filas migradas y el rendimiento en filas por segundo
      */
     @PostMapping("/users")
-    public ResponseEntity<String> migrateUsersToMongo() {
-        List<UserEntity> postgresUsers = userService.getAllUsers();
-
-        for (UserEntity user : postgresUsers) {
-            migrationService.migrateUserToMongo(user);
-        }
-
-        return ResponseEntity.ok("Usuarios migrados a MongoDB");
+    public ResponseEntity<MigrationReportDTO> migrateUsersToMongo() {
+        return ResponseEntity.ok(migrationService.migrateUsers());
     }
 
 
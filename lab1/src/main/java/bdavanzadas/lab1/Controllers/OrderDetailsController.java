@@ -140,19 +140,23 @@ public class OrderDetailsController {
     }
     /**
      * Crea detalles de orden para la última orden registrada.
+     * Si el cuerpo trae orderId (el ID que devuelve POST /orders/create) se usa esa orden en lugar de la última insertada.
      * @param requestBody mapa con los datos extraídos del body.
      * @return 201 CREATED o 500 INTERNAL SERVER ERROR.
+     * @deprecated Usar POST /orders/checkout; se eliminará en la próxima versión.
      */
+    @Deprecated
     @PostMapping("/create-for-last-order")
     public ResponseEntity<Void> createOrderDetailsForLastOrder(@RequestBody Map<String, Object> requestBody) {
         try {
             // Extraer los valores del JSON
+            Integer orderId = requestBody.get("orderId") != null ? ((Number) requestBody.get("orderId")).intValue() : null;
             String paymentMethod = (String) requestBody.get("paymentMethod");
             int totalProducts = (int) requestBody.get("totalProducts");
             double price = ((Number) requestBody.get("price")).doubleValue();
 
             // Llama al servicio para crear los detalles de la orden
-            orderDetailsService.createOrderDetailsForLastOrder(paymentMethod, totalProducts, price);
+            orderDetailsService.createOrderDetailsForLastOrder(orderId, paymentMethod, totalProducts, price);
 
             return new ResponseEntity<>(HttpStatus.CREATED);
         } catch (Exception e) {
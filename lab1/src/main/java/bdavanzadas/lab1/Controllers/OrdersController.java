@@ -1,5 +1,9 @@
 package bdavanzadas.lab1.Controllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
+import bdavanzadas.lab1.dtos.DispatchAssignmentDTO;
+import bdavanzadas.lab1.dtos.DispatchReportDTO;
+import bdavanzadas.lab1.dtos.DispatchTripDTO;
 import bdavanzadas.lab1.dtos.OrderNameAddressDTO;
 import bdavanzadas.lab1.dtos.OrderRequestDTO;
 import bdavanzadas.lab1.dtos.OrderTotalProductsDTO;
@@ -8,13 +12,18 @@ import bdavanzadas.lab1.entities.OrdersEntity;
 import bdavanzadas.lab1.entities.ProductEntity;
 import bdavanzadas.lab1.repositories.OrdersRepository;
 import bdavanzadas.lab1.services.DealerService;
+import bdavanzadas.lab1.services.DispatchService;
 import bdavanzadas.lab1.services.OrdersService;
+import bdavanzadas.lab1.services.ProfileIdResolver;
+import bdavanzadas.lab1.services.TripBatchingService;
 import bdavanzadas.lab1.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 
 import java.util.Date;
@@ -71,12 +80,57 @@ public class OrdersController {
 
 
     /**
-     * Endpoint para obtener todos los pedidos.
-     * Este endpoint devuelve una lista de todos los pedidos en la base de datos.
+     * Utilidades de paginación por cursor y de respuestas NDJSON.
+     */
+    @Autowired
+    private PagingSupport pagingSupport;
+
+
+    /**
+     * Resolutor del cliente o dealer asociado al usuario autenticado.
+     */
+    @Autowired
+    private ProfileIdResolver profileIdResolver;
+
+
+    /**
+     * Servicio de despacho automático de pedidos al repartidor libre más cercano.
+     */
+    @Autowired
+    private DispatchService dispatchService;
+
+
+    /**
+     * Servicio de viajes con varias paradas.
+     */
+    @Autowired
+    private TripBatchingService tripBatchingService;
+
+
+    /**
+     * Endpoint para obtener los pedidos.
+     * Sin parámetros devuelve todos los pedidos. Con after y/o limit devuelve una página ordenada por id
+     * (paginación por cursor): la siguiente página se pide con after igual al id del último registro recibido.
+     * @param after Id del último registro de la página anterior (opcional)
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000)
      */
     @GetMapping
-    public ResponseEntity<List<OrdersEntity>> getAllOrders() {
-        return ResponseEntity.ok(ordersService.getAllOrders());
+    public ResponseEntity<List<OrdersEntity>> getAllOrders(@RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(ordersService.getAllOrders());
+        }
+        return ResponseEntity.ok(ordersService.getOrdersPage(after == null ? 0 : after, pagingSupport.limit(limit)));
+    }
+
+
+    /**
+     * Endpoint para obtener todos los pedidos en streaming (NDJSON, un objeto JSON por línea).
+     * Los registros se leen con un cursor y se escriben a medida que llegan, sin cargar la tabla en memoria.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamOrders() {
+        return pagingSupport.ndjson(ordersService::forEachOrder);
     }
 
 
@@ -162,6 +216,24 @@ public class OrdersController {
     }
 
 
+    /**
+     * Canal de eventos (Server-Sent Events) con los cambios de estado de los pedidos del cliente autenticado.
+     * Reemplaza la consulta periódica de /client/orders: el cliente abre el canal, lee sus pedidos una vez y luego
+     * recibe un evento "order-status" por cada cambio.
+     * Devuelve 403 si el usuario no es un cliente válido y 503 si se alcanzó el máximo de conexiones.
+     */
+    @GetMapping(value = "/client/events", produces = "text/event-stream")
+    public ResponseEntity<SseEmitter> subscribeClientEvents() {
+        try {
+            return ResponseEntity.ok(ordersService.subscribeClientEvents());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+
     /**
      * Endpoint para obtener pedidos por ID de cliente.
      * Este endpoint devuelve una lista de pedidos específicos basados en el ID del cliente.
@@ -184,9 +256,49 @@ public class OrdersController {
     }
 
 
+    /**
+     * Endpoint para registrar una compra completa: la orden, sus productos y su detalle en una sola transacción.
+     * El cuerpo contiene la orden, los IDs de productos y el método de pago; la respuesta incluye el ID de la orden creada.
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(@RequestBody OrderRequestDTO request) {
+        try {
+            if (request == null || request.getOrder() == null) {
+                return ResponseEntity.badRequest().body("La orden no puede ser nula");
+            }
+
+            Integer orderId = ordersService.checkout(request.getOrder(), request.getProductIds(), request.getPaymentMethod());
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(
+                    Map.of(
+                            "status", "success",
+                            "message", "Orden creada exitosamente",
+                            "orderId", orderId
+                    )
+            );
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                    Map.of(
+                            "status", "error",
+                            "message", e.getMessage()
+                    )
+            );
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(
+                    Map.of(
+                            "status", "error",
+                            "message", "Error interno al crear la orden: " + e.getMessage()
+                    )
+            );
+        }
+    }
+
+
     /**
      * Endpoint para crear un pedido con productos.
      * Este endpoint guarda un nuevo pedido en la base de datos y asocia productos a él.
+     * La respuesta incluye el ID de la orden creada.
      */
     @PostMapping("/create")
     public ResponseEntity<?> createOrder(
@@ -202,13 +314,13 @@ public class OrdersController {
                 return ResponseEntity.badRequest().body("Debe especificar al menos un producto");
             }
 
-            ordersService.createOrderWithProducts(order, productIds);
+            Integer orderId = ordersService.createOrderWithProducts(order, productIds);
 
             return ResponseEntity.ok().body(
                     Map.of(
                             "status", "success",
                             "message", "Orden creada exitosamente",
-                            "orderId", order.getId()
+                            "orderId", orderId
                     )
             );
 
@@ -313,6 +425,25 @@ public class OrdersController {
     }
 
 
+    /**
+     * Endpoint para obtener el último ID de pedido insertado.
+     * Este endpoint devuelve el ID del último pedido insertado en la base de datos.
+     * @deprecated Con compras concurrentes puede devolver el pedido de otro cliente; POST /orders/create y
+     * POST /orders/checkout ya devuelven el ID de la orden creada. Se eliminará en la próxima versión.
+     */
+    @Deprecated
+    @GetMapping("/last-inserted")
+    public ResponseEntity<Integer> getLastInsertedOrderId() {
+        try {
+            int lastInsertedOrderId = ordersService.getLastInsertedOrderId(); // Llama al servicio
+            return ResponseEntity.ok(lastInsertedOrderId); // Devuelve el ID en la respuesta
+        } catch (Exception e) {
+            e.printStackTrace(); // Registra el error en los logs
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build(); // Devuelve un error 500
+        }
+    }
+
+
     /**
      * Endpoint para obtener los productos por ID de pedido.
      * Este endpoint devuelve una lista de productos específicos basados en el ID del pedido.
@@ -332,20 +463,6 @@ public class OrdersController {
 
 
 
-    /**
-     * Endpoint para obtener el último ID de pedido insertado.
-     * Este endpoint devuelve el ID del último pedido insertado en la base de datos.
-     */
-    @GetMapping("/last-inserted")
-    public ResponseEntity<Integer> getLastInsertedOrderId() {
-        try {
-            int lastInsertedOrderId = ordersService.getLastInsertedOrderId(); // Llama al servicio
-            return ResponseEntity.ok(lastInsertedOrderId); // Devuelve el ID en la respuesta
-        } catch (Exception e) {
-            e.printStackTrace(); // Registra el error en los logs
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build(); // Devuelve un error 500
-        }
-    }
 
 
 
@@ -397,9 +514,26 @@ public class OrdersController {
         }
     }
 
+    /**
+     * Endpoint para obtener todas las ordenes activas del dealer autenticado, en el orden de entrega.
+     * Con un viaje de varias paradas el dealer tiene varias ordenes en proceso; la primera es la próxima entrega.
+     */
+    @GetMapping("/dealer/active-orders")
+    public ResponseEntity<List<OrdersEntity>> getActiveOrdersByDealer() {
+        try {
+            return ResponseEntity.ok(ordersService.getActiveOrdersByDealer());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
+
     /**
      * Endpoint para obtener la orden activa del dealer autenticado.
-     * Este endpoint devuelve la orden activa del dealer autenticado en la base de datos.
+     * Este endpoint devuelve la orden activa del dealer autenticado en la base de datos;
+     * si tiene un viaje con varias paradas, devuelve la próxima entrega.
      */
     @GetMapping("/dealer/active-order")
     public ResponseEntity<OrdersEntity> getActiveOrderByDealer() {
@@ -418,6 +552,23 @@ public class OrdersController {
     }
 
 
+    /**
+     * Canal de eventos (Server-Sent Events) con los cambios de estado de los pedidos del dealer autenticado.
+     * Reemplaza la consulta periódica de /dealer/active-order.
+     * Devuelve 403 si el usuario no es un dealer válido y 503 si se alcanzó el máximo de conexiones.
+     */
+    @GetMapping(value = "/dealer/events", produces = "text/event-stream")
+    public ResponseEntity<SseEmitter> subscribeDealerEvents() {
+        try {
+            return ResponseEntity.ok(ordersService.subscribeDealerEvents());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+
     /**
      * Endpoint para asignar un pedido a un dealer.
      * Este endpoint asigna un pedido específico a un dealer basado en su ID.
@@ -450,11 +601,7 @@ public class OrdersController {
             String newStatus = requestBody.get("status");
 
             // Obtener dealerId del usuario autenticado
-            Long userId = userService.getAuthenticatedUserId();
-            Integer dealerId = jdbcTemplate.queryForObject(
-                    "SELECT id FROM dealers WHERE user_id = ?",
-                    Integer.class, userId
-            );
+            Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
 
             if (dealerId == null) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
@@ -522,9 +669,7 @@ public class OrdersController {
      */
     @GetMapping("/client/failed")
     public ResponseEntity<List<OrdersEntity>> getFailedOrdersByClient() {
-        Long userId = userService.getAuthenticatedUserId();
-        String sql = "SELECT id FROM clients WHERE user_id = ?";
-        Integer clientId = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        Integer clientId = profileIdResolver.getAuthenticatedClientId();
 
         String query = "SELECT * FROM orders WHERE client_id = ? AND status = 'FALLIDA' ORDER BY order_date DESC";
         List<OrdersEntity> failedOrders = jdbcTemplate.query(query, new BeanPropertyRowMapper<>(OrdersEntity.class), clientId);
@@ -570,4 +715,41 @@ public class OrdersController {
         List<OrderNameAddressDTO> orders = ordersService.getOrdersCrossingMultipleCoverageAreas();
         return ResponseEntity.ok(orders);
     }
+
+
+    /**
+     * Endpoint para despachar en una ola todos los pedidos pendientes sin repartidor.
+     * Cada pedido se asigna al repartidor libre más cercano a su punto de retiro, los urgentes primero.
+     */
+    @PostMapping("/dispatch")
+    public ResponseEntity<DispatchReportDTO> dispatchPendingOrders() {
+        return ResponseEntity.ok(dispatchService.dispatchPending());
+    }
+
+
+    /**
+     * Endpoint para agrupar los pedidos pendientes en viajes con varias paradas.
+     * Los pedidos de la misma empresa o de empresas cercanas, con clientes en la misma zona, se asignan a un mismo repartidor.
+     */
+    @PostMapping("/dispatch/trips")
+    public ResponseEntity<List<DispatchTripDTO>> dispatchTrips() {
+        return ResponseEntity.ok(tripBatchingService.dispatchTrips());
+    }
+
+    /**
+     * Endpoint para asignar un pedido pendiente al repartidor libre más cercano.
+     * Devuelve 404 si el pedido no existe o ya tiene repartidor, y 409 si no hay repartidores libres.
+     */
+    @PostMapping("/{id}/dispatch")
+    public ResponseEntity<DispatchAssignmentDTO> dispatchOrder(@PathVariable int id) {
+        try {
+            DispatchAssignmentDTO assignment = dispatchService.dispatchOrder(id);
+            if (assignment == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            return ResponseEntity.ok(assignment);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
 }
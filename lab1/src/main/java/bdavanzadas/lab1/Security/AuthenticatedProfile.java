@@ -0,0 +1,20 @@
+package bdavanzadas.lab1.Security;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ * Ids de perfil (cliente o repartidor) del usuario autenticado, leídos de los claims del token.
+ * Se guardan como detalles de la autenticación para que los servicios no tengan que consultarlos en la base de datos.
+ *
+ */
+public class AuthenticatedProfile {
+    private Integer clientId;
+    private Integer dealerId;
+}
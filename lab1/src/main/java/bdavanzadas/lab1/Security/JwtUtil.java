@@ -1,11 +1,17 @@
 package bdavanzadas.lab1.Security;
 
+import bdavanzadas.lab1.Config.BoundedTtlCache;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
 
 /**
  * Clase utilitaria para manejo de tokens JWT
@@ -20,10 +26,32 @@ public class JwtUtil {
     /**
      * Tiempo de expiración del token (10 horas)
      */
-    private static final long EXPIRATION_TIME = 1000 * 60 * 60 * 10;
+    public static final long EXPIRATION_TIME = 1000 * 60 * 60 * 10;
 
     private final Key key = Keys.hmacShaKeyFor(SECRET.getBytes());
 
+    /**
+     * Parser reutilizado para todos los tokens; es inmutable y seguro para uso concurrente
+     */
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(key).build();
+
+    /**
+     * Caché opcional de tokens ya verificados, indexada por el hash SHA-256 del token (null si está deshabilitada)
+     */
+    private final BoundedTtlCache<String, Claims> verifiedTokens;
+
+    /**
+     * Constructor que configura la caché de tokens verificados.
+     * @param cacheEnabled Si se guardan los claims de los tokens ya verificados
+     * @param cacheMaxSize Cantidad máxima de tokens en la caché
+     * @param cacheTtlSeconds Tiempo de vida de cada token en la caché en segundos
+     */
+    public JwtUtil(@Value("${jwt.cache.enabled:false}") boolean cacheEnabled,
+                   @Value("${jwt.cache.max-size:10000}") int cacheMaxSize,
+                   @Value("${jwt.cache.ttl-seconds:60}") long cacheTtlSeconds) {
+        this.verifiedTokens = cacheEnabled ? new BoundedTtlCache<>(cacheMaxSize, cacheTtlSeconds * 1000) : null;
+    }
+
     /**
      * Método para generar un token JWT
      * @param "username" El nombre de usuario
@@ -32,28 +60,83 @@ public class JwtUtil {
      * @return El token generado
      */
     public String generateToken(String username, String role, Long userId) {
-        return Jwts.builder()
+        return generateToken(username, role, userId, null, null);
+    }
+
+    /**
+     * Método para generar un token JWT que además incluye el id de cliente o de repartidor del usuario,
+     * para que las solicitudes autenticadas no tengan que buscarlo en la base de datos.
+     * @param "username" El nombre de usuario
+     * @param "role" El rol del usuario
+     * @param "userId" El ID del usuario
+     * @param "clientId" El ID del cliente asociado (o null)
+     * @param "dealerId" El ID del repartidor asociado (o null)
+     * @return El token generado
+     */
+    public String generateToken(String username, String role, Long userId, Integer clientId, Integer dealerId) {
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(username)
                 .claim("role", role)
-                .claim("userId", userId)
+                .claim("userId", userId);
+        if (clientId != null) {
+            builder.claim("clientId", clientId);
+        }
+        if (dealerId != null) {
+            builder.claim("dealerId", dealerId);
+        }
+        return builder
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Método para extraer todos los claims de un token en una sola lectura
+     * @param "token" El token JWT
+     * @return Los claims del token
+     * @throws JwtException si el token no es válido
+     */
+    public Claims extractClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * Método para validar un token y obtener sus claims verificando la firma una sola vez.
+     * Si la caché está habilitada, un token ya verificado y aún no expirado se responde sin volver a verificarlo.
+     * @param "token" El token JWT
+     * @return Los claims del token, o null si el token no es válido
+     */
+    public Claims parseValidClaims(String token) {
+        String hash = verifiedTokens != null ? sha256(token) : null;
+        if (hash != null) {
+            Claims cached = verifiedTokens.get(hash);
+            if (cached != null) {
+                if (cached.getExpiration() == null || cached.getExpiration().after(new Date())) {
+                    return cached;
+                }
+                verifiedTokens.remove(hash);
+                return null;
+            }
+        }
+        try {
+            Claims claims = extractClaims(token);
+            if (hash != null) {
+                verifiedTokens.put(hash, claims);
+            }
+            return claims;
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Método para extraer el rol de un token
      * @param "token" El token JWT
      * @return El rol contenido en el token
      */
     public String extractRole(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("role", String.class);
+        return extractClaims(token).get("role", String.class);
     }
 
     /**
@@ -62,12 +145,7 @@ public class JwtUtil {
      * @return El ID de usuario contenido en el token
      */
     public Long extractUserId(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("userId", Long.class);
+        return extractClaims(token).get("userId", Long.class);
     }
 
     /**
@@ -76,11 +154,15 @@ public class JwtUtil {
      * @return true si el token es válido, false si no lo es
      */
     public boolean validateToken(String token) {
+        return parseValidClaims(token) != null;
+    }
+
+    private static String sha256(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
-        } catch (JwtException e) {
-            return false;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e);
         }
     }
 }
\ No newline at end of file
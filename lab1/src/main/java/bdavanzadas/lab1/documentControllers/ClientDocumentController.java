@@ -1,10 +1,12 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.ClientDocument;
 import bdavanzadas.lab1.documentServices.ClientDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Optional;
 
@@ -22,24 +24,45 @@ public class ClientDocumentController {
      */
     private final ClientDocumentService clientService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor del controlador que inyecta el servicio de documentos de clientes.
      * @param clientService Servicio de documentos de clientes a utilizar.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public ClientDocumentController(ClientDocumentService clientService) {
+    public ClientDocumentController(ClientDocumentService clientService,
+                                    DocumentListing documentListing) {
         this.clientService = clientService;
+        this.documentListing = documentListing;
     }
 
-
-
     /**
      * Obtiene todos los documentos de clientes.
-     * @return Lista de documentos de clientes y código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<Iterable<ClientDocument>> getAllClients() {
-        return ResponseEntity.ok(clientService.getAllClients());
+    public ResponseEntity<Iterable<ClientDocument>> getAllClients(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(ClientDocument.class, after, limit, clientService::getAllClients);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(ClientDocument.class);
     }
     /**
      * Obtiene un documento de cliente por su ID.
@@ -1,10 +1,12 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.CompanyDocument;
 import bdavanzadas.lab1.documentServices.CompanyDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -22,22 +24,45 @@ public class CompanyDocumentController {
      */
     private final CompanyDocumentService companyService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor del controlador que inyecta el servicio de documentos de compañías.
      * @param companyService Servicio de documentos de compañías a utilizar.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public CompanyDocumentController(CompanyDocumentService companyService) {
+    public CompanyDocumentController(CompanyDocumentService companyService,
+                                     DocumentListing documentListing) {
         this.companyService = companyService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los documentos de compañías.
-     * @return Lista de documentos de compañías y código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<CompanyDocument>> getAll() {
-        return ResponseEntity.ok(companyService.getAll());
+    public ResponseEntity<Iterable<CompanyDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(CompanyDocument.class, after, limit, companyService::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(CompanyDocument.class);
     }
 
     /**
@@ -1,12 +1,13 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.CoverageAreaDocument;
 import bdavanzadas.lab1.documentServices.CoverageAreaDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 
 /**
  * Controlador REST para manejar operaciones relacionadas con documentos de áreas de cobertura.
@@ -22,22 +23,45 @@ public class CoverageAreaDocumentController {
      */
     private final CoverageAreaDocumentService coverageAreaService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor del controlador que inyecta el servicio de áreas de cobertura.
      * @param coverageAreaService Servicio de documentos de áreas de cobertura a utilizar.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public CoverageAreaDocumentController(CoverageAreaDocumentService coverageAreaService) {
+    public CoverageAreaDocumentController(CoverageAreaDocumentService coverageAreaService,
+                                          DocumentListing documentListing) {
         this.coverageAreaService = coverageAreaService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los documentos de áreas de cobertura.
-     * @return Lista de documentos de áreas de cobertura con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<CoverageAreaDocument>> getAll() {
-        return ResponseEntity.ok(coverageAreaService.getAll());
+    public ResponseEntity<Iterable<CoverageAreaDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(CoverageAreaDocument.class, after, limit, coverageAreaService::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(CoverageAreaDocument.class);
     }
 
     /**
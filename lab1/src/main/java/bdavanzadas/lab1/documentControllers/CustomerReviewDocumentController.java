@@ -1,5 +1,6 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.CustomerReviewDocument;
 import bdavanzadas.lab1.documentServices.CustomerReviewDocumentService;
 import bdavanzadas.lab1.projections.ReviewHourStatsProjection;
@@ -7,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import bdavanzadas.lab1.projections.AverageRatingWithNameProjection;
 import bdavanzadas.lab1.dtos.CompanyReviewDTO;
 import bdavanzadas.lab1.documentServices.CompanyDocumentService;
@@ -38,28 +40,51 @@ public class CustomerReviewDocumentController {
      */
     private final UserService userService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta los servicios necesarios.
      * @param service Servicio de reseñas de clientes.
      * @param companyService Servicio de empresas.
      * @param userService Servicio de usuarios.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
     public CustomerReviewDocumentController(CustomerReviewDocumentService service,
                                             CompanyDocumentService companyService,
-                                            UserService userService) {
+                                            UserService userService,
+                                            DocumentListing documentListing) {
         this.service = service;
         this.companyService = companyService;
         this.userService = userService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todas las reseñas de clientes.
-     * @return Lista de todas las reseñas con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<CustomerReviewDocument>> getAll() {
-        return ResponseEntity.ok(service.getAll());
+    public ResponseEntity<Iterable<CustomerReviewDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(CustomerReviewDocument.class, after, limit, service::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(CustomerReviewDocument.class);
     }
 
     /**
@@ -1,10 +1,12 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.DealerDocument;
 import bdavanzadas.lab1.documentServices.DealerDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Controlador REST para manejar operaciones relacionadas con documentos de distribuidores.
@@ -19,22 +21,45 @@ public class DealerDocumentController {
      */
     private final DealerDocumentService dealerService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de distribuidores.
      * @param dealerService Servicio de documentos de distribuidores.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public DealerDocumentController(DealerDocumentService dealerService) {
+    public DealerDocumentController(DealerDocumentService dealerService,
+                                    DocumentListing documentListing) {
         this.dealerService = dealerService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los documentos de distribuidores.
-     * @return Lista iterable de todos los distribuidores con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<Iterable<DealerDocument>> getAll() {
-        return ResponseEntity.ok(dealerService.getAll());
+    public ResponseEntity<Iterable<DealerDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(DealerDocument.class, after, limit, dealerService::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(DealerDocument.class);
     }
 
     /**
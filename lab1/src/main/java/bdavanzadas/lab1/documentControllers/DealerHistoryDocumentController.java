@@ -1,16 +1,15 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.DealerHistoryDocument;
 import bdavanzadas.lab1.documentServices.DealerHistoryDocumentService;
 import bdavanzadas.lab1.dtos.DealerFrequentLocationDTO;
-import bdavanzadas.lab1.projections.DealerFrequentLocationProjection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.Collections;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * Controlador REST para gestionar el historial de actividades de los distribuidores.
@@ -25,22 +24,45 @@ public class DealerHistoryDocumentController {
      */
     private final DealerHistoryDocumentService service;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de historial de distribuidores.
      * @param service Servicio de documentos de historial de distribuidores.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public DealerHistoryDocumentController(DealerHistoryDocumentService service) {
+    public DealerHistoryDocumentController(DealerHistoryDocumentService service,
+                                           DocumentListing documentListing) {
         this.service = service;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los registros del historial de distribuidores.
-     * @return Lista completa de registros históricos con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<DealerHistoryDocument>> getAll() {
-        return ResponseEntity.ok(service.getAll());
+    public ResponseEntity<Iterable<DealerHistoryDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(DealerHistoryDocument.class, after, limit, service::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(DealerHistoryDocument.class);
     }
 
     /**
@@ -75,47 +97,30 @@ public class DealerHistoryDocumentController {
     }
 
     /**
-     * Obtiene las ubicaciones frecuentes de los distribuidores en los últimos 7 días.
+     * Obtiene las ubicaciones frecuentes de los distribuidores, agrupadas por celda geohash.
+     * @param days Cantidad de días hacia atrás a considerar (por defecto 7).
+     * @param precision Precisión del geohash entre 5 y 8 (por defecto 7, celdas de unos 150 m).
      * @return Lista de DTOs con ubicaciones frecuentes o lista vacía si no hay datos.
-     * @apiNote Maneja errores internos devolviendo código 500 INTERNAL SERVER ERROR.
+     * @apiNote Devuelve 400 BAD REQUEST si los parámetros son inválidos y 500 INTERNAL SERVER ERROR ante errores internos.
      */
     @GetMapping("/frequent-locations")
-    public ResponseEntity<List<DealerFrequentLocationDTO>> getFrequentLocations() {
+    public ResponseEntity<List<DealerFrequentLocationDTO>> getFrequentLocations(
+            @RequestParam(defaultValue = "7") int days,
+            @RequestParam(defaultValue = "7") int precision) {
+        if (days <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
         try {
-            List<DealerFrequentLocationProjection> projections = service.getFrequentLocationsLast7Days();
-
-            if (projections == null || projections.isEmpty()) {
-                System.out.println("No se encontraron ubicaciones frecuentes");
-                return ResponseEntity.ok(Collections.emptyList());
-            }
-
-            List<DealerFrequentLocationDTO> result = projections.stream()
-                    .map(projection -> {
-                        try {
-                            List<Double> location = projection.getLocation();
-                            if (location == null || location.size() < 2) {
-                                System.err.println("Ubicación inválida para el repartidor: " + projection.getDealerId());
-                                return null;
-                            }
-                            return new DealerFrequentLocationDTO(
-                                    projection.getDealerId(),
-                                    location,
-                                    projection.getCount() != null ? projection.getCount() : 1L
-                            );
-                        } catch (Exception e) {
-                            System.err.println("Error procesando proyección: " + e.getMessage());
-                            return null;
-                        }
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
+            List<DealerFrequentLocationDTO> result =
+                    service.getFrequentLocations(LocalDateTime.now().minusDays(days), precision);
             System.out.println("Devolviendo " + result.size() + " ubicaciones frecuentes");
             return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             System.err.println("Error al obtener ubicaciones frecuentes: " + e.getMessage());
             e.printStackTrace();
             return ResponseEntity.internalServerError().build();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package bdavanzadas.lab1.documentControllers;
+
+import bdavanzadas.lab1.Config.PagingSupport;
+import bdavanzadas.lab1.documentServices.DocumentCursorService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.function.Supplier;
+
+
+/**
+ * Endpoints de listado comunes a los controladores de documentos.
+ * Resuelve la paginación por cursor sobre _id (?after=&limit=) y el recorrido completo en NDJSON,
+ * para que cada controlador solo indique la clase del documento y cómo obtener el listado completo.
+ */
+@Component
+public class DocumentListing {
+
+    private final DocumentCursorService documentCursorService;
+    private final PagingSupport pagingSupport;
+
+    /**
+     * Constructor que inyecta las dependencias necesarias.
+     * @param documentCursorService Servicio para paginar y recorrer colecciones con cursores
+     * @param pagingSupport Utilidades de paginación por cursor y de respuestas NDJSON
+     */
+    public DocumentListing(DocumentCursorService documentCursorService, PagingSupport pagingSupport) {
+        this.documentCursorService = documentCursorService;
+        this.pagingSupport = pagingSupport;
+    }
+
+    /**
+     * Lista los documentos de una colección.
+     * Sin after ni limit devuelve el listado completo; con alguno de ellos, una página ordenada por _id.
+     * @param type Clase del documento
+     * @param after Id del último documento de la página anterior, o null
+     * @param limit Tamaño de página pedido, o null
+     * @param all Listado completo, usado cuando no se pide una página
+     * @return Documentos con código 200 OK
+     */
+    public <T> ResponseEntity<Iterable<T>> list(Class<T> type, String after, Integer limit,
+                                                Supplier<? extends Iterable<T>> all) {
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(all.get());
+        }
+        return ResponseEntity.ok(documentCursorService.findPage(type, after, pagingSupport.limit(limit)));
+    }
+
+    /**
+     * Recorre todos los documentos de una colección con un cursor de MongoDB y los entrega en NDJSON.
+     * @param type Clase del documento
+     * @return Respuesta en streaming con código 200 OK
+     */
+    public <T> ResponseEntity<StreamingResponseBody> stream(Class<T> type) {
+        return pagingSupport.ndjson(action -> documentCursorService.forEach(type, action));
+    }
+}
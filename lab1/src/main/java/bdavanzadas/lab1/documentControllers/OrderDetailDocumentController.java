@@ -1,10 +1,12 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.OrderDetailDocument;
 import bdavanzadas.lab1.documentServices.OrderDetailDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 
 /**
@@ -21,22 +23,45 @@ public class OrderDetailDocumentController {
      */
     private final OrderDetailDocumentService orderDetailService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de detalles de pedidos.
      * @param orderDetailService Servicio para gestionar detalles de pedidos.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public OrderDetailDocumentController(OrderDetailDocumentService orderDetailService) {
+    public OrderDetailDocumentController(OrderDetailDocumentService orderDetailService,
+                                         DocumentListing documentListing) {
         this.orderDetailService = orderDetailService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los detalles de pedidos registrados en el sistema.
-     * @return Lista completa de detalles de pedidos con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<OrderDetailDocument>> getAll() {
-        return ResponseEntity.ok(orderDetailService.getAll());
+    public ResponseEntity<Iterable<OrderDetailDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(OrderDetailDocument.class, after, limit, orderDetailService::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(OrderDetailDocument.class);
     }
 
     /**
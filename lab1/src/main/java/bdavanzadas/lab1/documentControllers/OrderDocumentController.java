@@ -1,10 +1,12 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.OrderDocument;
 import bdavanzadas.lab1.documentServices.OrderDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -22,22 +24,45 @@ public class OrderDocumentController {
      */
     private final OrderDocumentService orderService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de documentos de pedidos.
      * @param orderService Servicio para gestionar documentos de pedidos.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public OrderDocumentController(OrderDocumentService orderService) {
+    public OrderDocumentController(OrderDocumentService orderService,
+                                   DocumentListing documentListing) {
         this.orderService = orderService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los documentos de pedidos.
-     * @return Lista de documentos de pedidos con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<OrderDocument>> getAll() {
-        return ResponseEntity.ok(orderService.getAll());
+    public ResponseEntity<Iterable<OrderDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(OrderDocument.class, after, limit, orderService::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(OrderDocument.class);
     }
 
     /**
@@ -1,11 +1,13 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.OrderLogDocument;
 import bdavanzadas.lab1.documentServices.OrderLogDocumentService;
 import bdavanzadas.lab1.dtos.RapidChangeOrderDTO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -22,22 +24,45 @@ public class OrderLogDocumentController {
      */
     private final OrderLogDocumentService service;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de documentos de registros de pedidos.
      * @param service Servicio para gestionar documentos de registros de pedidos.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public OrderLogDocumentController(OrderLogDocumentService service) {
+    public OrderLogDocumentController(OrderLogDocumentService service,
+                                      DocumentListing documentListing) {
         this.service = service;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los registros de pedidos.
-     * @return Lista de registros de pedidos con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<OrderLogDocument>> getAll() {
-        return ResponseEntity.ok(service.getAll());
+    public ResponseEntity<Iterable<OrderLogDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(OrderLogDocument.class, after, limit, service::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(OrderLogDocument.class);
     }
 
     /**
@@ -1,10 +1,12 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.ProductDocument;
 import bdavanzadas.lab1.documentServices.ProductDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -22,22 +24,45 @@ public class ProductDocumentController {
      */
     private final ProductDocumentService productService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de documentos de productos.
      * @param productService Servicio para gestionar documentos de productos.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public ProductDocumentController(ProductDocumentService productService) {
+    public ProductDocumentController(ProductDocumentService productService,
+                                     DocumentListing documentListing) {
         this.productService = productService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los documentos de productos.
-     * @return Lista de documentos de productos con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<ProductDocument>> getAll() {
-        return ResponseEntity.ok(productService.getAll());
+    public ResponseEntity<Iterable<ProductDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(ProductDocument.class, after, limit, productService::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(ProductDocument.class);
     }
 
     /**
@@ -1,10 +1,12 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.RatingDocument;
 import bdavanzadas.lab1.documentServices.RatingDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 
 /**
@@ -21,22 +23,45 @@ public class RatingDocumentController {
      */
     private final RatingDocumentService ratingService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de calificaciones.
      * @param ratingService Servicio para gestionar calificaciones.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public RatingDocumentController(RatingDocumentService ratingService) {
+    public RatingDocumentController(RatingDocumentService ratingService,
+                                    DocumentListing documentListing) {
         this.ratingService = ratingService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todas las calificaciones registradas en el sistema.
-     * @return Lista completa de calificaciones con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<RatingDocument>> getAll() {
-        return ResponseEntity.ok(ratingService.getAll());
+    public ResponseEntity<Iterable<RatingDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(RatingDocument.class, after, limit, ratingService::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(RatingDocument.class);
     }
 
     /**
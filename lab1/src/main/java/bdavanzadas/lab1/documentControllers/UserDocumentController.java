@@ -1,12 +1,13 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.UserDocument;
 import bdavanzadas.lab1.documentServices.UserDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 
 
 /**
@@ -22,22 +23,45 @@ public class UserDocumentController {
      */
     private final UserDocumentService userService;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de documentos de usuarios.
      * @param userService Servicio para gestionar documentos de usuarios.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public UserDocumentController(UserDocumentService userService) {
+    public UserDocumentController(UserDocumentService userService,
+                                  DocumentListing documentListing) {
         this.userService = userService;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los documentos de usuarios.
-     * @return Lista de documentos de usuarios con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<UserDocument>> getAll() {
-        return ResponseEntity.ok(userService.getAll());
+    public ResponseEntity<Iterable<UserDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(UserDocument.class, after, limit, userService::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(UserDocument.class);
     }
 
     /**
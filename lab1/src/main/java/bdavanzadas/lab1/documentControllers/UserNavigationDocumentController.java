@@ -1,11 +1,13 @@
 package bdavanzadas.lab1.documentControllers;
 
+import bdavanzadas.lab1.Config.PagingSupport;
 import bdavanzadas.lab1.documents.UserNavigationDocument;
 import bdavanzadas.lab1.documentServices.UserNavigationDocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -23,22 +25,45 @@ public class UserNavigationDocumentController {
      */
     private final UserNavigationDocumentService service;
 
+    /**
+     * Paginación por cursor y streaming NDJSON de la colección.
+     */
+    private final DocumentListing documentListing;
+
     /**
      * Constructor que inyecta el servicio de navegación de usuarios.
      * @param service Servicio para gestionar documentos de navegación.
+     * @param documentListing Endpoints de listado comunes a los documentos.
      */
     @Autowired
-    public UserNavigationDocumentController(UserNavigationDocumentService service) {
+    public UserNavigationDocumentController(UserNavigationDocumentService service,
+                                            DocumentListing documentListing) {
         this.service = service;
+        this.documentListing = documentListing;
     }
 
     /**
      * Obtiene todos los registros de navegación de usuarios.
-     * @return Lista completa de documentos de navegación con código 200 OK.
+     * Con after y/o limit devuelve una página ordenada por _id (paginación por cursor):
+     * la siguiente página se pide con after igual al id del último documento recibido.
+     * @param after Id del último documento de la página anterior (opcional).
+     * @param limit Tamaño de página (opcional, por defecto 100, máximo 1000).
+     * @return Documentos con código 200 OK.
      */
     @GetMapping
-    public ResponseEntity<List<UserNavigationDocument>> getAll() {
-        return ResponseEntity.ok(service.getAll());
+    public ResponseEntity<Iterable<UserNavigationDocument>> getAll(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        return documentListing.list(UserNavigationDocument.class, after, limit, service::getAll);
+    }
+
+    /**
+     * Obtiene todos los documentos en streaming (NDJSON, un documento JSON por línea),
+     * recorriendo la colección con un cursor de MongoDB.
+     * @return Respuesta en streaming con código 200 OK.
+     */
+    @GetMapping(value = "/stream", produces = PagingSupport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return documentListing.stream(UserNavigationDocument.class);
     }
 
     /**
@@ -0,0 +1,28 @@
+package bdavanzadas.lab1.documentRepositories;
+
+import bdavanzadas.lab1.documents.MigrationStateDocument;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repositorio para los puntos de control de la migración de PostgreSQL a MongoDB.
+ * Guarda un documento por entidad migrada.
+ */
+@Repository
+public interface MigrationStateDocumentRepository extends MongoRepository<MigrationStateDocument, String> {
+
+    /**
+     * Busca el punto de control de una entidad.
+     * @param entity Nombre de la entidad migrada (ej: "orders").
+     * @return Optional que contiene el punto de control si existe.
+     */
+    Optional<MigrationStateDocument> findByEntity(String entity);
+
+    /**
+     * Elimina el punto de control de una entidad, forzando una migración completa en la siguiente ejecución.
+     * @param entity Nombre de la entidad migrada.
+     */
+    void deleteByEntity(String entity);
+}
@@ -6,16 +6,38 @@ import bdavanzadas.lab1.documents.DealerHistoryDocument.LocationHistory;
 import bdavanzadas.lab1.documents.OrderDocument;
 import bdavanzadas.lab1.documentRepositories.DealerHistoryDocumentRepository;
 import bdavanzadas.lab1.documentRepositories.OrderDocumentRepository;
-import bdavanzadas.lab1.projections.DealerFrequentLocationProjection;
+import bdavanzadas.lab1.dtos.DealerFrequentLocationDTO;
+import bdavanzadas.lab1.mappers.GeoHash;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.Fields;
 import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Servicio para gestionar el historial de ubicaciones de repartidores.
@@ -25,23 +47,62 @@ import java.util.List;
 @Service
 public class DealerHistoryDocumentService {
 
+    /**
+     * Nombre del índice sobre locations.geohash8 que ya no se usa.
+     */
+    private static final String LEGACY_CELL_INDEX = "locations.geohash8_1";
+
     private final DealerHistoryDocumentRepository repository;
     private final DealerDocumentService dealerService;
     private final OrderDocumentRepository orderRepository;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Duración de cada tramo del historial (HOURS o DAYS).
+     */
+    private final ChronoUnit bucketUnit;
+
+    /**
+     * Máximo de ubicaciones por documento.
+     */
+    private final int bucketMaxPoints;
+
+    /**
+     * Días que se conservan los tramos antes de expirar.
+     */
+    private final long retentionDays;
 
     /**
      * Constructor que inyecta las dependencias necesarias.
      * @param repository Repositorio de historial de repartidores
      * @param dealerService Servicio de repartidores
      * @param orderRepository Repositorio de pedidos
+     * @param mongoTemplate Plantilla de MongoDB para índices y agregaciones
+     * @param bucketUnit Duración de cada tramo (HOURS o DAYS)
+     * @param bucketMaxPoints Máximo de ubicaciones por documento
+     * @param retentionDays Días que se conservan los tramos
      */
     @Autowired
     public DealerHistoryDocumentService(DealerHistoryDocumentRepository repository,
                                         DealerDocumentService dealerService,
-                                        OrderDocumentRepository orderRepository) {
+                                        OrderDocumentRepository orderRepository,
+                                        MongoTemplate mongoTemplate,
+                                        @Value("${dealer-history.bucket:HOURS}") ChronoUnit bucketUnit,
+                                        @Value("${dealer-history.bucket-max-points:500}") int bucketMaxPoints,
+                                        @Value("${dealer-history.retention-days:30}") long retentionDays) {
+        if (bucketUnit != ChronoUnit.HOURS && bucketUnit != ChronoUnit.DAYS) {
+            throw new IllegalArgumentException("dealer-history.bucket debe ser HOURS o DAYS");
+        }
+        if (bucketMaxPoints <= 0 || retentionDays <= 0) {
+            throw new IllegalArgumentException("dealer-history.bucket-max-points y dealer-history.retention-days deben ser positivos");
+        }
         this.repository = repository;
         this.dealerService = dealerService;
         this.orderRepository = orderRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.bucketUnit = bucketUnit;
+        this.bucketMaxPoints = bucketMaxPoints;
+        this.retentionDays = retentionDays;
     }
 
     /**
@@ -79,24 +140,95 @@ public class DealerHistoryDocumentService {
     }
 
     /**
-     * Obtiene y analiza las ubicaciones frecuentes de repartidores en los últimos 7 días.
-     * @return Lista de proyecciones con las ubicaciones frecuentes
-     * @apiNote Este método:
-     *          1. Obtiene todos los repartidores
-     *          2. Para cada repartidor, obtiene sus pedidos de los últimos 7 días
-     *          3. Procesa las rutas estimadas de cada pedido
-     *          4. Actualiza el historial de ubicaciones
-     *          5. Devuelve las ubicaciones más recientes con conteos
+     * Crea los índices del historial: por repartidor y tramo, y el índice TTL que elimina los tramos más antiguos
+     * que dealer-history.retention-days.
+     * Las celdas geohash no se indexan: las ubicaciones frecuentes filtran por bucketStart y agrupan por celda,
+     * y un índice sobre la celda no sirve para agrupar. Se elimina el índice de celda que creaban versiones anteriores.
      */
-    public List<DealerFrequentLocationProjection> getFrequentLocationsLast7Days() {
-        List<DealerDocument> dealers = dealerService.getAll();
-        List<DealerFrequentLocationProjection> result = new ArrayList<>();
+    @PostConstruct
+    public void ensureIndexes() {
+        IndexOperations indexes = mongoTemplate.indexOps(DealerHistoryDocument.class);
+        indexes.ensureIndex(new Index().on("dealerId", Sort.Direction.ASC).on("bucketStart", Sort.Direction.ASC));
+        indexes.ensureIndex(new Index().on("bucketStart", Sort.Direction.ASC).expire(Duration.ofDays(retentionDays)));
+        if (indexes.getIndexInfo().stream().anyMatch(index -> LEGACY_CELL_INDEX.equals(index.getName()))) {
+            indexes.dropIndex(LEGACY_CELL_INDEX);
+        }
+    }
+
+    /**
+     * Registra una ubicación de un repartidor en el tramo que corresponde a su fecha.
+     * La escritura es un único upsert con $push: agrega al tramo abierto del intervalo o crea uno nuevo si no existe
+     * o si el actual ya tiene dealer-history.bucket-max-points ubicaciones, sin leer ni reescribir el documento.
+     * @param dealerId ID del repartidor
+     * @param location Punto registrado
+     * @param timestamp Fecha del registro
+     * @param orderId Orden que generó la ubicación (puede ser null)
+     */
+    public void recordLocation(Integer dealerId, GeoJsonPoint location, LocalDateTime timestamp, String orderId) {
+        List<LocationHistory> points = List.of(LocationHistory.of(location, timestamp, orderId));
+        mongoTemplate.upsert(bucketQuery(dealerId, timestamp, 1), bucketUpdate(points), DealerHistoryDocument.class);
+    }
+
+    /**
+     * Registra varias ubicaciones de un repartidor en una sola operación masiva.
+     * @param dealerId ID del repartidor
+     * @param points Ubicaciones a registrar, en orden cronológico
+     */
+    public void recordLocations(Integer dealerId, List<LocationHistory> points) {
+        recordLocations(Map.of(dealerId, points));
+    }
 
+    /**
+     * Registra ubicaciones de varios repartidores en una sola operación masiva.
+     * Las ubicaciones consecutivas del mismo tramo se agregan juntas con $push/$each en grupos de hasta un cuarto
+     * de la capacidad del tramo; cada grupo va al tramo abierto solo si cabe completo, si no se abre uno nuevo.
+     * Las operaciones se ejecutan en orden, así que un tramo que se llena a mitad del lote continúa en el siguiente.
+     * @param pointsByDealer Ubicaciones a registrar por repartidor, en orden cronológico
+     * @return Cantidad de ubicaciones registradas
+     */
+    public int recordLocations(Map<Integer, List<LocationHistory>> pointsByDealer) {
+        int chunkSize = Math.max(1, bucketMaxPoints / 4);
+        BulkOperations bulk = null;
+        int recorded = 0;
+        for (Map.Entry<Integer, List<LocationHistory>> entry : pointsByDealer.entrySet()) {
+            List<LocationHistory> points = entry.getValue();
+            int start = 0;
+            while (start < points.size()) {
+                LocalDateTime bucket = bucketStart(points.get(start).getTimestamp());
+                int end = start + 1;
+                while (end < points.size() && end - start < chunkSize
+                        && bucketStart(points.get(end).getTimestamp()).equals(bucket)) {
+                    end++;
+                }
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, DealerHistoryDocument.class);
+                }
+                List<LocationHistory> chunk = points.subList(start, end);
+                bulk.upsert(bucketQuery(entry.getKey(), bucket, chunk.size()), bucketUpdate(chunk));
+                recorded += chunk.size();
+                start = end;
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+        }
+        return recorded;
+    }
+
+    /**
+     * Registra en el historial los puntos de las rutas de los pedidos de los últimos 7 días.
+     * Solo se agregan los pedidos que aún no están en el historial del repartidor, así que repetirlo no duplica ubicaciones.
+     * @return Cantidad de ubicaciones agregadas
+     */
+    @Scheduled(fixedDelayString = "${dealer-history.record-delay-ms:600000}")
+    public int recordRecentRoutes() {
+        List<DealerDocument> dealers = dealerService.getAll();
         if (dealers == null || dealers.isEmpty()) {
-            return result;
+            return 0;
         }
 
         LocalDateTime weekAgo = LocalDateTime.now().minusDays(7);
+        int added = 0;
 
         for (DealerDocument dealer : dealers) {
             try {
@@ -109,36 +241,26 @@ public class DealerHistoryDocumentService {
                     continue;
                 }
 
-                List<DealerHistoryDocument> existingHistory = repository.findByDealerId(dealer.getDealerId());
-                DealerHistoryDocument history = !existingHistory.isEmpty() ?
-                        existingHistory.get(0) :
-                        new DealerHistoryDocument(null, dealer.getDealerId(), new ArrayList<>(), LocalDateTime.now());
+                // Pedidos ya registrados: solo se leen los tramos de la ventana
+                Query recordedQuery = new Query(Criteria.where("dealerId").is(dealer.getDealerId())
+                        .and("bucketStart").gte(bucketStart(weekAgo)));
+                Set<String> recorded = new HashSet<>(mongoTemplate.findDistinct(
+                        recordedQuery, "locations.orderId", DealerHistoryDocument.class, String.class));
 
+                LocalDateTime now = LocalDateTime.now();
+                List<LocationHistory> points = new ArrayList<>();
                 for (OrderDocument order : orders) {
-                    if (order.getEstimatedRoute() != null && order.getOrderId() != null) {
+                    if (order.getEstimatedRoute() != null && order.getOrderId() != null
+                            && !recorded.contains(order.getOrderId().toString())) {
                         for (Point point : order.getEstimatedRoute().getCoordinates()) {
                             GeoJsonPoint geoPoint = new GeoJsonPoint(point.getX(), point.getY());
-                            history.addLocation(geoPoint, order.getOrderId().toString());
+                            points.add(LocationHistory.of(geoPoint, now, order.getOrderId().toString()));
                         }
                     }
                 }
 
-                repository.save(history);
-
-                if (history.getLocations() != null && !history.getLocations().isEmpty()) {
-                    LocationHistory lastLocation = history.getLocations().get(history.getLocations().size() - 1);
-                    final List<Double> location = List.of(
-                            lastLocation.getLocation().getX(),
-                            lastLocation.getLocation().getY()
-                    );
-                    final Integer dealerId = dealer.getDealerId();
-
-                    result.add(new DealerFrequentLocationProjection() {
-                        @Override public Integer getDealerId() { return dealerId; }
-                        @Override public List<Double> getLocation() { return location; }
-                        @Override public Long getCount() { return (long) history.getLocations().size(); }
-                    });
-                }
+                recordLocations(dealer.getDealerId(), points);
+                added += points.size();
 
             } catch (Exception e) {
                 System.err.println("Error procesando repartidor " + dealer.getDealerId() + ": " + e.getMessage());
@@ -146,17 +268,89 @@ public class DealerHistoryDocumentService {
             }
         }
 
+        return added;
+    }
+
+    /**
+     * Inicio del tramo que contiene una fecha.
+     * @param timestamp Fecha
+     * @return La fecha truncada a la hora o al día, según dealer-history.bucket
+     */
+    private LocalDateTime bucketStart(LocalDateTime timestamp) {
+        return timestamp.truncatedTo(bucketUnit);
+    }
+
+    /**
+     * Consulta del tramo abierto de un repartidor: mismo intervalo y con espacio para otras size ubicaciones.
+     */
+    private Query bucketQuery(Integer dealerId, LocalDateTime timestamp, int size) {
+        return new Query(Criteria.where("dealerId").is(dealerId)
+                .and("bucketStart").is(bucketStart(timestamp))
+                .and("count").lte(bucketMaxPoints - size));
+    }
+
+    /**
+     * Actualización que agrega ubicaciones al tramo; al crear el tramo, dealerId y bucketStart se toman de la consulta.
+     */
+    private Update bucketUpdate(List<LocationHistory> points) {
+        Update update = new Update();
+        update.push("locations").each(points.toArray());
+        return update
+                .inc("count", points.size())
+                .set("lastUpdated", LocalDateTime.now());
+    }
+
+    /**
+     * Obtiene las ubicaciones frecuentes de repartidores en los últimos 7 días, agrupadas en celdas de unos 150 m.
+     * @return Lista de ubicaciones frecuentes
+     */
+    public List<DealerFrequentLocationDTO> getFrequentLocationsLast7Days() {
+        return getFrequentLocations(LocalDateTime.now().minusDays(7), 7);
+    }
+
+    /**
+     * Obtiene las ubicaciones frecuentes de los repartidores desde una fecha, agrupando por celda geohash.
+     * La agregación lee solo los tramos de la ventana, filtra sus ubicaciones por fecha, agrupa por repartidor y celda de la precisión pedida
+     * y devuelve como ubicación el promedio de los puntos de cada celda.
+     * @param from Fecha desde la cual considerar ubicaciones
+     * @param precision Precisión del geohash (5 ≈ 4,9 km, 6 ≈ 1,2 km, 7 ≈ 153 m, 8 ≈ 38 m)
+     * @return Ubicaciones frecuentes ordenadas por cantidad de registros descendente
+     */
+    public List<DealerFrequentLocationDTO> getFrequentLocations(LocalDateTime from, int precision) {
+        String cellField = "locations.geohash" + GeoHash.checkStoredPrecision(precision);
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("bucketStart").gte(bucketStart(from))),
+                Aggregation.unwind("locations"),
+                Aggregation.match(Criteria.where("locations.timestamp").gte(from).and(cellField).ne(null)),
+                Aggregation.group(Fields.from(Fields.field("dealerId", "dealerId"), Fields.field("cell", cellField)))
+                        .count().as("count")
+                        .avg(ArrayOperators.ArrayElemAt.arrayOf("locations.location.coordinates").elementAt(0)).as("longitude")
+                        .avg(ArrayOperators.ArrayElemAt.arrayOf("locations.location.coordinates").elementAt(1)).as("latitude"),
+                Aggregation.sort(Sort.Direction.DESC, "count")
+        );
+
+        List<DealerFrequentLocationDTO> result = new ArrayList<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, DealerHistoryDocument.class, Document.class)) {
+            Document id = row.get("_id", Document.class);
+            result.add(new DealerFrequentLocationDTO(
+                    id.getInteger("dealerId"),
+                    List.of(row.getDouble("longitude"), row.getDouble("latitude")),
+                    ((Number) row.get("count")).longValue(),
+                    id.getString("cell")
+            ));
+        }
         return result;
     }
 
     /**
      * Método de compatibilidad para mantener la interfaz existente.
-     * @param from Fecha desde la cual buscar (no utilizado)
-     * @return Lista de proyecciones con las ubicaciones frecuentes
-     * @deprecated Reemplazado por {@link #getFrequentLocationsLast7Days()}
+     * @param from Fecha desde la cual buscar
+     * @return Lista de ubicaciones frecuentes
+     * @deprecated Reemplazado por {@link #getFrequentLocations(LocalDateTime, int)}
      */
     @Deprecated
-    public List<DealerFrequentLocationProjection> findFrequentLocationsAfter(Date from) {
-        return getFrequentLocationsLast7Days();
+    public List<DealerFrequentLocationDTO> findFrequentLocationsAfter(Date from) {
+        return getFrequentLocations(LocalDateTime.ofInstant(from.toInstant(), ZoneId.systemDefault()), 7);
     }
 }
\ No newline at end of file
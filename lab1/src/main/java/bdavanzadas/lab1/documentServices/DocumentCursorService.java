@@ -0,0 +1,63 @@
+package bdavanzadas.lab1.documentServices;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Servicio para recorrer colecciones de MongoDB sin cargarlas completas en memoria.
+ * Ofrece paginación por cursor sobre _id (cada página continúa después del último _id recibido)
+ * y recorrido completo con un cursor de MongoDB, para los endpoints de listado de documentos.
+ */
+@Service
+public class DocumentCursorService {
+
+    /**
+     * Cantidad de documentos que MongoDB entrega por cada viaje del cursor.
+     */
+    private static final int CURSOR_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor que inyecta la plantilla de MongoDB.
+     * @param mongoTemplate Plantilla de MongoDB
+     */
+    public DocumentCursorService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Obtiene una página de documentos ordenados por _id.
+     * @param type Clase del documento
+     * @param after _id del último documento de la página anterior, o null para la primera página
+     * @param limit Cantidad máxima de documentos
+     * @return Documentos con _id mayor a after
+     */
+    public <T> List<T> findPage(Class<T> type, String after, int limit) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).limit(limit);
+        if (after != null) {
+            query.addCriteria(Criteria.where("_id").gt(ObjectId.isValid(after) ? new ObjectId(after) : after));
+        }
+        return mongoTemplate.find(query, type);
+    }
+
+    /**
+     * Recorre todos los documentos de una colección con un cursor, entregándolos uno a uno.
+     * @param type Clase del documento
+     * @param action Acción a ejecutar por cada documento
+     */
+    public <T> void forEach(Class<T> type, Consumer<? super T> action) {
+        Query query = new Query().cursorBatchSize(CURSOR_BATCH_SIZE);
+        try (Stream<T> documents = mongoTemplate.stream(query, type)) {
+            documents.forEach(action);
+        }
+    }
+}
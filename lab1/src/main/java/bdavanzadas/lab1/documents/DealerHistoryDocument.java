@@ -1,5 +1,6 @@
 package bdavanzadas.lab1.documents;
 
+import bdavanzadas.lab1.mappers.GeoHash;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +18,9 @@ import java.util.List;
  * Documento que representa el historial de ubicaciones de un repartidor
  * en la base de datos MongoDB.
  * * Contiene información sobre el ID del repartidor, una lista de ubicaciones
+ * * El historial se guarda por tramos de tiempo: cada documento cubre un repartidor en un intervalo que comienza
+ * en bucketStart (una hora o un día) y guarda a lo más un número fijo de ubicaciones; al llenarse se abre otro
+ * documento para el mismo intervalo. Los tramos antiguos expiran por un índice TTL sobre bucketStart.
  * */
 @Data
 @AllArgsConstructor
@@ -27,7 +31,14 @@ public class DealerHistoryDocument {
     private Integer dealerId;
     private List<LocationHistory> locations;
     private LocalDateTime lastUpdated;
+    private LocalDateTime bucketStart; // Inicio del intervalo que cubre el documento
+    private Integer count; // Cantidad de ubicaciones guardadas en el documento
     
+    /**
+     * Ubicación registrada. Además del punto guarda la celda geohash que lo contiene en varias precisiones
+     * (geohash5 ≈ 4,9 km a geohash8 ≈ 38 m), de modo que las ubicaciones frecuentes se agrupan por celda
+     * y no por coordenadas exactas.
+     */
     @Data
     @AllArgsConstructor
     @NoArgsConstructor
@@ -35,13 +46,31 @@ public class DealerHistoryDocument {
         private GeoJsonPoint location;
         private LocalDateTime timestamp;
         private String orderId; // Referencia a la orden que generó esta ubicación
+        private String geohash5;
+        private String geohash6;
+        private String geohash7;
+        private String geohash8;
+
+        /**
+         * Crea una ubicación calculando sus celdas geohash.
+         * @param location Punto registrado
+         * @param timestamp Fecha del registro
+         * @param orderId Orden que generó la ubicación
+         * @return La ubicación con sus celdas
+         */
+        public static LocationHistory of(GeoJsonPoint location, LocalDateTime timestamp, String orderId) {
+            String geohash = GeoHash.encode(location.getX(), location.getY(), GeoHash.MAX_PRECISION);
+            return new LocationHistory(location, timestamp, orderId,
+                    geohash.substring(0, 5), geohash.substring(0, 6), geohash.substring(0, 7), geohash);
+        }
     }
     
     public void addLocation(GeoJsonPoint location, String orderId) {
         if (this.locations == null) {
             this.locations = new ArrayList<>();
         }
-        this.locations.add(new LocationHistory(location, LocalDateTime.now(), orderId));
+        this.locations.add(LocationHistory.of(location, LocalDateTime.now(), orderId));
+        this.count = this.locations.size();
         this.lastUpdated = LocalDateTime.now();
     }
 }
@@ -0,0 +1,56 @@
+package bdavanzadas.lab1.documents;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+
+/**
+ *
+ * Documento que guarda el punto de control de la migración de una entidad de PostgreSQL a MongoDB.
+ * * lastId y watermark describen la última ejecución completa: una nueva ejecución solo lee filas con
+ * id mayor a lastId o con updated_at posterior a watermark.
+ * * Mientras una ejecución está en curso, runWatermark, runUpperId y partitions registran su avance
+ * para poder retomarla si se interrumpe.
+ * */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "migration_state")
+public class MigrationStateDocument {
+    private String id;
+
+    @Indexed(unique = true)
+    private String entity;
+
+    private Long lastId;
+    private LocalDateTime watermark;
+
+    private LocalDateTime runWatermark;
+    private Long runUpperId;
+    private List<PartitionCheckpoint> partitions;
+
+    private LocalDateTime updatedAt;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class PartitionCheckpoint {
+        private long fromId;
+        private long toId;
+        private Long lastMigratedId; // Último id escrito en MongoDB dentro del rango, null si aún no empieza
+    }
+
+    /**
+     * Indica si hay una ejecución interrumpida que se debe retomar.
+     * @return true si hay una ejecución en curso registrada
+     */
+    public boolean hasPendingRun() {
+        return runWatermark != null && partitions != null;
+    }
+}
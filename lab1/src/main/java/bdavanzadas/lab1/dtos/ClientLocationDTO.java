@@ -0,0 +1,21 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase ClientLocationDTO representa la ubicación de un cliente como longitud y latitud (SRID 4326).
+ *
+ */
+public class ClientLocationDTO {
+    private int clientId;
+    private String clientName;
+    private double longitude;
+    private double latitude;
+}
@@ -0,0 +1,22 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase CoverageBatchRequestDTO representa una consulta de cobertura para varios clientes y varias empresas a la vez.
+ *  Se evalúan todas las combinaciones cliente × empresa.
+ *
+ */
+public class CoverageBatchRequestDTO {
+    private List<Integer> clientIds;
+    private List<Integer> companyIds;
+}
@@ -0,0 +1,24 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase CoverageBatchResultDTO representa el resultado de una consulta de cobertura por lotes.
+ *  Para cada cliente consultado indica cuáles de las empresas consultadas lo cubren (lista vacía si ninguna),
+ *  y lista los clientes que no existen o no tienen ubicación.
+ *
+ */
+public class CoverageBatchResultDTO {
+    private Map<Integer, List<Integer>> coveredCompanies;
+    private List<Integer> unknownClients;
+}
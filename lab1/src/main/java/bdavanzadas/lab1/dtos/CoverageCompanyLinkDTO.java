@@ -0,0 +1,21 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase CoverageCompanyLinkDTO representa la asociación entre un área de cobertura y una empresa que la atiende.
+ *  Incluye el nombre de la empresa para poder responder consultas de cobertura sin volver a la base de datos.
+ *
+ */
+public class CoverageCompanyLinkDTO {
+    private int coverageId;
+    private int companyId;
+    private String companyName;
+}
@@ -9,8 +9,16 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+
+/**
+ *
+ *  La clase DealerFrequentLocationDTO representa una ubicación frecuente de un repartidor: la celda geohash,
+ *  el promedio de los puntos registrados en ella y la cantidad de registros.
+ *
+ */
 public class DealerFrequentLocationDTO {
     private Integer dealerId;
     private List<Double> location; // [longitude, latitude]
     private Long count;
+    private String cell;
 }
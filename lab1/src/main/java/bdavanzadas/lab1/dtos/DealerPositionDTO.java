@@ -0,0 +1,22 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase DealerPositionDTO representa la posición de un repartidor (longitud y latitud, SRID 4326)
+ *  y si tiene un pedido activo (estado EN PROCESO).
+ *
+ */
+public class DealerPositionDTO {
+    private int dealerId;
+    private double longitude;
+    private double latitude;
+    private boolean busy;
+}
@@ -0,0 +1,21 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase DispatchAssignmentDTO representa la asignación automática de un pedido a un repartidor
+ *  y la distancia en metros entre el repartidor y el punto de retiro.
+ *
+ */
+public class DispatchAssignmentDTO {
+    private int orderId;
+    private int dealerId;
+    private double distanceMeters;
+}
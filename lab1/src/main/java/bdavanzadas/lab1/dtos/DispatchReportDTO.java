@@ -0,0 +1,24 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase DispatchReportDTO representa el resultado de una ola de despacho: los pedidos pendientes considerados,
+ *  los repartidores libres al comenzar, las asignaciones realizadas y el tiempo empleado.
+ *
+ */
+public class DispatchReportDTO {
+    private int pendingOrders;
+    private int idleDealers;
+    private List<DispatchAssignmentDTO> assignments;
+    private long elapsedMillis;
+}
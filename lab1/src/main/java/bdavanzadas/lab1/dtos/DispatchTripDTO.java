@@ -0,0 +1,23 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase DispatchTripDTO representa un viaje con varias paradas asignado a un repartidor:
+ *  los pedidos en el orden en que se entregan y el largo en metros de la ruta combinada.
+ *
+ */
+public class DispatchTripDTO {
+    private int dealerId;
+    private List<Integer> orderIds;
+    private double routeMeters;
+}
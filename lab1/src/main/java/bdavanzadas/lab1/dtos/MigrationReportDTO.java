@@ -0,0 +1,22 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase MigrationReportDTO representa el resultado de migrar una entidad de PostgreSQL a MongoDB.
+ *  Incluye el nombre de la entidad, la cantidad de filas migradas, el tiempo empleado y el rendimiento en filas por segundo.
+ *
+ */
+public class MigrationReportDTO {
+    private String entity;
+    private long rows;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+}
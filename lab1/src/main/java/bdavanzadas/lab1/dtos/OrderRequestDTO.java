@@ -10,7 +10,15 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+
+/**
+ *
+ *  La clase OrderRequestDTO representa una compra: la orden, los productos (un id repetido es una unidad más)
+ *  y el método de pago con que se registra su detalle.
+ *
+ */
 public class OrderRequestDTO {
     private OrdersEntity order;
     private List<Integer> productIds;
+    private String paymentMethod;
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase OrderStatusEventDTO representa un cambio de estado de un pedido que se envía a su cliente
+ *  y a su repartidor por el canal de eventos.
+ *
+ */
+public class OrderStatusEventDTO {
+    private int orderId;
+    private Integer clientId;
+    private Integer dealerId;
+    private String status;
+}
@@ -0,0 +1,27 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase OutboxMetricsDTO representa el estado del relay que sincroniza el outbox de PostgreSQL con MongoDB.
+ *  Incluye los eventos pendientes, el retraso del evento más antiguo sin aplicar y el rendimiento del relay.
+ *
+ */
+public class OutboxMetricsDTO {
+    private long pendingEvents;
+    private double lagSeconds;
+    private long processedEvents;
+    private int lastBatchSize;
+    private long lastBatchMillis;
+    private double eventsPerSecond;
+    private LocalDateTime lastRelayAt;
+}
@@ -0,0 +1,24 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase PendingOrderDTO representa un pedido sin repartidor asignado, su punto de retiro
+ *  (inicio de la ruta estimada, o la ubicación del cliente si el pedido no tiene ruta) y su punto de entrega (el cliente).
+ *
+ */
+public class PendingOrderDTO {
+    private int orderId;
+    private double longitude;
+    private double latitude;
+    private double deliveryLongitude;
+    private double deliveryLatitude;
+    private boolean urgent;
+}
@@ -0,0 +1,21 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase PositionIngestResultDTO representa el resultado de recibir un lote de posiciones de repartidores:
+ *  las aceptadas, las rechazadas por datos inválidos y las descartadas porque el buffer estaba lleno.
+ *
+ */
+public class PositionIngestResultDTO {
+    private int accepted;
+    private int rejected;
+    private int dropped;
+}
@@ -0,0 +1,32 @@
+package bdavanzadas.lab1.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+/**
+ *
+ *  La clase ReconciliationReportDTO representa el resultado de comparar una entidad de PostgreSQL con su colección en MongoDB.
+ *  Incluye los conteos de ambos lados, los documentos faltantes, sobrantes y distintos, y una muestra acotada de sus ids.
+ *
+ */
+public class ReconciliationReportDTO {
+    private String entity;
+    private long sourceRows;
+    private long targetDocuments;
+    private long missing;
+    private long extra;
+    private long divergent;
+    private long repaired;
+    private List<Integer> missingIds = new ArrayList<>();
+    private List<Integer> extraIds = new ArrayList<>();
+    private List<Integer> divergentIds = new ArrayList<>();
+    private long elapsedMillis;
+}
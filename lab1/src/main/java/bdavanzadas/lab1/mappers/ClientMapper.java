@@ -1,7 +1,6 @@
 package bdavanzadas.lab1.mappers;
 
 import bdavanzadas.lab1.entities.ClientEntity;
-import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 
 import bdavanzadas.lab1.documents.ClientDocument;
 
@@ -31,16 +30,7 @@ public class ClientMapper {
         doc.setAddress(entity.getAddress());
         doc.setUserId(entity.getUserId());
 
-        if (entity.getUbication() != null && entity.getUbication().startsWith("POINT(")) {
-            String wkt = entity.getUbication()
-                    .replace("POINT(", "")
-                    .replace(")", "")
-                    .trim();
-            String[] parts = wkt.split(" ");
-            double lon = Double.parseDouble(parts[0]);
-            double lat = Double.parseDouble(parts[1]);
-            doc.setLocation(new GeoJsonPoint(lon, lat));
-        }
+        doc.setLocation(GeometryCodec.toGeoJsonPoint(entity.getUbication()));
 
         return doc;
     }
@@ -2,8 +2,8 @@ package bdavanzadas.lab1.mappers;
 
 import bdavanzadas.lab1.entities.CompanyEntity;
 import bdavanzadas.lab1.documents.CompanyDocument;
-import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 
+import java.util.List;
 import java.util.stream.Collectors;
 
 
@@ -34,16 +34,32 @@ public class CompanyMapper {
         document.setFailedDeliveries(entity.getFailedDeliveries());
         document.setTotalSales(entity.getTotalSales());
 
-        if (entity.getUbication() != null && entity.getUbication().startsWith("POINT(")) {
-            String wkt = entity.getUbication().replace("POINT(", "").replace(")", "").trim();
-            String[] parts = wkt.split(" ");
-            double lon = Double.parseDouble(parts[0]);
-            double lat = Double.parseDouble(parts[1]);
-            document.setLocation(new GeoJsonPoint(lon, lat));
-        }
+        document.setLocation(GeometryCodec.toGeoJsonPoint(entity.getUbication()));
 
         // No asignar aquí paymentMethodIds ni coverageAreaIds
 
         return document;
     }
+
+    /**
+     * Convierte una entidad de empresa a un documento de empresa incluyendo sus relaciones.
+     *
+     * @param entity Entidad de empresa a convertir
+     * @param paymentMethodIds IDs de los métodos de pago de la empresa
+     * @param coverageAreaIds IDs de las áreas de cobertura de la empresa
+     * @return Documento de empresa con los datos de la entidad y sus relaciones
+     */
+    public static CompanyDocument fromCompanyEntity(CompanyEntity entity, List<Integer> paymentMethodIds, List<Integer> coverageAreaIds) {
+        CompanyDocument document = fromCompanyEntity(entity);
+
+        document.setPaymentMethodIds(paymentMethodIds.stream()
+                .map(String::valueOf)
+                .collect(Collectors.toList()));
+
+        document.setCoverageAreaIds(coverageAreaIds.stream()
+                .map(String::valueOf)
+                .collect(Collectors.toList()));
+
+        return document;
+    }
 }
\ No newline at end of file
@@ -2,7 +2,6 @@ package bdavanzadas.lab1.mappers;
 
 
 import bdavanzadas.lab1.entities.DealerEntity;
-import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 
 import bdavanzadas.lab1.documents.DealerDocument;
 
@@ -39,16 +38,7 @@ public class DealerMapper {
 
         document.setUserId(entity.getUserId());
 
-        if (entity.getUbication() != null && entity.getUbication().startsWith("POINT(")) {
-            String wkt = entity.getUbication()
-                    .replace("POINT(", "")
-                    .replace(")", "")
-                    .trim(); // ej: "-70.12345 -33.45678"
-            String[] parts = wkt.split(" ");
-            double lon = Double.parseDouble(parts[0]);
-            double lat = Double.parseDouble(parts[1]);
-            document.setLocation(new GeoJsonPoint(lon, lat));
-        }
+        document.setLocation(GeometryCodec.toGeoJsonPoint(entity.getUbication()));
 
 
         return document;
@@ -2,7 +2,6 @@ package bdavanzadas.lab1.mappers;
 
 import bdavanzadas.lab1.documents.EmergencyReportDocument;
 import bdavanzadas.lab1.entities.EmergencyReportEntity;
-import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 
 
 
@@ -30,18 +29,8 @@ public class EmergencyReportMapper {
         document.setOrderId(entity.getOrderId());
         document.setDealerId(entity.getDealerId());
 
-        // Convertir ubicación WKT "POINT(lon lat)" a GeoJsonPoint
-        if (entity.getUbication() != null && entity.getUbication().startsWith("POINT(")) {
-            String wkt = entity.getUbication()
-                    .replace("POINT(", "")
-                    .replace(")", "")
-                    .trim();
-
-            String[] coords = wkt.split(" ");
-            double lon = Double.parseDouble(coords[0]);
-            double lat = Double.parseDouble(coords[1]);
-            document.setLocation(new GeoJsonPoint(lon, lat));
-        }
+        // Convertir ubicación "POINT(lon lat)" (WKT o EWKB) a GeoJsonPoint
+        document.setLocation(GeometryCodec.toGeoJsonPoint(entity.getUbication()));
 
         return document;
     }
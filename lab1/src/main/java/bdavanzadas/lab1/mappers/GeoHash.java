@@ -0,0 +1,81 @@
+package bdavanzadas.lab1.mappers;
+
+
+/**
+ * Codificación geohash de coordenadas.
+ * Un geohash divide el mundo en celdas rectangulares identificadas por una cadena en base 32; cada carácter adicional
+ * subdivide la celda, así que el prefijo de largo n de un geohash es la celda de precisión n que lo contiene.
+ * Tamaño aproximado de celda: precisión 5 ≈ 4,9 km, 6 ≈ 1,2 km, 7 ≈ 153 m, 8 ≈ 38 m.
+ */
+public final class GeoHash {
+
+    /**
+     * Precisiones que se guardan junto a cada punto del historial de repartidores.
+     */
+    public static final int MIN_PRECISION = 5;
+    public static final int MAX_PRECISION = 8;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+    }
+
+    /**
+     * Calcula el geohash de una coordenada.
+     * @param longitude Longitud
+     * @param latitude Latitud
+     * @param precision Cantidad de caracteres (1 a 12)
+     * @return El geohash
+     * @throws IllegalArgumentException si la precisión o las coordenadas están fuera de rango
+     */
+    public static String encode(double longitude, double latitude, int precision) {
+        if (precision < 1 || precision > 12) {
+            throw new IllegalArgumentException("La precisión del geohash debe estar entre 1 y 12");
+        }
+        if (!(longitude >= -180 && longitude <= 180 && latitude >= -90 && latitude <= 90)) {
+            throw new IllegalArgumentException("Coordenadas fuera de rango: " + longitude + " " + latitude);
+        }
+        double minLon = -180, maxLon = 180, minLat = -90, maxLat = 90;
+        char[] hash = new char[precision];
+        boolean even = true; // los bits alternan longitud (pares) y latitud (impares)
+        for (int i = 0; i < precision; i++) {
+            int value = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                value <<= 1;
+                if (even) {
+                    double middle = (minLon + maxLon) / 2;
+                    if (longitude >= middle) {
+                        value |= 1;
+                        minLon = middle;
+                    } else {
+                        maxLon = middle;
+                    }
+                } else {
+                    double middle = (minLat + maxLat) / 2;
+                    if (latitude >= middle) {
+                        value |= 1;
+                        minLat = middle;
+                    } else {
+                        maxLat = middle;
+                    }
+                }
+                even = !even;
+            }
+            hash[i] = BASE32[value];
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Valida una precisión de las que se guardan en el historial.
+     * @param precision Precisión solicitada
+     * @return La misma precisión
+     * @throws IllegalArgumentException si no está entre MIN_PRECISION y MAX_PRECISION
+     */
+    public static int checkStoredPrecision(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("La precisión debe estar entre " + MIN_PRECISION + " y " + MAX_PRECISION);
+        }
+        return precision;
+    }
+}
@@ -0,0 +1,513 @@
+package bdavanzadas.lab1.mappers;
+
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Decodificador de geometrías compartido por los mapeadores.
+ * Lee geometrías POINT, LINESTRING y POLYGON (anillo exterior) directamente a un arreglo plano de coordenadas
+ * {x0, y0, x1, y1, ...} en una sola pasada, sin expresiones regulares ni cadenas intermedias.
+ *
+ * Acepta dos formatos:
+ * - WKT, como lo devuelve ST_AsText: "POINT(-70.6 -33.4)"
+ * - EWKB en hexadecimal, como lo devuelve PostGIS al leer la columna geometry sin convertir
+ *   ("0101000020E6100000..."); es el formato que usa la migración porque evita formatear los números en la base de datos.
+ *
+ * Para las geometrías que llegan desde la API ofrece validación estricta (parsePoint, parseLineString, parsePolygon)
+ * que devuelve las coordenadas ya tipadas, y su codificación a WKB, de modo que los repositorios las envían
+ * como números o bytes (ST_MakePoint(?, ?), ST_GeomFromWKB(?, 4326)) en vez de texto que PostGIS deba interpretar.
+ */
+public final class GeometryCodec {
+
+    private static final double[] EMPTY = new double[0];
+
+    /**
+     * Potencias de 10 representables exactamente como double.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int WKB_POINT = 1;
+    private static final int WKB_LINESTRING = 2;
+    private static final int WKB_POLYGON = 3;
+    private static final int EWKB_Z = 0x80000000;
+    private static final int EWKB_M = 0x40000000;
+    private static final int EWKB_SRID = 0x20000000;
+
+    private GeometryCodec() {
+    }
+
+    /**
+     * Obtiene las coordenadas de una geometría en WKT o EWKB hexadecimal.
+     * @param geometry Geometría en texto
+     * @return Coordenadas {x0, y0, x1, y1, ...}; arreglo vacío si la geometría es nula o vacía
+     * @throws IllegalArgumentException si la geometría no tiene un formato válido
+     */
+    public static double[] coordinates(CharSequence geometry) {
+        if (geometry == null || geometry.length() == 0) {
+            return EMPTY;
+        }
+        char first = geometry.charAt(0);
+        return first == '0' ? readHexWkb(geometry) : readWkt(geometry);
+    }
+
+    /**
+     * Convierte una geometría POINT a GeoJsonPoint.
+     * @param geometry Geometría en WKT o EWKB hexadecimal
+     * @return El punto, o null si la geometría es nula o vacía
+     */
+    public static GeoJsonPoint toGeoJsonPoint(CharSequence geometry) {
+        double[] coordinates = coordinates(geometry);
+        return coordinates.length < 2 ? null : new GeoJsonPoint(coordinates[0], coordinates[1]);
+    }
+
+    /**
+     * Convierte una geometría LINESTRING a GeoJsonLineString.
+     * @param geometry Geometría en WKT o EWKB hexadecimal
+     * @return La línea, o null si la geometría tiene menos de dos puntos
+     */
+    public static GeoJsonLineString toGeoJsonLineString(CharSequence geometry) {
+        double[] coordinates = coordinates(geometry);
+        return coordinates.length < 4 ? null : new GeoJsonLineString(toPoints(coordinates));
+    }
+
+    /**
+     * Convierte el anillo exterior de una geometría POLYGON a GeoJsonPolygon.
+     * @param geometry Geometría en WKT o EWKB hexadecimal
+     * @return El polígono, o null si el anillo tiene menos de cuatro puntos
+     */
+    public static GeoJsonPolygon toGeoJsonPolygon(CharSequence geometry) {
+        double[] coordinates = coordinates(geometry);
+        return coordinates.length < 8 ? null : new GeoJsonPolygon(toPoints(coordinates));
+    }
+
+    private static List<Point> toPoints(double[] coordinates) {
+        List<Point> points = new ArrayList<>(coordinates.length / 2);
+        for (int i = 0; i + 1 < coordinates.length; i += 2) {
+            points.add(new Point(coordinates[i], coordinates[i + 1])); // (lon, lat)
+        }
+        return points;
+    }
+
+    // ------------------------------------------------------------------
+    // WKT
+    // ------------------------------------------------------------------
+
+    /**
+     * Lee las coordenadas de un WKT. En polígonos solo se lee el anillo exterior.
+     */
+    private static double[] readWkt(CharSequence wkt) {
+        int length = wkt.length();
+        int pos = 0;
+        while (pos < length && wkt.charAt(pos) != '(') {
+            pos++;
+        }
+        if (pos == length) {
+            if (endsWithEmpty(wkt)) {
+                return EMPTY;
+            }
+            throw new IllegalArgumentException("WKT inválido: " + wkt);
+        }
+
+        double[] coordinates = new double[16];
+        int count = 0;
+        int[] cursor = new int[1];
+        while (true) {
+            // Saltar espacios y paréntesis de apertura antes de cada tupla
+            while (pos < length && (wkt.charAt(pos) == '(' || wkt.charAt(pos) == ' ')) {
+                pos++;
+            }
+            if (count + 2 > coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+            }
+            cursor[0] = pos;
+            coordinates[count++] = parseDouble(wkt, cursor);
+            skipSpaces(wkt, cursor);
+            coordinates[count++] = parseDouble(wkt, cursor);
+            pos = cursor[0];
+
+            // Ignorar Z/M y avanzar hasta el separador de la siguiente tupla
+            while (pos < length && wkt.charAt(pos) != ',' && wkt.charAt(pos) != ')') {
+                pos++;
+            }
+            if (pos == length) {
+                throw new IllegalArgumentException("WKT inválido: " + wkt);
+            }
+            if (wkt.charAt(pos) == ')') {
+                // Fin de la lista de puntos (o del anillo exterior de un polígono)
+                break;
+            }
+            pos++;
+        }
+        return count == coordinates.length ? coordinates : Arrays.copyOf(coordinates, count);
+    }
+
+    private static boolean endsWithEmpty(CharSequence wkt) {
+        int length = wkt.length();
+        while (length > 0 && wkt.charAt(length - 1) == ' ') {
+            length--;
+        }
+        if (length < 5) {
+            return false;
+        }
+        for (int i = 0; i < 5; i++) {
+            if (Character.toUpperCase(wkt.charAt(length - 5 + i)) != "EMPTY".charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skipSpaces(CharSequence text, int[] cursor) {
+        while (cursor[0] < text.length() && text.charAt(cursor[0]) == ' ') {
+            cursor[0]++;
+        }
+    }
+
+    /**
+     * Lee un número decimal desde la posición del cursor y lo deja en el primer carácter siguiente.
+     * Los números con hasta 15 dígitos significativos (el formato de ST_AsText) se calculan de forma exacta
+     * sin crear cadenas; el resto se delega en Double.parseDouble.
+     */
+    private static double parseDouble(CharSequence text, int[] cursor) {
+        int start = cursor[0];
+        int pos = start;
+        int length = text.length();
+        boolean negative = false;
+        if (pos < length && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+            negative = text.charAt(pos) == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean anyDigit = false;
+        boolean fraction = false;
+        boolean fastPath = true;
+        for (; pos < length; pos++) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    decimals++;
+                }
+                if (digits > 15) {
+                    fastPath = false;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if ((c == 'e' || c == 'E') && anyDigit) {
+                fastPath = false;
+                pos++;
+                if (pos < length && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+                    pos++;
+                }
+                while (pos < length && Character.isDigit(text.charAt(pos))) {
+                    pos++;
+                }
+                break;
+            } else {
+                break;
+            }
+        }
+        // Un signo o un punto solos ("-", ".", "-.") no son un número
+        if (!anyDigit) {
+            throw new IllegalArgumentException("Se esperaba un número en la posición " + start + ": " + text);
+        }
+        cursor[0] = pos;
+
+        if (!fastPath || decimals >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(text.subSequence(start, pos).toString());
+        }
+        // mantissa < 10^15 < 2^53 y 10^decimals son exactos, por lo que una sola división queda correctamente redondeada
+        double value = mantissa / POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+
+    // ------------------------------------------------------------------
+    // Validación estricta de WKT de entrada
+    // ------------------------------------------------------------------
+
+    /**
+     * Valida y lee un WKT "POINT(longitud latitud)".
+     * @param wkt Texto WKT
+     * @return Coordenadas {longitud, latitud}
+     * @throws IllegalArgumentException si el texto no es un POINT válido
+     */
+    public static double[] parsePoint(String wkt) {
+        StrictWktReader reader = new StrictWktReader(wkt, "Formato WKT inválido. Debe ser 'POINT(longitud latitud)'.");
+        reader.keyword("POINT");
+        reader.expect('(');
+        double[] point = new double[2];
+        reader.tuple(point, 0);
+        reader.expect(')');
+        reader.end();
+        return point;
+    }
+
+    /**
+     * Valida y lee un WKT "LINESTRING(x1 y1, x2 y2, ...)" con al menos dos puntos.
+     * @param wkt Texto WKT
+     * @return Coordenadas {x0, y0, x1, y1, ...}
+     * @throws IllegalArgumentException si el texto no es un LINESTRING válido
+     */
+    public static double[] parseLineString(String wkt) {
+        StrictWktReader reader = new StrictWktReader(wkt,
+                "Formato WKT inválido. Debe ser 'LINESTRING(x1 y1, x2 y2, ...)' con al menos 2 puntos.");
+        reader.keyword("LINESTRING");
+        double[] coordinates = reader.pointList();
+        reader.end();
+        if (coordinates.length < 4) {
+            throw reader.invalid();
+        }
+        return coordinates;
+    }
+
+    /**
+     * Valida y lee un WKT "POLYGON((x1 y1, ..., x1 y1), (...))". Cada anillo debe estar cerrado y tener al menos cuatro puntos.
+     * @param wkt Texto WKT
+     * @return Anillos del polígono (el primero es el exterior), cada uno como {x0, y0, x1, y1, ...}
+     * @throws IllegalArgumentException si el texto no es un POLYGON válido
+     */
+    public static double[][] parsePolygon(String wkt) {
+        StrictWktReader reader = new StrictWktReader(wkt,
+                "Formato WKT inválido. Debe ser 'POLYGON((x1 y1, ..., x1 y1))' con anillos cerrados.");
+        reader.keyword("POLYGON");
+        reader.expect('(');
+        List<double[]> rings = new ArrayList<>(1);
+        do {
+            double[] ring = reader.pointList();
+            int n = ring.length;
+            if (n < 8 || ring[0] != ring[n - 2] || ring[1] != ring[n - 1]) {
+                throw reader.invalid();
+            }
+            rings.add(ring);
+        } while (reader.accept(','));
+        reader.expect(')');
+        reader.end();
+        return rings.toArray(new double[0][]);
+    }
+
+    /**
+     * Codifica un LINESTRING como WKB (little endian, sin SRID).
+     * @param coordinates Coordenadas {x0, y0, x1, y1, ...}
+     * @return Bytes WKB para ST_GeomFromWKB
+     */
+    public static byte[] lineStringToWkb(double[] coordinates) {
+        ByteBuffer buffer = ByteBuffer.allocate(9 + coordinates.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1).putInt(WKB_LINESTRING).putInt(coordinates.length / 2);
+        for (double coordinate : coordinates) {
+            buffer.putDouble(coordinate);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Codifica un POLYGON como WKB (little endian, sin SRID).
+     * @param rings Anillos del polígono, cada uno como {x0, y0, x1, y1, ...}
+     * @return Bytes WKB para ST_GeomFromWKB
+     */
+    public static byte[] polygonToWkb(double[][] rings) {
+        int size = 9;
+        for (double[] ring : rings) {
+            size += 4 + ring.length * 8;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1).putInt(WKB_POLYGON).putInt(rings.length);
+        for (double[] ring : rings) {
+            buffer.putInt(ring.length / 2);
+            for (double coordinate : ring) {
+                buffer.putDouble(coordinate);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Lector estricto de WKT: exige la palabra clave esperada, tuplas de exactamente dos números finitos
+     * y ningún contenido después del paréntesis final.
+     */
+    private static final class StrictWktReader {
+        private final String text;
+        private final String message;
+        private final int[] cursor = new int[1];
+
+        private StrictWktReader(String text, String message) {
+            if (text == null) {
+                throw new IllegalArgumentException(message);
+            }
+            this.text = text;
+            this.message = message;
+        }
+
+        private IllegalArgumentException invalid() {
+            return new IllegalArgumentException(message);
+        }
+
+        private void keyword(String keyword) {
+            skipSpaces(text, cursor);
+            int pos = cursor[0];
+            if (!text.regionMatches(true, pos, keyword, 0, keyword.length())) {
+                throw invalid();
+            }
+            cursor[0] = pos + keyword.length();
+        }
+
+        private boolean accept(char c) {
+            skipSpaces(text, cursor);
+            if (cursor[0] < text.length() && text.charAt(cursor[0]) == c) {
+                cursor[0]++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw invalid();
+            }
+        }
+
+        private void end() {
+            skipSpaces(text, cursor);
+            if (cursor[0] != text.length()) {
+                throw invalid();
+            }
+        }
+
+        private void tuple(double[] target, int offset) {
+            skipSpaces(text, cursor);
+            target[offset] = number();
+            int beforeSpaces = cursor[0];
+            skipSpaces(text, cursor);
+            if (cursor[0] == beforeSpaces) {
+                throw invalid();
+            }
+            target[offset + 1] = number();
+        }
+
+        private double[] pointList() {
+            expect('(');
+            double[] coordinates = new double[16];
+            int count = 0;
+            do {
+                if (count + 2 > coordinates.length) {
+                    coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+                }
+                tuple(coordinates, count);
+                count += 2;
+            } while (accept(','));
+            expect(')');
+            return count == coordinates.length ? coordinates : Arrays.copyOf(coordinates, count);
+        }
+
+        private double number() {
+            double value;
+            try {
+                value = parseDouble(text, cursor);
+            } catch (IllegalArgumentException e) {
+                throw invalid();
+            }
+            if (!Double.isFinite(value)) {
+                throw invalid();
+            }
+            return value;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // EWKB hexadecimal
+    // ------------------------------------------------------------------
+
+    /**
+     * Lee las coordenadas de un EWKB en hexadecimal. En polígonos solo se lee el anillo exterior.
+     */
+    private static double[] readHexWkb(CharSequence hex) {
+        int[] cursor = {0};
+        boolean littleEndian = readByte(hex, cursor) == 1;
+        int type = readInt(hex, cursor, littleEndian);
+        int dimensions = 2 + ((type & EWKB_Z) != 0 ? 1 : 0) + ((type & EWKB_M) != 0 ? 1 : 0);
+        if ((type & EWKB_SRID) != 0) {
+            readInt(hex, cursor, littleEndian);
+        }
+
+        int points;
+        switch (type & 0x0FFFFFFF) {
+            case WKB_POINT -> points = 1;
+            case WKB_LINESTRING -> points = readInt(hex, cursor, littleEndian);
+            case WKB_POLYGON -> {
+                int rings = readInt(hex, cursor, littleEndian);
+                points = rings == 0 ? 0 : readInt(hex, cursor, littleEndian);
+            }
+            default -> throw new IllegalArgumentException("Tipo de geometría WKB no soportado: " + (type & 0x0FFFFFFF));
+        }
+
+        double[] coordinates = new double[points * 2];
+        for (int i = 0; i < points; i++) {
+            coordinates[i * 2] = Double.longBitsToDouble(readLong(hex, cursor, littleEndian));
+            coordinates[i * 2 + 1] = Double.longBitsToDouble(readLong(hex, cursor, littleEndian));
+            cursor[0] += (dimensions - 2) * 16;
+        }
+        if (points == 1 && Double.isNaN(coordinates[0])) {
+            // PostGIS representa POINT EMPTY con coordenadas NaN
+            return EMPTY;
+        }
+        return coordinates;
+    }
+
+    private static int readByte(CharSequence hex, int[] cursor) {
+        int pos = cursor[0];
+        if (pos + 2 > hex.length()) {
+            throw new IllegalArgumentException("WKB truncado");
+        }
+        cursor[0] = pos + 2;
+        return (hexValue(hex.charAt(pos)) << 4) | hexValue(hex.charAt(pos + 1));
+    }
+
+    private static int readInt(CharSequence hex, int[] cursor, boolean littleEndian) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = readByte(hex, cursor);
+            value = littleEndian ? value | (b << (8 * i)) : (value << 8) | b;
+        }
+        return value;
+    }
+
+    private static long readLong(CharSequence hex, int[] cursor, boolean littleEndian) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            long b = readByte(hex, cursor);
+            value = littleEndian ? value | (b << (8 * i)) : (value << 8) | b;
+        }
+        return value;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Carácter hexadecimal inválido: " + c);
+    }
+}
@@ -2,9 +2,7 @@ package bdavanzadas.lab1.mappers;
 
 import bdavanzadas.lab1.documents.OrderDocument;
 import bdavanzadas.lab1.entities.OrdersEntity;
-import com.mongodb.client.model.geojson.Point;
 import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
-import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -35,10 +33,7 @@ public class OrderMapper {
             productIdStrings.add(String.valueOf(id));
         }
 
-        GeoJsonLineString route = null;
-        if (entity.getEstimatedRoute() != null && entity.getEstimatedRoute().startsWith("LINESTRING(")) {
-            route = convertWktToGeoJsonLineString(entity.getEstimatedRoute());
-        }
+        GeoJsonLineString route = GeometryCodec.toGeoJsonLineString(entity.getEstimatedRoute());
 
         return OrderDocument.builder()
                 .orderId(entity.getId())
@@ -53,23 +48,6 @@ public class OrderMapper {
                 .build();
     }
 
-     // CORRECTA
-
-    private static GeoJsonLineString convertWktToGeoJsonLineString(String wkt) {
-        wkt = wkt.replace("LINESTRING(", "").replace(")", "").trim();
-        String[] coordPairs = wkt.split(",");
-
-        List<org.springframework.data.geo.Point> points = new ArrayList<>();
-        for (String pair : coordPairs) {
-            String[] coords = pair.trim().split(" ");
-            double lon = Double.parseDouble(coords[0]);
-            double lat = Double.parseDouble(coords[1]);
-            points.add(new org.springframework.data.geo.Point(lon, lat)); // (lon, lat)
-        }
-
-        return new GeoJsonLineString(points);
-    }
-
     private static java.time.LocalDateTime convertDateToLocalDateTime(java.util.Date date) {
         if (date == null) return null;
         return LocalDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneId.systemDefault());
@@ -1,12 +1,14 @@
 package bdavanzadas.lab1.repositories;
 
 import bdavanzadas.lab1.entities.ClientEntity;
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 
 /**
@@ -31,7 +33,8 @@ public class ClientRepository implements ClientRepositoryInt {
      */
     public void save(ClientEntity client) {
         String sql = "INSERT INTO clients (user_id, name, rut, email, phone, address, ubication) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ST_GeomFromText(?, 4326))";
+                "VALUES (?, ?, ?, ?, ?, ?, ST_SetSRID(ST_MakePoint(?, ?), 4326))";
+        double[] point = GeometryCodec.parsePoint(client.getUbication()); // "POINT(-70.12345 -33.98765)" -> {lon, lat}
         jdbcTemplate.update(
                 sql,
                 client.getUserId(),
@@ -40,7 +43,8 @@ public class ClientRepository implements ClientRepositoryInt {
                 client.getEmail(),
                 client.getPhone(),
                 client.getAddress(),
-                client.getUbication() // Debe ser un String en formato WKT, ej: "POINT(-70.12345 -33.98765)"
+                point[0],
+                point[1]
         );
     }
 
@@ -51,7 +55,8 @@ public class ClientRepository implements ClientRepositoryInt {
      */
     public void update(ClientEntity client) {
         String sql = "UPDATE clients SET name = ?, rut = ?, email = ?, phone = ?, address = ?, " +
-                "ubication = ST_GeomFromText(?, 4326) WHERE id = ?";
+                "ubication = ST_SetSRID(ST_MakePoint(?, ?), 4326) WHERE id = ?";
+        double[] point = GeometryCodec.parsePoint(client.getUbication());
         jdbcTemplate.update(
                 sql,
                 client.getName(),
@@ -59,7 +64,8 @@ public class ClientRepository implements ClientRepositoryInt {
                 client.getEmail(),
                 client.getPhone(),
                 client.getAddress(),
-                client.getUbication(), // WKT
+                point[0],
+                point[1],
                 client.getId()
         );
     }
@@ -75,6 +81,17 @@ public class ClientRepository implements ClientRepositoryInt {
         jdbcTemplate.update(sql, id);
     }
 
+    /**
+     * Metodo para obtener el id del cliente asociado a un usuario.
+     * @param "userId" El id del usuario.
+     * @return El id del cliente, o null si el usuario no tiene un cliente asociado.
+     */
+    public Integer findIdByUserId(long userId) {
+        String sql = "SELECT id FROM clients WHERE user_id = ?";
+        List<Integer> ids = jdbcTemplate.queryForList(sql, Integer.class, userId);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
     /**
      * Metodo para buscar un cliente por su id.
      * @param "id" El id del cliente a buscar.
@@ -84,35 +101,14 @@ public class ClientRepository implements ClientRepositoryInt {
     public ClientEntity findById(int id) {
         String sql = "SELECT id, name, rut, email, phone, address, user_id, " +
                 "ST_AsText(ubication) as ubication FROM clients WHERE id = ?";
-        return jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) -> {
-            ClientEntity client = new ClientEntity();
-            client.setId(rs.getInt("id"));
-            client.setName(rs.getString("name"));
-            client.setRut(rs.getString("rut"));
-            client.setEmail(rs.getString("email"));
-            client.setPhone(rs.getString("phone"));
-            client.setAddress(rs.getString("address"));
-            client.setUbication(rs.getString("ubication")); // Asigna el WKT directamente
-            return client;
-        });
+        return jdbcTemplate.queryForObject(sql, new Object[]{id}, new ClientRowMapper());
     }
 
     public ClientEntity findByUserId(int userId) {
         String sql = "SELECT id, name, rut, email, phone, address, user_id, " +
                 "ST_AsText(ubication) as ubication FROM clients WHERE user_id = ?";
         try {
-            return jdbcTemplate.queryForObject(sql, new Object[]{userId}, (rs, rowNum) -> {
-                ClientEntity client = new ClientEntity();
-                client.setId(rs.getInt("id"));
-                client.setName(rs.getString("name"));
-                client.setRut(rs.getString("rut"));
-                client.setEmail(rs.getString("email"));
-                client.setPhone(rs.getString("phone"));
-                client.setAddress(rs.getString("address"));
-                client.setUserId(rs.getInt("user_id"));
-                client.setUbication(rs.getString("ubication"));
-                return client;
-            });
+            return jdbcTemplate.queryForObject(sql, new Object[]{userId}, new ClientRowMapper());
         } catch (EmptyResultDataAccessException e) {
             return null; // Devuelve null si no se encuentra el cliente
         }
@@ -126,19 +122,33 @@ public class ClientRepository implements ClientRepositoryInt {
     public List<ClientEntity> findAll() {
         String sql = "SELECT id, name, rut, email, phone, address, user_id, " +
                 "ST_AsText(ubication) as ubication FROM clients";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            ClientEntity client = new ClientEntity();
-            client.setId(rs.getInt("id"));
-            client.setName(rs.getString("name"));
-            client.setRut(rs.getString("rut"));
-            client.setEmail(rs.getString("email"));
-            client.setPhone(rs.getString("phone"));
-            client.setAddress(rs.getString("address"));
-            client.setUbication(rs.getString("ubication")); // WKT
-            return client;
-        });
+        return jdbcTemplate.query(sql, new ClientRowMapper());
     }
 
+    /**
+     * Metodo para obtener una página de clientes ordenados por id (paginación por cursor).
+     * @param "afterId" El id del último registro de la página anterior (0 para la primera página).
+     * @param "limit" La cantidad máxima de registros.
+     * @return Una lista de clientes con id mayor a afterId.
+     *
+     */
+    public List<ClientEntity> findPage(int afterId, int limit) {
+        String sql = "SELECT id, name, rut, email, phone, address, user_id, ST_AsText(ubication) as ubication FROM clients WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, new ClientRowMapper(), afterId, limit);
+    }
+
+    /**
+     * Metodo para recorrer todos los clientes en streaming, ordenados por id.
+     * Debe llamarse dentro de una transacción y el Stream debe cerrarse al terminar.
+     * @return Un Stream de clientes leído por cursor.
+     *
+     */
+    public Stream<ClientEntity> streamAll() {
+        String sql = "SELECT id, name, rut, email, phone, address, user_id, ST_AsText(ubication) as ubication FROM clients ORDER BY id";
+        return jdbcTemplate.queryForStream(CursorQueries.cursor(sql), new ClientRowMapper());
+    }
+
+
     /**
      * Metodo para buscar un cliente por su rut.
      * @param "rut" El rut del cliente a buscar.
@@ -171,25 +181,15 @@ public class ClientRepository implements ClientRepositoryInt {
             SELECT 1 
             FROM companies co
             WHERE ST_DWithin(
+                co.ubication::geography,  -- misma expresión que idx_companies_ubication_geog
                 c.ubication::geography,
-                co.ubication::geography,
                 5000  -- 5000 metros = 5 km
             )
         )
         ORDER BY c.name
     """;
 
-        return jdbcTemplate.query(sql, (rs, rowNum) ->
-                new ClientEntity(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("rut"),
-                        rs.getString("email"),
-                        rs.getString("phone"),
-                        rs.getString("address"),
-                        rs.getInt("user_id"),
-                        rs.getString("ubication")
-                ));
+        return jdbcTemplate.query(sql, new ClientRowMapper());
     }
 
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package bdavanzadas.lab1.repositories;
 
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import bdavanzadas.lab1.entities.ClientEntity;
 
@@ -22,6 +23,30 @@ public interface ClientRepositoryInt {
      */
     List<ClientEntity> findAll();
 
+    /**
+     * Metodo para obtener el id del cliente asociado a un usuario.
+     * @param "userId" El id del usuario.
+     * @return El id del cliente, o null si no existe.
+     *
+     */
+    Integer findIdByUserId(long userId);
+
+    /**
+     * Metodo para obtener una página de clientes ordenados por id.
+     * @param "afterId" El id del último registro de la página anterior.
+     * @param "limit" La cantidad máxima de registros.
+     * @return Una lista de clientes.
+     *
+     */
+    List<ClientEntity> findPage(int afterId, int limit);
+
+    /**
+     * Metodo para recorrer todos los clientes en streaming.
+     * @return Un Stream de clientes.
+     *
+     */
+    Stream<ClientEntity> streamAll();
+
     /**
      * Metodo para guardar un cliente en la base de datos.
      * @param "client" El cliente a guardar.
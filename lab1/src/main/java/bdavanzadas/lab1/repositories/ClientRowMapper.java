@@ -0,0 +1,49 @@
+package bdavanzadas.lab1.repositories;
+
+import bdavanzadas.lab1.entities.ClientEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ *
+ *  La clase ClientRowMapper mapea filas de la tabla clients a ClientEntity.
+ *  Espera las columnas id, name, rut, email, phone, address, user_id y ubication (en WKT).
+ *
+ */
+public class ClientRowMapper extends ColumnIndexRowMapper<ClientEntity> {
+
+    private int id;
+    private int name;
+    private int rut;
+    private int email;
+    private int phone;
+    private int address;
+    private int userId;
+    private int ubication;
+
+    @Override
+    protected void resolveColumns(ResultSet rs) throws SQLException {
+        id = rs.findColumn("id");
+        name = rs.findColumn("name");
+        rut = rs.findColumn("rut");
+        email = rs.findColumn("email");
+        phone = rs.findColumn("phone");
+        address = rs.findColumn("address");
+        userId = rs.findColumn("user_id");
+        ubication = rs.findColumn("ubication");
+    }
+
+    @Override
+    protected ClientEntity mapColumns(ResultSet rs) throws SQLException {
+        return new ClientEntity(
+                rs.getInt(id),
+                rs.getString(name),
+                rs.getString(rut),
+                rs.getString(email),
+                rs.getString(phone),
+                rs.getString(address),
+                rs.getInt(userId),
+                rs.getString(ubication));
+    }
+}
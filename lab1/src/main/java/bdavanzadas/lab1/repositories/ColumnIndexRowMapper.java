@@ -0,0 +1,58 @@
+package bdavanzadas.lab1.repositories;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ *
+ *  La clase ColumnIndexRowMapper es la base de los mappers de filas de los repositorios.
+ *  Resuelve la posición de cada columna una sola vez por ResultSet (en lugar de buscarla por nombre en cada fila)
+ *  y lee las columnas por índice. Las columnas que admiten nulos se leen con wasNull() en lugar de getObject().
+ *  Como guarda las posiciones resueltas, cada consulta debe usar una instancia nueva del mapper.
+ *
+ */
+public abstract class ColumnIndexRowMapper<T> implements RowMapper<T> {
+
+    /**
+     * ResultSet para el que se resolvieron las columnas.
+     */
+    private ResultSet resolvedFor;
+
+    @Override
+    public final T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (rs != resolvedFor) {
+            resolveColumns(rs);
+            resolvedFor = rs;
+        }
+        return mapColumns(rs);
+    }
+
+    /**
+     * Resuelve la posición de las columnas que usa el mapper.
+     * @param rs ResultSet de la consulta
+     * @throws SQLException si falta alguna columna requerida
+     */
+    protected abstract void resolveColumns(ResultSet rs) throws SQLException;
+
+    /**
+     * Construye la entidad de la fila actual usando las posiciones resueltas.
+     * @param rs ResultSet posicionado en la fila
+     * @return La entidad de la fila
+     * @throws SQLException si falla la lectura
+     */
+    protected abstract T mapColumns(ResultSet rs) throws SQLException;
+
+    /**
+     * Lee una columna entera que admite nulos.
+     * @param rs ResultSet posicionado en la fila
+     * @param column Posición de la columna
+     * @return El valor, o null si la columna es NULL
+     * @throws SQLException si falla la lectura
+     */
+    protected static Integer getNullableInt(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -2,14 +2,19 @@ package bdavanzadas.lab1.repositories;
 
 import bdavanzadas.lab1.dtos.NearestDeliveryPointDTO;
 import bdavanzadas.lab1.entities.CompanyEntity;
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 
 /**
@@ -53,21 +58,69 @@ public class CompanyRepository implements CompanyRepositoryInt {
             c.id, c.name, c.email, c.phone, c.address, c.rut, c.type, c.ubication
         """;
 
-        return jdbcTemplate.query(sql, (rs, rowNum) ->
-                new CompanyEntity(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("email"),
-                        rs.getString("phone"),
-                        rs.getString("address"),
-                        rs.getString("rut"),
-                        rs.getString("type"),
-                        rs.getInt("deliveries"),
-                        rs.getInt("failed_deliveries"),
-                        rs.getInt("total_sales"),
-                        rs.getString("ubication")
-                )
-        );
+        return jdbcTemplate.query(sql, new CompanyRowMapper());
+    }
+
+    /**
+     * Método para obtener una página de compañías con sus métricas, ordenadas por id (paginación por cursor).
+     * Las métricas se calculan solo para las compañías de la página.
+     * @param afterId Id de la última compañía de la página anterior (0 para la primera página).
+     * @param limit Cantidad máxima de compañías.
+     * @return Lista de CompanyEntity con id mayor a afterId.
+     */
+    public List<CompanyEntity> findPage(int afterId, int limit) {
+        String sql = """
+        SELECT
+            c.id,
+            c.name,
+            c.email,
+            c.phone,
+            c.address,
+            c.rut,
+            c.type,
+            ST_AsText(c.ubication) AS ubication,
+            COUNT(o.id) AS deliveries,
+            SUM(CASE WHEN o.status = 'FALLIDA' THEN 1 ELSE 0 END) AS failed_deliveries,
+            SUM(o.total_price) AS total_sales
+        FROM
+            (SELECT * FROM companies WHERE id > ? ORDER BY id LIMIT ?) c
+        LEFT JOIN orders o ON c.id = o.client_id
+        GROUP BY
+            c.id, c.name, c.email, c.phone, c.address, c.rut, c.type, c.ubication
+        ORDER BY c.id
+        """;
+
+        return jdbcTemplate.query(sql, new CompanyRowMapper(), afterId, limit);
+    }
+
+    /**
+     * Método para recorrer todas las compañías con sus métricas en streaming, ordenadas por id.
+     * Debe llamarse dentro de una transacción y el Stream debe cerrarse al terminar.
+     * @return Stream de CompanyEntity leído por cursor.
+     */
+    public Stream<CompanyEntity> streamAll() {
+        String sql = """
+        SELECT
+            c.id,
+            c.name,
+            c.email,
+            c.phone,
+            c.address,
+            c.rut,
+            c.type,
+            ST_AsText(c.ubication) AS ubication,
+            COUNT(o.id) AS deliveries,
+            SUM(CASE WHEN o.status = 'FALLIDA' THEN 1 ELSE 0 END) AS failed_deliveries,
+            SUM(o.total_price) AS total_sales
+        FROM
+            companies c
+        LEFT JOIN orders o ON c.id = o.client_id
+        GROUP BY
+            c.id, c.name, c.email, c.phone, c.address, c.rut, c.type, c.ubication
+        ORDER BY c.id
+        """;
+
+        return jdbcTemplate.queryForStream(CursorQueries.cursor(sql), new CompanyRowMapper());
     }
 
 
@@ -78,20 +131,7 @@ public class CompanyRepository implements CompanyRepositoryInt {
      */
     public CompanyEntity findbyid(int id) {
         String sql = "SELECT id, name, email, phone, address, rut, type, deliveries, failed_deliveries, total_sales, ST_AsText(ubication) AS ubication FROM companies WHERE id=?";
-        return jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) ->
-                new CompanyEntity(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("email"),
-                        rs.getString("phone"),
-                        rs.getString("address"),
-                        rs.getString("rut"),
-                        rs.getString("type"),
-                        rs.getInt("deliveries"),
-                        rs.getInt("failed_deliveries"),
-                        rs.getInt("total_sales"),
-                        rs.getString("ubication"))
-        );
+        return jdbcTemplate.queryForObject(sql, new Object[]{id}, new CompanyRowMapper());
     }
 
     /**
@@ -101,7 +141,8 @@ public class CompanyRepository implements CompanyRepositoryInt {
      */
     public void save(CompanyEntity c) {
         String sql = "INSERT INTO companies (name, email, phone, address, rut, type, deliveries, failed_deliveries, total_sales, ubication) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ST_GeomFromText(?, 4326))";
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ST_SetSRID(ST_MakePoint(?, ?), 4326))";
+        double[] point = GeometryCodec.parsePoint(c.getUbication());
         jdbcTemplate.update(sql,
                 c.getName(),
                 c.getEmail(),
@@ -112,7 +153,8 @@ public class CompanyRepository implements CompanyRepositoryInt {
                 c.getDeliveries(),
                 c.getFailedDeliveries(),
                 c.getTotalSales(),
-                c.getUbication());
+                point[0],
+                point[1]);
     }
 
 
@@ -123,8 +165,9 @@ public class CompanyRepository implements CompanyRepositoryInt {
      */
     public void update(CompanyEntity c) {
         String sql = "UPDATE companies SET name = ?, email = ?, phone = ?, address = ?, rut = ?, type = ?, " +
-                "deliveries = ?, failed_deliveries = ?, total_sales = ?, ubication = ST_GeomFromText(?, 4326) " +
+                "deliveries = ?, failed_deliveries = ?, total_sales = ?, ubication = ST_SetSRID(ST_MakePoint(?, ?), 4326) " +
                 "WHERE id = ?";
+        double[] point = GeometryCodec.parsePoint(c.getUbication());
         jdbcTemplate.update(sql,
                 c.getName(),
                 c.getEmail(),
@@ -135,7 +178,8 @@ public class CompanyRepository implements CompanyRepositoryInt {
                 c.getDeliveries(),
                 c.getFailedDeliveries(),
                 c.getTotalSales(),
-                c.getUbication(),
+                point[0],
+                point[1],
                 c.getId());
     }
 
@@ -161,6 +205,53 @@ public class CompanyRepository implements CompanyRepositoryInt {
         return jdbcTemplate.queryForList(sql, Integer.class, companyId);
     }
 
+    /**
+     * Método para obtener los métodos de pago de varias compañías en una sola consulta.
+     * @param companyIds IDs de las compañías.
+     * @return Mapa de ID de compañía a la lista de IDs de sus métodos de pago; las compañías sin métodos de pago no aparecen.
+     */
+    public Map<Integer, List<Integer>> getPaymentMethodIdsByCompanyIds(List<Integer> companyIds) {
+        String sql = """
+            SELECT company_id, array_agg(payment_method_id ORDER BY payment_method_id) AS child_ids
+            FROM company_payment_methods
+            WHERE company_id = ANY(?)
+            GROUP BY company_id
+            """;
+        return queryChildIdsByCompany(sql, companyIds);
+    }
+
+    /**
+     * Método para obtener las áreas de cobertura de varias compañías en una sola consulta.
+     * @param companyIds IDs de las compañías.
+     * @return Mapa de ID de compañía a la lista de IDs de sus áreas de cobertura; las compañías sin áreas no aparecen.
+     */
+    public Map<Integer, List<Integer>> getCoverageAreaIdsByCompanyIds(List<Integer> companyIds) {
+        String sql = """
+            SELECT company_id, array_agg(coverage_id ORDER BY coverage_id) AS child_ids
+            FROM coverage_area_company
+            WHERE company_id = ANY(?)
+            GROUP BY company_id
+            """;
+        return queryChildIdsByCompany(sql, companyIds);
+    }
+
+    /**
+     * Ejecuta una consulta agrupada por compañía que devuelve las columnas company_id y child_ids (array_agg).
+     * @param sql Consulta con un único parámetro: el arreglo de IDs de compañías.
+     * @param companyIds IDs de las compañías.
+     * @return Mapa de ID de compañía a la lista de IDs relacionados.
+     */
+    private Map<Integer, List<Integer>> queryChildIdsByCompany(String sql, List<Integer> companyIds) {
+        Map<Integer, List<Integer>> result = new HashMap<>();
+        if (companyIds.isEmpty()) {
+            return result;
+        }
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                result.put(rs.getInt("company_id"), Arrays.asList((Integer[]) rs.getArray("child_ids").getArray())),
+                (Object) companyIds.toArray(new Integer[0]));
+        return result;
+    }
+
 
     /**
      * Método para obtener las compañías con más entregas fallidas.
@@ -188,21 +279,7 @@ public class CompanyRepository implements CompanyRepositoryInt {
         ORDER BY failed_deliveries DESC
         """;
 
-        return jdbcTemplate.query(sql, (rs, rowNum) ->
-                new CompanyEntity(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("email"),
-                        rs.getString("phone"),
-                        rs.getString("address"),
-                        rs.getString("rut"),
-                        rs.getString("type"),
-                        rs.getInt("deliveries"),
-                        rs.getInt("failed_deliveries"),
-                        rs.getInt("total_sales"),
-                        rs.getString("ubication")
-                )
-        );
+        return jdbcTemplate.query(sql, new CompanyRowMapper());
     }
 
 
@@ -282,6 +359,8 @@ public class CompanyRepository implements CompanyRepositoryInt {
      * @return Lista de NearestDeliveryPointDTO con los puntos de entrega más cercanos.
      */
     public List<NearestDeliveryPointDTO> findNearestDeliveryPoints(int companyId, int limit) {
+        // El LATERAL ordena los clientes con KNN (<->) sobre idx_clients_ubication_geog, leyendo solo los
+        // "limit" más cercanos; la distancia exacta (esferoide) se calcula únicamente para esos clientes.
         String sql = """
             SELECT 
                 c.id AS client_id,
@@ -289,18 +368,20 @@ public class CompanyRepository implements CompanyRepositoryInt {
                 c.address AS client_address,
                 ST_AsText(c.ubication) AS client_location,
                 comp.name AS company_name,
-                ST_Distance(c.ubication::geography, comp.ubication::geography) AS distance_meters
+                ST_Distance(c.ubication::geography, comp.geog) AS distance_meters
             FROM 
-                clients c
-            CROSS JOIN 
-                companies comp
-            WHERE 
-                comp.id = ? 
-                AND c.ubication IS NOT NULL
-                AND comp.ubication IS NOT NULL
+                (SELECT name, ubication::geography AS geog
+                 FROM companies
+                 WHERE id = ? AND ubication IS NOT NULL) comp
+            CROSS JOIN LATERAL (
+                SELECT id, name, address, ubication
+                FROM clients
+                WHERE ubication IS NOT NULL
+                ORDER BY ubication::geography <-> comp.geog
+                LIMIT ?
+            ) c
             ORDER BY 
                 distance_meters ASC
-            LIMIT ?
             """;
 
         return jdbcTemplate.query(sql, (rs, rowNum) ->
@@ -2,6 +2,7 @@ package bdavanzadas.lab1.repositories;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import bdavanzadas.lab1.entities.CompanyEntity;
 
@@ -50,6 +51,22 @@ public interface CompanyRepositoryInt {
      */
     List<CompanyEntity> findAll();
 
+    /**
+     * Metodo para obtener una página de compañias ordenadas por id.
+     * @param "afterId" El id de la última compañia de la página anterior.
+     * @param "limit" La cantidad máxima de compañias.
+     * @return Una lista de compañias.
+     *
+     */
+    List<CompanyEntity> findPage(int afterId, int limit);
+
+    /**
+     * Metodo para recorrer todas las compañias en streaming.
+     * @return Un Stream de compañias.
+     *
+     */
+    Stream<CompanyEntity> streamAll();
+
     /**
      * Metodo para buscar las empresas con más entregas fallidas.
      * Realiza una consulta SQL que cuenta el número de entregas fallidas por empresa y las ordena de mayor a menor.
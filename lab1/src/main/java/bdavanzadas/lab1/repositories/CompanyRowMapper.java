@@ -0,0 +1,58 @@
+package bdavanzadas.lab1.repositories;
+
+import bdavanzadas.lab1.entities.CompanyEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ *
+ *  La clase CompanyRowMapper mapea filas de la tabla companies (o de consultas con sus métricas) a CompanyEntity.
+ *  Espera las columnas id, name, email, phone, address, rut, type, deliveries, failed_deliveries, total_sales y ubication (en WKT).
+ *
+ */
+public class CompanyRowMapper extends ColumnIndexRowMapper<CompanyEntity> {
+
+    private int id;
+    private int name;
+    private int email;
+    private int phone;
+    private int address;
+    private int rut;
+    private int type;
+    private int deliveries;
+    private int failedDeliveries;
+    private int totalSales;
+    private int ubication;
+
+    @Override
+    protected void resolveColumns(ResultSet rs) throws SQLException {
+        id = rs.findColumn("id");
+        name = rs.findColumn("name");
+        email = rs.findColumn("email");
+        phone = rs.findColumn("phone");
+        address = rs.findColumn("address");
+        rut = rs.findColumn("rut");
+        type = rs.findColumn("type");
+        deliveries = rs.findColumn("deliveries");
+        failedDeliveries = rs.findColumn("failed_deliveries");
+        totalSales = rs.findColumn("total_sales");
+        ubication = rs.findColumn("ubication");
+    }
+
+    @Override
+    protected CompanyEntity mapColumns(ResultSet rs) throws SQLException {
+        return new CompanyEntity(
+                rs.getInt(id),
+                rs.getString(name),
+                rs.getString(email),
+                rs.getString(phone),
+                rs.getString(address),
+                rs.getString(rut),
+                rs.getString(type),
+                rs.getInt(deliveries),
+                rs.getInt(failedDeliveries),
+                rs.getInt(totalSales),
+                rs.getString(ubication));
+    }
+}
@@ -1,7 +1,10 @@
 package bdavanzadas.lab1.repositories;
 
+import bdavanzadas.lab1.dtos.ClientLocationDTO;
 import bdavanzadas.lab1.dtos.CoverageCheckDTO;
+import bdavanzadas.lab1.dtos.CoverageCompanyLinkDTO;
 import bdavanzadas.lab1.entities.CoverageAreaEntity;
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -66,10 +69,10 @@ public class CoverageAreaRepository implements CoverageAreaRepositoryInt {
      */
     @Override
     public void save(CoverageAreaEntity coverageArea) {
-        String sql = "INSERT INTO coverage_area (name, coverageArea) VALUES (?, ST_GeomFromText(?, 4326))";
+        String sql = "INSERT INTO coverage_area (name, coverageArea) VALUES (?, ST_GeomFromWKB(?, 4326))";
         jdbcTemplate.update(sql,
                 coverageArea.getName(),
-                coverageArea.getCoverageArea());
+                GeometryCodec.polygonToWkb(GeometryCodec.parsePolygon(coverageArea.getCoverageArea())));
     }
 
 
@@ -79,10 +82,10 @@ public class CoverageAreaRepository implements CoverageAreaRepositoryInt {
      */
     @Override
     public void update(CoverageAreaEntity coverageArea) {
-        String sql = "UPDATE coverage_area SET name = ?, coverageArea = ST_GeomFromText(?, 4326) WHERE coverage_id = ?";
+        String sql = "UPDATE coverage_area SET name = ?, coverageArea = ST_GeomFromWKB(?, 4326) WHERE coverage_id = ?";
         jdbcTemplate.update(sql,
                 coverageArea.getName(),
-                coverageArea.getCoverageArea(),
+                GeometryCodec.polygonToWkb(GeometryCodec.parsePolygon(coverageArea.getCoverageArea())),
                 coverageArea.getId());
     }
 
@@ -99,6 +102,102 @@ public class CoverageAreaRepository implements CoverageAreaRepositoryInt {
 
 
 
+    /**
+     * Obtiene las empresas asociadas a cada área de cobertura.
+     * @return Lista de asociaciones área de cobertura - empresa, con el nombre de la empresa.
+     */
+    public List<CoverageCompanyLinkDTO> findCompanyLinks() {
+        String sql = """
+            SELECT cac.coverage_id, comp.id AS company_id, comp.name AS company_name
+            FROM coverage_area_company cac
+            JOIN companies comp ON comp.id = cac.company_id
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                new CoverageCompanyLinkDTO(
+                        rs.getInt("coverage_id"),
+                        rs.getInt("company_id"),
+                        rs.getString("company_name")
+                ));
+    }
+
+    /**
+     * Obtiene la ubicación de un cliente como longitud y latitud.
+     * @param clientId ID del cliente
+     * @return La ubicación del cliente, o null si no existe o no tiene ubicación
+     */
+    public ClientLocationDTO findClientLocation(int clientId) {
+        String sql = """
+            SELECT id, name, ST_X(ubication) AS longitude, ST_Y(ubication) AS latitude
+            FROM clients
+            WHERE id = ? AND ubication IS NOT NULL
+            """;
+        List<ClientLocationDTO> rows = jdbcTemplate.query(sql, (rs, rowNum) ->
+                new ClientLocationDTO(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getDouble("longitude"),
+                        rs.getDouble("latitude")
+                ), clientId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Obtiene la ubicación de varios clientes en una sola consulta.
+     * @param clientIds IDs de los clientes
+     * @return Lista de ubicaciones; los clientes inexistentes o sin ubicación no aparecen
+     */
+    public List<ClientLocationDTO> findClientLocations(List<Integer> clientIds) {
+        if (clientIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String sql = """
+            SELECT id, name, ST_X(ubication) AS longitude, ST_Y(ubication) AS latitude
+            FROM clients
+            WHERE id = ANY(?) AND ubication IS NOT NULL
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                new ClientLocationDTO(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getDouble("longitude"),
+                        rs.getDouble("latitude")
+                ), (Object) clientIds.toArray(new Integer[0]));
+    }
+
+    /**
+     * Obtiene los datos de un cliente y una empresa junto con la distancia entre ambos, sin evaluar la cobertura.
+     * @param clientId ID del cliente
+     * @param companyId ID de la empresa
+     * @return CoverageCheckDTO sin área de cobertura (null si el cliente o la empresa no existen)
+     */
+    public CoverageCheckDTO getClientCompanyDistance(int clientId, int companyId) {
+        String sql = """
+            SELECT
+                c.id AS client_id,
+                c.name AS client_name,
+                comp.id AS company_id,
+                comp.name AS company_name,
+                ST_Distance(c.ubication::geography, comp.ubication::geography) AS distance_meters
+            FROM clients c
+            CROSS JOIN companies comp
+            WHERE c.id = ? AND comp.id = ?
+            """;
+        List<CoverageCheckDTO> rows = jdbcTemplate.query(sql, (rs, rowNum) ->
+                new CoverageCheckDTO(
+                        rs.getInt("client_id"),
+                        rs.getString("client_name"),
+                        rs.getInt("company_id"),
+                        rs.getString("company_name"),
+                        null,
+                        null,
+                        false,
+                        rs.getDouble("distance_meters")
+                ), clientId, companyId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+
+
     /**
      * Verifica eficientemente si un cliente está en zona de cobertura
      * @param clientId ID del cliente
@@ -197,22 +296,23 @@ public class CoverageAreaRepository implements CoverageAreaRepositoryInt {
                 SELECT 1
                 FROM clients c
                 JOIN companies comp ON comp.id = ?
-                LEFT JOIN coverage_area_company cac ON cac.company_id = comp.id
-                LEFT JOIN coverage_area ca ON ca.coverage_id = cac.coverage_id
                 WHERE c.id = ?
-                AND (
-                    ST_DWithin(
-                        c.ubication::geography, 
-                        comp.ubication::geography, 
-                        ?
-                    )
-                    OR 
-                    ST_Within(c.ubication, ca.coverageArea)
+                AND ST_DWithin(
+                    comp.ubication::geography, 
+                    c.ubication::geography, 
+                    ?
                 )
+            ) OR EXISTS (
+                SELECT 1
+                FROM clients c
+                JOIN coverage_area_company cac ON cac.company_id = ?
+                JOIN coverage_area ca ON ca.coverage_id = cac.coverage_id
+                WHERE c.id = ?
+                AND ST_Within(c.ubication, ca.coverageArea)
             )""";
 
         Boolean result = jdbcTemplate.queryForObject(sql, Boolean.class,
-                companyId, clientId, maxDistanceMeters);
+                companyId, clientId, maxDistanceMeters, companyId, clientId);
         return Boolean.TRUE.equals(result);
     }
 
@@ -0,0 +1,36 @@
+package bdavanzadas.lab1.repositories;
+
+import org.springframework.jdbc.core.PreparedStatementCreator;
+
+import java.sql.PreparedStatement;
+
+/**
+ *
+ *  La clase CursorQueries construye las consultas que los repositorios usan para recorrer tablas completas en streaming.
+ *  Con un fetch size, y dentro de una transacción, el driver de PostgreSQL entrega las filas por cursor en lugar
+ *  de cargar el resultado completo en memoria.
+ *
+ */
+final class CursorQueries {
+
+    /**
+     * Cantidad de filas que PostgreSQL entrega por cada viaje del cursor.
+     */
+    static final int FETCH_SIZE = 500;
+
+    private CursorQueries() {
+    }
+
+    /**
+     * Crea la sentencia de una consulta en streaming.
+     * @param sql Consulta SQL sin parámetros
+     * @return Creador de la sentencia con el fetch size configurado
+     */
+    static PreparedStatementCreator cursor(String sql) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        };
+    }
+}
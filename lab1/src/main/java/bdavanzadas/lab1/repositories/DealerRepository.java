@@ -1,7 +1,9 @@
 package bdavanzadas.lab1.repositories;
 
+import bdavanzadas.lab1.dtos.DealerPositionDTO;
 import bdavanzadas.lab1.dtos.DealerWithDistanceDTO;
 import bdavanzadas.lab1.entities.DealerEntity;
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -9,6 +11,7 @@ import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 
 
@@ -36,8 +39,9 @@ public class DealerRepository  implements DealerRepositoryInt {
      * @return void
      */
     public void save(DealerEntity dealer) {
-        String sql = "INSERT INTO dealers (user_id, name, rut, email, phone, vehicle, plate, ubication) VALUES (?, ?, ?, ?, ?, ?, ?, ST_GeomFromText(?, 4326))";
-        jdbcTemplate.update(sql, dealer.getUserId(), dealer.getName(), dealer.getRut(), dealer.getEmail(), dealer.getPhone(), dealer.getVehicle(), dealer.getPlate(), dealer.getUbication());
+        String sql = "INSERT INTO dealers (user_id, name, rut, email, phone, vehicle, plate, ubication) VALUES (?, ?, ?, ?, ?, ?, ?, ST_SetSRID(ST_MakePoint(?, ?), 4326))";
+        double[] point = GeometryCodec.parsePoint(dealer.getUbication());
+        jdbcTemplate.update(sql, dealer.getUserId(), dealer.getName(), dealer.getRut(), dealer.getEmail(), dealer.getPhone(), dealer.getVehicle(), dealer.getPlate(), point[0], point[1]);
     }
 
 
@@ -48,7 +52,8 @@ public class DealerRepository  implements DealerRepositoryInt {
      * @return void
      */
     public void update(DealerEntity dealer) {
-        String sql = "UPDATE dealers SET name = ?, rut = ?, email = ?, phone = ?, vehicle = ?, plate = ?, ubication = ST_GeomFromText(?, 4326) WHERE id = ?";
+        String sql = "UPDATE dealers SET name = ?, rut = ?, email = ?, phone = ?, vehicle = ?, plate = ?, ubication = ST_SetSRID(ST_MakePoint(?, ?), 4326) WHERE id = ?";
+        double[] point = GeometryCodec.parsePoint(dealer.getUbication()); // "POINT(long lat)" -> {long, lat}
 
         jdbcTemplate.update(sql,
                 dealer.getName(),
@@ -57,7 +62,8 @@ public class DealerRepository  implements DealerRepositoryInt {
                 dealer.getPhone(),
                 dealer.getVehicle(),
                 dealer.getPlate(),
-                dealer.getUbication(), // Asegúrate que esté en formato WKT: "POINT(long lat)"
+                point[0],
+                point[1],
                 dealer.getId());
     }
 
@@ -82,18 +88,7 @@ public class DealerRepository  implements DealerRepositoryInt {
         String sql = "SELECT id, name, rut, email, phone, vehicle, plate, user_id, ST_AsText(ubication) as ubication FROM dealers WHERE id = ?";
 
         try {
-            return jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) -> {
-                DealerEntity dealer = new DealerEntity();
-                dealer.setId(rs.getInt("id"));
-                dealer.setName(rs.getString("name"));
-                dealer.setRut(rs.getString("rut"));
-                dealer.setEmail(rs.getString("email"));
-                dealer.setPhone(rs.getString("phone"));
-                dealer.setVehicle(rs.getString("vehicle"));
-                dealer.setPlate(rs.getString("plate"));
-                dealer.setUbication(rs.getString("ubication"));
-                return dealer;
-            });
+            return jdbcTemplate.queryForObject(sql, new Object[]{id}, new DealerRowMapper());
         } catch (EmptyResultDataAccessException e) {
             return null;
         }
@@ -107,19 +102,32 @@ public class DealerRepository  implements DealerRepositoryInt {
      */
     public List<DealerEntity> findAll() {
         String sql = "SELECT id, name, rut, email, phone, vehicle, plate, user_id, ST_AsText(ubication) as ubication FROM dealers";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            DealerEntity dealer = new DealerEntity();
-            dealer.setId(rs.getInt("id"));
-            dealer.setName(rs.getString("name"));
-            dealer.setRut(rs.getString("rut"));
-            dealer.setEmail(rs.getString("email"));
-            dealer.setPhone(rs.getString("phone"));
-            dealer.setVehicle(rs.getString("vehicle"));
-            dealer.setPlate(rs.getString("plate"));
-            dealer.setUbication(rs.getString("ubication"));
-            return dealer;
-        });
+        return jdbcTemplate.query(sql, new DealerRowMapper());
     }
+
+    /**
+     * Metodo para obtener una página de dealers ordenados por id (paginación por cursor).
+     * @param "afterId" El id del último registro de la página anterior (0 para la primera página).
+     * @param "limit" La cantidad máxima de registros.
+     * @return Una lista de dealers con id mayor a afterId.
+     *
+     */
+    public List<DealerEntity> findPage(int afterId, int limit) {
+        String sql = "SELECT id, name, rut, email, phone, vehicle, plate, user_id, ST_AsText(ubication) as ubication FROM dealers WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, new DealerRowMapper(), afterId, limit);
+    }
+
+    /**
+     * Metodo para recorrer todos los dealers en streaming, ordenados por id.
+     * Debe llamarse dentro de una transacción y el Stream debe cerrarse al terminar.
+     * @return Un Stream de dealers leído por cursor.
+     *
+     */
+    public Stream<DealerEntity> streamAll() {
+        String sql = "SELECT id, name, rut, email, phone, vehicle, plate, user_id, ST_AsText(ubication) as ubication FROM dealers ORDER BY id";
+        return jdbcTemplate.queryForStream(CursorQueries.cursor(sql), new DealerRowMapper());
+    }
+
     /**
      * Metodo para buscar el nombre de un dealer por su id.
      *
@@ -135,6 +143,63 @@ public class DealerRepository  implements DealerRepositoryInt {
         }
     }
 
+    /**
+     * Metodo para obtener el id del dealer asociado a un usuario.
+     * @param "userId" El id del usuario.
+     * @return El id del dealer, o null si el usuario no tiene un dealer asociado.
+     */
+    public Integer findIdByUserId(long userId) {
+        String sql = "SELECT id FROM dealers WHERE user_id = ?";
+        List<Integer> ids = jdbcTemplate.queryForList(sql, Integer.class, userId);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    /**
+     * Metodo para obtener la posición de todos los repartidores con ubicación y si tienen un pedido activo.
+     * @return Una lista con la longitud, latitud y estado (ocupado o libre) de cada repartidor.
+     */
+    public List<DealerPositionDTO> findPositions() {
+        String sql = """
+            SELECT d.id, ST_X(d.ubication) AS longitude, ST_Y(d.ubication) AS latitude,
+                   EXISTS (SELECT 1 FROM orders o WHERE o.dealer_id = d.id AND o.status = 'EN PROCESO') AS busy
+            FROM dealers d
+            WHERE d.ubication IS NOT NULL
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                new DealerPositionDTO(
+                        rs.getInt("id"),
+                        rs.getDouble("longitude"),
+                        rs.getDouble("latitude"),
+                        rs.getBoolean("busy")
+                ));
+    }
+
+    /**
+     * Metodo para actualizar la ubicación de varios repartidores en una sola sentencia.
+     * Los repartidores cuya ubicación no cambió no se escriben, para no generar filas muertas ni eventos de outbox,
+     * pero igual se devuelven; los ids que no corresponden a un repartidor se ignoran.
+     * @param "ids" Los ids de los repartidores.
+     * @param "longitudes" La longitud de cada repartidor.
+     * @param "latitudes" La latitud de cada repartidor.
+     * @return Los ids que corresponden a repartidores existentes.
+     */
+    public List<Integer> updatePositions(Integer[] ids, Double[] longitudes, Double[] latitudes) {
+        String sql = """
+            WITH known AS (
+                SELECT d.id, v.longitude, v.latitude,
+                       d.ubication IS NULL OR ST_X(d.ubication) <> v.longitude OR ST_Y(d.ubication) <> v.latitude AS moved
+                FROM unnest(?::int[], ?::float8[], ?::float8[]) AS v(id, longitude, latitude)
+                JOIN dealers d ON d.id = v.id
+            ), updated AS (
+                UPDATE dealers d SET ubication = ST_SetSRID(ST_MakePoint(k.longitude, k.latitude), 4326)
+                FROM known k
+                WHERE d.id = k.id AND k.moved
+            )
+            SELECT id FROM known
+            """;
+        return jdbcTemplate.queryForList(sql, Integer.class, ids, longitudes, latitudes);
+    }
+
     /**
      * Busca un repartidor por el ID de usuario
      *
@@ -147,19 +212,7 @@ public class DealerRepository  implements DealerRepositoryInt {
                 "ST_AsText(ubication) as ubication " + // Convertir a WKT
                 "FROM dealers WHERE user_id = ?";
         try {
-            return jdbcTemplate.queryForObject(sql, new Object[]{userId}, (rs, rowNum) -> {
-                DealerEntity dealer = new DealerEntity();
-                dealer.setId(rs.getInt("id"));
-                dealer.setUserId(rs.getInt("user_id"));
-                dealer.setName(rs.getString("name"));
-                dealer.setRut(rs.getString("rut"));
-                dealer.setEmail(rs.getString("email"));
-                dealer.setPhone(rs.getString("phone"));
-                dealer.setVehicle(rs.getString("vehicle"));
-                dealer.setPlate(rs.getString("plate"));
-                dealer.setUbication(rs.getString("ubication"));
-                return dealer;
-            });
+            return jdbcTemplate.queryForObject(sql, new Object[]{userId}, new DealerRowMapper());
         } catch (EmptyResultDataAccessException e) {
             return null;
         }
@@ -237,14 +290,10 @@ public class DealerRepository  implements DealerRepositoryInt {
      * Este método realiza una consulta SQL que calcula el tiempo promedio entre la fecha de pedido y la fecha de entrega para el repartidor autenticado.
      * El resultado se agrupa por el ID y nombre del repartidor, y se ordena de menor a mayor tiempo promedio.
      *
-     * @param "userId" El id del usuario autenticado.
+     * @param "dealerId" El id del repartidor autenticado.
      * @return El tiempo promedio de entrega en horas.
      */
-    public Double getAverageDeliveryTimeByAuthenticatedDealer(Long userId) {
-        // Obtener el dealerId asociado al usuario autenticado
-        String sqlDealerId = "SELECT id FROM dealers WHERE user_id = ?";
-        Integer dealerId = jdbcTemplate.queryForObject(sqlDealerId, new Object[]{userId}, Integer.class);
-
+    public Double getAverageDeliveryTimeByAuthenticatedDealer(Integer dealerId) {
         if (dealerId == null) {
             throw new IllegalArgumentException("No se encontró un repartidor asociado al usuario autenticado.");
         }
@@ -264,14 +313,10 @@ public class DealerRepository  implements DealerRepositoryInt {
      * Metodo para contar el número de entregas realizadas por el repartidor autenticado.
      * Este método realiza una consulta SQL que cuenta el número de entregas realizadas por el repartidor autenticado.
      *
-     * @param "userId" El id del usuario autenticado.
+     * @param "dealerId" El id del repartidor autenticado.
      * @return El número de entregas realizadas.
      */
-    public Integer getDeliveryCountByAuthenticatedDealer(Long userId) {
-        // Obtener el dealerId asociado al usuario autenticado
-        String sqlDealerId = "SELECT id FROM dealers WHERE user_id = ?";
-        Integer dealerId = jdbcTemplate.queryForObject(sqlDealerId, new Object[]{userId}, Integer.class);
-
+    public Integer getDeliveryCountByAuthenticatedDealer(Integer dealerId) {
         if (dealerId == null) {
             throw new IllegalArgumentException("No se encontró un repartidor asociado al usuario autenticado.");
         }
@@ -377,21 +422,23 @@ public class DealerRepository  implements DealerRepositoryInt {
     }
 
     public List<DealerWithDistanceDTO> findAllWithDistance() {
+        // Se agregan primero los pedidos entregados del mes (idx_orders_delivered_dealer_date) y luego se unen
+        // a los repartidores, en vez de agrupar el LEFT JOIN completo por repartidor.
         String sql = """
             SELECT 
                 d.id,
                 d.name,
-                COALESCE(
-                    SUM(ST_Length(o.estimated_route::geography)), 
-                    0.0
-                ) AS distance_meters
+                COALESCE(m.distance_meters, 0.0) AS distance_meters
             FROM dealers d
-            LEFT JOIN orders o ON d.id = o.dealer_id 
-                AND o.status = 'ENTREGADO'
-                AND o.delivery_date >= date_trunc('month', CURRENT_DATE)
-                AND o.delivery_date < date_trunc('month', CURRENT_DATE) + interval '1 month'
-                AND o.estimated_route IS NOT NULL
-            GROUP BY d.id, d.name
+            LEFT JOIN (
+                SELECT o.dealer_id, SUM(ST_Length(o.estimated_route::geography)) AS distance_meters
+                FROM orders o
+                WHERE o.status = 'ENTREGADO'
+                    AND o.delivery_date >= date_trunc('month', CURRENT_DATE)
+                    AND o.delivery_date < date_trunc('month', CURRENT_DATE) + interval '1 month'
+                    AND o.estimated_route IS NOT NULL
+                GROUP BY o.dealer_id
+            ) m ON m.dealer_id = d.id
             ORDER BY distance_meters DESC
             """;
 
@@ -3,8 +3,10 @@ package bdavanzadas.lab1.repositories;
 
 
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.Map;
 
+import bdavanzadas.lab1.dtos.DealerPositionDTO;
 import bdavanzadas.lab1.entities.DealerEntity;
 
 
@@ -23,6 +25,47 @@ public interface DealerRepositoryInt {
      */
     List<DealerEntity> findAll();
 
+    /**
+     * Metodo para obtener el id del dealer asociado a un usuario.
+     * @param "userId" El id del usuario.
+     * @return El id del dealer, o null si no existe.
+     *
+     */
+    Integer findIdByUserId(long userId);
+
+    /**
+     * Metodo para obtener una página de dealers ordenados por id.
+     * @param "afterId" El id del último registro de la página anterior.
+     * @param "limit" La cantidad máxima de registros.
+     * @return Una lista de dealers.
+     *
+     */
+    List<DealerEntity> findPage(int afterId, int limit);
+
+    /**
+     * Metodo para obtener la posición de los repartidores y si tienen un pedido activo.
+     * @return Una lista de posiciones de repartidores.
+     *
+     */
+    List<DealerPositionDTO> findPositions();
+
+    /**
+     * Metodo para actualizar la ubicación de varios repartidores en una sola sentencia.
+     * @param "ids" Los ids de los repartidores.
+     * @param "longitudes" La longitud de cada repartidor.
+     * @param "latitudes" La latitud de cada repartidor.
+     * @return Los ids que corresponden a repartidores existentes.
+     *
+     */
+    List<Integer> updatePositions(Integer[] ids, Double[] longitudes, Double[] latitudes);
+
+    /**
+     * Metodo para recorrer todos los dealers en streaming.
+     * @return Un Stream de dealers.
+     *
+     */
+    Stream<DealerEntity> streamAll();
+
     /**
      * Metodo para guardar un dealer en la base de datos.
      * @param "dealer" El dealer a guardar.
@@ -87,20 +130,20 @@ public interface DealerRepositoryInt {
      * Metodo para obtener el tiempo promedio de entrega por repartidor autenticado.
      * Este método realiza una consulta SQL que calcula el tiempo promedio entre la fecha de pedido y la fecha de entrega para el repartidor autenticado.
      * El resultado se agrupa por el ID y nombre del repartidor, y se ordena de menor a mayor tiempo promedio.
-     * @param "userId" El id del usuario autenticado.
+     * @param "dealerId" El id del repartidor autenticado.
      * @return El tiempo promedio de entrega en horas.
      *
      */
-    Double getAverageDeliveryTimeByAuthenticatedDealer(Long userId);
+    Double getAverageDeliveryTimeByAuthenticatedDealer(Integer dealerId);
 
     /**
      * Metodo para contar el número de entregas realizadas por el repartidor autenticado.
      * Este método realiza una consulta SQL que cuenta el número de entregas realizadas por el repartidor autenticado.
-     * @param "userId" El id del usuario autenticado.
+     * @param "dealerId" El id del repartidor autenticado.
      * @return El número de entregas realizadas.
      *
      */
-    Integer getDeliveryCountByAuthenticatedDealer(Long userId);
+    Integer getDeliveryCountByAuthenticatedDealer(Integer dealerId);
 
 
 }
@@ -0,0 +1,52 @@
+package bdavanzadas.lab1.repositories;
+
+import bdavanzadas.lab1.entities.DealerEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ *
+ *  La clase DealerRowMapper mapea filas de la tabla dealers a DealerEntity.
+ *  Espera las columnas id, rut, name, phone, email, vehicle, plate, user_id y ubication (en WKT).
+ *
+ */
+public class DealerRowMapper extends ColumnIndexRowMapper<DealerEntity> {
+
+    private int id;
+    private int rut;
+    private int name;
+    private int phone;
+    private int email;
+    private int vehicle;
+    private int plate;
+    private int ubication;
+    private int userId;
+
+    @Override
+    protected void resolveColumns(ResultSet rs) throws SQLException {
+        id = rs.findColumn("id");
+        rut = rs.findColumn("rut");
+        name = rs.findColumn("name");
+        phone = rs.findColumn("phone");
+        email = rs.findColumn("email");
+        vehicle = rs.findColumn("vehicle");
+        plate = rs.findColumn("plate");
+        ubication = rs.findColumn("ubication");
+        userId = rs.findColumn("user_id");
+    }
+
+    @Override
+    protected DealerEntity mapColumns(ResultSet rs) throws SQLException {
+        return new DealerEntity(
+                rs.getInt(id),
+                rs.getString(rut),
+                rs.getString(name),
+                rs.getString(phone),
+                rs.getString(email),
+                rs.getString(vehicle),
+                rs.getString(plate),
+                rs.getString(ubication),
+                rs.getInt(userId));
+    }
+}
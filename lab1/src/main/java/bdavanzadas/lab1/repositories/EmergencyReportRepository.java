@@ -1,6 +1,7 @@
 package bdavanzadas.lab1.repositories;
 
 import bdavanzadas.lab1.entities.EmergencyReportEntity;
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
@@ -37,11 +38,13 @@ public class EmergencyReportRepository {
      * @param emergencyReport El reporte a guardar
      */
     public void save(EmergencyReportEntity emergencyReport) {
-        String sql = "INSERT INTO emergency_report (order_id, dealer_id, ubication) VALUES (?, ?, ST_GeomFromText(?))";
+        String sql = "INSERT INTO emergency_report (order_id, dealer_id, ubication) VALUES (?, ?, ST_SetSRID(ST_MakePoint(?, ?), 4326))";
+        double[] point = GeometryCodec.parsePoint(emergencyReport.getUbication());
         jdbcTemplate.update(sql,
                 emergencyReport.getOrderId(),
                 emergencyReport.getDealerId(),
-                emergencyReport.getUbication());
+                point[0],
+                point[1]);
     }
 
     /**
@@ -49,11 +52,13 @@ public class EmergencyReportRepository {
      * @param emergencyReport El reporte con datos actualizados
      */
     public void update(EmergencyReportEntity emergencyReport) {
-        String sql = "UPDATE emergency_report SET order_id = ?, dealer_id = ?, ubication = ST_GeomFromText(?) WHERE id = ?";
+        String sql = "UPDATE emergency_report SET order_id = ?, dealer_id = ?, ubication = ST_SetSRID(ST_MakePoint(?, ?), 4326) WHERE id = ?";
+        double[] point = GeometryCodec.parsePoint(emergencyReport.getUbication());
         jdbcTemplate.update(sql,
                 emergencyReport.getOrderId(),
                 emergencyReport.getDealerId(),
-                emergencyReport.getUbication(),
+                point[0],
+                point[1],
                 emergencyReport.getId());
     }
 
@@ -61,6 +61,20 @@ public class OrderDetailsRepository implements OrderDetailsRepositoryInt {
     }
 
 
+    /**
+     * Metodo para guardar el detalle de un pedido recién creado, con el precio total calculado al registrarlo.
+     * @param "orderId" El id del pedido.
+     * @param "paymentMethod" El método de pago.
+     * @param "totalProducts" La cantidad de productos del pedido.
+     * @return void
+     *
+     */
+    public void saveForOrder(int orderId, String paymentMethod, int totalProducts) {
+        String sql = "INSERT INTO order_details (order_id, payment_method, total_products, price) SELECT id, ?, ?, total_price FROM orders WHERE id = ?";
+        jdbcTemplate.update(sql, paymentMethod, totalProducts, orderId);
+    }
+
+
     /**
      * Metodo para actualizar un orderDetails en la base de datos.
      * @param "orderDetails" El orderDetails a actualizar.
@@ -28,6 +28,16 @@ public interface OrderDetailsRepositoryInt {
      */
     void save(OrderDetailsEntity orderDetails);
 
+    /**
+     * Metodo para guardar el detalle de un pedido recién creado, con el precio total calculado al registrarlo.
+     * @param "orderId" El id del pedido.
+     * @param "paymentMethod" El método de pago.
+     * @param "totalProducts" La cantidad de productos del pedido.
+     * @return void
+     *
+     */
+    void saveForOrder(int orderId, String paymentMethod, int totalProducts);
+
     /**
      * Metodo para actualizar un orderDetails en la base de datos.
      * @param "orderDetails" El orderDetails a actualizar.
@@ -1,17 +1,23 @@
 package bdavanzadas.lab1.repositories;
 
 import bdavanzadas.lab1.dtos.OrderNameAddressDTO;
+import bdavanzadas.lab1.dtos.OrderStatusEventDTO;
+import bdavanzadas.lab1.dtos.PendingOrderDTO;
 import bdavanzadas.lab1.dtos.TopSpenderDTO;
 import bdavanzadas.lab1.entities.ClientEntity;
 import bdavanzadas.lab1.entities.OrdersEntity;
 import bdavanzadas.lab1.entities.ProductEntity;
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import bdavanzadas.lab1.dtos.OrderTotalProductsDTO;
 import bdavanzadas.lab1.dtos.OrderNameAddressDTO;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 
 /**
@@ -39,20 +45,33 @@ public class OrdersRepository implements OrdersRepositoryInt {
      */
     public List<OrdersEntity> findAll() {
         String sql = "SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route FROM orders";
-        return jdbcTemplate.query(sql, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                )
-        );
+        return jdbcTemplate.query(sql, new OrdersRowMapper());
     }
 
+    /**
+     * Metodo para obtener una página de pedidos ordenados por id (paginación por cursor).
+     * @param "afterId" El id del último registro de la página anterior (0 para la primera página).
+     * @param "limit" La cantidad máxima de registros.
+     * @return Una lista de pedidos con id mayor a afterId.
+     *
+     */
+    public List<OrdersEntity> findPage(int afterId, int limit) {
+        String sql = "SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route FROM orders WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, new OrdersRowMapper(), afterId, limit);
+    }
+
+    /**
+     * Metodo para recorrer todos los pedidos en streaming, ordenados por id.
+     * Debe llamarse dentro de una transacción y el Stream debe cerrarse al terminar.
+     * @return Un Stream de pedidos leído por cursor.
+     *
+     */
+    public Stream<OrdersEntity> streamAll() {
+        String sql = "SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route FROM orders ORDER BY id";
+        return jdbcTemplate.queryForStream(CursorQueries.cursor(sql), new OrdersRowMapper());
+    }
+
+
     /**
      * Metodo para guardar un order en la base de datos.
      * @param "order" El order a guardar.
@@ -97,17 +116,7 @@ public class OrdersRepository implements OrdersRepositoryInt {
      */
     public OrdersEntity findById(int id) {
         String sql = "SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route FROM orders WHERE id = ?";
-        return jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                ));
+        return jdbcTemplate.queryForObject(sql, new Object[]{id}, new OrdersRowMapper());
     }
 
     public List<Integer> getProductIdsByOrderId(int orderId) {
@@ -115,6 +124,28 @@ public class OrdersRepository implements OrdersRepositoryInt {
         return jdbcTemplate.queryForList(sql, Integer.class, orderId);
     }
 
+    /**
+     * Metodo para obtener los productos de varios pedidos en una sola consulta.
+     * @param "orderIds" Los ids de los pedidos.
+     * @return Un mapa de id de pedido a la lista de ids de sus productos; los pedidos sin productos no aparecen.
+     */
+    public Map<Integer, List<Integer>> getProductIdsByOrderIds(List<Integer> orderIds) {
+        Map<Integer, List<Integer>> result = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return result;
+        }
+        String sql = """
+            SELECT order_id, array_agg(product_id ORDER BY product_id) AS product_ids
+            FROM order_products
+            WHERE order_id = ANY(?)
+            GROUP BY order_id
+            """;
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                result.put(rs.getInt("order_id"), Arrays.asList((Integer[]) rs.getArray("product_ids").getArray())),
+                (Object) orderIds.toArray(new Integer[0]));
+        return result;
+    }
+
     /**
      * Metodo para buscar un order por su clientId.
      * @param "clientId" El id del client a buscar.
@@ -123,18 +154,7 @@ public class OrdersRepository implements OrdersRepositoryInt {
      */
     public List<OrdersEntity> findByClientId(int clientId) {
         String sql = "SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route FROM orders WHERE client_id = ?";
-        return jdbcTemplate.query(sql, new Object[]{clientId}, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                )
-        );
+        return jdbcTemplate.query(sql, new Object[]{clientId}, new OrdersRowMapper());
     }
     /**
      * Metodo para buscar un order por su dealerId.
@@ -144,18 +164,7 @@ public class OrdersRepository implements OrdersRepositoryInt {
      */
     public List<OrdersEntity> findByDealerId(int dealerId) {
         String sql = "SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route FROM orders WHERE dealer_id = ?";
-        return jdbcTemplate.query(sql, new Object[]{dealerId}, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                )
-        );
+        return jdbcTemplate.query(sql, new Object[]{dealerId}, new OrdersRowMapper());
     }
 
 
@@ -195,18 +204,7 @@ public class OrdersRepository implements OrdersRepositoryInt {
 
     public List<OrdersEntity> findOrdersByMonth(int month, int year) {
         String sql = "SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route FROM orders WHERE EXTRACT(MONTH FROM order_date) = ? AND EXTRACT(YEAR FROM order_date) = ?";
-        return jdbcTemplate.query(sql, new Object[]{month, year}, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                )
-        );
+        return jdbcTemplate.query(sql, new Object[]{month, year}, new OrdersRowMapper());
     }
 
 
@@ -235,18 +233,7 @@ public class OrdersRepository implements OrdersRepositoryInt {
     JOIN companies c ON p.company_id = c.id
     WHERE c.id = ? AND o.status = 'FALLIDA'
     """;
-        return jdbcTemplate.query(sql, new Object[]{companyId}, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                )
-        );
+        return jdbcTemplate.query(sql, new Object[]{companyId}, new OrdersRowMapper());
     }
 
 
@@ -277,18 +264,7 @@ public class OrdersRepository implements OrdersRepositoryInt {
     JOIN companies c ON p.company_id = c.id
     WHERE c.id = ? AND o.status = 'ENTREGADO'
     """;
-        return jdbcTemplate.query(sql, new Object[]{companyId}, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                )
-        );
+        return jdbcTemplate.query(sql, new Object[]{companyId}, new OrdersRowMapper());
     }
 
 
@@ -326,18 +302,7 @@ public class OrdersRepository implements OrdersRepositoryInt {
     JOIN products p ON d.id = p.company_id
     WHERE p.company_id = ?
     """;
-        return jdbcTemplate.query(sql, new Object[]{companyId}, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                )
-        );
+        return jdbcTemplate.query(sql, new Object[]{companyId}, new OrdersRowMapper());
     }
 
 
@@ -349,16 +314,7 @@ public class OrdersRepository implements OrdersRepositoryInt {
     //Get all products by order id
     public List<ProductEntity> findProductsByOrderId(int orderId) {
         String sql = "SELECT p.* FROM products p JOIN order_products op ON p.id = op.product_id WHERE op.order_id = ?";
-        return jdbcTemplate.query(sql, new Object[]{orderId}, (rs, rowNum) ->
-                new ProductEntity(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getInt("stock"),
-                        rs.getFloat("price"),
-                        rs.getString("category"),
-                        rs.getInt("company_id")
-                )
-        );
+        return jdbcTemplate.query(sql, new Object[]{orderId}, new ProductRowMapper());
     }
 
 
@@ -368,24 +324,28 @@ public class OrdersRepository implements OrdersRepositoryInt {
      * @return La orden En proceso encontrada.
      *
      */
-    // Obtener la orden En proceso por ID del repartidor
+    // Obtener la orden En proceso por ID del repartidor; si tiene un viaje con varias paradas, la próxima entrega
     public OrdersEntity findActiveOrderByDealerId(int dealerId) {
-        String sql = "SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route FROM orders WHERE dealer_id = ? AND status = 'EN PROCESO'";
-        List<OrdersEntity> orders = jdbcTemplate.query(sql, new Object[]{dealerId}, (rs, rowNum) ->
-                new OrdersEntity(
-                        rs.getInt("id"),
-                        rs.getDate("order_date"),
-                        rs.getDate("delivery_date"),
-                        rs.getString("status"),
-                        rs.getInt("client_id"),
-                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
-                        rs.getDouble("total_price"),
-                        rs.getString("estimated_route")
-                )
-        );
+        List<OrdersEntity> orders = jdbcTemplate.query(ACTIVE_ORDERS_SQL + " LIMIT 1", new OrdersRowMapper(), dealerId);
         return orders.isEmpty() ? null : orders.get(0);
     }
 
+    /**
+     * Metodo para obtener todas las ordenes En proceso de un repartidor en el orden de sus paradas.
+     * @param "dealerId" El id del repartidor a buscar.
+     * @return Las ordenes En proceso, la próxima entrega primero.
+     */
+    public List<OrdersEntity> findActiveOrdersByDealerId(int dealerId) {
+        return jdbcTemplate.query(ACTIVE_ORDERS_SQL, new OrdersRowMapper(), dealerId);
+    }
+
+    private static final String ACTIVE_ORDERS_SQL = """
+            SELECT id, order_date, delivery_date, status, client_id, dealer_id, total_price, ST_AsText(estimated_route) AS estimated_route
+            FROM orders
+            WHERE dealer_id = ? AND status = 'EN PROCESO'
+            ORDER BY stop_sequence NULLS LAST, order_date, id
+            """;
+
     /**
      * Metodo para asignar un pedido a un repartidor.
      * @param "orderId" El id del pedido a asignar.
@@ -398,6 +358,169 @@ public class OrdersRepository implements OrdersRepositoryInt {
         jdbcTemplate.update(sql, dealerId, orderId);
     }
 
+    /**
+     * Metodo para obtener los extremos de la ruta de un pedido nuevo: la empresa del producto indicado y el cliente.
+     * @param "clientId" El id del cliente.
+     * @param "productId" El id del producto cuya empresa despacha el pedido.
+     * @return {longitud empresa, latitud empresa, longitud cliente, latitud cliente}, o null si falta alguna ubicación.
+     */
+    public double[] findRouteEndpoints(int clientId, int productId) {
+        String sql = """
+            SELECT ST_X(co.ubication) AS company_lon, ST_Y(co.ubication) AS company_lat,
+                   ST_X(c.ubication) AS client_lon, ST_Y(c.ubication) AS client_lat
+            FROM clients c, products p
+            JOIN companies co ON co.id = p.company_id
+            WHERE c.id = ? AND p.id = ? AND c.ubication IS NOT NULL AND co.ubication IS NOT NULL
+            """;
+        List<double[]> rows = jdbcTemplate.query(sql, (rs, rowNum) -> new double[]{
+                rs.getDouble("company_lon"),
+                rs.getDouble("company_lat"),
+                rs.getDouble("client_lon"),
+                rs.getDouble("client_lat")
+        }, clientId, productId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Metodo para obtener el repartidor asignado a un pedido.
+     * @param "orderId" El id del pedido.
+     * @return El id del repartidor, o null si el pedido no existe o no tiene repartidor.
+     */
+    public Integer findDealerIdByOrderId(int orderId) {
+        String sql = "SELECT dealer_id FROM orders WHERE id = ?";
+        List<Integer> ids = jdbcTemplate.queryForList(sql, Integer.class, orderId);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    /**
+     * Metodo para obtener el estado actual de varios pedidos junto con su cliente y repartidor.
+     * @param "orderIds" Los ids de los pedidos.
+     * @return Un evento de estado por cada pedido existente.
+     */
+    public List<OrderStatusEventDTO> findStatusEvents(List<Integer> orderIds) {
+        String sql = "SELECT id, client_id, dealer_id, status FROM orders WHERE id = ANY(?)";
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                new OrderStatusEventDTO(
+                        rs.getInt("id"),
+                        (Integer) rs.getObject("client_id"),
+                        (Integer) rs.getObject("dealer_id"),
+                        rs.getString("status")
+                ), (Object) orderIds.toArray(new Integer[0]));
+    }
+
+    /**
+     * Metodo para bloquear la fila de un repartidor hasta el fin de la transacción actual.
+     * Las asignaciones al mismo repartidor se serializan con este bloqueo: la segunda espera a que la primera
+     * confirme y, como cada sentencia toma una instantánea nueva, luego ve el pedido EN PROCESO que quedó asignado.
+     * Debe llamarse dentro de una transacción.
+     * @param "dealerId" El id del repartidor.
+     * @return true si el repartidor existe.
+     */
+    public boolean lockDealer(int dealerId) {
+        String sql = "SELECT id FROM dealers WHERE id = ? FOR UPDATE";
+        return !jdbcTemplate.queryForList(sql, Integer.class, dealerId).isEmpty();
+    }
+
+    /**
+     * Metodo para asignar un pedido a un repartidor solo si el pedido sigue sin repartidor
+     * y el repartidor no tiene otro pedido en proceso.
+     * Bloquea antes al repartidor (ver lockDealer), así que debe llamarse dentro de una transacción.
+     * @param "orderId" El id del pedido a asignar.
+     * @param "dealerId" El id del repartidor a asignar.
+     * @return true si el pedido quedó asignado, false si otro proceso lo tomó antes, el repartidor está ocupado o no existe.
+     */
+    public boolean assignOrderIfAvailable(int orderId, int dealerId) {
+        if (!lockDealer(dealerId)) {
+            return false;
+        }
+        String sql = """
+            UPDATE orders SET dealer_id = ?, status = 'EN PROCESO'
+            WHERE id = ? AND dealer_id IS NULL AND status IN ('PENDIENTE', 'URGENTE')
+            AND NOT EXISTS (SELECT 1 FROM orders a WHERE a.dealer_id = ? AND a.status = 'EN PROCESO')
+            """;
+        return jdbcTemplate.update(sql, dealerId, orderId, dealerId) == 1;
+    }
+
+    /**
+     * Metodo para asignar varios pedidos a un mismo repartidor (viaje con varias paradas), todos o ninguno.
+     * La asignación se hace solo si todos los pedidos siguen sin repartidor y el repartidor no tiene pedidos en proceso.
+     * Bloquea antes al repartidor (ver lockDealer), así que debe llamarse dentro de una transacción.
+     * @param "orderIds" Los ids de los pedidos del viaje en el orden de entrega, que queda guardado en stop_sequence.
+     * @param "dealerId" El id del repartidor.
+     * @return true si todos los pedidos quedaron asignados, false si no se asignó ninguno.
+     */
+    public boolean assignOrdersIfAvailable(List<Integer> orderIds, int dealerId) {
+        if (!lockDealer(dealerId)) {
+            return false;
+        }
+        String sql = """
+            WITH candidate AS (
+                SELECT id FROM orders
+                WHERE id = ANY(?) AND dealer_id IS NULL AND status IN ('PENDIENTE', 'URGENTE')
+                FOR UPDATE
+            )
+            UPDATE orders SET dealer_id = ?, status = 'EN PROCESO', stop_sequence = array_position(?::int[], orders.id)
+            WHERE id IN (SELECT id FROM candidate)
+            AND (SELECT COUNT(*) FROM candidate) = ?
+            AND NOT EXISTS (SELECT 1 FROM orders a WHERE a.dealer_id = ? AND a.status = 'EN PROCESO')
+            """;
+        Integer[] ids = orderIds.toArray(new Integer[0]);
+        return jdbcTemplate.update(sql, ids, dealerId, ids, ids.length, dealerId) == ids.length;
+    }
+
+    /**
+     * Metodo para guardar la misma ruta estimada en varios pedidos.
+     * @param "orderIds" Los ids de los pedidos.
+     * @param "route" Coordenadas de la ruta {x0, y0, x1, y1, ...}.
+     */
+    public void updateEstimatedRoutes(List<Integer> orderIds, double[] route) {
+        String sql = "UPDATE orders SET estimated_route = ST_GeomFromWKB(?, 4326) WHERE id = ANY(?)";
+        jdbcTemplate.update(sql, GeometryCodec.lineStringToWkb(route), orderIds.toArray(new Integer[0]));
+    }
+
+    /**
+     * Metodo para obtener los pedidos sin repartidor con su punto de retiro y de entrega, los urgentes primero y luego por antigüedad.
+     * El punto de retiro es el inicio de la ruta estimada (la empresa); si el pedido no tiene ruta se usa la ubicación del cliente.
+     * @param "limit" La cantidad máxima de pedidos.
+     * @return Una lista de pedidos pendientes.
+     */
+    public List<PendingOrderDTO> findPendingOrders(int limit) {
+        String sql = PENDING_ORDERS_SQL + " ORDER BY (o.status = 'URGENTE') DESC, o.order_date, o.id LIMIT ?";
+        return jdbcTemplate.query(sql, PENDING_ORDER_MAPPER, limit);
+    }
+
+    /**
+     * Metodo para obtener un pedido sin repartidor con su punto de retiro.
+     * @param "orderId" El id del pedido.
+     * @return El pedido pendiente, o null si no existe, ya tiene repartidor o no tiene ubicación.
+     */
+    public PendingOrderDTO findPendingOrder(int orderId) {
+        List<PendingOrderDTO> rows = jdbcTemplate.query(PENDING_ORDERS_SQL + " AND o.id = ?", PENDING_ORDER_MAPPER, orderId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private static final String PENDING_ORDERS_SQL = """
+            SELECT o.id, o.status,
+                   ST_X(COALESCE(ST_StartPoint(o.estimated_route), c.ubication)) AS longitude,
+                   ST_Y(COALESCE(ST_StartPoint(o.estimated_route), c.ubication)) AS latitude,
+                   ST_X(COALESCE(c.ubication, ST_EndPoint(o.estimated_route))) AS delivery_longitude,
+                   ST_Y(COALESCE(c.ubication, ST_EndPoint(o.estimated_route))) AS delivery_latitude
+            FROM orders o
+            JOIN clients c ON c.id = o.client_id
+            WHERE o.dealer_id IS NULL AND o.status IN ('PENDIENTE', 'URGENTE')
+            AND (o.estimated_route IS NOT NULL OR c.ubication IS NOT NULL)
+            """;
+
+    private static final RowMapper<PendingOrderDTO> PENDING_ORDER_MAPPER = (rs, rowNum) ->
+            new PendingOrderDTO(
+                    rs.getInt("id"),
+                    rs.getDouble("longitude"),
+                    rs.getDouble("latitude"),
+                    rs.getDouble("delivery_longitude"),
+                    rs.getDouble("delivery_latitude"),
+                    "URGENTE".equals(rs.getString("status"))
+            );
+
 
 
     /**
@@ -478,9 +601,14 @@ public class OrdersRepository implements OrdersRepositoryInt {
         );
     }
 
-    public void updateEstimatedRoute(int orderId, String lineStringWKT) {
-        String sql = "UPDATE orders SET estimated_route = ST_GeomFromText(?, 4326) WHERE id = ?";
-        jdbcTemplate.update(sql, lineStringWKT, orderId);
+    /**
+     * Actualiza la ruta estimada de un pedido.
+     * @param orderId ID del pedido
+     * @param route Coordenadas de la ruta {x0, y0, x1, y1, ...}, enviadas como WKB
+     */
+    public void updateEstimatedRoute(int orderId, double[] route) {
+        String sql = "UPDATE orders SET estimated_route = ST_GeomFromWKB(?, 4326) WHERE id = ?";
+        jdbcTemplate.update(sql, GeometryCodec.lineStringToWkb(route), orderId);
     }
 
     public void updateEstimatedRouteFromPoints(int orderId, List<Map<String, Double>> points) {
@@ -509,8 +637,9 @@ public class OrdersRepository implements OrdersRepositoryInt {
 
     /**
      * Método para obtener los pedidos cuya ruta estimada cruza más de 2 zonas de reparto.
-     * Utiliza funciones geoespaciales para determinar las intersecciones entre la ruta del pedido
-     * y las áreas de cobertura definidas en el sistema.
+     * Las intersecciones entre la ruta de cada pedido y las áreas de cobertura se calculan al escribir la ruta
+     * (triggers sobre orders y coverage_area) y se guardan en order_coverage_crossings, así que la consulta
+     * solo recorre el índice por cantidad de cruces.
      *
      * @return La lista de ordenes con nombre y dirección del cliente que cruzan mas de 2 zonas.
      */
@@ -526,15 +655,12 @@ public class OrdersRepository implements OrdersRepositoryInt {
             c.name AS name_client,
             c.address AS client_address
         FROM 
-            orders o
+            order_coverage_crossings x
+        JOIN 
+            orders o ON o.id = x.order_id
         LEFT JOIN 
             clients c ON o.client_id = c.id
-        WHERE (
-            SELECT COUNT(DISTINCT ca.coverage_id)
-            FROM coverage_area ca
-            WHERE ST_Crosses(o.estimated_route, ca.coverageArea)
-               OR ST_Intersects(o.estimated_route, ca.coverageArea)
-        ) > 2
+        WHERE x.crossing_count > 2
     """;
 
         return jdbcTemplate.query(sql, (rs, rowNum) ->
@@ -1,10 +1,13 @@
 package bdavanzadas.lab1.repositories;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 
 import bdavanzadas.lab1.dtos.OrderNameAddressDTO;
 import bdavanzadas.lab1.dtos.OrderTotalProductsDTO;
+import bdavanzadas.lab1.dtos.OrderStatusEventDTO;
+import bdavanzadas.lab1.dtos.PendingOrderDTO;
 import bdavanzadas.lab1.dtos.TopSpenderDTO;
 import bdavanzadas.lab1.entities.OrdersEntity;
 import bdavanzadas.lab1.entities.ProductEntity;
@@ -26,6 +29,22 @@ public interface OrdersRepositoryInt {
      */
     List<OrdersEntity> findAll();
 
+    /**
+     * Metodo para obtener una página de pedidos ordenados por id.
+     * @param "afterId" El id del último registro de la página anterior.
+     * @param "limit" La cantidad máxima de registros.
+     * @return Una lista de pedidos.
+     *
+     */
+    List<OrdersEntity> findPage(int afterId, int limit);
+
+    /**
+     * Metodo para recorrer todos los pedidos en streaming.
+     * @return Un Stream de pedidos.
+     *
+     */
+    Stream<OrdersEntity> streamAll();
+
     /**
      * Metodo para guardar un order en la base de datos.
      * @param "order" El order a guardar.
@@ -140,6 +159,14 @@ public interface OrdersRepositoryInt {
      */
     OrdersEntity findActiveOrderByDealerId(int dealerId);
 
+    /**
+     * Metodo para obtener las ordenes En proceso de un repartidor en el orden de sus paradas.
+     * @param "dealerId" El id del repartidor a buscar.
+     * @return Las ordenes En proceso, la próxima entrega primero.
+     *
+     */
+    List<OrdersEntity> findActiveOrdersByDealerId(int dealerId);
+
     /**
      * Metodo para asignar un pedido a un repartidor.
      * @param "orderId" El id del pedido a asignar.
@@ -149,6 +176,81 @@ public interface OrdersRepositoryInt {
      */
     void assignOrderToDealer(int orderId, int dealerId);
 
+    /**
+     * Metodo para obtener la ubicación de la empresa de un producto y del cliente, extremos de la ruta de un pedido.
+     * @param "clientId" El id del cliente.
+     * @param "productId" El id del producto.
+     * @return Las coordenadas de ambos extremos, o null si falta alguna ubicación.
+     *
+     */
+    double[] findRouteEndpoints(int clientId, int productId);
+
+    /**
+     * Metodo para obtener el repartidor asignado a un pedido.
+     * @param "orderId" El id del pedido.
+     * @return El id del repartidor, o null si no tiene.
+     *
+     */
+    Integer findDealerIdByOrderId(int orderId);
+
+    /**
+     * Metodo para obtener el estado actual de varios pedidos junto con su cliente y repartidor.
+     * @param "orderIds" Los ids de los pedidos.
+     * @return Un evento de estado por cada pedido existente.
+     *
+     */
+    List<OrderStatusEventDTO> findStatusEvents(List<Integer> orderIds);
+
+    /**
+     * Metodo para bloquear la fila de un repartidor hasta el fin de la transacción actual.
+     * @param "dealerId" El id del repartidor.
+     * @return true si el repartidor existe.
+     *
+     */
+    boolean lockDealer(int dealerId);
+
+    /**
+     * Metodo para asignar un pedido a un repartidor si el pedido sigue sin repartidor y el repartidor está libre.
+     * @param "orderId" El id del pedido a asignar.
+     * @param "dealerId" El id del repartidor a asignar.
+     * @return true si el pedido quedó asignado.
+     *
+     */
+    boolean assignOrderIfAvailable(int orderId, int dealerId);
+
+    /**
+     * Metodo para asignar todos los pedidos de un viaje a un repartidor, o ninguno.
+     * @param "orderIds" Los ids de los pedidos.
+     * @param "dealerId" El id del repartidor.
+     * @return true si todos quedaron asignados.
+     *
+     */
+    boolean assignOrdersIfAvailable(List<Integer> orderIds, int dealerId);
+
+    /**
+     * Metodo para guardar la misma ruta estimada en varios pedidos.
+     * @param "orderIds" Los ids de los pedidos.
+     * @param "route" Coordenadas de la ruta.
+     *
+     */
+    void updateEstimatedRoutes(List<Integer> orderIds, double[] route);
+
+    /**
+     * Metodo para obtener los pedidos sin repartidor con su punto de retiro.
+     * @param "limit" La cantidad máxima de pedidos.
+     * @return Una lista de pedidos pendientes.
+     *
+     */
+    List<PendingOrderDTO> findPendingOrders(int limit);
+
+    /**
+     * Metodo para obtener un pedido sin repartidor con su punto de retiro.
+     * @param "orderId" El id del pedido.
+     * @return El pedido pendiente, o null si no está pendiente.
+     *
+     */
+    PendingOrderDTO findPendingOrder(int orderId);
+
     /**
      * Metodo para obtener los pedidos de un repartidor con el conteo de productos.
      * @param "dealerId" El id del repartidor a buscar.
@@ -0,0 +1,49 @@
+package bdavanzadas.lab1.repositories;
+
+import bdavanzadas.lab1.entities.OrdersEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ *
+ *  La clase OrdersRowMapper mapea filas de la tabla orders a OrdersEntity.
+ *  Espera las columnas id, order_date, delivery_date, status, client_id, dealer_id, total_price y estimated_route (en WKT).
+ *
+ */
+public class OrdersRowMapper extends ColumnIndexRowMapper<OrdersEntity> {
+
+    private int id;
+    private int orderDate;
+    private int deliveryDate;
+    private int status;
+    private int clientId;
+    private int dealerId;
+    private int totalPrice;
+    private int estimatedRoute;
+
+    @Override
+    protected void resolveColumns(ResultSet rs) throws SQLException {
+        id = rs.findColumn("id");
+        orderDate = rs.findColumn("order_date");
+        deliveryDate = rs.findColumn("delivery_date");
+        status = rs.findColumn("status");
+        clientId = rs.findColumn("client_id");
+        dealerId = rs.findColumn("dealer_id");
+        totalPrice = rs.findColumn("total_price");
+        estimatedRoute = rs.findColumn("estimated_route");
+    }
+
+    @Override
+    protected OrdersEntity mapColumns(ResultSet rs) throws SQLException {
+        return new OrdersEntity(
+                rs.getInt(id),
+                rs.getDate(orderDate),
+                rs.getDate(deliveryDate),
+                rs.getString(status),
+                rs.getInt(clientId),
+                getNullableInt(rs, dealerId),
+                rs.getDouble(totalPrice),
+                rs.getString(estimatedRoute));
+    }
+}
@@ -32,14 +32,7 @@ public class ProductRepository implements ProductRepositoryInt {
      */
    public List<ProductEntity> findAll() {
         String sql="SELECT * FROM products";
-        return jdbcTemplate.query(sql,(rs,rownum)->
-                new ProductEntity(
-                  rs.getInt("id"),
-                  rs.getString("name"),
-                  rs.getInt("stock"),
-                  rs.getFloat("price"),
-                  rs.getString("category"),
-                  rs.getInt("company_id")));
+        return jdbcTemplate.query(sql,new ProductRowMapper());
     }
 
     /**
@@ -49,14 +42,7 @@ public class ProductRepository implements ProductRepositoryInt {
      */
    public ProductEntity findbyid(int id){
        String sql="SELECT * FROM products WHERE id= ?";
-       return jdbcTemplate.queryForObject(sql,new Object[]{id},(rs,rownum)->
-               new ProductEntity(
-                   rs.getInt("id"),
-                   rs.getString("name"),
-                   rs.getInt("stock"),
-                   rs.getFloat("price"),
-                       rs.getString("category"),
-                   rs.getInt("company_id")));
+       return jdbcTemplate.queryForObject(sql,new Object[]{id},new ProductRowMapper());
    }
 
     /**
@@ -100,14 +86,7 @@ public class ProductRepository implements ProductRepositoryInt {
     //find by stock para mostrar lo disponible
     public List<ProductEntity> findByStock(){
         String sql="SELECT * FROM products WHERE stock > 0";
-        return jdbcTemplate.query(sql,(rs,rownum)->
-                new ProductEntity(
-                  rs.getInt("id"),
-                  rs.getString("name"),
-                  rs.getInt("stock"),
-                  rs.getFloat("price"),
-                  rs.getString("category"),
-                  rs.getInt("company_id")));
+        return jdbcTemplate.query(sql,new ProductRowMapper());
     }
 
 
@@ -119,14 +98,7 @@ public class ProductRepository implements ProductRepositoryInt {
      */
     public List<ProductEntity> findbyCategory(String c){
        String sql="SELECT * FROM products WHERE category=?";
-       return jdbcTemplate.query(sql,new Object[]{c},(rs,rownum)->
-               new ProductEntity(
-                   rs.getInt("id"),
-                   rs.getString("name"),
-                   rs.getInt("stock"),
-                   rs.getFloat("price"),
-                   rs.getString("category"),
-                       rs.getInt("company_id")));
+       return jdbcTemplate.query(sql,new Object[]{c},new ProductRowMapper());
     }
 
 
@@ -146,16 +118,7 @@ public class ProductRepository implements ProductRepositoryInt {
      */
     public List<ProductEntity> findByCompanyId(int companyId) {
         String sql = "SELECT * FROM products WHERE company_id = ?";
-        return jdbcTemplate.query(sql, new Object[]{companyId}, (rs, rowNum) ->
-                new ProductEntity(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getInt("stock"),
-                        rs.getFloat("price"),
-                        rs.getString("category"),
-                        rs.getInt("company_id")
-                )
-        );
+        return jdbcTemplate.query(sql, new Object[]{companyId}, new ProductRowMapper());
     }
 
     /**
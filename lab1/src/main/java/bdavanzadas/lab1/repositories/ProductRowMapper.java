@@ -0,0 +1,43 @@
+package bdavanzadas.lab1.repositories;
+
+import bdavanzadas.lab1.entities.ProductEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ *
+ *  La clase ProductRowMapper mapea filas de la tabla products a ProductEntity.
+ *  Espera las columnas id, name, stock, price, category y company_id.
+ *
+ */
+public class ProductRowMapper extends ColumnIndexRowMapper<ProductEntity> {
+
+    private int id;
+    private int name;
+    private int stock;
+    private int price;
+    private int category;
+    private int companyId;
+
+    @Override
+    protected void resolveColumns(ResultSet rs) throws SQLException {
+        id = rs.findColumn("id");
+        name = rs.findColumn("name");
+        stock = rs.findColumn("stock");
+        price = rs.findColumn("price");
+        category = rs.findColumn("category");
+        companyId = rs.findColumn("company_id");
+    }
+
+    @Override
+    protected ProductEntity mapColumns(ResultSet rs) throws SQLException {
+        return new ProductEntity(
+                rs.getInt(id),
+                rs.getString(name),
+                rs.getInt(stock),
+                rs.getFloat(price),
+                rs.getString(category),
+                rs.getInt(companyId));
+    }
+}
@@ -3,6 +3,7 @@ package bdavanzadas.lab1.services;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import bdavanzadas.lab1.entities.ClientEntity;
 import bdavanzadas.lab1.repositories.ClientRepository;
 import bdavanzadas.lab1.services.UserService;
@@ -10,7 +11,8 @@ import bdavanzadas.lab1.services.UserService;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class ClientService {
@@ -25,6 +27,13 @@ public class ClientService {
     private UserService userService;
 
 
+    /**
+     * Resolutor de ids de perfil, se invalida al eliminar un cliente.
+     */
+    @Autowired
+    private ProfileIdResolver profileIdResolver;
+
+
     /**
      * Constructor del servicio de clientes.
      * @param clientRepository Repositorio de clientes utilizado para acceder a la base de datos.
@@ -34,16 +43,6 @@ public class ClientService {
     }
 
 
-    /**
-     * Patrón para validar el formato WKT (Well-Known Text) de una ubicación.
-     * Este patrón verifica que la cadena comience con "POINT(" seguido de dos números (longitud y latitud)
-     * separados por un espacio, y termine con un paréntesis de cierre.
-     */
-    // Patrón para validar WKT (ej: "POINT(-70.123 -33.456)")
-    private static final Pattern WKT_PATTERN = Pattern.compile(
-            "^POINT\\(-?\\d+\\.?\\d* -?\\d+\\.?\\d*\\)$"
-    );
-
     // --- Métodos existentes (con validación para save y update) ---
 
 
@@ -56,6 +55,29 @@ public class ClientService {
         return clientRepository.findAll();
     }
 
+    /**
+     * Obtiene una página de clientes ordenada por id (paginación por cursor).
+     * @param afterId Id del último registro de la página anterior (0 para la primera página).
+     * @param limit Cantidad máxima de registros.
+     * @return Una lista de clientes.
+     */
+    @Transactional(readOnly = true)
+    public List<ClientEntity> getClientsPage(int afterId, int limit) {
+        return clientRepository.findPage(afterId, limit);
+    }
+
+    /**
+     * Recorre todos los clientes con un cursor de la base de datos, entregándolos uno a uno.
+     * La transacción se mantiene abierta mientras dura el recorrido.
+     * @param action Acción a ejecutar por cada registro.
+     */
+    @Transactional(readOnly = true)
+    public void forEachClient(Consumer<ClientEntity> action) {
+        try (Stream<ClientEntity> rows = clientRepository.streamAll()) {
+            rows.forEach(action);
+        }
+    }
+
     /**
      * Obtiene un cliente por su ID.
      * @param id El ID del cliente a buscar.
@@ -93,6 +115,7 @@ public class ClientService {
     @Transactional
     public void deleteClient(int id) {
         clientRepository.delete(id);
+        profileIdResolver.evictClient(id);
     }
 
     /**
@@ -112,11 +135,8 @@ public class ClientService {
      */
     // --- Método de validación adicional ---
     private void validateUbicacion(String ubicacion) {
-        if (ubicacion == null || !WKT_PATTERN.matcher(ubicacion).matches()) {
-            throw new IllegalArgumentException(
-                    "Formato WKT inválido. Debe ser 'POINT(longitud latitud)'."
-            );
-        }
+        // Lanza IllegalArgumentException si no es 'POINT(longitud latitud)'
+        GeometryCodec.parsePoint(ubicacion);
     }
 
 
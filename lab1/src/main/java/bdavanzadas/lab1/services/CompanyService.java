@@ -1,5 +1,6 @@
 package bdavanzadas.lab1.services;
 
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import bdavanzadas.lab1.dtos.NearestDeliveryPointDTO;
 import bdavanzadas.lab1.entities.CompanyEntity;
 import bdavanzadas.lab1.repositories.CompanyRepository;
@@ -9,7 +10,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class CompanyService {
@@ -21,11 +23,40 @@ public class CompanyService {
     @Autowired
     private CompanyRepository companyRepository;
 
+    /**
+     * Índice de cobertura; guarda los nombres de las compañías, por lo que se reconstruye cuando cambian.
+     */
+    @Autowired
+    private CoverageIndex coverageIndex;
+
     @Transactional(readOnly = true)
     public List<CompanyEntity> getAllCompanies() {
         return companyRepository.findAll();
     }
 
+    /**
+     * Obtiene una página de compañías ordenada por id (paginación por cursor).
+     * @param afterId Id del último registro de la página anterior (0 para la primera página).
+     * @param limit Cantidad máxima de registros.
+     * @return Una lista de compañías.
+     */
+    @Transactional(readOnly = true)
+    public List<CompanyEntity> getCompaniesPage(int afterId, int limit) {
+        return companyRepository.findPage(afterId, limit);
+    }
+
+    /**
+     * Recorre todos los compañías con un cursor de la base de datos, entregándolos uno a uno.
+     * La transacción se mantiene abierta mientras dura el recorrido.
+     * @param action Acción a ejecutar por cada registro.
+     */
+    @Transactional(readOnly = true)
+    public void forEachCompany(Consumer<CompanyEntity> action) {
+        try (Stream<CompanyEntity> rows = companyRepository.streamAll()) {
+            rows.forEach(action);
+        }
+    }
+
     @Transactional(readOnly = true)
     public CompanyEntity findbyid(int id) {
         return companyRepository.findbyid(id);
@@ -36,6 +67,7 @@ public class CompanyService {
         // Validar el formato de la ubicación en WKT (Well-Known Text)
         validateUbicacion(company.getUbication());
         companyRepository.save(company);
+        coverageIndex.refresh();
     }
 
     @Transactional
@@ -43,11 +75,13 @@ public class CompanyService {
         // Validar el formato de la ubicación en WKT (Well-Known Text)
         validateUbicacion(company.getUbication());
         companyRepository.update(company);
+        coverageIndex.refresh();
     }
 
     @Transactional
     public void deleteCompany(int id) {
         companyRepository.delete(id);
+        coverageIndex.refresh();
     }
 
     @Transactional(readOnly = true)
@@ -73,6 +107,26 @@ public class CompanyService {
         return companyRepository.getCoverageAreaIdsByCompanyId(companyId);
     }
 
+    /**
+     * Obtiene los métodos de pago de varias compañías con una sola consulta.
+     * @param companyIds IDs de las compañías
+     * @return Mapa de ID de compañía a los IDs de sus métodos de pago
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, List<Integer>> getPaymentMethodIdsByCompanyIds(List<Integer> companyIds) {
+        return companyRepository.getPaymentMethodIdsByCompanyIds(companyIds);
+    }
+
+    /**
+     * Obtiene las áreas de cobertura de varias compañías con una sola consulta.
+     * @param companyIds IDs de las compañías
+     * @return Mapa de ID de compañía a los IDs de sus áreas de cobertura
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, List<Integer>> getCoverageAreaIdsByCompanyIds(List<Integer> companyIds) {
+        return companyRepository.getCoverageAreaIdsByCompanyIds(companyIds);
+    }
+
     @Transactional
     public void updateCompanyMetrics() {
         companyRepository.updateCompanyMetrics();
@@ -83,18 +137,10 @@ public class CompanyService {
         return companyRepository.getCompaniesByDeliveredFoodVolume();
     }
 
-    // Patrón para validar WKT (ej: "POINT(-70.123 -33.456)")
-    private static final Pattern WKT_PATTERN = Pattern.compile(
-            "^POINT\\(-?\\d+\\.?\\d* -?\\d+\\.?\\d*\\)$"
-    );
-
     // --- Método de validación adicional ---
     private void validateUbicacion(String ubicacion) {
-        if (ubicacion == null || !WKT_PATTERN.matcher(ubicacion).matches()) {
-            throw new IllegalArgumentException(
-                    "Formato WKT inválido. Debe ser 'POINT(longitud latitud)'."
-            );
-        }
+        // Lanza IllegalArgumentException si no es 'POINT(longitud latitud)'
+        GeometryCodec.parsePoint(ubicacion);
     }
 
     public List<NearestDeliveryPointDTO> getTop5NearestDeliveryPoints(int companyId) {
@@ -1,5 +1,7 @@
 package bdavanzadas.lab1.services;
 
+import bdavanzadas.lab1.dtos.ClientLocationDTO;
+import bdavanzadas.lab1.dtos.CoverageBatchResultDTO;
 import bdavanzadas.lab1.dtos.CoverageCheckDTO;
 import bdavanzadas.lab1.entities.CoverageAreaEntity;
 import bdavanzadas.lab1.repositories.CoverageAreaRepository;
@@ -9,7 +11,12 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -26,6 +33,18 @@ public class CoverageAreaService {
     @Autowired
     private CoverageAreaRepository coverageAreaRepository;
 
+    /**
+     * Índice en memoria de las áreas de cobertura.
+     * Se utiliza para resolver las consultas de cobertura sin ejecutar ST_Within en la base de datos.
+     */
+    @Autowired
+    private CoverageIndex coverageIndex;
+
+    /**
+     * Cantidad máxima de combinaciones cliente × empresa por consulta de cobertura por lotes.
+     */
+    private static final long MAX_BATCH_PAIRS = 100_000;
+
     /**
      * Método para obtener todas las áreas de cobertura de la base de datos.
      * @return Una lista de áreas de cobertura.
@@ -49,6 +68,7 @@ public class CoverageAreaService {
      */
     public void createCoverageArea(CoverageAreaEntity coverageArea) {
         coverageAreaRepository.save(coverageArea);
+        coverageIndex.refresh();
     }
 
     /**
@@ -57,6 +77,7 @@ public class CoverageAreaService {
      */
     public void updateCoverageArea(CoverageAreaEntity coverageArea) {
         coverageAreaRepository.update(coverageArea);
+        coverageIndex.refresh();
     }
 
     /**
@@ -65,6 +86,7 @@ public class CoverageAreaService {
      */
     public void deleteCoverageArea(int id) {
         coverageAreaRepository.delete(id);
+        coverageIndex.refresh();
     }
 
 
@@ -72,10 +94,41 @@ public class CoverageAreaService {
      * Verificación básica de cobertura sin validaciones
      * @param clientId ID del cliente
      * @param companyId ID de la empresa
-     * @return resultado directo del repository
+     * @return true si el cliente está dentro de un área de cobertura de la empresa
      */
     public boolean checkClientCoverage(int clientId, int companyId) {
-        return coverageAreaRepository.isClientInCoverageArea(clientId, companyId);
+        ClientLocationDTO location = coverageAreaRepository.findClientLocation(clientId);
+        return location != null && coverageIndex.isCovered(companyId, location.getLongitude(), location.getLatitude());
+    }
+
+    /**
+     * Verifica la cobertura de todas las combinaciones cliente × empresa en una sola pasada:
+     * una consulta para las ubicaciones de los clientes y el índice en memoria para los polígonos.
+     * @param clientIds IDs de los clientes
+     * @param companyIds IDs de las empresas
+     * @return Para cada cliente, las empresas que lo cubren
+     */
+    public CoverageBatchResultDTO checkCoverageBatch(List<Integer> clientIds, List<Integer> companyIds) {
+        if (clientIds == null || clientIds.isEmpty() || companyIds == null || companyIds.isEmpty()) {
+            throw new IllegalArgumentException("Se debe indicar al menos un cliente y una empresa");
+        }
+        List<Integer> distinctClients = clientIds.stream().distinct().toList();
+        List<Integer> distinctCompanies = companyIds.stream().distinct().toList();
+        if ((long) distinctClients.size() * distinctCompanies.size() > MAX_BATCH_PAIRS) {
+            throw new IllegalArgumentException("La consulta supera el máximo de " + MAX_BATCH_PAIRS + " combinaciones cliente-empresa");
+        }
+
+        Map<Integer, List<Integer>> covered = new LinkedHashMap<>();
+        for (Integer clientId : distinctClients) {
+            covered.put(clientId, new ArrayList<>());
+        }
+        Set<Integer> unknownClients = new LinkedHashSet<>(distinctClients);
+        for (ClientLocationDTO location : coverageAreaRepository.findClientLocations(distinctClients)) {
+            unknownClients.remove(location.getClientId());
+            covered.put(location.getClientId(),
+                    coverageIndex.findCoveringCompanies(distinctCompanies, location.getLongitude(), location.getLatitude()));
+        }
+        return new CoverageBatchResultDTO(covered, new ArrayList<>(unknownClients));
     }
 
     /**
@@ -89,7 +142,19 @@ public class CoverageAreaService {
         }
 
 
-        return coverageAreaRepository.getClientCoverageDetails(clientId, companyId);
+        CoverageCheckDTO details = coverageAreaRepository.getClientCompanyDistance(clientId, companyId);
+        ClientLocationDTO location = coverageAreaRepository.findClientLocation(clientId);
+        if (details == null || location == null) {
+            return details;
+        }
+
+        CoverageIndex.CoverageMatch match = coverageIndex.findCoverage(companyId, location.getLongitude(), location.getLatitude());
+        if (match != null) {
+            details.setCoverageId(match.getCoverageId());
+            details.setCoverageName(match.getCoverageName());
+            details.setCovered(match.isCovered());
+        }
+        return details;
     }
 
     /**
@@ -103,6 +168,24 @@ public class CoverageAreaService {
             throw new IllegalArgumentException("El ID de cliente debe ser mayor a cero");
         }
 
-        return coverageAreaRepository.getClientCoverages(clientId);
+        ClientLocationDTO location = coverageAreaRepository.findClientLocation(clientId);
+        if (location == null) {
+            return new ArrayList<>();
+        }
+
+        List<CoverageCheckDTO> coverages = new ArrayList<>();
+        for (CoverageIndex.CoverageMatch match : coverageIndex.findCoverages(location.getLongitude(), location.getLatitude())) {
+            coverages.add(new CoverageCheckDTO(
+                    clientId,
+                    location.getClientName(),
+                    match.getCompanyId(),
+                    match.getCompanyName(),
+                    match.getCoverageId(),
+                    match.getCoverageName(),
+                    true,
+                    0
+            ));
+        }
+        return coverages;
     }
 }
\ No newline at end of file
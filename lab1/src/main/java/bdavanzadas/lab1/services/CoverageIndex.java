@@ -0,0 +1,269 @@
+package bdavanzadas.lab1.services;
+
+import bdavanzadas.lab1.dtos.CoverageCompanyLinkDTO;
+import bdavanzadas.lab1.entities.CoverageAreaEntity;
+import bdavanzadas.lab1.repositories.CoverageAreaRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Índice en memoria de las áreas de cobertura.
+ * Mantiene un STRtree con los polígonos de coverage_area preparados (PreparedGeometry) y las empresas asociadas a cada uno,
+ * de modo que las consultas de punto en polígono se resuelven sin ir a la base de datos.
+ * El índice se carga en la primera consulta y se reconstruye cuando cambian las áreas de cobertura o las empresas.
+ */
+@Service
+public class CoverageIndex {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private final CoverageAreaRepository coverageAreaRepository;
+
+    /**
+     * Índice vigente (null si debe reconstruirse).
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Generación del índice; se incrementa en cada invalidación para descartar cargas que quedaron obsoletas.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Object loadLock = new Object();
+
+    /**
+     * Constructor que inyecta el repositorio de áreas de cobertura.
+     * @param coverageAreaRepository Repositorio de áreas de cobertura
+     */
+    public CoverageIndex(CoverageAreaRepository coverageAreaRepository) {
+        this.coverageAreaRepository = coverageAreaRepository;
+    }
+
+    /**
+     * Verifica si un punto está dentro de alguna área de cobertura de una empresa (equivalente a ST_Within).
+     * @param companyId ID de la empresa
+     * @param longitude Longitud del punto
+     * @param latitude Latitud del punto
+     * @return true si el punto está en cobertura
+     */
+    public boolean isCovered(int companyId, double longitude, double latitude) {
+        Point point = point(longitude, latitude);
+        for (Area area : current().candidates(point)) {
+            if (area.companies.containsKey(companyId) && area.geometry.contains(point)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene cuáles de las empresas indicadas tienen un área de cobertura que contiene un punto.
+     * Se recorren solo las áreas candidatas del punto, independientemente de la cantidad de empresas consultadas.
+     * @param companyIds IDs de las empresas a considerar
+     * @param longitude Longitud del punto
+     * @param latitude Latitud del punto
+     * @return IDs de las empresas que cubren el punto, en el orden en que se consultaron
+     */
+    public List<Integer> findCoveringCompanies(Collection<Integer> companyIds, double longitude, double latitude) {
+        Point point = point(longitude, latitude);
+        Set<Integer> covering = new HashSet<>();
+        for (Area area : current().candidates(point)) {
+            if (area.geometry.contains(point)) {
+                covering.addAll(area.companies.keySet());
+            }
+        }
+        List<Integer> result = new ArrayList<>();
+        for (Integer companyId : companyIds) {
+            if (covering.contains(companyId)) {
+                result.add(companyId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Busca el área de cobertura de una empresa que toca un punto, priorizando las que lo contienen.
+     * @param companyId ID de la empresa
+     * @param longitude Longitud del punto
+     * @param latitude Latitud del punto
+     * @return El área encontrada, o null si ninguna área de la empresa toca el punto
+     */
+    public CoverageMatch findCoverage(int companyId, double longitude, double latitude) {
+        Point point = point(longitude, latitude);
+        CoverageMatch touching = null;
+        for (Area area : current().candidates(point)) {
+            String companyName = area.companies.get(companyId);
+            if (companyName == null) {
+                continue;
+            }
+            if (area.geometry.contains(point)) {
+                return new CoverageMatch(area.coverageId, area.name, companyId, companyName, true);
+            }
+            if (touching == null && area.geometry.intersects(point)) {
+                touching = new CoverageMatch(area.coverageId, area.name, companyId, companyName, false);
+            }
+        }
+        return touching;
+    }
+
+    /**
+     * Obtiene todas las combinaciones de área de cobertura y empresa que contienen un punto.
+     * @param longitude Longitud del punto
+     * @param latitude Latitud del punto
+     * @return Lista de coberturas del punto
+     */
+    public List<CoverageMatch> findCoverages(double longitude, double latitude) {
+        Point point = point(longitude, latitude);
+        List<CoverageMatch> matches = new ArrayList<>();
+        for (Area area : current().candidates(point)) {
+            if (!area.geometry.contains(point)) {
+                continue;
+            }
+            for (Map.Entry<Integer, String> company : area.companies.entrySet()) {
+                matches.add(new CoverageMatch(area.coverageId, area.name, company.getKey(), company.getValue(), true));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Marca el índice para ser reconstruido en la próxima consulta.
+     * Si hay una transacción activa, se invalida de nuevo al confirmarla para no quedarse con datos previos al commit.
+     */
+    public void refresh() {
+        invalidate();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        }
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (loadLock) {
+            current = snapshot;
+            if (current == null) {
+                long loadedGeneration = generation.get();
+                current = load();
+                if (generation.get() == loadedGeneration) {
+                    snapshot = current;
+                }
+            }
+            return current;
+        }
+    }
+
+    private Snapshot load() {
+        long start = System.currentTimeMillis();
+
+        Map<Integer, Map<Integer, String>> companiesByCoverage = new HashMap<>();
+        for (CoverageCompanyLinkDTO link : coverageAreaRepository.findCompanyLinks()) {
+            companiesByCoverage.computeIfAbsent(link.getCoverageId(), id -> new LinkedHashMap<>())
+                    .put(link.getCompanyId(), link.getCompanyName());
+        }
+
+        WKTReader reader = new WKTReader(GEOMETRY_FACTORY);
+        STRtree tree = new STRtree();
+        int areas = 0;
+        for (CoverageAreaEntity entity : coverageAreaRepository.findAll()) {
+            Geometry geometry;
+            try {
+                geometry = reader.read(entity.getCoverageArea());
+            } catch (ParseException e) {
+                throw new IllegalStateException("Área de cobertura " + entity.getId() + " con WKT inválido", e);
+            }
+            Area area = new Area(entity.getId(), entity.getName(),
+                    PreparedGeometryFactory.prepare(geometry),
+                    companiesByCoverage.getOrDefault(entity.getId(), Map.of()));
+            tree.insert(geometry.getEnvelopeInternal(), area);
+            areas++;
+        }
+        // Construir el árbol antes de publicarlo: una vez construido las consultas son seguras entre hilos
+        tree.build();
+
+        System.out.println("Índice de cobertura cargado: " + areas + " áreas en "
+                + (System.currentTimeMillis() - start) + " ms");
+        return new Snapshot(tree);
+    }
+
+    private static Point point(double longitude, double latitude) {
+        return GEOMETRY_FACTORY.createPoint(new Coordinate(longitude, latitude));
+    }
+
+    /**
+     * Resultado de una consulta de cobertura: un área y una empresa que la atiende.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CoverageMatch {
+        private final int coverageId;
+        private final String coverageName;
+        private final int companyId;
+        private final String companyName;
+        private final boolean covered;
+    }
+
+    private static final class Area {
+        private final int coverageId;
+        private final String name;
+        private final PreparedGeometry geometry;
+        private final Map<Integer, String> companies;
+
+        private Area(int coverageId, String name, PreparedGeometry geometry, Map<Integer, String> companies) {
+            this.coverageId = coverageId;
+            this.name = name;
+            this.geometry = geometry;
+            this.companies = companies;
+        }
+    }
+
+    private static final class Snapshot {
+        private final STRtree tree;
+
+        private Snapshot(STRtree tree) {
+            this.tree = tree;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Area> candidates(Point point) {
+            return tree.query(new Envelope(point.getCoordinate()));
+        }
+    }
+}
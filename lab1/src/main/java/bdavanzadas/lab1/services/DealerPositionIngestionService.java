@@ -0,0 +1,268 @@
+package bdavanzadas.lab1.services;
+
+import bdavanzadas.lab1.documentServices.DealerHistoryDocumentService;
+import bdavanzadas.lab1.documents.DealerHistoryDocument.LocationHistory;
+import bdavanzadas.lab1.dtos.PositionIngestResultDTO;
+import bdavanzadas.lab1.repositories.DealerRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Recepción de posiciones GPS de los repartidores.
+ * Las posiciones llegan por lotes y solo se encolan en un buffer circular sin bloqueos, así que la petición responde
+ * sin tocar las bases de datos. Una tarea periódica vacía el buffer por lotes: escribe el historial en MongoDB con
+ * una operación masiva, actualiza dealers.ubication con la última posición de cada repartidor en una sola sentencia
+ * y mueve a los repartidores en el índice de despacho. Las posiciones de ids que no son repartidores se descartan
+ * en la escritura: no llegan al índice de despacho ni al historial.
+ * Si el buffer está lleno las posiciones nuevas se descartan y se informan como tales; una posición ya aceptada
+ * se pierde si la escritura de su lote falla.
+ */
+@Service
+public class DealerPositionIngestionService {
+
+    /**
+     * Tamaño de una posición en el formato binario: id (int), longitud y latitud (double) y fecha en milisegundos (long).
+     */
+    public static final int BINARY_RECORD_BYTES = 4 + 8 + 8 + 8;
+
+    private final DealerRepository dealerRepository;
+    private final DealerHistoryDocumentService historyService;
+    private final DispatchService dispatchService;
+    private final PositionRingBuffer buffer;
+
+    /**
+     * Cantidad máxima de posiciones que se escriben por lote.
+     */
+    private final int flushBatch;
+
+    /**
+     * Arreglos del lote en curso; solo los usa flush, que es sincronizado.
+     */
+    private final int[] batchDealerIds;
+    private final double[] batchLongitudes;
+    private final double[] batchLatitudes;
+    private final long[] batchTimes;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder unknownDealers = new LongAdder();
+
+    /**
+     * Constructor que inyecta las dependencias necesarias.
+     * @param dealerRepository Repositorio de repartidores
+     * @param historyService Servicio del historial de ubicaciones
+     * @param dispatchService Servicio de despacho, cuyo índice de posiciones se mantiene al día
+     * @param capacity Capacidad del buffer (potencia de dos)
+     * @param flushBatch Posiciones por lote de escritura
+     */
+    public DealerPositionIngestionService(DealerRepository dealerRepository,
+                                          DealerHistoryDocumentService historyService,
+                                          DispatchService dispatchService,
+                                          @Value("${gps.buffer-capacity:65536}") int capacity,
+                                          @Value("${gps.flush-batch:16384}") int flushBatch) {
+        if (flushBatch <= 0) {
+            throw new IllegalArgumentException("gps.flush-batch debe ser positivo");
+        }
+        this.dealerRepository = dealerRepository;
+        this.historyService = historyService;
+        this.dispatchService = dispatchService;
+        this.buffer = new PositionRingBuffer(capacity);
+        this.flushBatch = flushBatch;
+        this.batchDealerIds = new int[flushBatch];
+        this.batchLongitudes = new double[flushBatch];
+        this.batchLatitudes = new double[flushBatch];
+        this.batchTimes = new long[flushBatch];
+    }
+
+    /**
+     * Encola un lote de posiciones en formato JSON compacto.
+     * @param pings Posiciones como [dealerId, longitud, latitud] o [dealerId, longitud, latitud, fechaEnMilisegundos]
+     * @return Cantidad de posiciones aceptadas, rechazadas y descartadas
+     */
+    public PositionIngestResultDTO ingest(double[][] pings) {
+        long now = System.currentTimeMillis();
+        int ok = 0, rejected = 0, full = 0;
+        for (double[] ping : pings) {
+            if (ping == null || ping.length < 3 || ping.length > 4 || ping[0] != (int) ping[0]) {
+                rejected++;
+                continue;
+            }
+            long time = ping.length == 4 ? (long) ping[3] : 0;
+            switch (offer((int) ping[0], ping[1], ping[2], time, now)) {
+                case 0 -> ok++;
+                case 1 -> rejected++;
+                default -> full++;
+            }
+        }
+        return result(ok, rejected, full);
+    }
+
+    /**
+     * Encola un lote de posiciones en formato binario: registros consecutivos de BINARY_RECORD_BYTES bytes en
+     * orden big-endian con el id del repartidor (int), la longitud y la latitud (double) y la fecha en milisegundos
+     * desde la época (long, 0 para usar la hora de recepción).
+     * @param payload Contenido de la petición
+     * @return Cantidad de posiciones aceptadas, rechazadas y descartadas
+     * @throws IllegalArgumentException si el largo no es múltiplo del tamaño de registro
+     */
+    public PositionIngestResultDTO ingest(byte[] payload) {
+        if (payload.length % BINARY_RECORD_BYTES != 0) {
+            throw new IllegalArgumentException("El lote debe tener registros de " + BINARY_RECORD_BYTES + " bytes");
+        }
+        long now = System.currentTimeMillis();
+        ByteBuffer data = ByteBuffer.wrap(payload);
+        int ok = 0, rejected = 0, full = 0;
+        try {
+            while (data.hasRemaining()) {
+                switch (offer(data.getInt(), data.getDouble(), data.getDouble(), data.getLong(), now)) {
+                    case 0 -> ok++;
+                    case 1 -> rejected++;
+                    default -> full++;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Registro de posición incompleto", e);
+        }
+        return result(ok, rejected, full);
+    }
+
+    /**
+     * Valida y encola una posición.
+     * @return 0 si se aceptó, 1 si es inválida, 2 si el buffer está lleno
+     */
+    private int offer(int dealerId, double longitude, double latitude, long epochMillis, long now) {
+        if (dealerId <= 0 || !(longitude >= -180 && longitude <= 180 && latitude >= -90 && latitude <= 90)) {
+            return 1;
+        }
+        // Fechas ausentes o futuras se reemplazan por la hora de recepción
+        long time = epochMillis > 0 && epochMillis <= now ? epochMillis : now;
+        return buffer.offer(dealerId, longitude, latitude, time) ? 0 : 2;
+    }
+
+    private PositionIngestResultDTO result(int ok, int rejected, int full) {
+        accepted.add(ok);
+        dropped.add(full);
+        return new PositionIngestResultDTO(ok, rejected, full);
+    }
+
+    /**
+     * Vacía el buffer periódicamente, lote a lote, mientras los lotes vengan llenos.
+     */
+    @Scheduled(fixedDelayString = "${gps.flush-ms:500}")
+    public void scheduledFlush() {
+        try {
+            while (flush() == flushBatch) {
+                // seguir mientras haya atraso
+            }
+        } catch (Exception e) {
+            System.err.println("Error al escribir posiciones de repartidores: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe un lote de posiciones del buffer.
+     * @return Cantidad de posiciones escritas
+     */
+    public synchronized int flush() {
+        int[] size = {0};
+        buffer.drain((dealerId, longitude, latitude, epochMillis) -> {
+            int i = size[0]++;
+            batchDealerIds[i] = dealerId;
+            batchLongitudes[i] = longitude;
+            batchLatitudes[i] = latitude;
+            batchTimes[i] = epochMillis;
+        }, flushBatch);
+        int count = size[0];
+        if (count == 0) {
+            return 0;
+        }
+
+        // Última posición de cada repartidor e historial agrupado por repartidor
+        Map<Integer, Integer> latest = new HashMap<>();
+        Map<Integer, List<LocationHistory>> history = new LinkedHashMap<>();
+        ZoneId zone = ZoneId.systemDefault();
+        for (int i = 0; i < count; i++) {
+            int dealerId = batchDealerIds[i];
+            Integer previous = latest.get(dealerId);
+            if (previous == null || batchTimes[i] >= batchTimes[previous]) {
+                latest.put(dealerId, i);
+            }
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(batchTimes[i]), zone);
+            history.computeIfAbsent(dealerId, id -> new ArrayList<>())
+                    .add(LocationHistory.of(new GeoJsonPoint(batchLongitudes[i], batchLatitudes[i]), timestamp, null));
+        }
+
+        Integer[] ids = new Integer[latest.size()];
+        Double[] longitudes = new Double[ids.length];
+        Double[] latitudes = new Double[ids.length];
+        int n = 0;
+        for (Map.Entry<Integer, Integer> entry : latest.entrySet()) {
+            int i = entry.getValue();
+            ids[n] = entry.getKey();
+            longitudes[n] = batchLongitudes[i];
+            latitudes[n] = batchLatitudes[i];
+            n++;
+        }
+
+        // Solo los ids que existen en dealers pasan al índice de despacho y al historial
+        Set<Integer> known;
+        try {
+            known = new HashSet<>(dealerRepository.updatePositions(ids, longitudes, latitudes));
+        } catch (Exception e) {
+            System.err.println("Error al actualizar la ubicación de " + ids.length + " repartidores: " + e.getMessage());
+            return count;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (known.contains(ids[i])) {
+                dispatchService.updateDealerPosition(ids[i], longitudes[i], latitudes[i]);
+            }
+        }
+        if (known.size() < ids.length) {
+            history.keySet().removeIf(dealerId -> !known.contains(dealerId));
+            unknownDealers.add(ids.length - known.size());
+        }
+
+        for (List<LocationHistory> points : history.values()) {
+            if (points.size() > 1) {
+                points.sort((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()));
+            }
+        }
+        try {
+            historyService.recordLocations(history);
+        } catch (Exception e) {
+            System.err.println("Error al registrar " + count + " posiciones en el historial: " + e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * Métricas de la recepción.
+     * @return Posiciones aceptadas y descartadas desde el inicio, repartidores inexistentes ignorados y posiciones en espera
+     */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("accepted", accepted.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("unknownDealers", unknownDealers.sum());
+        metrics.put("pending", (long) buffer.size());
+        metrics.put("capacity", (long) buffer.capacity());
+        return metrics;
+    }
+}
@@ -1,5 +1,6 @@
 package bdavanzadas.lab1.services;
 
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import bdavanzadas.lab1.dtos.DealerWithDistanceDTO;
 import bdavanzadas.lab1.entities.ClientEntity;
 import bdavanzadas.lab1.repositories.OrdersRepository;
@@ -14,7 +15,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 /**
@@ -44,6 +46,20 @@ public class DealerService {
     private UserService userService;
 
 
+    /**
+     * Resolutor del dealer asociado al usuario autenticado.
+     */
+    @Autowired
+    private ProfileIdResolver profileIdResolver;
+
+
+    /**
+     * Servicio de despacho; su índice de repartidores se recarga cuando cambian los dealers.
+     */
+    @Autowired
+    private DispatchService dispatchService;
+
+
     /**
      * Metodo para obtener todos los dealers de la base de datos.
      * @return Una lista de dealers.
@@ -53,6 +69,29 @@ public class DealerService {
         return dealerRepository.findAll();
     }
 
+    /**
+     * Obtiene una página de dealers ordenada por id (paginación por cursor).
+     * @param afterId Id del último registro de la página anterior (0 para la primera página).
+     * @param limit Cantidad máxima de registros.
+     * @return Una lista de dealers.
+     */
+    @Transactional(readOnly = true)
+    public List<DealerEntity> getDealersPage(int afterId, int limit) {
+        return dealerRepository.findPage(afterId, limit);
+    }
+
+    /**
+     * Recorre todos los dealers con un cursor de la base de datos, entregándolos uno a uno.
+     * La transacción se mantiene abierta mientras dura el recorrido.
+     * @param action Acción a ejecutar por cada registro.
+     */
+    @Transactional(readOnly = true)
+    public void forEachDealer(Consumer<DealerEntity> action) {
+        try (Stream<DealerEntity> rows = dealerRepository.streamAll()) {
+            rows.forEach(action);
+        }
+    }
+
     /**
      * Metodo para buscar un dealer por su id.
      * @param "id" El id del dealer a buscar.
@@ -75,6 +114,7 @@ public class DealerService {
         // Validar la ubicación antes de guardar
         validateUbicacion(dealer.getUbication());
         dealerRepository.save(dealer);
+        dispatchService.refresh();
     }
 
     /**
@@ -88,6 +128,7 @@ public class DealerService {
         // Validar la ubicación antes de actualizar
         validateUbicacion(dealer.getUbication());
         dealerRepository.update(dealer);
+        dispatchService.refresh();
     }
 
     /**
@@ -99,6 +140,8 @@ public class DealerService {
     @Transactional
     public void deleteDealer(int id) {
         dealerRepository.delete(id);
+        profileIdResolver.evictDealer(id);
+        dispatchService.refresh();
     }
 
 
@@ -114,18 +157,10 @@ public class DealerService {
         return dealerRepository.findDealerNameById(dealerId);
     }
 
-    // Patrón para validar WKT (ej: "POINT(-70.123 -33.456)")
-    private static final Pattern WKT_PATTERN = Pattern.compile(
-            "^POINT\\(-?\\d+\\.?\\d* -?\\d+\\.?\\d*\\)$"
-    );
-
     // --- Método de validación adicional ---
     private void validateUbicacion(String ubicacion) {
-        if (ubicacion == null || !WKT_PATTERN.matcher(ubicacion).matches()) {
-            throw new IllegalArgumentException(
-                    "Formato WKT inválido. Debe ser 'POINT(longitud latitud)'."
-            );
-        }
+        // Lanza IllegalArgumentException si no es 'POINT(longitud latitud)'
+        GeometryCodec.parsePoint(ubicacion);
     }
 
 
@@ -155,9 +190,9 @@ public class DealerService {
      */
     @Transactional(readOnly = true)
     public Double getAverageDeliveryTimeByAuthenticatedDealer() {
-        // Obtener el ID del usuario autenticado
-        Long userId = userService.getAuthenticatedUserId();
-        return dealerRepository.getAverageDeliveryTimeByAuthenticatedDealer(userId);
+        // Obtener el ID del dealer autenticado
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
+        return dealerRepository.getAverageDeliveryTimeByAuthenticatedDealer(dealerId);
     }
 
     /**
@@ -166,9 +201,9 @@ public class DealerService {
      */
     @Transactional(readOnly = true)
     public Integer getDeliveryCountByAuthenticatedDealer() {
-        // Obtener el ID del usuario autenticado
-        Long userId = userService.getAuthenticatedUserId();
-        return dealerRepository.getDeliveryCountByAuthenticatedDealer(userId);
+        // Obtener el ID del dealer autenticado
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
+        return dealerRepository.getDeliveryCountByAuthenticatedDealer(dealerId);
     }
 
     /**
@@ -0,0 +1,547 @@
+package bdavanzadas.lab1.services;
+
+import bdavanzadas.lab1.dtos.DealerPositionDTO;
+import bdavanzadas.lab1.dtos.DispatchAssignmentDTO;
+import bdavanzadas.lab1.dtos.DispatchReportDTO;
+import bdavanzadas.lab1.dtos.PendingOrderDTO;
+import bdavanzadas.lab1.repositories.DealerRepository;
+import bdavanzadas.lab1.repositories.OrdersRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+
+/**
+ * Despacho automático de pedidos al repartidor libre más cercano.
+ * Mantiene en memoria un índice de grilla con la posición de los repartidores y cuáles tienen un pedido EN PROCESO,
+ * de modo que la búsqueda del repartidor libre más cercano no consulta la base de datos.
+ * Cuando llegan muchos pedidos a la vez se despachan en olas: se calculan los candidatos más cercanos de cada pedido
+ * y se asignan de forma voraz por distancia creciente, los urgentes primero.
+ * La asignación en la base de datos es condicional y bloquea antes la fila del repartidor, así que ni una posición
+ * desactualizada ni una asignación concurrente (otra ola, un despacho individual o el propio repartidor) producen una doble asignación.
+ */
+@Service
+public class DispatchService {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180.0;
+
+    private final OrdersRepository ordersRepository;
+
+    private final DealerRepository dealerRepository;
+
+    private final OrderEventService orderEventService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Tamaño de las celdas de la grilla en grados.
+     */
+    private final double cellDegrees;
+
+    /**
+     * Cantidad de repartidores candidatos por pedido en cada ronda de una ola.
+     */
+    private final int candidates;
+
+    /**
+     * Cantidad máxima de pedidos pendientes considerados por ola.
+     */
+    private final int waveSize;
+
+    /**
+     * Si es true, los pedidos pendientes se despachan periódicamente sin intervención.
+     */
+    private final boolean autoAssign;
+
+    /**
+     * Si es true, el despacho automático lo hace TripBatchingService con viajes de varias paradas.
+     */
+    private final boolean batching;
+
+    /**
+     * Índice vigente (null si debe cargarse desde la base de datos).
+     */
+    private DealerGrid grid;
+
+    private final Object lock = new Object();
+
+    private final Object waveLock = new Object();
+
+    /**
+     * Constructor que inyecta los repositorios y la configuración del despacho.
+     * @param ordersRepository Repositorio de pedidos
+     * @param dealerRepository Repositorio de repartidores
+     * @param orderEventService Servicio de eventos de pedidos, que avisa las asignaciones
+     * @param transactionManager Administrador de transacciones de PostgreSQL
+     * @param cellDegrees Tamaño de las celdas de la grilla en grados
+     * @param candidates Repartidores candidatos por pedido en cada ronda
+     * @param waveSize Pedidos pendientes por ola
+     * @param autoAssign Si se despachan automáticamente los pedidos pendientes
+     * @param batching Si el despacho automático arma viajes con varias paradas
+     */
+    public DispatchService(OrdersRepository ordersRepository,
+                           DealerRepository dealerRepository,
+                           OrderEventService orderEventService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${dispatch.cell-degrees:0.01}") double cellDegrees,
+                           @Value("${dispatch.candidates:8}") int candidates,
+                           @Value("${dispatch.wave-size:1000}") int waveSize,
+                           @Value("${dispatch.auto-assign:false}") boolean autoAssign,
+                           @Value("${dispatch.batching.enabled:false}") boolean batching) {
+        if (cellDegrees <= 0 || candidates < 1 || waveSize < 1) {
+            throw new IllegalArgumentException("Configuración de despacho inválida");
+        }
+        this.ordersRepository = ordersRepository;
+        this.dealerRepository = dealerRepository;
+        this.orderEventService = orderEventService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cellDegrees = cellDegrees;
+        this.candidates = candidates;
+        this.waveSize = waveSize;
+        this.autoAssign = autoAssign;
+        this.batching = batching;
+    }
+
+    /**
+     * Busca el repartidor libre más cercano a un punto usando el índice en memoria.
+     * @param longitude Longitud del punto
+     * @param latitude Latitud del punto
+     * @return El repartidor y su distancia en metros al punto, o null si no hay repartidores libres
+     */
+    public DispatchAssignmentDTO findNearestIdleDealer(double longitude, double latitude) {
+        synchronized (lock) {
+            List<Neighbor> nearest = current().nearest(longitude, latitude, 1);
+            if (nearest.isEmpty()) {
+                return null;
+            }
+            return new DispatchAssignmentDTO(0, nearest.get(0).dealerId, nearest.get(0).distanceMeters);
+        }
+    }
+
+    /**
+     * Obtiene la cantidad de repartidores libres según el índice.
+     * @return Repartidores libres
+     */
+    public int getIdleDealerCount() {
+        synchronized (lock) {
+            return current().idleCount();
+        }
+    }
+
+    /**
+     * Obtiene la posición de un repartidor según el índice.
+     * @param dealerId ID del repartidor
+     * @return {longitud, latitud}, o null si el repartidor no tiene ubicación
+     */
+    public double[] getDealerPosition(int dealerId) {
+        synchronized (lock) {
+            double[] position = current().positions.get(dealerId);
+            return position == null ? null : position.clone();
+        }
+    }
+
+    /**
+     * Asigna un pedido pendiente al repartidor libre más cercano a su punto de retiro.
+     * Si la asignación condicional falla porque el repartidor ya estaba ocupado, se marca como ocupado y se prueba con el siguiente.
+     * @param orderId ID del pedido
+     * @return La asignación realizada, o null si no hay repartidores libres o el pedido fue tomado por otro repartidor
+     */
+    public DispatchAssignmentDTO dispatchOrder(int orderId) {
+        PendingOrderDTO order = ordersRepository.findPendingOrder(orderId);
+        if (order == null) {
+            throw new IllegalArgumentException("El pedido " + orderId + " no existe o ya tiene repartidor asignado");
+        }
+        while (true) {
+            DispatchAssignmentDTO nearest = findNearestIdleDealer(order.getLongitude(), order.getLatitude());
+            if (nearest == null) {
+                return null;
+            }
+            Outcome outcome = tryAssign(orderId, nearest.getDealerId());
+            if (outcome == Outcome.ASSIGNED) {
+                nearest.setOrderId(orderId);
+                return nearest;
+            }
+            if (outcome == Outcome.ORDER_TAKEN) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Despacha en una ola los pedidos pendientes sin repartidor.
+     * En cada ronda se obtienen los repartidores libres más cercanos de cada pedido y los pares se recorren de menor a mayor
+     * distancia (urgentes primero), asignando cada pedido y cada repartidor una sola vez. Los pedidos cuyos candidatos
+     * fueron tomados por otros pasan a la ronda siguiente, hasta que no queden pedidos o repartidores libres.
+     * @return Resumen de la ola
+     */
+    public DispatchReportDTO dispatchPending() {
+        synchronized (waveLock) {
+            long start = System.currentTimeMillis();
+            List<PendingOrderDTO> remaining = new ArrayList<>(ordersRepository.findPendingOrders(waveSize));
+            int pendingOrders = remaining.size();
+            int idleDealers;
+            synchronized (lock) {
+                idleDealers = current().idleCount();
+            }
+
+            List<DispatchAssignmentDTO> assignments = new ArrayList<>();
+            while (!remaining.isEmpty()) {
+                List<Candidate> pairs = new ArrayList<>();
+                synchronized (lock) {
+                    DealerGrid current = current();
+                    for (PendingOrderDTO order : remaining) {
+                        for (Neighbor neighbor : current.nearest(order.getLongitude(), order.getLatitude(), candidates)) {
+                            pairs.add(new Candidate(order, neighbor.dealerId, neighbor.distanceMeters));
+                        }
+                    }
+                }
+                if (pairs.isEmpty()) {
+                    break;
+                }
+                pairs.sort(Comparator.comparing((Candidate c) -> !c.order.isUrgent())
+                        .thenComparingDouble(c -> c.distanceMeters));
+
+                Set<Integer> closedOrders = new HashSet<>();
+                Set<Integer> usedDealers = new HashSet<>();
+                for (Candidate pair : pairs) {
+                    int orderId = pair.order.getOrderId();
+                    if (closedOrders.contains(orderId) || usedDealers.contains(pair.dealerId)) {
+                        continue;
+                    }
+                    usedDealers.add(pair.dealerId);
+                    Outcome outcome = tryAssign(orderId, pair.dealerId);
+                    if (outcome == Outcome.ASSIGNED) {
+                        closedOrders.add(orderId);
+                        assignments.add(new DispatchAssignmentDTO(orderId, pair.dealerId, pair.distanceMeters));
+                    } else if (outcome == Outcome.ORDER_TAKEN) {
+                        closedOrders.add(orderId);
+                    }
+                }
+                remaining.removeIf(order -> closedOrders.contains(order.getOrderId()));
+            }
+
+            return new DispatchReportDTO(pendingOrders, idleDealers, assignments, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Despacha periódicamente los pedidos pendientes si dispatch.auto-assign está activo y no se arman viajes.
+     */
+    @Scheduled(fixedDelayString = "${dispatch.wave.delay-ms:2000}")
+    public void scheduledWave() {
+        if (!autoAssign || batching) {
+            return;
+        }
+        try {
+            DispatchReportDTO report = dispatchPending();
+            if (!report.getAssignments().isEmpty()) {
+                System.out.println("Despacho automático: " + report.getAssignments().size() + " de "
+                        + report.getPendingOrders() + " pedidos asignados en " + report.getElapsedMillis() + " ms");
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Error en el despacho automático de pedidos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Vuelve a cargar periódicamente el índice para recoger cambios hechos fuera de la aplicación.
+     */
+    @Scheduled(fixedDelayString = "${dispatch.resync-ms:60000}")
+    public void resync() {
+        synchronized (lock) {
+            grid = null;
+        }
+    }
+
+    /**
+     * Marca el índice para ser recargado en la próxima consulta (por ejemplo, al crear o eliminar repartidores).
+     * Si hay una transacción activa, se invalida de nuevo al confirmarla.
+     */
+    public void refresh() {
+        resync();
+        TransactionHooks.afterCommit(this::resync);
+    }
+
+    /**
+     * Registra que un repartidor tomó un pedido; se aplica al confirmar la transacción actual.
+     * @param dealerId ID del repartidor
+     */
+    public void dealerBusy(int dealerId) {
+        TransactionHooks.afterCommit(() -> setBusy(dealerId, true));
+    }
+
+    /**
+     * Registra que un repartidor terminó un pedido; se aplica al confirmar la transacción actual.
+     * El repartidor queda libre solo si no le quedan otros pedidos EN PROCESO (por ejemplo, de un viaje con varias paradas).
+     * @param dealerId ID del repartidor
+     */
+    public void dealerReleased(int dealerId) {
+        TransactionHooks.afterCommit(() -> setBusy(dealerId, ordersRepository.findActiveOrderByDealerId(dealerId) != null));
+    }
+
+    /**
+     * Actualiza la posición de un repartidor en el índice.
+     * @param dealerId ID del repartidor
+     * @param longitude Longitud
+     * @param latitude Latitud
+     */
+    public void updateDealerPosition(int dealerId, double longitude, double latitude) {
+        synchronized (lock) {
+            if (grid != null) {
+                grid.put(dealerId, longitude, latitude);
+            }
+        }
+    }
+
+    /**
+     * Intenta la asignación condicional en la base de datos y actualiza el índice según el resultado.
+     * La asignación corre en su propia transacción (o en la del llamador) para que el bloqueo del repartidor
+     * dure hasta que se confirme.
+     */
+    private Outcome tryAssign(int orderId, int dealerId) {
+        Boolean assigned = transactionTemplate.execute(status -> {
+            if (!ordersRepository.assignOrderIfAvailable(orderId, dealerId)) {
+                return false;
+            }
+            orderEventService.publish(orderId);
+            return true;
+        });
+        if (Boolean.TRUE.equals(assigned)) {
+            setBusy(dealerId, true);
+            return Outcome.ASSIGNED;
+        }
+        if (ordersRepository.findPendingOrder(orderId) == null) {
+            return Outcome.ORDER_TAKEN;
+        }
+        // El pedido sigue pendiente: el repartidor ya tenía otro pedido EN PROCESO y el índice estaba atrasado
+        setBusy(dealerId, true);
+        return Outcome.DEALER_BUSY;
+    }
+
+    private void setBusy(int dealerId, boolean busy) {
+        synchronized (lock) {
+            if (grid != null) {
+                grid.setBusy(dealerId, busy);
+            }
+        }
+    }
+
+    private DealerGrid current() {
+        if (grid == null) {
+            long start = System.currentTimeMillis();
+            DealerGrid loaded = new DealerGrid(cellDegrees);
+            for (DealerPositionDTO position : dealerRepository.findPositions()) {
+                loaded.setBusy(position.getDealerId(), position.isBusy());
+                loaded.put(position.getDealerId(), position.getLongitude(), position.getLatitude());
+            }
+            grid = loaded;
+            System.out.println("Índice de despacho cargado: " + loaded.positions.size() + " repartidores ("
+                    + loaded.idleCount() + " libres) en " + (System.currentTimeMillis() - start) + " ms");
+        }
+        return grid;
+    }
+
+    private static double distanceMeters(double lon1, double lat1, double lon2, double lat2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private enum Outcome { ASSIGNED, ORDER_TAKEN, DEALER_BUSY }
+
+    private static final class Neighbor {
+        private final int dealerId;
+        private final double distanceMeters;
+
+        private Neighbor(int dealerId, double distanceMeters) {
+            this.dealerId = dealerId;
+            this.distanceMeters = distanceMeters;
+        }
+    }
+
+    private static final class Candidate {
+        private final PendingOrderDTO order;
+        private final int dealerId;
+        private final double distanceMeters;
+
+        private Candidate(PendingOrderDTO order, int dealerId, double distanceMeters) {
+            this.order = order;
+            this.dealerId = dealerId;
+            this.distanceMeters = distanceMeters;
+        }
+    }
+
+    /**
+     * Grilla regular de celdas en grados con los repartidores libres de cada celda.
+     * La búsqueda recorre anillos de celdas alrededor del punto hasta que ninguna celda restante puede tener un repartidor
+     * más cercano que los ya encontrados; si los anillos crecen más que la cantidad de repartidores libres, se recorren directamente.
+     */
+    private static final class DealerGrid {
+        private final double cellDegrees;
+        private final Map<Integer, double[]> positions = new HashMap<>();
+        private final Set<Integer> busy = new HashSet<>();
+        private final Map<Long, List<Integer>> idleCells = new HashMap<>();
+        private int idle;
+        private int minX = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE;
+        private int minY = Integer.MAX_VALUE;
+        private int maxY = Integer.MIN_VALUE;
+
+        private DealerGrid(double cellDegrees) {
+            this.cellDegrees = cellDegrees;
+        }
+
+        private int idleCount() {
+            return idle;
+        }
+
+        private void put(int dealerId, double longitude, double latitude) {
+            double[] previous = positions.put(dealerId, new double[]{longitude, latitude});
+            if (!busy.contains(dealerId)) {
+                if (previous != null) {
+                    removeIdle(dealerId, previous);
+                }
+                addIdle(dealerId, new double[]{longitude, latitude});
+            }
+        }
+
+        private void setBusy(int dealerId, boolean isBusy) {
+            boolean changed = isBusy ? busy.add(dealerId) : busy.remove(dealerId);
+            double[] position = positions.get(dealerId);
+            if (!changed || position == null) {
+                return;
+            }
+            if (isBusy) {
+                removeIdle(dealerId, position);
+            } else {
+                addIdle(dealerId, position);
+            }
+        }
+
+        private void addIdle(int dealerId, double[] position) {
+            int x = cellX(position[0]);
+            int y = cellY(position[1]);
+            idleCells.computeIfAbsent(key(x, y), k -> new ArrayList<>()).add(dealerId);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+            idle++;
+        }
+
+        private void removeIdle(int dealerId, double[] position) {
+            long key = key(cellX(position[0]), cellY(position[1]));
+            List<Integer> cell = idleCells.get(key);
+            if (cell != null && cell.remove(Integer.valueOf(dealerId))) {
+                idle--;
+                if (cell.isEmpty()) {
+                    idleCells.remove(key);
+                }
+            }
+        }
+
+        /**
+         * Obtiene los k repartidores libres más cercanos a un punto, ordenados por distancia.
+         */
+        private List<Neighbor> nearest(double longitude, double latitude, int k) {
+            PriorityQueue<Neighbor> best = new PriorityQueue<>(k + 1,
+                    Comparator.comparingDouble((Neighbor n) -> n.distanceMeters).reversed());
+            if (idle > 0) {
+                int cx = cellX(longitude);
+                int cy = cellY(latitude);
+                int maxRing = Math.max(Math.max(cx - minX, maxX - cx), Math.max(cy - minY, maxY - cy));
+                for (int ring = 0; ring <= maxRing; ring++) {
+                    if (best.size() == k && ringLowerBound(ring, latitude) > best.peek().distanceMeters) {
+                        break;
+                    }
+                    if (8L * ring > idle) {
+                        // Quedan más celdas por revisar que repartidores libres: conviene recorrerlos todos
+                        best.clear();
+                        for (List<Integer> cell : idleCells.values()) {
+                            offerAll(cell, longitude, latitude, k, best);
+                        }
+                        break;
+                    }
+                    visitRing(cx, cy, ring, longitude, latitude, k, best);
+                }
+            }
+            List<Neighbor> result = new ArrayList<>(best);
+            result.sort(Comparator.comparingDouble(n -> n.distanceMeters));
+            return result;
+        }
+
+        private void visitRing(int cx, int cy, int ring, double longitude, double latitude, int k, PriorityQueue<Neighbor> best) {
+            if (ring == 0) {
+                offerCell(cx, cy, longitude, latitude, k, best);
+                return;
+            }
+            for (int x = cx - ring; x <= cx + ring; x++) {
+                offerCell(x, cy - ring, longitude, latitude, k, best);
+                offerCell(x, cy + ring, longitude, latitude, k, best);
+            }
+            for (int y = cy - ring + 1; y <= cy + ring - 1; y++) {
+                offerCell(cx - ring, y, longitude, latitude, k, best);
+                offerCell(cx + ring, y, longitude, latitude, k, best);
+            }
+        }
+
+        private void offerCell(int x, int y, double longitude, double latitude, int k, PriorityQueue<Neighbor> best) {
+            List<Integer> cell = idleCells.get(key(x, y));
+            if (cell != null) {
+                offerAll(cell, longitude, latitude, k, best);
+            }
+        }
+
+        private void offerAll(List<Integer> dealerIds, double longitude, double latitude, int k, PriorityQueue<Neighbor> best) {
+            for (Integer dealerId : dealerIds) {
+                double[] position = positions.get(dealerId);
+                double distance = distanceMeters(longitude, latitude, position[0], position[1]);
+                if (best.size() < k) {
+                    best.add(new Neighbor(dealerId, distance));
+                } else if (distance < best.peek().distanceMeters) {
+                    best.poll();
+                    best.add(new Neighbor(dealerId, distance));
+                }
+            }
+        }
+
+        /**
+         * Distancia mínima en metros desde el punto a cualquier celda del anillo indicado.
+         * Se usa el largo de un grado de longitud en la latitud más alejada del ecuador que alcanza el anillo, que es el menor.
+         */
+        private double ringLowerBound(int ring, double latitude) {
+            if (ring <= 1) {
+                return 0;
+            }
+            double farthestLatitude = Math.min(89.0, Math.abs(latitude) + ring * cellDegrees);
+            return (ring - 1) * cellDegrees * METERS_PER_DEGREE * Math.cos(Math.toRadians(farthestLatitude));
+        }
+
+        private int cellX(double longitude) {
+            return (int) Math.floor(longitude / cellDegrees);
+        }
+
+        private int cellY(double latitude) {
+            return (int) Math.floor(latitude / cellDegrees);
+        }
+
+        private static long key(int x, int y) {
+            return ((long) x << 32) | (y & 0xffffffffL);
+        }
+    }
+}
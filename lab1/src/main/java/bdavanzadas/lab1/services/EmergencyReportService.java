@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import bdavanzadas.lab1.entities.EmergencyReportEntity;
 import bdavanzadas.lab1.repositories.EmergencyReportRepository;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -110,10 +111,11 @@ public class EmergencyReportService {
      * @return true si es válido, false en caso contrario
      */
     private boolean isValidWktPoint(String wkt) {
-        if (wkt == null || wkt.isEmpty()) {
+        try {
+            GeometryCodec.parsePoint(wkt);
+            return true;
+        } catch (IllegalArgumentException e) {
             return false;
         }
-        // Validación simple del formato POINT
-        return wkt.matches("^POINT\\([-+]?\\d+\\.?\\d*\\s[-+]?\\d+\\.?\\d*\\)$");
     }
 }
\ No newline at end of file
@@ -1,268 +1,1192 @@
 package bdavanzadas.lab1.services;
 
-import bdavanzadas.lab1.documentRepositories.*;
+import bdavanzadas.lab1.documentRepositories.MigrationStateDocumentRepository;
 import bdavanzadas.lab1.documents.*;
+import bdavanzadas.lab1.dtos.MigrationReportDTO;
+import bdavanzadas.lab1.dtos.ReconciliationReportDTO;
 import bdavanzadas.lab1.entities.*;
 import bdavanzadas.lab1.mappers.*;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Servicio para migrar datos de entidades de PostgreSQL a documentos de MongoDB.
- * Proporciona métodos para migrar diferentes tipos de entidades, asegurando
- * la integridad de los datos y evitando duplicados.
+ * Las filas se leen en streaming desde PostgreSQL con un cursor (fetch size), se agrupan en bloques
+ * y cada bloque se escribe con una única operación bulk no ordenada que hace upsert por el id natural
+ * del documento (orderId, clientId, ...), por lo que no se consulta la existencia de cada fila.
+ * Cada tabla se divide en rangos de id que se migran en paralelo sobre un pool de hilos acotado, y cada
+ * entidad guarda un punto de control en la colección migration_state para que las siguientes ejecuciones
+ * solo lean filas nuevas o modificadas.
+ * Las columnas geometry se leen sin ST_AsText (EWKB en hexadecimal) y GeometryCodec las decodifica directamente.
  */
 @Service
 public class MigrationService {
 
-    private final ClientDocumentRepository clientDocumentRepository;
-    private final DealerDocumentRepository dealerDocumentRepository;
-    private final CompanyDocumentRepository companyDocumentRepository;
     private final CompanyService companyService;
-    private final CoverageAreaDocumentRepository coverageAreaDocumentRepository;
-    private final EmergencyReportDocumentRepository emergencyReportDocumentRepository;
-    private final OrderDetailDocumentRepository orderDetailDocumentRepository;
-    private final OrderDocumentRepository orderDocumentRepository;
     private final OrdersService ordersService;
-    private final PaymentMethodDocumentRepository paymentMethodDocumentRepository;
-    private final ProductDocumentRepository productDocumentRepository;
-    private final RatingDocumentRepository ratingDocumentRepository;
-    private final UserDocumentRepository userDocumentRepository;
+    private final MongoTemplate mongoTemplate;
+    private final Environment environment;
+    private final MigrationStateDocumentRepository migrationStateRepository;
+
+    /**
+     * Margen que se resta al watermark para no perder filas de transacciones que confirmaron
+     * después de iniciada la ejecución; releer esas filas es inofensivo porque la escritura es un upsert.
+     */
+    private static final Duration WATERMARK_OVERLAP = Duration.ofMinutes(1);
+
+    /**
+     * Cantidad máxima de ids que se incluyen como muestra en cada lista del reporte de reconciliación.
+     */
+    private static final int RECONCILIATION_SAMPLE_SIZE = 100;
+
+    /**
+     * Entidades que se pueden migrar o reconciliar, en orden de dependencias.
+     */
+    private static final List<String> ENTITIES = List.of(
+            "users", "payment_methods", "coverage_areas", "companies", "clients", "dealers",
+            "products", "orders", "order_details", "ratings", "emergency_reports");
+
+    /**
+     * JdbcTemplate dedicado a la migración, configurado con fetch size para que PostgreSQL
+     * entregue las filas por cursor en lugar de cargar la tabla completa en memoria.
+     */
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    /**
+     * Transacción de solo lectura necesaria para que el driver de PostgreSQL use cursores.
+     */
+    private final TransactionTemplate readOnlyTransaction;
+
+    /**
+     * Cantidad de filas que se mapean y escriben en MongoDB por cada operación bulk.
+     */
+    private final int chunkSize;
+
+    /**
+     * Cantidad de rangos de id en que se divide cada tabla cuando no tiene una concurrencia propia.
+     */
+    private final int defaultConcurrency;
+
+    /**
+     * Pool acotado que ejecuta las particiones de todas las migraciones.
+     */
+    private final ExecutorService executor;
 
     /**
      * Constructor que inyecta todas las dependencias necesarias.
-     * @param clientDocumentRepository Repositorio de clientes en MongoDB
-     * @param dealerDocumentRepository Repositorio de repartidores en MongoDB
+     * @param dataSource Fuente de datos de PostgreSQL
+     * @param transactionManager Administrador de transacciones de PostgreSQL
+     * @param mongoTemplate Plantilla de MongoDB usada para las escrituras bulk
+     * @param environment Entorno de Spring, para leer la concurrencia de cada entidad
+     * @param migrationStateRepository Repositorio de puntos de control de la migración
      * @param companyService Servicio de compañías
-     * @param companyDocumentRepository Repositorio de compañías en MongoDB
-     * @param coverageAreaDocumentRepository Repositorio de áreas de cobertura en MongoDB
-     * @param emergencyReportDocumentRepository Repositorio de reportes de emergencia en MongoDB
-     * @param orderDetailDocumentRepository Repositorio de detalles de pedido en MongoDB
-     * @param orderDocumentRepository Repositorio de pedidos en MongoDB
      * @param ordersService Servicio de pedidos
-     * @param paymentMethodDocumentRepository Repositorio de métodos de pago en MongoDB
-     * @param productDocumentRepository Repositorio de productos en MongoDB
-     * @param ratingDocumentRepository Repositorio de calificaciones en MongoDB
-     * @param userDocumentRepository Repositorio de usuarios en MongoDB
+     * @param fetchSize Cantidad de filas que PostgreSQL entrega por cada viaje del cursor
+     * @param chunkSize Cantidad de documentos por operación bulk
+     * @param threads Tamaño del pool de migración (0 usa la cantidad de núcleos)
+     * @param defaultConcurrency Particiones por tabla cuando no se configura una propia
      */
-    public MigrationService(ClientDocumentRepository clientDocumentRepository,
-                            DealerDocumentRepository dealerDocumentRepository,
+    public MigrationService(DataSource dataSource,
+                            PlatformTransactionManager transactionManager,
+                            MongoTemplate mongoTemplate,
+                            Environment environment,
+                            MigrationStateDocumentRepository migrationStateRepository,
                             CompanyService companyService,
-                            CompanyDocumentRepository companyDocumentRepository,
-                            CoverageAreaDocumentRepository coverageAreaDocumentRepository,
-                            EmergencyReportDocumentRepository emergencyReportDocumentRepository,
-                            OrderDetailDocumentRepository orderDetailDocumentRepository,
-                            OrderDocumentRepository orderDocumentRepository,
                             OrdersService ordersService,
-                            PaymentMethodDocumentRepository paymentMethodDocumentRepository,
-                            ProductDocumentRepository productDocumentRepository,
-                            RatingDocumentRepository ratingDocumentRepository,
-                            UserDocumentRepository userDocumentRepository) {
-        this.clientDocumentRepository = clientDocumentRepository;
-        this.dealerDocumentRepository = dealerDocumentRepository;
+                            @Value("${migration.fetch-size:1000}") int fetchSize,
+                            @Value("${migration.chunk-size:1000}") int chunkSize,
+                            @Value("${migration.threads:0}") int threads,
+                            @Value("${migration.concurrency:4}") int defaultConcurrency) {
+        this.mongoTemplate = mongoTemplate;
+        this.environment = environment;
+        this.migrationStateRepository = migrationStateRepository;
         this.companyService = companyService;
-        this.companyDocumentRepository = companyDocumentRepository;
-        this.coverageAreaDocumentRepository = coverageAreaDocumentRepository;
-        this.emergencyReportDocumentRepository = emergencyReportDocumentRepository;
-        this.orderDetailDocumentRepository = orderDetailDocumentRepository;
-        this.orderDocumentRepository = orderDocumentRepository;
         this.ordersService = ordersService;
-        this.paymentMethodDocumentRepository = paymentMethodDocumentRepository;
-        this.productDocumentRepository = productDocumentRepository;
-        this.ratingDocumentRepository = ratingDocumentRepository;
-        this.userDocumentRepository = userDocumentRepository;
+        this.chunkSize = chunkSize;
+        this.defaultConcurrency = defaultConcurrency;
+
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "migration-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
-     * Migra un cliente de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de cliente desde PostgreSQL
+     * Migra todas las entidades de PostgreSQL a MongoDB.
+     * Las entidades se agrupan en etapas según sus dependencias (por ejemplo, compañías antes que productos
+     * y pedidos antes que sus detalles); dentro de cada etapa todas las entidades y sus rangos corren en paralelo.
+     * @return Un reporte por entidad con las filas migradas y el rendimiento
      */
-    public void migrateClientToMongo(ClientEntity entityFromPostgres) {
-        Integer clientId = entityFromPostgres.getId();
+    public List<MigrationReportDTO> migrateAll() {
+        List<List<EntityMigration<?, ?>>> stages = List.of(
+                List.of(usersMigration(), paymentMethodsMigration(), coverageAreasMigration(), companiesMigration()),
+                List.of(clientsMigration(), dealersMigration(), productsMigration()),
+                List.of(ordersMigration()),
+                List.of(orderDetailsMigration(), ratingsMigration(), emergencyReportsMigration())
+        );
 
-        if (clientDocumentRepository.existsByClientId(clientId)) {
-            System.out.println("Documento ya existe para clientId: " + clientId);
-            return;
+        List<MigrationReportDTO> reports = new ArrayList<>();
+        for (List<EntityMigration<?, ?>> stage : stages) {
+            reports.addAll(migrateInParallel(stage));
         }
+        return reports;
+    }
 
-        ClientDocument document = ClientMapper.fromClientEntity(entityFromPostgres);
-        clientDocumentRepository.save(document);
+    /**
+     * Migra los clientes de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migrateClients() {
+        return migrateInParallel(List.of(clientsMigration())).get(0);
     }
 
     /**
-     * Migra un repartidor de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de repartidor desde PostgreSQL
+     * Migra los repartidores de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
      */
-    public void migrateDealerToMongo(DealerEntity entityFromPostgres) {
-        Integer dealerId = entityFromPostgres.getId();
+    public MigrationReportDTO migrateDealers() {
+        return migrateInParallel(List.of(dealersMigration())).get(0);
+    }
 
-        if (dealerDocumentRepository.existsByDealerId(dealerId)) {
-            System.out.println("Documento ya existe para dealerId: " + dealerId);
-            return;
-        }
+    /**
+     * Migra las compañías de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migrateCompanies() {
+        return migrateInParallel(List.of(companiesMigration())).get(0);
+    }
 
-        DealerDocument document = DealerMapper.fromDealerEntity(entityFromPostgres);
-        dealerDocumentRepository.save(document);
+    /**
+     * Migra las áreas de cobertura de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migrateCoverageAreas() {
+        return migrateInParallel(List.of(coverageAreasMigration())).get(0);
     }
 
     /**
-     * Migra una compañía de PostgreSQL a MongoDB.
-     * @param company Entidad de compañía desde PostgreSQL
+     * Migra los reportes de emergencia de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
      */
-    public void migrateCompanyToMongo(CompanyEntity company) {
-        Integer companyId = company.getId();
+    public MigrationReportDTO migrateEmergencyReports() {
+        return migrateInParallel(List.of(emergencyReportsMigration())).get(0);
+    }
 
-        if (companyDocumentRepository.existsByCompanyId(companyId)) {
-            System.out.println("Documento ya existe para companyId: " + companyId);
-            return;
+    /**
+     * Migra los detalles de pedido de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migrateOrderDetails() {
+        return migrateInParallel(List.of(orderDetailsMigration())).get(0);
+    }
+
+    /**
+     * Migra los pedidos de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migrateOrders() {
+        return migrateInParallel(List.of(ordersMigration())).get(0);
+    }
+
+    /**
+     * Migra los métodos de pago de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migratePaymentMethods() {
+        return migrateInParallel(List.of(paymentMethodsMigration())).get(0);
+    }
+
+    /**
+     * Migra los productos de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migrateProducts() {
+        return migrateInParallel(List.of(productsMigration())).get(0);
+    }
+
+    /**
+     * Migra las calificaciones de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migrateRatings() {
+        return migrateInParallel(List.of(ratingsMigration())).get(0);
+    }
+
+    /**
+     * Migra los usuarios de PostgreSQL a MongoDB.
+     * @return Reporte con las filas migradas y el rendimiento
+     */
+    public MigrationReportDTO migrateUsers() {
+        return migrateInParallel(List.of(usersMigration())).get(0);
+    }
+
+    /**
+     * Sincroniza un conjunto de filas puntuales de una entidad, sin tocar su punto de control.
+     * Las filas que existen se escriben con el mismo upsert de la migración y los ids que ya no existen
+     * en PostgreSQL se eliminan de MongoDB, por lo que aplicar dos veces los mismos ids es inofensivo.
+     * Lo usa el relay del outbox; si se llama dentro de una transacción, las lecturas participan de ella.
+     * @param entity Nombre de la entidad (ej: "orders")
+     * @param ids Ids de las filas a sincronizar
+     * @return Cantidad de documentos escritos o eliminados
+     */
+    public int syncByIds(String entity, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
         }
+        return syncByIds(migrationFor(entity), ids);
+    }
+
+    private <E, D> int syncByIds(EntityMigration<E, D> migration, Collection<Integer> ids) {
+        List<E> rows = streamingJdbcTemplate.query(
+                "SELECT " + migration.columns + " FROM " + migration.table + " WHERE " + migration.idColumn + " = ANY(?)",
+                migration.rowMapper, (Object) ids.toArray(new Integer[0]));
 
-        List<Integer> paymentMethodIds = companyService.getPaymentMethodIdsByCompanyId(company.getId());
-        List<Integer> coverageAreaIds = companyService.getCoverageAreaIdsByCompanyId(company.getId());
+        List<D> documents = migration.chunkMapper.apply(rows);
+        int written = writeDocuments(migration, documents);
+
+        Set<Integer> removed = new HashSet<>(ids);
+        documents.forEach(document -> removed.remove(migration.naturalId.apply(document)));
+        if (!removed.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where(migration.naturalIdField).in(removed)), migration.documentClass);
+        }
+        return written + removed.size();
+    }
+
+    /**
+     * Obtiene la descripción de migración de una entidad por su nombre.
+     * @param entity Nombre de la entidad (ej: "orders")
+     * @return Descripción de la migración
+     */
+    private EntityMigration<?, ?> migrationFor(String entity) {
+        return switch (entity) {
+            case "clients" -> clientsMigration();
+            case "dealers" -> dealersMigration();
+            case "companies" -> companiesMigration();
+            case "coverage_areas" -> coverageAreasMigration();
+            case "emergency_reports" -> emergencyReportsMigration();
+            case "order_details" -> orderDetailsMigration();
+            case "orders" -> ordersMigration();
+            case "payment_methods" -> paymentMethodsMigration();
+            case "products" -> productsMigration();
+            case "ratings" -> ratingsMigration();
+            case "users" -> usersMigration();
+            default -> throw new IllegalArgumentException("Entidad desconocida: " + entity);
+        };
+    }
 
-        CompanyDocument document = CompanyMapper.fromCompanyEntity(company);
+    /**
+     * Describe la migración de los clientes.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<ClientEntity, ClientDocument> clientsMigration() {
+        return new EntityMigration<>(
+                "clients",
+                "clients",
+                "id, name, rut, email, phone, address, user_id, " +
+                        "ubication",
+                "id",
+                (rs, rowNum) -> new ClientEntity(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getString("rut"),
+                        rs.getString("email"),
+                        rs.getString("phone"),
+                        rs.getString("address"),
+                        rs.getInt("user_id"),
+                        rs.getString("ubication")),
+                perRow(ClientMapper::fromClientEntity),
+                ClientDocument.class,
+                "clientId",
+                ClientDocument::getClientId);
+    }
 
-        document.setPaymentMethodIds(paymentMethodIds.stream()
-                .map(String::valueOf)
-                .collect(Collectors.toList()));
+    /**
+     * Describe la migración de los repartidores.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<DealerEntity, DealerDocument> dealersMigration() {
+        return new EntityMigration<>(
+                "dealers",
+                "dealers",
+                "id, rut, name, phone, email, vehicle, plate, " +
+                        "ubication, user_id",
+                "id",
+                (rs, rowNum) -> new DealerEntity(
+                        rs.getInt("id"),
+                        rs.getString("rut"),
+                        rs.getString("name"),
+                        rs.getString("phone"),
+                        rs.getString("email"),
+                        rs.getString("vehicle"),
+                        rs.getString("plate"),
+                        rs.getString("ubication"),
+                        rs.getInt("user_id")),
+                perRow(DealerMapper::fromDealerEntity),
+                DealerDocument.class,
+                "dealerId",
+                DealerDocument::getDealerId);
+    }
 
-        document.setCoverageAreaIds(coverageAreaIds.stream()
-                .map(String::valueOf)
-                .collect(Collectors.toList()));
+    /**
+     * Describe la migración de las compañías, incluyendo sus métodos de pago y áreas de cobertura.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<CompanyEntity, CompanyDocument> companiesMigration() {
+        return new EntityMigration<>(
+                "companies",
+                "companies",
+                "id, name, email, phone, address, rut, type, deliveries, " +
+                        "failed_deliveries, total_sales, ubication",
+                "id",
+                (rs, rowNum) -> new CompanyEntity(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getString("email"),
+                        rs.getString("phone"),
+                        rs.getString("address"),
+                        rs.getString("rut"),
+                        rs.getString("type"),
+                        rs.getInt("deliveries"),
+                        rs.getInt("failed_deliveries"),
+                        rs.getInt("total_sales"),
+                        rs.getString("ubication")),
+                this::toCompanyDocuments,
+                CompanyDocument.class,
+                "companyId",
+                CompanyDocument::getCompanyId);
+    }
 
-        companyDocumentRepository.save(document);
+    /**
+     * Describe la migración de las áreas de cobertura.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<CoverageAreaEntity, CoverageAreaDocument> coverageAreasMigration() {
+        return new EntityMigration<>(
+                "coverage_areas",
+                "coverage_area",
+                "coverage_id AS id, name, coverageArea",
+                "coverage_id",
+                (rs, rowNum) -> new CoverageAreaEntity(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getString("coverageArea")),
+                perRow(CoverageAreaMapper::fromCoverageAreaEntity),
+                CoverageAreaDocument.class,
+                "coverageAreaId",
+                CoverageAreaDocument::getCoverageAreaId);
     }
 
     /**
-     * Migra un área de cobertura de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de área de cobertura desde PostgreSQL
+     * Describe la migración de los reportes de emergencia.
+     * @return Descripción de la migración
      */
-    public void migrateCoverageAreaToMongo(CoverageAreaEntity entityFromPostgres) {
-        Integer coverageAreaId = entityFromPostgres.getId();
+    private EntityMigration<EmergencyReportEntity, EmergencyReportDocument> emergencyReportsMigration() {
+        return new EntityMigration<>(
+                "emergency_reports",
+                "emergency_report",
+                "id, order_id, dealer_id, ubication",
+                "id",
+                (rs, rowNum) -> new EmergencyReportEntity(
+                        rs.getInt("id"),
+                        rs.getInt("order_id"),
+                        rs.getInt("dealer_id"),
+                        rs.getString("ubication")),
+                perRow(EmergencyReportMapper::fromEmergencyReportEntity),
+                EmergencyReportDocument.class,
+                "reportId",
+                EmergencyReportDocument::getReportId);
+    }
 
-        if (coverageAreaDocumentRepository.existsByCoverageAreaId(coverageAreaId)) {
-            System.out.println("Documento ya existe para coverageAreaId: " + coverageAreaId);
-            return;
+    /**
+     * Describe la migración de los detalles de pedido.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<OrderDetailsEntity, OrderDetailDocument> orderDetailsMigration() {
+        return new EntityMigration<>(
+                "order_details",
+                "order_details",
+                "id, order_id, payment_method, total_products, price",
+                "id",
+                (rs, rowNum) -> new OrderDetailsEntity(
+                        rs.getInt("id"),
+                        rs.getInt("order_id"),
+                        rs.getString("payment_method"),
+                        rs.getInt("total_products"),
+                        rs.getDouble("price")),
+                perRow(OrderDetailMapper::fromOrderDetailsEntity),
+                OrderDetailDocument.class,
+                "orderDetailId",
+                OrderDetailDocument::getOrderDetailId);
+    }
+
+    /**
+     * Describe la migración de los pedidos, incluyendo los productos de cada pedido.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<OrdersEntity, OrderDocument> ordersMigration() {
+        return new EntityMigration<>(
+                "orders",
+                "orders",
+                "id, order_date, delivery_date, status, client_id, dealer_id, " +
+                        "total_price, estimated_route",
+                "id",
+                (rs, rowNum) -> new OrdersEntity(
+                        rs.getInt("id"),
+                        rs.getTimestamp("order_date"),
+                        rs.getTimestamp("delivery_date"),
+                        rs.getString("status"),
+                        rs.getInt("client_id"),
+                        rs.getObject("dealer_id") != null ? rs.getInt("dealer_id") : null,
+                        rs.getDouble("total_price"),
+                        rs.getString("estimated_route")),
+                this::toOrderDocuments,
+                OrderDocument.class,
+                "orderId",
+                OrderDocument::getOrderId);
+    }
+
+    /**
+     * Describe la migración de los métodos de pago.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<PaymentMethodEntity, PaymentMethodDocument> paymentMethodsMigration() {
+        return new EntityMigration<>(
+                "payment_methods",
+                "payment_methods",
+                "id, type",
+                "id",
+                (rs, rowNum) -> new PaymentMethodEntity(
+                        rs.getInt("id"),
+                        rs.getString("type")),
+                perRow(PaymentMethodMapper::fromPaymentMethodEntity),
+                PaymentMethodDocument.class,
+                "paymentMethodId",
+                PaymentMethodDocument::getPaymentMethodId);
+    }
+
+    /**
+     * Describe la migración de los productos.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<ProductEntity, ProductDocument> productsMigration() {
+        return new EntityMigration<>(
+                "products",
+                "products",
+                "id, name, stock, price, category, company_id",
+                "id",
+                (rs, rowNum) -> new ProductEntity(
+                        rs.getInt("id"),
+                        rs.getString("name"),
+                        rs.getInt("stock"),
+                        rs.getFloat("price"),
+                        rs.getString("category"),
+                        rs.getInt("company_id")),
+                perRow(ProductMapper::fromProductEntity),
+                ProductDocument.class,
+                "productId",
+                ProductDocument::getProductId);
+    }
+
+    /**
+     * Describe la migración de las calificaciones.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<RatingEntity, RatingDocument> ratingsMigration() {
+        return new EntityMigration<>(
+                "ratings",
+                "ratings",
+                "id, rating, comment, date, client_id, dealer_id, order_id",
+                "id",
+                (rs, rowNum) -> new RatingEntity(
+                        rs.getInt("id"),
+                        rs.getInt("rating"),
+                        rs.getString("comment"),
+                        rs.getDate("date"),
+                        rs.getInt("client_id"),
+                        rs.getInt("dealer_id"),
+                        rs.getInt("order_id")),
+                perRow(RatingMapper::fromRatingEntity),
+                RatingDocument.class,
+                "ratingId",
+                RatingDocument::getRatingId);
+    }
+
+    /**
+     * Describe la migración de los usuarios.
+     * @return Descripción de la migración
+     */
+    private EntityMigration<UserEntity, UserDocument> usersMigration() {
+        return new EntityMigration<>(
+                "users",
+                "users",
+                "id, username, password, role",
+                "id",
+                (rs, rowNum) -> new UserEntity(
+                        rs.getInt("id"),
+                        rs.getString("username"),
+                        rs.getString("password"),
+                        rs.getString("role")),
+                perRow(UserMapper::fromUserEntity),
+                UserDocument.class,
+                "userId",
+                UserDocument::getUserId);
+    }
+
+    /**
+     * Convierte un bloque de compañías a documentos. Los métodos de pago y las áreas de cobertura
+     * de todo el bloque se cargan con una consulta cada uno, en lugar de dos consultas por compañía.
+     * @param companies Bloque de compañías desde PostgreSQL
+     * @return Documentos de compañía listos para MongoDB
+     */
+    private List<CompanyDocument> toCompanyDocuments(List<CompanyEntity> companies) {
+        List<Integer> companyIds = companies.stream().map(CompanyEntity::getId).collect(Collectors.toList());
+        Map<Integer, List<Integer>> paymentMethodIds = companyService.getPaymentMethodIdsByCompanyIds(companyIds);
+        Map<Integer, List<Integer>> coverageAreaIds = companyService.getCoverageAreaIdsByCompanyIds(companyIds);
+
+        return companies.stream()
+                .map(company -> CompanyMapper.fromCompanyEntity(company,
+                        paymentMethodIds.getOrDefault(company.getId(), List.of()),
+                        coverageAreaIds.getOrDefault(company.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Convierte un bloque de pedidos a documentos. Los productos de todo el bloque se cargan
+     * con una sola consulta, en lugar de una consulta por pedido.
+     * @param orders Bloque de pedidos desde PostgreSQL
+     * @return Documentos de pedido listos para MongoDB
+     */
+    private List<OrderDocument> toOrderDocuments(List<OrdersEntity> orders) {
+        List<Integer> orderIds = orders.stream().map(OrdersEntity::getId).collect(Collectors.toList());
+        Map<Integer, List<Integer>> productIds = ordersService.getProductIdsByOrderIds(orderIds);
+
+        return orders.stream()
+                .map(order -> OrderMapper.fromOrdersEntity(order, productIds.getOrDefault(order.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Ejecuta un grupo de migraciones en paralelo. Cada tabla se divide en rangos de id
+     * (tantos como su concurrencia configurada) y cada rango se envía al pool acotado de migración.
+     * Solo se leen las filas nuevas o modificadas desde el último punto de control de cada entidad,
+     * y si la ejecución anterior quedó a medias se retoma desde el avance registrado de cada rango.
+     * @param migrations Migraciones que no dependen entre sí
+     * @return Un reporte por entidad, en el mismo orden recibido
+     */
+    private List<MigrationReportDTO> migrateInParallel(List<EntityMigration<?, ?>> migrations) {
+        long start = System.nanoTime();
+
+        Map<EntityMigration<?, ?>, MigrationStateDocument> states = new LinkedHashMap<>();
+        Map<EntityMigration<?, ?>, List<Future<PartitionResult>>> pending = new LinkedHashMap<>();
+        for (EntityMigration<?, ?> migration : migrations) {
+            MigrationStateDocument state = startOrResumeRun(migration);
+            List<MigrationStateDocument.PartitionCheckpoint> checkpoints = state.getPartitions();
+
+            List<Future<PartitionResult>> partitions = new ArrayList<>();
+            for (int i = 0; i < checkpoints.size(); i++) {
+                MigrationStateDocument.PartitionCheckpoint checkpoint = checkpoints.get(i);
+                if (checkpoint.getLastMigratedId() != null && checkpoint.getLastMigratedId() >= checkpoint.getToId()) {
+                    continue; // Rango terminado en una ejecución anterior
+                }
+                int index = i;
+                partitions.add(executor.submit(() -> migrateRange(migration, state, index)));
+            }
+            states.put(migration, state);
+            pending.put(migration, partitions);
         }
 
-        CoverageAreaDocument document = CoverageAreaMapper.fromCoverageAreaEntity(entityFromPostgres);
-        coverageAreaDocumentRepository.save(document);
+        List<MigrationReportDTO> reports = new ArrayList<>();
+        for (Map.Entry<EntityMigration<?, ?>, List<Future<PartitionResult>>> entry : pending.entrySet()) {
+            String name = entry.getKey().name;
+            long rows = 0;
+            long finishedAt = start;
+
+            for (Future<PartitionResult> future : entry.getValue()) {
+                PartitionResult result = await(name, future);
+                rows += result.rows;
+                finishedAt = Math.max(finishedAt, result.finishedAt);
+            }
+            completeRun(states.get(entry.getKey()));
+
+            long elapsedMillis = (finishedAt - start) / 1_000_000;
+            double rowsPerSecond = elapsedMillis > 0 ? rows * 1000.0 / elapsedMillis : rows;
+
+            System.out.println("Migración de " + name + ": " + rows + " filas en " + elapsedMillis
+                    + " ms (" + String.format("%.1f", rowsPerSecond) + " filas/s, "
+                    + entry.getValue().size() + " particiones)");
+
+            reports.add(new MigrationReportDTO(name, rows, elapsedMillis, rowsPerSecond));
+        }
+        return reports;
     }
 
     /**
-     * Migra un reporte de emergencia de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de reporte de emergencia desde PostgreSQL
+     * Obtiene el punto de control de una entidad y prepara la ejecución.
+     * Si hay una ejecución interrumpida se retoma tal cual; si no, se registra una nueva con su watermark
+     * (la hora de PostgreSQL menos un margen) y sus rangos de id.
+     * @param migration Descripción de la entidad a migrar
+     * @return Punto de control con la ejecución en curso
      */
-    public void migrateEmergencyReportToMongo(EmergencyReportEntity entityFromPostgres) {
-        Integer emergencyReportId = entityFromPostgres.getId();
+    private MigrationStateDocument startOrResumeRun(EntityMigration<?, ?> migration) {
+        MigrationStateDocument state = migrationStateRepository.findByEntity(migration.name)
+                .orElseGet(() -> {
+                    MigrationStateDocument created = new MigrationStateDocument();
+                    created.setEntity(migration.name);
+                    return created;
+                });
 
-        if (emergencyReportDocumentRepository.existsByReportId(emergencyReportId)) {
-            System.out.println("Documento ya existe para emergencyReportId: " + emergencyReportId);
-            return;
+        if (state.hasPendingRun()) {
+            System.out.println("Retomando migración interrumpida de " + migration.name);
+            return state;
         }
 
-        EmergencyReportDocument document = EmergencyReportMapper.fromEmergencyReportEntity(entityFromPostgres);
-        emergencyReportDocumentRepository.save(document);
+        Timestamp now = streamingJdbcTemplate.queryForObject("SELECT clock_timestamp()", Timestamp.class);
+        state.setRunWatermark(now.toLocalDateTime().minus(WATERMARK_OVERLAP));
+        state.setPartitions(partition(migration, state));
+        state.setUpdatedAt(LocalDateTime.now());
+        return migrationStateRepository.save(state);
     }
 
     /**
-     * Migra un detalle de pedido de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de detalle de pedido desde PostgreSQL
+     * Cierra la ejecución de una entidad: avanza lastId y watermark y limpia el avance por rango.
+     * @param state Punto de control con la ejecución terminada
      */
-    public void migrateOrderDetailToMongo(OrderDetailsEntity entityFromPostgres) {
-        Integer orderDetailId = entityFromPostgres.getId();
+    private void completeRun(MigrationStateDocument state) {
+        if (state.getRunUpperId() != null) {
+            state.setLastId(state.getLastId() == null ? state.getRunUpperId() : Math.max(state.getLastId(), state.getRunUpperId()));
+        }
+        state.setWatermark(state.getRunWatermark());
+        state.setRunWatermark(null);
+        state.setRunUpperId(null);
+        state.setPartitions(null);
+        state.setUpdatedAt(LocalDateTime.now());
+        migrationStateRepository.save(state);
+    }
 
-        if (orderDetailDocumentRepository.existsByOrderDetailId(orderDetailId)) {
-            System.out.println("Documento ya existe para orderDetailId: " + orderDetailId);
-            return;
+    /**
+     * Divide las filas pendientes de una migración en rangos contiguos de id según su concurrencia configurada
+     * ({@code migration.concurrency.<entidad>}, o {@code migration.concurrency} por defecto).
+     * Registra en el punto de control el id máximo cubierto por la ejecución.
+     * @param migration Descripción de la entidad a migrar
+     * @param state Punto de control de la entidad
+     * @return Lista de rangos; vacía si no hay filas nuevas ni modificadas
+     */
+    private List<MigrationStateDocument.PartitionCheckpoint> partition(EntityMigration<?, ?> migration, MigrationStateDocument state) {
+        List<Object> args = new ArrayList<>();
+        Map<String, Object> bounds = streamingJdbcTemplate.queryForMap(
+                "SELECT MIN(" + migration.idColumn + ") AS min_id, MAX(" + migration.idColumn + ") AS max_id FROM " + migration.table
+                        + " WHERE TRUE" + deltaFilter(migration, state, args), args.toArray());
+
+        List<MigrationStateDocument.PartitionCheckpoint> ranges = new ArrayList<>();
+        if (bounds.get("min_id") == null) {
+            return ranges;
         }
 
-        OrderDetailDocument document = OrderDetailMapper.fromOrderDetailsEntity(entityFromPostgres);
-        orderDetailDocumentRepository.save(document);
+        long minId = ((Number) bounds.get("min_id")).longValue();
+        long maxId = ((Number) bounds.get("max_id")).longValue();
+        int concurrency = environment.getProperty("migration.concurrency." + migration.name, Integer.class, defaultConcurrency);
+        long partitions = Math.max(1, Math.min(concurrency, maxId - minId + 1));
+        long step = (maxId - minId + partitions) / partitions;
+
+        for (long from = minId; from <= maxId; from += step) {
+            ranges.add(new MigrationStateDocument.PartitionCheckpoint(from, Math.min(from + step - 1, maxId), null));
+        }
+        state.setRunUpperId(maxId);
+        return ranges;
     }
 
     /**
-     * Migra un pedido de PostgreSQL a MongoDB.
-     * @param order Entidad de pedido desde PostgreSQL
+     * Construye el filtro de filas pendientes a partir del último punto de control completo:
+     * filas con id mayor a lastId o con updated_at posterior al watermark. Sin punto de control no filtra.
+     * @param migration Descripción de la entidad a migrar
+     * @param state Punto de control de la entidad
+     * @param args Lista a la que se agregan los parámetros del filtro
+     * @return Fragmento SQL que comienza con " AND", o vacío
      */
-    public void migrateOrderToMongo(OrdersEntity order) {
-        Integer orderId = order.getId();
+    private static String deltaFilter(EntityMigration<?, ?> migration, MigrationStateDocument state, List<Object> args) {
+        if (state.getLastId() == null || state.getWatermark() == null) {
+            return "";
+        }
+        args.add(state.getLastId());
+        args.add(Timestamp.valueOf(state.getWatermark()));
+        return " AND (" + migration.idColumn + " > ? OR updated_at > ?)";
+    }
+
+    /**
+     * Migra un rango de ids de una entidad: lo recorre ordenado por id con un cursor,
+     * acumula bloques de {@code chunkSize} filas y escribe cada bloque en MongoDB.
+     * Después de cada bloque registra en el punto de control el último id escrito.
+     * @param migration Descripción de la entidad a migrar
+     * @param state Punto de control de la entidad
+     * @param index Posición del rango dentro del punto de control
+     * @return Filas migradas y el instante en que terminó el rango
+     */
+    private <E, D> PartitionResult migrateRange(EntityMigration<E, D> migration, MigrationStateDocument state, int index) {
+        MigrationStateDocument.PartitionCheckpoint checkpoint = state.getPartitions().get(index);
+        long fromId = checkpoint.getLastMigratedId() != null ? checkpoint.getLastMigratedId() + 1 : checkpoint.getFromId();
+        long[] rows = {0};
+        long[] lastId = {fromId - 1};
+
+        List<Object> args = new ArrayList<>(List.of(fromId, checkpoint.getToId()));
+        String sql = "SELECT " + migration.columns + " FROM " + migration.table
+                + " WHERE " + migration.idColumn + " BETWEEN ? AND ?" + deltaFilter(migration, state, args)
+                + " ORDER BY " + migration.idColumn;
+
+        readOnlyTransaction.executeWithoutResult(status -> {
+            List<E> chunk = new ArrayList<>(chunkSize);
+
+            streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                chunk.add(migration.rowMapper.mapRow(rs, chunk.size()));
+                lastId[0] = rs.getLong("id");
+                if (chunk.size() >= chunkSize) {
+                    rows[0] += writeChunk(migration, chunk);
+                    chunk.clear();
+                    saveProgress(migration.name, index, lastId[0]);
+                }
+            }, args.toArray());
+
+            if (!chunk.isEmpty()) {
+                rows[0] += writeChunk(migration, chunk);
+            }
+        });
+
+        saveProgress(migration.name, index, checkpoint.getToId());
+        return new PartitionResult(rows[0], System.nanoTime());
+    }
+
+    /**
+     * Registra el último id escrito de un rango en el punto de control de la entidad.
+     * @param entity Nombre de la entidad
+     * @param index Posición del rango dentro del punto de control
+     * @param lastMigratedId Último id escrito en MongoDB
+     */
+    private void saveProgress(String entity, int index, long lastMigratedId) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("entity").is(entity)),
+                new Update()
+                        .set("partitions." + index + ".lastMigratedId", lastMigratedId)
+                        .set("updatedAt", LocalDateTime.now()),
+                MigrationStateDocument.class);
+    }
+
+    /**
+     * Elimina el punto de control de una entidad para que la siguiente ejecución sea completa.
+     * @param entity Nombre de la entidad (ej: "orders")
+     */
+    public void resetCheckpoint(String entity) {
+        migrationStateRepository.deleteByEntity(entity);
+    }
+
+    /**
+     * Obtiene los puntos de control de todas las entidades.
+     * @return Lista de puntos de control
+     */
+    public List<MigrationStateDocument> getCheckpoints() {
+        return migrationStateRepository.findAll();
+    }
+
+    /**
+     * Reconcilia todas las entidades entre PostgreSQL y MongoDB.
+     * @param repair Si es verdadero, corrige en MongoDB los documentos faltantes, sobrantes y distintos
+     * @return Un reporte por entidad
+     */
+    public List<ReconciliationReportDTO> reconcileAll(boolean repair) {
+        List<ReconciliationReportDTO> reports = new ArrayList<>();
+        for (String entity : ENTITIES) {
+            reports.add(reconcile(entity, repair));
+        }
+        return reports;
+    }
+
+    /**
+     * Compara una entidad de PostgreSQL con su colección en MongoDB.
+     * Ambos lados se recorren ordenados por id con cursores (merge-join), por lo que la memoria usada
+     * depende solo del tamaño de bloque. Cada fila se mapea con el mismo mapper de la migración y se compara
+     * por una huella SHA-256 de sus campos contra la huella del documento almacenado.
+     * @param entity Nombre de la entidad (ej: "orders")
+     * @param repair Si es verdadero, escribe los documentos faltantes o distintos y elimina los sobrantes
+     * @return Reporte con los conteos y una muestra de los ids con diferencias
+     */
+    public ReconciliationReportDTO reconcile(String entity, boolean repair) {
+        return reconcile(migrationFor(entity), repair);
+    }
+
+    private <E, D> ReconciliationReportDTO reconcile(EntityMigration<E, D> migration, boolean repair) {
+        long start = System.nanoTime();
+        ReconciliationReportDTO report = new ReconciliationReportDTO();
+        report.setEntity(migration.name);
+
+        String collection = mongoTemplate.getCollectionName(migration.documentClass);
+        Query sortedByNaturalId = new Query()
+                .with(Sort.by(Sort.Direction.ASC, migration.naturalIdField))
+                .allowDiskUse(true)
+                .cursorBatchSize(chunkSize);
+        MessageDigest digest = sha256();
+
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Document> stored = mongoTemplate.stream(sortedByNaturalId, Document.class, collection)) {
+                TargetCursor target = new TargetCursor(stored.iterator(), migration.naturalIdField);
+                List<E> chunk = new ArrayList<>(chunkSize);
+
+                streamingJdbcTemplate.query(
+                        "SELECT " + migration.columns + " FROM " + migration.table + " ORDER BY " + migration.idColumn,
+                        (RowCallbackHandler) rs -> {
+                            chunk.add(migration.rowMapper.mapRow(rs, chunk.size()));
+                            if (chunk.size() >= chunkSize) {
+                                reconcileChunk(migration, chunk, target, digest, repair, collection, report);
+                                chunk.clear();
+                            }
+                        });
+                reconcileChunk(migration, chunk, target, digest, repair, collection, report);
 
-        if (orderDocumentRepository.existsByOrderId(orderId)) {
-            System.out.println("Ya existe OrderDocument para orderId: " + orderId);
+                // Lo que queda en MongoDB no tiene fila en PostgreSQL
+                List<Object> extras = new ArrayList<>();
+                while (target.hasNext()) {
+                    recordExtra(target.next(), migration.naturalIdField, extras, report);
+                    if (extras.size() >= chunkSize) {
+                        removeExtras(extras, repair, collection, report);
+                    }
+                }
+                removeExtras(extras, repair, collection, report);
+                report.setTargetDocuments(target.count);
+            }
+        });
+
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        System.out.println("Reconciliación de " + migration.name + ": " + report.getMissing() + " faltantes, "
+                + report.getExtra() + " sobrantes, " + report.getDivergent() + " distintos, "
+                + report.getRepaired() + " reparados");
+        return report;
+    }
+
+    /**
+     * Compara un bloque de filas (ordenadas por id) contra el cursor de MongoDB, avanzando el cursor
+     * hasta el último id del bloque. Si se pide reparar, escribe los faltantes y distintos con una operación bulk.
+     */
+    private <E, D> void reconcileChunk(EntityMigration<E, D> migration, List<E> chunk, TargetCursor target,
+                                       MessageDigest digest, boolean repair, String collection,
+                                       ReconciliationReportDTO report) {
+        if (chunk.isEmpty()) {
             return;
         }
+        List<D> documents = migration.chunkMapper.apply(chunk);
+        List<D> toWrite = new ArrayList<>();
+        List<Object> extras = new ArrayList<>();
+
+        for (D document : documents) {
+            Integer id = migration.naturalId.apply(document);
+            report.setSourceRows(report.getSourceRows() + 1);
 
-        List<Integer> productIds = ordersService.getProductIdsByOrderId(order.getId());
-        OrderDocument document = OrderMapper.fromOrdersEntity(order, productIds);
-        orderDocumentRepository.save(document);
+            while (target.hasNext() && (target.peekId() == null || target.peekId() < id)) {
+                recordExtra(target.next(), migration.naturalIdField, extras, report);
+            }
+
+            if (target.hasNext() && id.equals(target.peekId())) {
+                Document expected = new Document();
+                mongoTemplate.getConverter().write(document, expected);
+                if (!Arrays.equals(fingerprint(expected, digest), fingerprint(target.next(), digest))) {
+                    report.setDivergent(report.getDivergent() + 1);
+                    addSample(report.getDivergentIds(), id);
+                    toWrite.add(document);
+                }
+            } else {
+                report.setMissing(report.getMissing() + 1);
+                addSample(report.getMissingIds(), id);
+                toWrite.add(document);
+            }
+        }
 
-        System.out.println("Migración exitosa para orderId: " + orderId);
+        if (repair) {
+            report.setRepaired(report.getRepaired() + writeDocuments(migration, toWrite));
+        }
+        removeExtras(extras, repair, collection, report);
     }
 
     /**
-     * Migra un método de pago de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de método de pago desde PostgreSQL
+     * Registra un documento de MongoDB que no tiene fila en PostgreSQL (o que repite un id ya visto).
      */
-    public void migratePaymentMethodToMongo(PaymentMethodEntity entityFromPostgres) {
-        Integer paymentMethodId = entityFromPostgres.getId();
+    private static void recordExtra(Document document, String naturalIdField, List<Object> extras,
+                                    ReconciliationReportDTO report) {
+        report.setExtra(report.getExtra() + 1);
+        Object naturalId = document.get(naturalIdField);
+        if (naturalId instanceof Integer) {
+            addSample(report.getExtraIds(), (Integer) naturalId);
+        }
+        extras.add(document.get("_id"));
+    }
 
-        if (paymentMethodDocumentRepository.existsByPaymentMethodId(paymentMethodId)) {
-            System.out.println("Documento ya existe para paymentMethodId: " + paymentMethodId);
-            return;
+    /**
+     * Elimina los documentos sobrantes por su _id (no por el id natural, para no borrar el documento válido
+     * cuando hay duplicados) si se pidió reparar, y vacía la lista.
+     */
+    private void removeExtras(List<Object> extras, boolean repair, String collection, ReconciliationReportDTO report) {
+        if (repair && !extras.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(extras)), collection);
+            report.setRepaired(report.getRepaired() + extras.size());
         }
+        extras.clear();
+    }
 
-        PaymentMethodDocument document = PaymentMethodMapper.fromPaymentMethodEntity(entityFromPostgres);
-        paymentMethodDocumentRepository.save(document);
+    private static void addSample(List<Integer> sample, Integer id) {
+        if (sample.size() < RECONCILIATION_SAMPLE_SIZE) {
+            sample.add(id);
+        }
     }
 
     /**
-     * Migra un producto de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de producto desde PostgreSQL
+     * Calcula la huella de un documento a partir de sus campos en orden alfabético, ignorando _id y _class.
+     * Los números y fechas se normalizan para que un documento recién mapeado y el mismo documento leído
+     * desde MongoDB produzcan la misma huella.
+     * @param document Documento en formato BSON
+     * @param digest Digest reutilizable del hilo que reconcilia
+     * @return Huella SHA-256
      */
-    public void migrateProductToMongo(ProductEntity entityFromPostgres) {
-        Integer productId = entityFromPostgres.getId();
+    private static byte[] fingerprint(Document document, MessageDigest digest) {
+        digest.reset();
+        Map<String, Object> fields = new TreeMap<>(document);
+        fields.remove("_id");
+        fields.remove("_class");
+        updateDigest(digest, fields);
+        return digest.digest();
+    }
 
-        if (productDocumentRepository.existsByProductId(productId)) {
-            System.out.println("Documento ya existe para productId: " + productId);
-            return;
+    private static void updateDigest(MessageDigest digest, Object value) {
+        if (value instanceof Map<?, ?> map) {
+            digest.update((byte) '{');
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((key, field) -> sorted.put(String.valueOf(key), field));
+            sorted.forEach((key, field) -> {
+                if (field != null) {
+                    updateDigest(digest, key);
+                    updateDigest(digest, field);
+                }
+            });
+            digest.update((byte) '}');
+        } else if (value instanceof Collection<?> values) {
+            digest.update((byte) '[');
+            values.forEach(element -> updateDigest(digest, element));
+            digest.update((byte) ']');
+        } else if (value instanceof Float || value instanceof Double) {
+            updateToken(digest, "d" + ((Number) value).doubleValue());
+        } else if (value instanceof Number number) {
+            updateToken(digest, "n" + number.longValue());
+        } else if (value instanceof Date date) {
+            updateToken(digest, "t" + date.getTime());
+        } else {
+            updateToken(digest, "s" + value);
         }
+    }
 
-        ProductDocument document = ProductMapper.fromProductEntity(entityFromPostgres);
-        productDocumentRepository.save(document);
+    private static void updateToken(MessageDigest digest, String token) {
+        digest.update(token.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e);
+        }
     }
 
     /**
-     * Migra una calificación de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de calificación desde PostgreSQL
+     * Espera el resultado de una partición y propaga su error si falló.
+     * @param name Nombre de la entidad, para el mensaje de error
+     * @param future Partición enviada al pool
+     * @return Resultado de la partición
      */
-    public void migrateRatingToMongo(RatingEntity entityFromPostgres) {
-        Integer ratingId = entityFromPostgres.getId();
+    private static PartitionResult await(String name, Future<PartitionResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Migración de " + name + " interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló la migración de " + name + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
 
-        if (ratingDocumentRepository.existsByRatingId(ratingId)) {
-            System.out.println("Documento ya existe para ratingId: " + ratingId);
-            return;
+    /**
+     * Detiene el pool de migración al cerrar la aplicación.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Mapea un bloque de entidades y lo escribe en MongoDB con una sola operación bulk no ordenada.
+     * Cada documento reemplaza (o inserta, si no existe) al documento con el mismo id natural.
+     * @param migration Descripción de la entidad a migrar
+     * @param chunk Bloque de entidades leídas desde PostgreSQL
+     * @return Cantidad de documentos escritos
+     */
+    private <E, D> int writeChunk(EntityMigration<E, D> migration, List<E> chunk) {
+        return writeDocuments(migration, migration.chunkMapper.apply(chunk));
+    }
+
+    /**
+     * Escribe documentos en MongoDB con una sola operación bulk no ordenada de upserts por id natural.
+     * @param migration Descripción de la entidad
+     * @param documents Documentos a escribir
+     * @return Cantidad de documentos escritos
+     */
+    private <E, D> int writeDocuments(EntityMigration<E, D> migration, List<D> documents) {
+        if (documents.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, migration.documentClass);
+        for (D document : documents) {
+            Query byNaturalId = Query.query(Criteria.where(migration.naturalIdField).is(migration.naturalId.apply(document)));
+            bulk.replaceOne(byNaturalId, document, FindAndReplaceOptions.options().upsert());
         }
+        bulk.execute();
 
-        RatingDocument document = RatingMapper.fromRatingEntity(entityFromPostgres);
-        ratingDocumentRepository.save(document);
+        return documents.size();
     }
 
     /**
-     * Migra un usuario de PostgreSQL a MongoDB.
-     * @param entityFromPostgres Entidad de usuario desde PostgreSQL
+     * Adapta un mapper de una fila a un mapper de bloques.
+     * @param mapper Mapper de entidad a documento
+     * @return Función que mapea un bloque completo
      */
-    public void migrateUserToMongo(UserEntity entityFromPostgres) {
-        Integer userId = entityFromPostgres.getId();
+    private static <E, D> Function<List<E>, List<D>> perRow(Function<E, D> mapper) {
+        return chunk -> chunk.stream().map(mapper).collect(Collectors.toList());
+    }
 
-        if (userDocumentRepository.existsByUserId(userId)) {
-            System.out.println("Documento ya existe para userId: " + userId);
-            return;
+    /**
+     * Cursor de MongoDB con lectura anticipada de un documento, usado en el merge-join de la reconciliación.
+     */
+    private static final class TargetCursor {
+        private final Iterator<Document> documents;
+        private final String naturalIdField;
+        private Document next;
+        private long count;
+
+        private TargetCursor(Iterator<Document> documents, String naturalIdField) {
+            this.documents = documents;
+            this.naturalIdField = naturalIdField;
+            this.next = documents.hasNext() ? documents.next() : null;
         }
 
-        UserDocument document = UserMapper.fromUserEntity(entityFromPostgres);
-        userDocumentRepository.save(document);
+        private boolean hasNext() {
+            return next != null;
+        }
+
+        private Integer peekId() {
+            Object id = next.get(naturalIdField);
+            return id instanceof Number number ? number.intValue() : null;
+        }
+
+        private Document next() {
+            Document current = next;
+            next = documents.hasNext() ? documents.next() : null;
+            count++;
+            return current;
+        }
+    }
+
+    /**
+     * Resultado de migrar un rango de ids.
+     */
+    private static final class PartitionResult {
+        private final long rows;
+        private final long finishedAt;
+
+        private PartitionResult(long rows, long finishedAt) {
+            this.rows = rows;
+            this.finishedAt = finishedAt;
+        }
+    }
+
+    /**
+     * Describe cómo migrar una entidad: tabla y columnas de origen, columna de id para particionar y ordenar,
+     * mapeo de filas, mapeo de bloques a documentos y el id natural usado en el upsert.
+     * @param <E> Tipo de la entidad de PostgreSQL
+     * @param <D> Tipo del documento de MongoDB
+     */
+    private static final class EntityMigration<E, D> {
+        private final String name;
+        private final String table;
+        private final String columns;
+        private final String idColumn;
+        private final RowMapper<E> rowMapper;
+        private final Function<List<E>, List<D>> chunkMapper;
+        private final Class<D> documentClass;
+        private final String naturalIdField;
+        private final Function<D, Integer> naturalId;
+
+        private EntityMigration(String name,
+                                String table,
+                                String columns,
+                                String idColumn,
+                                RowMapper<E> rowMapper,
+                                Function<List<E>, List<D>> chunkMapper,
+                                Class<D> documentClass,
+                                String naturalIdField,
+                                Function<D, Integer> naturalId) {
+            this.name = name;
+            this.table = table;
+            this.columns = columns;
+            this.idColumn = idColumn;
+            this.rowMapper = rowMapper;
+            this.chunkMapper = chunkMapper;
+            this.documentClass = documentClass;
+            this.naturalIdField = naturalIdField;
+            this.naturalId = naturalId;
+        }
     }
-}
\ No newline at end of file
+}
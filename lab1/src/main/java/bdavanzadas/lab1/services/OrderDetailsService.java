@@ -27,9 +27,9 @@ public class OrderDetailsService {
 
     /**
      * Servicio de órdenes.
-     * Este servicio se utiliza para interactuar con la base de datos de órdenes.
+     * Solo lo usa createOrderDetailsForLastOrder cuando no recibe el ID de la orden.
      */
-    private final OrdersService ordersService; // Inyección del servicio de órdenes
+    private final OrdersService ordersService;
 
 
     /**
@@ -39,7 +39,7 @@ public class OrderDetailsService {
      */
     public OrderDetailsService(OrderDetailsRepository orderDetailsRepository, OrdersService ordersService) {
         this.orderDetailsRepository = orderDetailsRepository;
-        this.ordersService = ordersService; // Inicialización del servicio de órdenes
+        this.ordersService = ordersService;
     }
 
 
@@ -115,25 +115,22 @@ public class OrderDetailsService {
 
 
     /**
-     * Metodo para crear detalles de órdenes para el último pedido insertado.
+     * Metodo para crear detalles de órdenes para una orden recién creada.
+     * @param "orderId" El ID que devolvió la creación de la orden; si es null se usa el último pedido insertado.
      * @param "paymentMethod" El método de pago utilizado.
      * @param "totalProducts" El total de productos en la orden.
      * @param "price" El precio total de la orden.
      * @return void
+     * @deprecated Usar POST /orders/checkout, que crea la orden y su detalle en una sola transacción.
      */
+    @Deprecated
     @Transactional
-    public void createOrderDetailsForLastOrder(String paymentMethod, int totalProducts, double price) {
-        // Obtener el ID del último pedido insertado
-        int lastOrderId = ordersService.getLastInsertedOrderId();
-
-        // Crear los detalles de la orden
+    public void createOrderDetailsForLastOrder(Integer orderId, String paymentMethod, int totalProducts, double price) {
         OrderDetailsEntity orderDetails = new OrderDetailsEntity();
-        orderDetails.setOrderId(lastOrderId);
+        orderDetails.setOrderId(orderId != null ? orderId : ordersService.getLastInsertedOrderId());
         orderDetails.setPaymentMethod(paymentMethod);
         orderDetails.setTotalProducts(totalProducts);
         orderDetails.setPrice(price);
-
-        // Guardar los detalles en la base de datos
         orderDetailsRepository.save(orderDetails);
     }
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package bdavanzadas.lab1.services;
+
+import bdavanzadas.lab1.dtos.OrderStatusEventDTO;
+import bdavanzadas.lab1.repositories.OrdersRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Canal de eventos de estado de pedidos (Server-Sent Events).
+ * Clientes y repartidores se suscriben una vez y reciben cada cambio de estado de sus pedidos, en lugar de consultar
+ * sus pedidos cada pocos segundos. Las conexiones son peticiones asíncronas del servlet: mientras no hay eventos
+ * no ocupan un hilo, así que miles de suscriptores inactivos solo cuestan su socket y una entrada en este registro.
+ * Los eventos se envían después de confirmar la transacción que produjo el cambio, desde un grupo pequeño de hilos
+ * propio, para que un suscriptor lento no retrase la petición que cambió el pedido.
+ */
+@Service
+public class OrderEventService {
+
+    /**
+     * Nombre de los eventos de cambio de estado.
+     */
+    public static final String EVENT_NAME = "order-status";
+
+    private final OrdersRepository ordersRepository;
+
+    /**
+     * Suscripciones por id de cliente y por id de repartidor.
+     */
+    private final Map<Integer, Set<SseEmitter>> clientSubscribers = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<SseEmitter>> dealerSubscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Hilos que escriben los eventos en las conexiones.
+     */
+    private final ExecutorService sender;
+
+    /**
+     * Cantidad máxima de conexiones abiertas.
+     */
+    private final int maxConnections;
+
+    /**
+     * Duración máxima de una conexión en milisegundos; al vencer, el navegador se vuelve a conectar.
+     */
+    private final long timeoutMillis;
+
+    /**
+     * Constructor que inyecta las dependencias necesarias.
+     * @param ordersRepository Repositorio de pedidos
+     * @param maxConnections Conexiones abiertas como máximo
+     * @param timeoutMillis Duración máxima de una conexión
+     * @param sendThreads Hilos para escribir eventos
+     */
+    public OrderEventService(OrdersRepository ordersRepository,
+                             @Value("${order-events.max-connections:10000}") int maxConnections,
+                             @Value("${order-events.timeout-ms:1800000}") long timeoutMillis,
+                             @Value("${order-events.send-threads:2}") int sendThreads) {
+        this.ordersRepository = ordersRepository;
+        this.maxConnections = maxConnections;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(Math.max(1, sendThreads), runnable -> {
+            Thread thread = new Thread(runnable, "order-events-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Suscribe una conexión a los cambios de estado de los pedidos de un cliente.
+     * @param clientId ID del cliente
+     * @return La conexión de eventos
+     * @throws IllegalStateException si se alcanzó el máximo de conexiones
+     */
+    public SseEmitter subscribeClient(int clientId) {
+        return subscribe(clientSubscribers, clientId);
+    }
+
+    /**
+     * Suscribe una conexión a los cambios de estado de los pedidos de un repartidor.
+     * @param dealerId ID del repartidor
+     * @return La conexión de eventos
+     * @throws IllegalStateException si se alcanzó el máximo de conexiones
+     */
+    public SseEmitter subscribeDealer(int dealerId) {
+        return subscribe(dealerSubscribers, dealerId);
+    }
+
+    /**
+     * Publica el estado actual de un pedido a su cliente y a su repartidor.
+     * El estado se lee dentro de la transacción actual y se envía cuando esta se confirma.
+     * @param orderId ID del pedido
+     */
+    public void publish(int orderId) {
+        publish(List.of(orderId));
+    }
+
+    /**
+     * Publica el estado actual de varios pedidos con una sola consulta.
+     * @param orderIds IDs de los pedidos
+     */
+    public void publish(List<Integer> orderIds) {
+        if (orderIds.isEmpty() || connections.get() == 0) {
+            return;
+        }
+        List<OrderStatusEventDTO> events = ordersRepository.findStatusEvents(orderIds);
+        if (!events.isEmpty()) {
+            TransactionHooks.afterCommit(() -> sender.execute(() -> events.forEach(this::send)));
+        }
+    }
+
+    /**
+     * Envía un comentario a todas las conexiones para mantenerlas abiertas a través de proxies
+     * y detectar las que el cliente ya cerró.
+     */
+    @Scheduled(fixedDelayString = "${order-events.heartbeat-ms:25000}")
+    public void heartbeat() {
+        if (connections.get() == 0) {
+            return;
+        }
+        sender.execute(() -> {
+            List<SseEmitter> emitters = new ArrayList<>();
+            clientSubscribers.values().forEach(emitters::addAll);
+            dealerSubscribers.values().forEach(emitters::addAll);
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (IOException | IllegalStateException e) {
+                    emitter.completeWithError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cantidad de conexiones abiertas.
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        clientSubscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        dealerSubscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+    }
+
+    private SseEmitter subscribe(Map<Integer, Set<SseEmitter>> subscribers, int id) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new IllegalStateException("Se alcanzó el máximo de conexiones de eventos");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        subscribers.compute(id, (key, emitters) -> {
+            Set<SseEmitter> set = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            set.add(emitter);
+            return set;
+        });
+        Runnable remove = () -> {
+            boolean[] removed = {false};
+            subscribers.computeIfPresent(id, (key, emitters) -> {
+                removed[0] = emitters.remove(emitter);
+                return emitters.isEmpty() ? null : emitters;
+            });
+            if (removed[0]) {
+                connections.decrementAndGet();
+            }
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        return emitter;
+    }
+
+    private void send(OrderStatusEventDTO event) {
+        send(event.getClientId() != null ? clientSubscribers.get(event.getClientId()) : null, event);
+        send(event.getDealerId() != null ? dealerSubscribers.get(event.getDealerId()) : null, event);
+    }
+
+    private void send(Set<SseEmitter> emitters, OrderStatusEventDTO event) {
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(EVENT_NAME).data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package bdavanzadas.lab1.services;
 
+import bdavanzadas.lab1.mappers.GeometryCodec;
 import bdavanzadas.lab1.dtos.OrderNameAddressDTO;
 import bdavanzadas.lab1.dtos.TopSpenderDTO;
 
 import bdavanzadas.lab1.entities.ProductEntity;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import bdavanzadas.lab1.entities.OrdersEntity;
+import bdavanzadas.lab1.repositories.OrderDetailsRepository;
 import bdavanzadas.lab1.repositories.OrdersRepository;
 import bdavanzadas.lab1.dtos.OrderTotalProductsDTO;
 import java.sql.*;
@@ -18,6 +22,9 @@ import java.sql.*;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 /**
@@ -37,6 +44,14 @@ public class OrdersService {
     private OrdersRepository ordersRepository;
 
 
+    /**
+     * Repositorio de detalles de órdenes.
+     * Se utiliza para registrar el detalle en la misma transacción que crea la orden.
+     */
+    @Autowired
+    private OrderDetailsRepository orderDetailsRepository;
+
+
     /**
      * jdbc se usa para ejecutar consultas SQL directamente en la base de datos.
      * Este objeto se utiliza para ejecutar consultas SQL y obtener resultados.
@@ -54,6 +69,38 @@ public class OrdersService {
     private UserService userService;
 
 
+    /**
+     * Resolutor de ids de perfil.
+     * Se utiliza para obtener el cliente o dealer del usuario autenticado sin consultar la base de datos en cada solicitud.
+     */
+    @Autowired
+    private ProfileIdResolver profileIdResolver;
+
+
+    /**
+     * Servicio de despacho.
+     * Se le informa cuando un repartidor toma o termina un pedido para mantener su índice de repartidores libres.
+     */
+    @Autowired
+    private DispatchService dispatchService;
+
+
+    /**
+     * Servicio de rutas por calles.
+     * Se utiliza para calcular la ruta estimada de los pedidos nuevos sobre el grafo vial.
+     */
+    @Autowired
+    private RoutingService routingService;
+
+
+    /**
+     * Servicio de eventos de pedidos.
+     * Se le informa de cada cambio de estado para enviarlo a los clientes y repartidores suscritos.
+     */
+    @Autowired
+    private OrderEventService orderEventService;
+
+
 
 
     /**
@@ -65,6 +112,29 @@ public class OrdersService {
         return ordersRepository.findAll();
     }
 
+    /**
+     * Obtiene una página de pedidos ordenada por id (paginación por cursor).
+     * @param afterId Id del último registro de la página anterior (0 para la primera página).
+     * @param limit Cantidad máxima de registros.
+     * @return Una lista de pedidos.
+     */
+    @Transactional(readOnly = true)
+    public List<OrdersEntity> getOrdersPage(int afterId, int limit) {
+        return ordersRepository.findPage(afterId, limit);
+    }
+
+    /**
+     * Recorre todos los pedidos con un cursor de la base de datos, entregándolos uno a uno.
+     * La transacción se mantiene abierta mientras dura el recorrido.
+     * @param action Acción a ejecutar por cada registro.
+     */
+    @Transactional(readOnly = true)
+    public void forEachOrder(Consumer<OrdersEntity> action) {
+        try (Stream<OrdersEntity> rows = ordersRepository.streamAll()) {
+            rows.forEach(action);
+        }
+    }
+
 
     /**
      * Metodo para guardar un pedido en la base de datos.
@@ -81,10 +151,34 @@ public class OrdersService {
      * Metodo para actualizar un pedido en la base de datos.
      * @param "order" El pedido a actualizar.
      * @return void
+     *
+     * El índice de despacho solo se actualiza si cambia el repartidor o el estado, y únicamente para los
+     * repartidores involucrados, sin recargar todos los repartidores.
      */
     @Transactional
     public void updateOrder(OrdersEntity order) {
+        OrdersEntity previous;
+        try {
+            previous = ordersRepository.findById(order.getId());
+        } catch (EmptyResultDataAccessException e) {
+            previous = null;
+        }
         ordersRepository.update(order);
+        if (previous == null
+                || (Objects.equals(previous.getDealerId(), order.getDealerId())
+                    && Objects.equals(previous.getStatus(), order.getStatus()))) {
+            return;
+        }
+        if (previous.getDealerId() != null) {
+            dispatchService.dealerReleased(previous.getDealerId());
+        }
+        if (order.getDealerId() != null) {
+            if ("EN PROCESO".equalsIgnoreCase(order.getStatus())) {
+                dispatchService.dealerBusy(order.getDealerId());
+            } else if (!order.getDealerId().equals(previous.getDealerId())) {
+                dispatchService.dealerReleased(order.getDealerId());
+            }
+        }
     }
 
 
@@ -95,7 +189,11 @@ public class OrdersService {
      */
     @Transactional
     public void deleteOrder(int id) {
+        Integer dealerId = ordersRepository.findDealerIdByOrderId(id);
         ordersRepository.delete(id);
+        if (dealerId != null) {
+            dispatchService.dealerReleased(dealerId);
+        }
     }
 
     //getProductIdsByOrderId
@@ -110,6 +208,16 @@ public class OrdersService {
         String sql = "SELECT product_id FROM order_products WHERE order_id = ?";
         return jdbcTemplate.queryForList(sql, Integer.class, orderId);
     }
+
+    /**
+     * Metodo para obtener los ids de los productos de varios pedidos con una sola consulta.
+     * @param "orderIds" Los ids de los pedidos.
+     * @return Un mapa de id de pedido a los ids de sus productos.
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, List<Integer>> getProductIdsByOrderIds(List<Integer> orderIds) {
+        return ordersRepository.getProductIdsByOrderIds(orderIds);
+    }
     /**
      * Metodo para buscar un pedido por su id.
      * @param "id" El id del pedido a buscar.
@@ -137,8 +245,7 @@ public class OrdersService {
         Long userId = userService.getAuthenticatedUserId();
 
         // Obtener el clientId asociado al userId
-        String sql = "SELECT id FROM clients WHERE user_id = ?";
-        Integer clientId = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        Integer clientId = profileIdResolver.getAuthenticatedClientId();
         if (clientId == null) {
             throw new IllegalArgumentException("No se encontró un cliente asociado al usuario con ID " + userId);
         }
@@ -200,37 +307,80 @@ public class OrdersService {
      * - ID del cliente
      * - Array de IDs de productos
      * - ID del dealer (opcional)
+     * - Ruta estimada (opcional)
+     * y devuelve el ID de la orden creada, que además queda asignado en la entidad.
+     *
+     * @return El ID de la orden creada
      */
     @Transactional
-    public void createOrderWithProducts(OrdersEntity order, List<Integer> productIds) {
+    public Integer createOrderWithProducts(OrdersEntity order, List<Integer> productIds) {
         Long userId = userService.getAuthenticatedUserId();
 
         // 1. Obtener ID del cliente
-        String sql = "SELECT id FROM clients WHERE user_id = ?";
-        Integer clientId = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        Integer clientId = profileIdResolver.getAuthenticatedClientId();
         if (clientId == null) {
             throw new IllegalArgumentException("No se encontró un cliente asociado al usuario con ID " + userId);
         }
 
         order.setClientId(clientId);
 
-        // 2. Ejecutar el procedimiento directamente con jdbcTemplate.update
-        sql = "CALL register_order_with_products(?, ?, ?, ?, ?, ?)";
-        jdbcTemplate.update(sql,
+        // 2. Calcular la ruta por calles desde la empresa del último producto (la misma que usa el procedimiento) hasta el cliente
+        byte[] estimatedRoute = null;
+        if (routingService.isEnabled() && productIds != null && !productIds.isEmpty()) {
+            double[] endpoints = ordersRepository.findRouteEndpoints(clientId, productIds.get(productIds.size() - 1));
+            if (endpoints != null) {
+                estimatedRoute = GeometryCodec.lineStringToWkb(
+                        routingService.route(endpoints[0], endpoints[1], endpoints[2], endpoints[3]));
+            }
+        }
+
+        // 3. Ejecutar el procedimiento; su parámetro INOUT devuelve el ID de la orden creada
+        String sql = "CALL register_order_with_products(?, ?, ?, ?, ?, ST_GeomFromWKB(CAST(? AS bytea), 4326), NULL)";
+        Integer orderId = jdbcTemplate.queryForObject(sql, Integer.class,
                 order.getOrderDate(),
                 order.getStatus(),
                 order.getClientId(),
                 productIds.toArray(new Integer[0]), // PASA ARRAY DIRECTO
                 order.getDealerId(),
-                null // No pasamos una ruta estimada, la genera el procedimiento
+                estimatedRoute // Si es null el procedimiento usa la línea recta entre empresa y cliente
         );
+        order.setId(orderId);
+        return orderId;
     }
+    /**
+     * Método para registrar una compra completa: la orden, sus productos y su detalle
+     * @param "order" La entidad de la orden a crear
+     * @param "productIds" Lista de IDs de productos (un ID repetido cuenta como una unidad más)
+     * @param "paymentMethod" El método de pago
+     * @return El ID de la orden creada
+     *
+     * Todo ocurre en una sola transacción: si falla el detalle no queda una orden sin detalle, y el ID usado
+     * es el que devuelve el procedimiento, no el último insertado por cualquier otra compra concurrente.
+     * El precio del detalle es el total calculado por el procedimiento.
+     */
+    @Transactional
+    public Integer checkout(OrdersEntity order, List<Integer> productIds, String paymentMethod) {
+        if (productIds == null || productIds.isEmpty()) {
+            throw new IllegalArgumentException("Debe especificar al menos un producto");
+        }
+        if (paymentMethod == null || paymentMethod.isBlank()) {
+            throw new IllegalArgumentException("Debe especificar un método de pago");
+        }
+        Integer orderId = createOrderWithProducts(order, productIds);
+        orderDetailsRepository.saveForOrder(orderId, paymentMethod, productIds.size());
+        return orderId;
+    }
+
+
     /**
      * Método para obtener el ID del último pedido insertado
      * @return El ID del último pedido insertado
      *
      * Este método utiliza una consulta SQL para obtener el ID del último pedido insertado en la tabla de pedidos.
+     * @deprecated Con compras concurrentes puede devolver el pedido de otro cliente; usar el ID que devuelven
+     * createOrderWithProducts o checkout. Se mantiene una versión para el front end actual.
      */
+    @Deprecated
     @Transactional(readOnly = true)
     public Integer getLastInsertedOrderId() {
         String sql = "SELECT id FROM orders ORDER BY id DESC LIMIT 1";
@@ -250,6 +400,8 @@ public class OrdersService {
     public void markAsDelivered(int orderId, Date deliveryDate) {
         String sql = "CALL change_order_status(?, ?, ?)";
         jdbcTemplate.update(sql, orderId, "ENTREGADO", deliveryDate);
+        releaseDealerOf(orderId);
+        orderEventService.publish(orderId);
     }
 
 
@@ -266,6 +418,18 @@ public class OrdersService {
     public void markAsFailed(int orderId) {
         String sql = "CALL change_order_status(?, ?, ?)";
         jdbcTemplate.update(sql, orderId, "FALLIDA", null); // no se requiere fecha
+        releaseDealerOf(orderId);
+        orderEventService.publish(orderId);
+    }
+
+    /**
+     * Informa al despacho que el repartidor de un pedido cerrado vuelve a estar libre.
+     */
+    private void releaseDealerOf(int orderId) {
+        Integer dealerId = ordersRepository.findDealerIdByOrderId(orderId);
+        if (dealerId != null) {
+            dispatchService.dealerReleased(dealerId);
+        }
     }
 
 
@@ -322,6 +486,12 @@ public class OrdersService {
         } else {
             ordersRepository.updateOrderStatusByDealerId(orderId, dealerId, newStatus);
         }
+        if ("EN PROCESO".equalsIgnoreCase(newStatus)) {
+            dispatchService.dealerBusy(dealerId);
+        } else {
+            dispatchService.dealerReleased(dealerId);
+        }
+        orderEventService.publish(orderId);
     }
 
 
@@ -359,6 +529,7 @@ public class OrdersService {
     public void markAsUrgent(int orderId) {
         String sql = "UPDATE orders SET status = 'URGENTE' WHERE id = ?";
         jdbcTemplate.update(sql, orderId);
+        orderEventService.publish(orderId);
     }
 
 
@@ -375,8 +546,7 @@ public class OrdersService {
         Long userId = userService.getAuthenticatedUserId();
 
         // Obtener el dealerId asociado al userId
-        String sql = "SELECT id FROM dealers WHERE user_id = ?";
-        Integer dealerId = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
         if (dealerId == null) {
             throw new IllegalArgumentException("No se encontró un dealer asociado al usuario con ID " + userId);
         }
@@ -399,8 +569,7 @@ public class OrdersService {
         Long userId = userService.getAuthenticatedUserId();
 
         // Obtener el dealerId asociado al userId
-        String sql = "SELECT id FROM dealers WHERE user_id = ?";
-        Integer dealerId = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
         if (dealerId == null) {
             throw new IllegalArgumentException("No se encontró un dealer asociado al usuario con ID " + userId);
         }
@@ -410,6 +579,50 @@ public class OrdersService {
     }
 
 
+    /**
+     * Método para obtener todas las ordenes activas del dealer autenticado
+     * @return Las ordenes en proceso del dealer en el orden de entrega del viaje
+     *
+     * Un viaje con varias paradas deja varias ordenes en proceso; la primera es la próxima entrega.
+     */
+    @Transactional(readOnly = true)
+    public List<OrdersEntity> getActiveOrdersByDealer() {
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
+        if (dealerId == null) {
+            throw new IllegalArgumentException("No se encontró un dealer asociado al usuario autenticado");
+        }
+        return ordersRepository.findActiveOrdersByDealerId(dealerId);
+    }
+
+
+    /**
+     * Método para suscribir al cliente autenticado a los cambios de estado de sus pedidos
+     * @return La conexión de eventos
+     *
+     * La suscripción se abre antes de leer los pedidos, así que ningún cambio posterior a esa lectura se pierde.
+     */
+    public SseEmitter subscribeClientEvents() {
+        Integer clientId = profileIdResolver.getAuthenticatedClientId();
+        if (clientId == null) {
+            throw new IllegalArgumentException("No se encontró un cliente asociado al usuario");
+        }
+        return orderEventService.subscribeClient(clientId);
+    }
+
+
+    /**
+     * Método para suscribir al dealer autenticado a los cambios de estado de sus pedidos
+     * @return La conexión de eventos
+     */
+    public SseEmitter subscribeDealerEvents() {
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
+        if (dealerId == null) {
+            throw new IllegalArgumentException("No se encontró un dealer asociado al usuario");
+        }
+        return orderEventService.subscribeDealer(dealerId);
+    }
+
+
     /**
      * Método para asignar una orden a un dealer
      * @param "orderId" El ID de la orden a asignar
@@ -421,17 +634,17 @@ public class OrdersService {
     @Transactional
     public void assignOrderToDealer(int orderId) {
         // Obtener dealerId del usuario autenticado
-        Long userId = userService.getAuthenticatedUserId();
-        Integer dealerId = jdbcTemplate.queryForObject(
-                "SELECT id FROM dealers WHERE user_id = ?",
-                Integer.class, userId
-        );
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
 
         if (dealerId == null) {
             throw new IllegalArgumentException("No se encontró un dealer asociado al usuario");
         }
 
-        // Verificar que el dealer no tenga otra orden activa
+        // Verificar que el dealer no tenga otra orden activa; el bloqueo evita que una asignación concurrente
+        // (despacho automático u otra solicitud del mismo dealer) pase la misma verificación
+        if (!ordersRepository.lockDealer(dealerId)) {
+            throw new IllegalArgumentException("No se encontró el dealer con ID " + dealerId);
+        }
         OrdersEntity activeOrder = ordersRepository.findActiveOrderByDealerId(dealerId);
         if (activeOrder != null) {
             throw new IllegalStateException("El dealer ya tiene una orden activa");
@@ -439,6 +652,8 @@ public class OrdersService {
 
         // Asignar orden al dealer
         ordersRepository.assignOrderToDealer(orderId, dealerId);
+        dispatchService.dealerBusy(dealerId);
+        orderEventService.publish(orderId);
     }
 
 
@@ -453,8 +668,7 @@ public class OrdersService {
     public List<OrderTotalProductsDTO> getOrdersWithProductCountByDealerId() {
         Long userId = userService.getAuthenticatedUserId();
 
-        String sql = "SELECT id FROM dealers WHERE user_id = ?";
-        Integer dealerId = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
 
         if (dealerId == null) {
             throw new IllegalArgumentException("No se encontró un dealer asociado al usuario con ID " + userId);
@@ -477,8 +691,7 @@ public class OrdersService {
         Long userId = userService.getAuthenticatedUserId();
 
         // Obtener el dealerId asociado al usuario autenticado
-        String sql = "SELECT id FROM dealers WHERE user_id = ?";
-        Integer dealerId = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
 
         if (dealerId == null) {
             throw new IllegalArgumentException("No se encontró un dealer asociado al usuario con ID " + userId);
@@ -490,11 +703,9 @@ public class OrdersService {
 
     @Transactional
     public void updateOrderRouteWithWKT(int orderId, String lineStringWKT) {
-        // Validación básica del WKT
-        if (!lineStringWKT.toUpperCase().startsWith("LINESTRING(")) {
-            throw new IllegalArgumentException("Formato WKT inválido. Debe comenzar con 'LINESTRING('");
-        }
-        ordersRepository.updateEstimatedRoute(orderId, lineStringWKT);
+        // Validar el WKT completo y obtener sus coordenadas
+        double[] route = GeometryCodec.parseLineString(lineStringWKT);
+        ordersRepository.updateEstimatedRoute(orderId, route);
     }
 
     @Transactional
@@ -0,0 +1,156 @@
+package bdavanzadas.lab1.services;
+
+import bdavanzadas.lab1.dtos.OutboxMetricsDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relay del outbox transaccional.
+ * Los triggers de pedidos, repartidores, clientes, compañías y calificaciones registran cada cambio en la tabla
+ * sync_outbox dentro de la misma transacción que lo produjo. Este servicio lee el outbox por lotes, vuelve a leer
+ * las filas afectadas y las aplica en MongoDB con upserts idempotentes (o las elimina si ya no existen),
+ * por lo que MongoDB queda al día sin esperar una nueva migración.
+ */
+@Service
+public class OutboxRelayService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MigrationService migrationService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Cantidad máxima de eventos que se toman en cada lote.
+     */
+    private final int batchSize;
+
+    /**
+     * Permite desactivar el relay (por ejemplo, mientras corre una migración completa).
+     */
+    private final boolean enabled;
+
+    private final AtomicLong processedEvents = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile long lastBatchMillis;
+    private volatile LocalDateTime lastRelayAt;
+
+    /**
+     * Constructor que inyecta las dependencias necesarias.
+     * @param jdbcTemplate Plantilla JDBC de PostgreSQL
+     * @param transactionManager Administrador de transacciones de PostgreSQL
+     * @param migrationService Servicio de migración, que sabe leer y mapear cada entidad
+     * @param batchSize Eventos por lote
+     * @param enabled Si el relay está activo
+     */
+    public OutboxRelayService(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              MigrationService migrationService,
+                              @Value("${outbox.relay.batch-size:500}") int batchSize,
+                              @Value("${outbox.relay.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.migrationService = migrationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Vacía el outbox periódicamente: procesa lotes mientras vengan llenos.
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.delay-ms:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            while (relayBatch() == batchSize) {
+                // Quedan eventos pendientes, se sigue con el siguiente lote
+            }
+        } catch (RuntimeException e) {
+            // El lote se revierte y sus eventos se reintentan en la siguiente pasada
+            System.out.println("Error al aplicar el outbox en MongoDB: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Procesa un lote del outbox en una transacción.
+     * Los eventos se bloquean con SKIP LOCKED, así que varias instancias pueden trabajar sin pisarse.
+     * Los eventos repetidos de una misma fila se aplican una sola vez y, como MongoDB se escribe antes del commit,
+     * un fallo al confirmar solo provoca que el lote se vuelva a aplicar, lo que es inofensivo.
+     * @return Cantidad de eventos procesados
+     */
+    public int relayBatch() {
+        long start = System.nanoTime();
+
+        Integer processed = transactionTemplate.execute(status -> {
+            List<Long> eventIds = new ArrayList<>();
+            Map<String, Set<Integer>> idsByEntity = new LinkedHashMap<>();
+
+            jdbcTemplate.query(
+                    "SELECT id, entity, entity_id FROM sync_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                    (RowCallbackHandler) rs -> {
+                        eventIds.add(rs.getLong("id"));
+                        idsByEntity.computeIfAbsent(rs.getString("entity"), entity -> new LinkedHashSet<>())
+                                .add(rs.getInt("entity_id"));
+                    },
+                    batchSize);
+
+            if (eventIds.isEmpty()) {
+                return 0;
+            }
+
+            idsByEntity.forEach(migrationService::syncByIds);
+            jdbcTemplate.update("DELETE FROM sync_outbox WHERE id = ANY(?)", (Object) eventIds.toArray(new Long[0]));
+            return eventIds.size();
+        });
+
+        long elapsed = System.nanoTime() - start;
+        if (processed != null && processed > 0) {
+            processedEvents.addAndGet(processed);
+            busyNanos.addAndGet(elapsed);
+            lastBatchSize = processed;
+            lastBatchMillis = elapsed / 1_000_000;
+            lastRelayAt = LocalDateTime.now();
+        }
+        return processed == null ? 0 : processed;
+    }
+
+    /**
+     * Obtiene las métricas del relay: eventos pendientes, retraso del evento más antiguo
+     * y rendimiento acumulado en eventos por segundo de trabajo.
+     * @return Métricas del relay
+     */
+    public OutboxMetricsDTO getMetrics() {
+        Map<String, Object> backlog = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS pending, " +
+                        "COALESCE(EXTRACT(EPOCH FROM clock_timestamp() - MIN(created_at)), 0) AS lag_seconds " +
+                        "FROM sync_outbox");
+
+        long processed = processedEvents.get();
+        long busy = busyNanos.get();
+        double eventsPerSecond = busy > 0 ? processed * 1_000_000_000.0 / busy : 0;
+
+        return new OutboxMetricsDTO(
+                ((Number) backlog.get("pending")).longValue(),
+                ((Number) backlog.get("lag_seconds")).doubleValue(),
+                processed,
+                lastBatchSize,
+                lastBatchMillis,
+                eventsPerSecond,
+                lastRelayAt);
+    }
+}
@@ -0,0 +1,123 @@
+package bdavanzadas.lab1.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Cola circular acotada y sin bloqueos de posiciones de repartidores: varios productores y un solo consumidor.
+ * Cada casilla tiene un número de secuencia que indica si está libre para la vuelta actual del productor o
+ * lista para el consumidor; los productores reservan casillas con compareAndSet sobre la cola y nunca esperan:
+ * si el buffer está lleno, offer devuelve false.
+ * Los datos se guardan en arreglos primitivos paralelos para no crear un objeto por posición.
+ */
+final class PositionRingBuffer {
+
+    /**
+     * Recibe las posiciones que se extraen del buffer.
+     */
+    interface Sink {
+        void accept(int dealerId, double longitude, double latitude, long epochMillis);
+    }
+
+    private final int mask;
+    private final int[] dealerIds;
+    private final double[] longitudes;
+    private final double[] latitudes;
+    private final long[] times;
+
+    /**
+     * Secuencia de cada casilla: igual a la posición si está libre para escribirla, posición + 1 si está lista para leer.
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * Próxima posición a reservar por los productores.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Próxima posición a leer; solo la modifica el consumidor.
+     */
+    private volatile long head;
+
+    /**
+     * Crea el buffer.
+     * @param capacity Cantidad de casillas, potencia de dos
+     */
+    PositionRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacidad del buffer debe ser una potencia de dos: " + capacity);
+        }
+        mask = capacity - 1;
+        dealerIds = new int[capacity];
+        longitudes = new double[capacity];
+        latitudes = new double[capacity];
+        times = new long[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Agrega una posición. Puede llamarse desde cualquier hilo.
+     * @return false si el buffer está lleno
+     */
+    boolean offer(int dealerId, double longitude, double latitude, long epochMillis) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    dealerIds[index] = dealerId;
+                    longitudes[index] = longitude;
+                    latitudes[index] = latitude;
+                    times[index] = epochMillis;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Extrae posiciones en orden de llegada. Solo debe llamarse desde un hilo a la vez.
+     * @param sink Destino de las posiciones
+     * @param max Cantidad máxima a extraer
+     * @return Cantidad de posiciones extraídas
+     */
+    int drain(Sink sink, int max) {
+        long position = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break; // vacío, o un productor reservó la casilla y aún no termina de escribirla
+            }
+            sink.accept(dealerIds[index], longitudes[index], latitudes[index], times[index]);
+            sequences.set(index, position + mask + 1);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    /**
+     * Cantidad aproximada de posiciones en espera.
+     */
+    int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head, mask + 1));
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
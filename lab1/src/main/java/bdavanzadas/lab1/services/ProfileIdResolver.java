@@ -0,0 +1,188 @@
+package bdavanzadas.lab1.services;
+
+import bdavanzadas.lab1.Config.BoundedTtlCache;
+import bdavanzadas.lab1.Security.AuthenticatedProfile;
+import bdavanzadas.lab1.Security.JwtUtil;
+import bdavanzadas.lab1.repositories.ClientRepository;
+import bdavanzadas.lab1.repositories.DealerRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servicio que resuelve el id de cliente o de repartidor asociado a un usuario.
+ * Primero usa los ids que vienen como claims en el token del usuario autenticado; si no están,
+ * consulta la base de datos y guarda el resultado en una caché acotada por tamaño y tiempo de vida.
+ * Al eliminar un cliente o repartidor, una vez confirmada la transacción, se invalida su entrada y se recuerda el id
+ * eliminado durante la vigencia máxima de un token: mientras tanto no se acepta ni desde el claim ni desde la caché.
+ */
+@Service
+public class ProfileIdResolver {
+
+    /**
+     * Tiempo que se recuerdan los perfiles eliminados: la vigencia máxima de un token.
+     */
+    private static final long DELETED_PROFILE_TTL_MILLIS = JwtUtil.EXPIRATION_TIME;
+
+    private final ClientRepository clientRepository;
+    private final DealerRepository dealerRepository;
+
+    /**
+     * Caché de userId a clientId.
+     */
+    private final BoundedTtlCache<Long, Integer> clientIds;
+
+    /**
+     * Caché de userId a dealerId.
+     */
+    private final BoundedTtlCache<Long, Integer> dealerIds;
+
+    /**
+     * Clientes y repartidores eliminados cuyos ids aún pueden venir en tokens vigentes, con el instante de eliminación.
+     * No tienen tamaño máximo: descartar una entrada antes de tiempo volvería a aceptar el id eliminado.
+     */
+    private final Map<Integer, Long> deletedClients = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> deletedDealers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor que inyecta los repositorios y la configuración de la caché.
+     * @param clientRepository Repositorio de clientes
+     * @param dealerRepository Repositorio de repartidores
+     * @param maxSize Cantidad máxima de usuarios en cada caché
+     * @param ttlSeconds Tiempo de vida de cada entrada en segundos
+     */
+    public ProfileIdResolver(ClientRepository clientRepository,
+                             DealerRepository dealerRepository,
+                             @Value("${profile-cache.max-size:10000}") int maxSize,
+                             @Value("${profile-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.clientRepository = clientRepository;
+        this.dealerRepository = dealerRepository;
+        this.clientIds = new BoundedTtlCache<>(maxSize, ttlSeconds * 1000);
+        this.dealerIds = new BoundedTtlCache<>(maxSize, ttlSeconds * 1000);
+    }
+
+    /**
+     * Obtiene el id de cliente de un usuario.
+     * @param userId Id del usuario
+     * @return Id del cliente, o null si el usuario no es cliente
+     */
+    public Integer getClientId(long userId) {
+        Integer clientId = clientIds.get(userId);
+        if (clientId == null) {
+            clientId = clientRepository.findIdByUserId(userId);
+            if (clientId != null && !isDeleted(deletedClients, clientId)) {
+                clientIds.put(userId, clientId);
+            }
+        }
+        if (clientId != null && isDeleted(deletedClients, clientId)) {
+            clientIds.remove(userId);
+            return null;
+        }
+        return clientId;
+    }
+
+    /**
+     * Obtiene el id de repartidor de un usuario.
+     * @param userId Id del usuario
+     * @return Id del repartidor, o null si el usuario no es repartidor
+     */
+    public Integer getDealerId(long userId) {
+        Integer dealerId = dealerIds.get(userId);
+        if (dealerId == null) {
+            dealerId = dealerRepository.findIdByUserId(userId);
+            if (dealerId != null && !isDeleted(deletedDealers, dealerId)) {
+                dealerIds.put(userId, dealerId);
+            }
+        }
+        if (dealerId != null && isDeleted(deletedDealers, dealerId)) {
+            dealerIds.remove(userId);
+            return null;
+        }
+        return dealerId;
+    }
+
+    /**
+     * Obtiene el id de cliente del usuario autenticado.
+     * @return Id del cliente, o null si el usuario no es cliente
+     */
+    public Integer getAuthenticatedClientId() {
+        AuthenticatedProfile profile = authenticatedProfile();
+        if (profile != null && profile.getClientId() != null && !isDeleted(deletedClients, profile.getClientId())) {
+            return profile.getClientId();
+        }
+        return getClientId(authenticatedUserId());
+    }
+
+    /**
+     * Obtiene el id de repartidor del usuario autenticado.
+     * @return Id del repartidor, o null si el usuario no es repartidor
+     */
+    public Integer getAuthenticatedDealerId() {
+        AuthenticatedProfile profile = authenticatedProfile();
+        if (profile != null && profile.getDealerId() != null && !isDeleted(deletedDealers, profile.getDealerId())) {
+            return profile.getDealerId();
+        }
+        return getDealerId(authenticatedUserId());
+    }
+
+    /**
+     * Invalida la caché de un cliente eliminado cuando se confirme la transacción actual.
+     * @param clientId Id del cliente
+     */
+    public void evictClient(int clientId) {
+        TransactionHooks.afterCommit(() -> {
+            markDeleted(deletedClients, clientId);
+            clientIds.removeIfValue(id -> id == clientId);
+        });
+    }
+
+    /**
+     * Invalida la caché de un repartidor eliminado cuando se confirme la transacción actual.
+     * @param dealerId Id del repartidor
+     */
+    public void evictDealer(int dealerId) {
+        TransactionHooks.afterCommit(() -> {
+            markDeleted(deletedDealers, dealerId);
+            dealerIds.removeIfValue(id -> id == dealerId);
+        });
+    }
+
+    private static void markDeleted(Map<Integer, Long> deleted, int id) {
+        long now = System.currentTimeMillis();
+        // Las eliminaciones son poco frecuentes: se aprovechan para descartar las marcas vencidas
+        deleted.values().removeIf(deletedAt -> now - deletedAt > DELETED_PROFILE_TTL_MILLIS);
+        deleted.put(id, now);
+    }
+
+    private static boolean isDeleted(Map<Integer, Long> deleted, int id) {
+        Long deletedAt = deleted.get(id);
+        if (deletedAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - deletedAt > DELETED_PROFILE_TTL_MILLIS) {
+            deleted.remove(id, deletedAt);
+            return false;
+        }
+        return true;
+    }
+
+    private static AuthenticatedProfile authenticatedProfile() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getDetails() instanceof AuthenticatedProfile profile) {
+            return profile;
+        }
+        return null;
+    }
+
+    private static long authenticatedUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof Long userId) {
+            return userId;
+        }
+        throw new RuntimeException("Usuario no autenticado");
+    }
+}
@@ -51,6 +51,13 @@ public class RatingService {
     private UserService userService;
 
 
+    /**
+     * Resolutor del dealer asociado al usuario autenticado.
+     */
+    @Autowired
+    private ProfileIdResolver profileIdResolver;
+
+
     /**
      * Constructor de la clase RatingService.
      * @param "ratingRepository" El repositorio de calificaciones a utilizar.
@@ -165,8 +172,7 @@ public class RatingService {
             }
 
             // Obtener el dealerId a partir del userId
-            String sql = "SELECT id FROM dealers WHERE user_id = ?";
-            Integer dealerId = jdbcTemplate.queryForObject(sql, new Object[]{userId}, Integer.class);
+            Integer dealerId = profileIdResolver.getAuthenticatedDealerId();
             if (dealerId == null) {
                 throw new IllegalArgumentException("El dealer no existe para el usuario autenticado.");
             }
@@ -0,0 +1,421 @@
+package bdavanzadas.lab1.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+
+
+/**
+ * Grafo vial en memoria con adyacencia compacta (CSR) y búsqueda de rutas A*.
+ * Los nodos se guardan en arreglos paralelos de longitud y latitud; las aristas salientes del nodo i ocupan
+ * las posiciones firstEdge[i] a firstEdge[i + 1] - 1 de los arreglos edgeTarget y edgeMeters.
+ * Un índice de grilla con las celdas ordenadas permite ubicar el nodo más cercano a una coordenada.
+ *
+ * El archivo es texto, una entrada por línea (derivado de OSM con cualquier herramienta de exportación):
+ * - "v id longitud latitud": nodo, con el id de OSM u otro id entero
+ * - "e desde hasta [metros]": calle de doble sentido
+ * - "a desde hasta [metros]": calle de un solo sentido
+ * Las líneas vacías y las que comienzan con # se ignoran. Si se omiten los metros se usa la distancia geodésica entre los nodos.
+ */
+final class RoadGraph {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180.0;
+
+    private static final double CELL_DEGREES = 0.005;
+
+    private final double[] longitudes;
+    private final double[] latitudes;
+    private final int[] firstEdge;
+    private final int[] edgeTarget;
+    private final float[] edgeMeters;
+
+    /**
+     * Celdas de la grilla ordenadas; los nodos de cellKeys[i] son cellNodes[cellStart[i]] a cellNodes[cellStart[i + 1] - 1].
+     */
+    private final long[] cellKeys;
+    private final int[] cellStart;
+    private final int[] cellNodes;
+
+    /**
+     * Estados de búsqueda libres, para no reservar arreglos del tamaño del grafo en cada ruta.
+     * Guarda como máximo uno por procesador: si todos están en uso se crea uno temporal, que se descarta al
+     * terminar si el grupo está lleno, así la memoria retenida no crece con la cantidad de hilos del servidor.
+     */
+    private final ArrayBlockingQueue<SearchState> searchStates =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    private RoadGraph(double[] longitudes, double[] latitudes, int[] edgeFrom, int[] edgeTo, float[] meters, int edgeCount) {
+        int nodeCount = longitudes.length;
+        this.longitudes = longitudes;
+        this.latitudes = latitudes;
+
+        // Adyacencia CSR: contar aristas salientes por nodo, acumular y ubicar cada arista en su tramo
+        firstEdge = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            firstEdge[edgeFrom[i] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            firstEdge[i + 1] += firstEdge[i];
+        }
+        edgeTarget = new int[edgeCount];
+        edgeMeters = new float[edgeCount];
+        int[] next = Arrays.copyOf(firstEdge, nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            int slot = next[edgeFrom[i]]++;
+            edgeTarget[slot] = edgeTo[i];
+            edgeMeters[slot] = meters[i];
+        }
+
+        // Grilla: ordenar los nodos por celda y guardar el inicio de cada celda
+        long[] nodeKeys = new long[nodeCount];
+        Integer[] order = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeKeys[i] = key(cell(longitudes[i]), cell(latitudes[i]));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(nodeKeys[a], nodeKeys[b]));
+        cellNodes = new int[nodeCount];
+        long[] keys = new long[nodeCount];
+        int[] starts = new int[nodeCount + 1];
+        int cells = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            int node = order[i];
+            cellNodes[i] = node;
+            if (cells == 0 || keys[cells - 1] != nodeKeys[node]) {
+                keys[cells] = nodeKeys[node];
+                starts[cells] = i;
+                cells++;
+            }
+        }
+        starts[cells] = nodeCount;
+        cellKeys = Arrays.copyOf(keys, cells);
+        cellStart = Arrays.copyOf(starts, cells + 1);
+    }
+
+    /**
+     * Carga un grafo vial desde un archivo.
+     * @param file Ruta del archivo
+     * @return El grafo cargado
+     * @throws IOException si no se puede leer el archivo
+     * @throws IllegalArgumentException si una línea no tiene el formato esperado o referencia un nodo inexistente
+     */
+    static RoadGraph load(Path file) throws IOException {
+        Map<Long, Integer> index = new HashMap<>();
+        double[] longitudes = new double[1024];
+        double[] latitudes = new double[1024];
+        int nodeCount = 0;
+        int[] edgeFrom = new int[4096];
+        int[] edgeTo = new int[4096];
+        float[] meters = new float[4096];
+        int edgeCount = 0;
+        // Las aristas se resuelven al final para aceptar archivos donde aparecen antes que sus nodos
+        long[] rawFrom = new long[4096];
+        long[] rawTo = new long[4096];
+        double[] rawMeters = new double[4096];
+        boolean[] rawOneWay = new boolean[4096];
+        int rawCount = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] parts = line.split("[\\s,]+");
+                try {
+                    switch (parts[0]) {
+                        case "v" -> {
+                            if (parts.length != 4) {
+                                throw new IllegalArgumentException("se esperaba 'v id longitud latitud'");
+                            }
+                            if (index.putIfAbsent(Long.parseLong(parts[1]), nodeCount) != null) {
+                                throw new IllegalArgumentException("nodo repetido " + parts[1]);
+                            }
+                            if (nodeCount == longitudes.length) {
+                                longitudes = Arrays.copyOf(longitudes, nodeCount * 2);
+                                latitudes = Arrays.copyOf(latitudes, nodeCount * 2);
+                            }
+                            longitudes[nodeCount] = Double.parseDouble(parts[2]);
+                            latitudes[nodeCount] = Double.parseDouble(parts[3]);
+                            nodeCount++;
+                        }
+                        case "e", "a" -> {
+                            if (parts.length < 3 || parts.length > 4) {
+                                throw new IllegalArgumentException("se esperaba '" + parts[0] + " desde hasta [metros]'");
+                            }
+                            if (rawCount == rawFrom.length) {
+                                rawFrom = Arrays.copyOf(rawFrom, rawCount * 2);
+                                rawTo = Arrays.copyOf(rawTo, rawCount * 2);
+                                rawMeters = Arrays.copyOf(rawMeters, rawCount * 2);
+                                rawOneWay = Arrays.copyOf(rawOneWay, rawCount * 2);
+                            }
+                            rawFrom[rawCount] = Long.parseLong(parts[1]);
+                            rawTo[rawCount] = Long.parseLong(parts[2]);
+                            rawMeters[rawCount] = parts.length == 4 ? Double.parseDouble(parts[3]) : -1;
+                            rawOneWay[rawCount] = parts[0].equals("a");
+                            rawCount++;
+                        }
+                        default -> throw new IllegalArgumentException("tipo de línea desconocido '" + parts[0] + "'");
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Grafo vial inválido en la línea " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        longitudes = Arrays.copyOf(longitudes, nodeCount);
+        latitudes = Arrays.copyOf(latitudes, nodeCount);
+        for (int i = 0; i < rawCount; i++) {
+            Integer from = index.get(rawFrom[i]);
+            Integer to = index.get(rawTo[i]);
+            if (from == null || to == null) {
+                throw new IllegalArgumentException("Grafo vial inválido: la arista " + rawFrom[i] + "-" + rawTo[i]
+                        + " referencia un nodo inexistente");
+            }
+            // El largo nunca es menor que la distancia geodésica, así la heurística de A* sigue siendo admisible
+            double straight = distanceMeters(longitudes[from], latitudes[from], longitudes[to], latitudes[to]);
+            float length = (float) Math.max(rawMeters[i], straight);
+            int needed = edgeCount + 2;
+            if (needed > edgeFrom.length) {
+                int capacity = Math.max(needed, edgeFrom.length * 2);
+                edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+                edgeTo = Arrays.copyOf(edgeTo, capacity);
+                meters = Arrays.copyOf(meters, capacity);
+            }
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            meters[edgeCount++] = length;
+            if (!rawOneWay[i]) {
+                edgeFrom[edgeCount] = to;
+                edgeTo[edgeCount] = from;
+                meters[edgeCount++] = length;
+            }
+        }
+        return new RoadGraph(longitudes, latitudes, edgeFrom, edgeTo, meters, edgeCount);
+    }
+
+    int nodeCount() {
+        return longitudes.length;
+    }
+
+    int edgeCount() {
+        return edgeTarget.length;
+    }
+
+    /**
+     * Busca el nodo más cercano a una coordenada dentro de un radio.
+     * @param longitude Longitud
+     * @param latitude Latitud
+     * @param maxMeters Distancia máxima en metros
+     * @return Índice del nodo, o -1 si no hay nodos dentro del radio
+     */
+    int nearestNode(double longitude, double latitude, double maxMeters) {
+        int cx = cell(longitude);
+        int cy = cell(latitude);
+        double metersPerCell = CELL_DEGREES * METERS_PER_DEGREE
+                * Math.cos(Math.toRadians(Math.min(89.0, Math.abs(latitude) + maxMeters / METERS_PER_DEGREE)));
+        int maxRing = (int) Math.ceil(maxMeters / metersPerCell) + 1;
+        int best = -1;
+        double bestMeters = maxMeters;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Las celdas del anillo están a al menos (ring - 1) celdas del punto
+            if (best >= 0 && (ring - 1) * metersPerCell > bestMeters) {
+                break;
+            }
+            for (int x = cx - ring; x <= cx + ring; x++) {
+                boolean edgeColumn = x == cx - ring || x == cx + ring;
+                int step = edgeColumn ? 1 : Math.max(1, 2 * ring);
+                for (int y = cy - ring; y <= cy + ring; y += step) {
+                    int position = Arrays.binarySearch(cellKeys, key(x, y));
+                    if (position < 0) {
+                        continue;
+                    }
+                    for (int i = cellStart[position]; i < cellStart[position + 1]; i++) {
+                        int node = cellNodes[i];
+                        double meters = distanceMeters(longitude, latitude, longitudes[node], latitudes[node]);
+                        if (meters <= bestMeters) {
+                            best = node;
+                            bestMeters = meters;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Calcula la ruta más corta entre dos nodos con A* (heurística: distancia geodésica al destino).
+     * @param source Nodo de origen
+     * @param target Nodo de destino
+     * @return Coordenadas de la ruta {x0, y0, x1, y1, ...}, o null si el destino no es alcanzable
+     */
+    double[] shortestPath(int source, int target) {
+        SearchState state = searchStates.poll();
+        if (state == null) {
+            state = new SearchState(longitudes.length);
+        }
+        try {
+            return shortestPath(state, source, target);
+        } finally {
+            searchStates.offer(state);
+        }
+    }
+
+    private double[] shortestPath(SearchState state, int source, int target) {
+        int epoch = state.nextEpoch();
+        double targetLon = longitudes[target];
+        double targetLat = latitudes[target];
+
+        state.reach(source, epoch, 0.0, -1);
+        state.push(source, distanceMeters(longitudes[source], latitudes[source], targetLon, targetLat));
+        while (state.size > 0) {
+            int node = state.pop();
+            if (state.closed[node] == epoch) {
+                continue;
+            }
+            state.closed[node] = epoch;
+            if (node == target) {
+                return path(state, target);
+            }
+            double base = state.cost[node];
+            for (int e = firstEdge[node]; e < firstEdge[node + 1]; e++) {
+                int next = edgeTarget[e];
+                if (state.closed[next] == epoch) {
+                    continue;
+                }
+                double cost = base + edgeMeters[e];
+                if (state.seen[next] != epoch || cost < state.cost[next]) {
+                    state.reach(next, epoch, cost, node);
+                    state.push(next, cost + distanceMeters(longitudes[next], latitudes[next], targetLon, targetLat));
+                }
+            }
+        }
+        return null;
+    }
+
+    private double[] path(SearchState state, int target) {
+        int length = 0;
+        for (int node = target; node >= 0; node = state.parent[node]) {
+            length++;
+        }
+        double[] coordinates = new double[length * 2];
+        int i = length;
+        for (int node = target; node >= 0; node = state.parent[node]) {
+            i--;
+            coordinates[2 * i] = longitudes[node];
+            coordinates[2 * i + 1] = latitudes[node];
+        }
+        return coordinates;
+    }
+
+    static double distanceMeters(double lon1, double lat1, double lon2, double lat2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * Arreglos de una búsqueda A*. En vez de limpiarlos entre búsquedas, cada búsqueda usa un número de época
+     * y un nodo solo se considera visitado si su marca coincide con la época actual.
+     * La cola de prioridad es un montículo binario de índices con eliminación perezosa de entradas obsoletas.
+     */
+    private static final class SearchState {
+        private final double[] cost;
+        private final int[] parent;
+        private final int[] seen;
+        private final int[] closed;
+        private int epoch;
+        private int[] heapNodes = new int[256];
+        private double[] heapKeys = new double[256];
+        private int size;
+
+        private SearchState(int nodeCount) {
+            cost = new double[nodeCount];
+            parent = new int[nodeCount];
+            seen = new int[nodeCount];
+            closed = new int[nodeCount];
+        }
+
+        private int nextEpoch() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                Arrays.fill(closed, 0);
+                epoch = 1;
+            }
+            size = 0;
+            return epoch;
+        }
+
+        private void reach(int node, int epoch, double nodeCost, int from) {
+            seen[node] = epoch;
+            cost[node] = nodeCost;
+            parent[node] = from;
+        }
+
+        private void push(int node, double key) {
+            if (size == heapNodes.length) {
+                heapNodes = Arrays.copyOf(heapNodes, size * 2);
+                heapKeys = Arrays.copyOf(heapKeys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (heapKeys[up] <= key) {
+                    break;
+                }
+                heapNodes[i] = heapNodes[up];
+                heapKeys[i] = heapKeys[up];
+                i = up;
+            }
+            heapNodes[i] = node;
+            heapKeys[i] = key;
+        }
+
+        private int pop() {
+            int top = heapNodes[0];
+            int lastNode = heapNodes[--size];
+            double lastKey = heapKeys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heapKeys[child + 1] < heapKeys[child]) {
+                    child++;
+                }
+                if (heapKeys[child] >= lastKey) {
+                    break;
+                }
+                heapNodes[i] = heapNodes[child];
+                heapKeys[i] = heapKeys[child];
+                i = child;
+            }
+            heapNodes[i] = lastNode;
+            heapKeys[i] = lastKey;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package bdavanzadas.lab1.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+/**
+ * Cálculo de rutas por calles sobre un grafo vial local, sin servicios externos.
+ * El grafo se carga al iniciar la aplicación desde el archivo indicado en routing.graph-file (ver RoadGraph para el formato).
+ * Los extremos de la ruta se conectan al nodo más cercano del grafo; si no hay grafo configurado, si algún extremo
+ * queda a más de routing.max-snap-meters de la red o si el destino no es alcanzable, la ruta es la línea recta.
+ */
+@Service
+public class RoutingService {
+
+    /**
+     * Grafo vial (null si el enrutamiento por calles está deshabilitado).
+     */
+    private final RoadGraph graph;
+
+    /**
+     * Distancia máxima en metros entre un extremo de la ruta y el nodo del grafo al que se conecta.
+     */
+    private final double maxSnapMeters;
+
+    /**
+     * Constructor que carga el grafo vial.
+     * @param graphFile Ruta del archivo del grafo; vacío para usar líneas rectas
+     * @param maxSnapMeters Distancia máxima de un extremo a la red vial
+     */
+    public RoutingService(@Value("${routing.graph-file:}") String graphFile,
+                          @Value("${routing.max-snap-meters:1000}") double maxSnapMeters) {
+        this.maxSnapMeters = maxSnapMeters;
+        if (graphFile == null || graphFile.isBlank()) {
+            graph = null;
+            System.out.println("Enrutamiento por calles deshabilitado: las rutas estimadas serán líneas rectas");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            graph = RoadGraph.load(Path.of(graphFile));
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer el grafo vial " + graphFile, e);
+        }
+        System.out.println("Grafo vial cargado: " + graph.nodeCount() + " nodos y " + graph.edgeCount()
+                + " aristas en " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Indica si hay un grafo vial cargado.
+     * @return true si las rutas se calculan por calles
+     */
+    public boolean isEnabled() {
+        return graph != null;
+    }
+
+    /**
+     * Calcula la ruta entre dos puntos.
+     * @param fromLongitude Longitud de origen
+     * @param fromLatitude Latitud de origen
+     * @param toLongitude Longitud de destino
+     * @param toLatitude Latitud de destino
+     * @return Coordenadas de la ruta {x0, y0, x1, y1, ...}, comenzando en el origen y terminando en el destino
+     */
+    public double[] route(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude) {
+        double[] straight = {fromLongitude, fromLatitude, toLongitude, toLatitude};
+        if (graph == null) {
+            return straight;
+        }
+        int source = graph.nearestNode(fromLongitude, fromLatitude, maxSnapMeters);
+        int target = graph.nearestNode(toLongitude, toLatitude, maxSnapMeters);
+        if (source < 0 || target < 0) {
+            return straight;
+        }
+        double[] path = graph.shortestPath(source, target);
+        if (path == null) {
+            return straight;
+        }
+
+        // Agregar los extremos reales antes y después del tramo por calles, sin repetir puntos
+        double[] route = new double[path.length + 4];
+        int size = 0;
+        route[size++] = fromLongitude;
+        route[size++] = fromLatitude;
+        for (int i = 0; i < path.length; i += 2) {
+            if (path[i] != route[size - 2] || path[i + 1] != route[size - 1]) {
+                route[size++] = path[i];
+                route[size++] = path[i + 1];
+            }
+        }
+        if (toLongitude != route[size - 2] || toLatitude != route[size - 1] || size == 2) {
+            route[size++] = toLongitude;
+            route[size++] = toLatitude;
+        }
+        return size == route.length ? route : Arrays.copyOf(route, size);
+    }
+}
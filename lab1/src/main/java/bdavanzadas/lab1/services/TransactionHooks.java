@@ -0,0 +1,33 @@
+package bdavanzadas.lab1.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+
+/**
+ * Acciones que deben ejecutarse solo cuando la transacción actual se confirma,
+ * como actualizar estado en memoria o notificar a terceros.
+ */
+final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * Ejecuta una acción al confirmar la transacción actual, o de inmediato si no hay una transacción activa.
+     * Si la transacción se revierte, la acción no se ejecuta.
+     * @param action Acción a ejecutar
+     */
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
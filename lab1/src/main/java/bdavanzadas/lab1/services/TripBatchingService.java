@@ -0,0 +1,330 @@
+package bdavanzadas.lab1.services;
+
+import bdavanzadas.lab1.dtos.DispatchAssignmentDTO;
+import bdavanzadas.lab1.dtos.DispatchTripDTO;
+import bdavanzadas.lab1.dtos.PendingOrderDTO;
+import bdavanzadas.lab1.repositories.OrdersRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Agrupación de pedidos pendientes en viajes con varias paradas.
+ * Los pedidos cuyo punto de retiro está cerca (la misma empresa o empresas vecinas) y cuyos clientes están en la misma zona
+ * se asignan juntos al repartidor libre más cercano. El viaje recorre primero los puntos de retiro y luego las entregas;
+ * cada tramo se ordena con la heurística del vecino más cercano y se mejora con 2-opt.
+ * La ruta combinada se guarda como ruta estimada de cada pedido del viaje.
+ */
+@Service
+public class TripBatchingService {
+
+    /**
+     * Iteraciones máximas de 2-opt por tramo; con pocas paradas converge mucho antes.
+     */
+    private static final int MAX_TWO_OPT_PASSES = 50;
+
+    private final OrdersRepository ordersRepository;
+
+    private final DispatchService dispatchService;
+
+    private final RoutingService routingService;
+
+    private final OrderEventService orderEventService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Si es true, el despacho automático arma viajes con varias paradas en vez de asignar un pedido por repartidor.
+     */
+    private final boolean enabled;
+
+    private final boolean autoAssign;
+
+    /**
+     * Pedidos máximos por viaje.
+     */
+    private final int maxOrders;
+
+    /**
+     * Distancia máxima en metros entre los puntos de retiro de un viaje.
+     */
+    private final double pickupRadiusMeters;
+
+    /**
+     * Distancia máxima en metros entre las entregas de un viaje.
+     */
+    private final double deliveryRadiusMeters;
+
+    private final int waveSize;
+
+    private final Object waveLock = new Object();
+
+    /**
+     * Constructor que inyecta los servicios y la configuración de los viajes.
+     */
+    public TripBatchingService(OrdersRepository ordersRepository,
+                               DispatchService dispatchService,
+                               RoutingService routingService,
+                               OrderEventService orderEventService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${dispatch.batching.enabled:false}") boolean enabled,
+                               @Value("${dispatch.auto-assign:false}") boolean autoAssign,
+                               @Value("${dispatch.batching.max-orders:4}") int maxOrders,
+                               @Value("${dispatch.batching.pickup-radius-meters:1500}") double pickupRadiusMeters,
+                               @Value("${dispatch.batching.delivery-radius-meters:3000}") double deliveryRadiusMeters,
+                               @Value("${dispatch.wave-size:1000}") int waveSize) {
+        if (maxOrders < 1) {
+            throw new IllegalArgumentException("dispatch.batching.max-orders debe ser al menos 1");
+        }
+        this.ordersRepository = ordersRepository;
+        this.dispatchService = dispatchService;
+        this.routingService = routingService;
+        this.orderEventService = orderEventService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.autoAssign = autoAssign;
+        this.maxOrders = maxOrders;
+        this.pickupRadiusMeters = pickupRadiusMeters;
+        this.deliveryRadiusMeters = deliveryRadiusMeters;
+        this.waveSize = waveSize;
+    }
+
+    /**
+     * Agrupa los pedidos pendientes en viajes y asigna cada viaje al repartidor libre más cercano a su primer retiro.
+     * Los grupos se forman en orden de prioridad (urgentes y más antiguos primero): cada grupo parte de un pedido y suma
+     * los siguientes pedidos compatibles hasta completar dispatch.batching.max-orders.
+     * @return Los viajes asignados
+     */
+    public List<DispatchTripDTO> dispatchTrips() {
+        synchronized (waveLock) {
+            List<PendingOrderDTO> remaining = new ArrayList<>(ordersRepository.findPendingOrders(waveSize));
+            List<DispatchTripDTO> trips = new ArrayList<>();
+            // Sin repartidores libres los pedidos restantes esperan a la siguiente ola
+            while (!remaining.isEmpty() && dispatchService.getIdleDealerCount() > 0) {
+                DispatchTripDTO trip = assignTrip(takeGroup(remaining));
+                if (trip != null) {
+                    trips.add(trip);
+                }
+            }
+            return trips;
+        }
+    }
+
+    /**
+     * Arma viajes periódicamente si dispatch.auto-assign y dispatch.batching.enabled están activos.
+     */
+    @Scheduled(fixedDelayString = "${dispatch.wave.delay-ms:2000}")
+    public void scheduledWave() {
+        if (!autoAssign || !enabled) {
+            return;
+        }
+        try {
+            List<DispatchTripDTO> trips = dispatchTrips();
+            if (!trips.isEmpty()) {
+                int orders = trips.stream().mapToInt(trip -> trip.getOrderIds().size()).sum();
+                System.out.println("Despacho por viajes: " + orders + " pedidos en " + trips.size() + " viajes");
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Error en el despacho por viajes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saca de la lista el primer pedido y los pedidos compatibles con él.
+     */
+    private List<PendingOrderDTO> takeGroup(List<PendingOrderDTO> remaining) {
+        PendingOrderDTO seed = remaining.remove(0);
+        List<PendingOrderDTO> group = new ArrayList<>();
+        group.add(seed);
+        Iterator<PendingOrderDTO> iterator = remaining.iterator();
+        while (group.size() < maxOrders && iterator.hasNext()) {
+            PendingOrderDTO order = iterator.next();
+            if (RoadGraph.distanceMeters(seed.getLongitude(), seed.getLatitude(), order.getLongitude(), order.getLatitude()) <= pickupRadiusMeters
+                    && RoadGraph.distanceMeters(seed.getDeliveryLongitude(), seed.getDeliveryLatitude(),
+                    order.getDeliveryLongitude(), order.getDeliveryLatitude()) <= deliveryRadiusMeters) {
+                group.add(order);
+                iterator.remove();
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Asigna un grupo al repartidor libre más cercano. Si el repartidor resultó estar ocupado se prueba con el siguiente;
+     * si algún pedido del grupo fue tomado por otro repartidor, el grupo se descarta en esta ola.
+     * @return El viaje asignado, o null si no se pudo asignar
+     */
+    private DispatchTripDTO assignTrip(List<PendingOrderDTO> group) {
+        PendingOrderDTO first = group.get(0);
+        while (true) {
+            DispatchAssignmentDTO nearest = dispatchService.findNearestIdleDealer(first.getLongitude(), first.getLatitude());
+            if (nearest == null) {
+                return null;
+            }
+            int dealerId = nearest.getDealerId();
+            double[] start = dispatchService.getDealerPosition(dealerId);
+            Plan plan = plan(start != null ? start : new double[]{first.getLongitude(), first.getLatitude()}, group);
+
+            Boolean assigned = transactionTemplate.execute(status -> {
+                if (!ordersRepository.assignOrdersIfAvailable(plan.orderIds, dealerId)) {
+                    return false;
+                }
+                ordersRepository.updateEstimatedRoutes(plan.orderIds, plan.route);
+                return true;
+            });
+            if (Boolean.TRUE.equals(assigned)) {
+                dispatchService.dealerBusy(dealerId);
+                orderEventService.publish(plan.orderIds);
+                return new DispatchTripDTO(dealerId, plan.orderIds, length(plan.route));
+            }
+            if (ordersRepository.findActiveOrderByDealerId(dealerId) == null) {
+                return null;
+            }
+            // El índice estaba atrasado: el repartidor ya tenía un pedido en proceso
+            dispatchService.dealerBusy(dealerId);
+        }
+    }
+
+    /**
+     * Ordena las paradas del viaje: primero los retiros (sin repetir empresas), partiendo desde la posición del repartidor,
+     * y después las entregas. La ruta guardada comienza en el primer retiro.
+     */
+    private Plan plan(double[] start, List<PendingOrderDTO> group) {
+        // Retiros distintos del grupo (pedidos de la misma empresa comparten el punto de retiro)
+        Set<String> seen = new LinkedHashSet<>();
+        List<double[]> pickups = new ArrayList<>();
+        for (PendingOrderDTO order : group) {
+            if (seen.add(order.getLongitude() + " " + order.getLatitude())) {
+                pickups.add(new double[]{order.getLongitude(), order.getLatitude()});
+            }
+        }
+        double[][] pickupPoints = pickups.toArray(new double[0][]);
+        int[] pickupTour = tour(start, pickupPoints);
+
+        double[][] deliveryPoints = new double[group.size()][];
+        for (int i = 0; i < group.size(); i++) {
+            deliveryPoints[i] = new double[]{group.get(i).getDeliveryLongitude(), group.get(i).getDeliveryLatitude()};
+        }
+        double[] lastPickup = pickupPoints[pickupTour[pickupTour.length - 1]];
+        int[] deliveryTour = tour(lastPickup, deliveryPoints);
+
+        List<double[]> stops = new ArrayList<>();
+        for (int index : pickupTour) {
+            stops.add(pickupPoints[index]);
+        }
+        List<Integer> orderIds = new ArrayList<>();
+        for (int index : deliveryTour) {
+            stops.add(deliveryPoints[index]);
+            orderIds.add(group.get(index).getOrderId());
+        }
+        return new Plan(orderIds, route(stops));
+    }
+
+    /**
+     * Une las rutas por calles entre paradas consecutivas en una sola línea.
+     */
+    private double[] route(List<double[]> stops) {
+        double[] route = new double[0];
+        int size = 0;
+        for (int i = 1; i < stops.size(); i++) {
+            double[] from = stops.get(i - 1);
+            double[] to = stops.get(i);
+            double[] leg = routingService.route(from[0], from[1], to[0], to[1]);
+            if (route.length < size + leg.length) {
+                route = Arrays.copyOf(route, Math.max(route.length * 2, size + leg.length));
+            }
+            // El primer punto de cada tramo es el último del tramo anterior
+            int skip = size == 0 ? 0 : 2;
+            System.arraycopy(leg, skip, route, size, leg.length - skip);
+            size += leg.length - skip;
+        }
+        if (size == 0) {
+            // Una sola parada (retiro y entrega en el mismo punto): línea degenerada de dos puntos
+            double[] stop = stops.get(0);
+            return new double[]{stop[0], stop[1], stop[0], stop[1]};
+        }
+        return Arrays.copyOf(route, size);
+    }
+
+    /**
+     * Recorrido abierto que parte de start y visita todos los puntos: vecino más cercano seguido de 2-opt.
+     * @return Índices de los puntos en el orden de visita
+     */
+    static int[] tour(double[] start, double[][] points) {
+        int n = points.length;
+        int[] tour = new int[n];
+        boolean[] visited = new boolean[n];
+        double[] current = start;
+        for (int position = 0; position < n; position++) {
+            int best = -1;
+            double bestMeters = Double.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                if (!visited[i]) {
+                    double meters = distance(current, points[i]);
+                    if (meters < bestMeters) {
+                        best = i;
+                        bestMeters = meters;
+                    }
+                }
+            }
+            visited[best] = true;
+            tour[position] = best;
+            current = points[best];
+        }
+
+        // 2-opt: invertir el tramo i..j si acorta el recorrido; el origen queda fijo y el final es libre
+        boolean improved = true;
+        for (int pass = 0; improved && pass < MAX_TWO_OPT_PASSES; pass++) {
+            improved = false;
+            for (int i = 0; i < n - 1; i++) {
+                double[] before = i == 0 ? start : points[tour[i - 1]];
+                for (int j = i + 1; j < n; j++) {
+                    double[] after = j == n - 1 ? null : points[tour[j + 1]];
+                    double kept = distance(before, points[tour[i]]) + (after == null ? 0 : distance(points[tour[j]], after));
+                    double reversed = distance(before, points[tour[j]]) + (after == null ? 0 : distance(points[tour[i]], after));
+                    if (reversed + 1e-6 < kept) {
+                        for (int a = i, b = j; a < b; a++, b--) {
+                            int swap = tour[a];
+                            tour[a] = tour[b];
+                            tour[b] = swap;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return tour;
+    }
+
+    private static double distance(double[] a, double[] b) {
+        return RoadGraph.distanceMeters(a[0], a[1], b[0], b[1]);
+    }
+
+    private static double length(double[] route) {
+        double meters = 0;
+        for (int i = 2; i < route.length; i += 2) {
+            meters += RoadGraph.distanceMeters(route[i - 2], route[i - 1], route[i], route[i + 1]);
+        }
+        return meters;
+    }
+
+    private static final class Plan {
+        private final List<Integer> orderIds;
+        private final double[] route;
+
+        private Plan(List<Integer> orderIds, double[] route) {
+            this.orderIds = orderIds;
+            this.route = route;
+        }
+    }
+}
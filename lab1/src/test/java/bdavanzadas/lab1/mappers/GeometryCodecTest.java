@@ -0,0 +1,193 @@
+package bdavanzadas.lab1.mappers;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GeometryCodecTest {
+
+    private static final int SRID_4326 = 4326;
+    private static final int EWKB_Z = 0x80000000;
+    private static final int EWKB_SRID = 0x20000000;
+
+    // ------------------------------------------------------------------
+    // Números
+    // ------------------------------------------------------------------
+
+    @Test
+    void numbersMatchDoubleParseDouble() {
+        String[] numbers = {
+                "0", "-0", "0.0", "-70.6506", "-33.4372", "+12.25", "+0.5", ".5", "-.5", "5.",
+                "0.1", "4.35", "179.999999999999", "-89.9999999999999",
+                "123456789012345", "0.000000000000001", "0.0000000000000000000001",
+                // 16 y más dígitos significativos: se delegan en Double.parseDouble
+                "-33.45678901234567", "1.0000000000000002", "9007199254740993", "0.30000000000000004",
+                "1234567890123456789012345",
+                // exponentes
+                "1e-7", "-1.5E+3", "2.5e10", "+6.02e23", "1E0", "4.9e-324"
+        };
+        for (String number : numbers) {
+            double expected = Double.parseDouble(number);
+            assertEquals(expected, GeometryCodec.parsePoint("POINT(" + number + " " + number + ")")[1], number);
+            assertEquals(expected, GeometryCodec.coordinates("POINT(" + number + " " + number + ")")[0], number);
+        }
+    }
+
+    @Test
+    void stAsTextStyleNumbersMatchDoubleParseDouble() {
+        // ST_AsText escribe hasta 15 dígitos significativos
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int precision = 1 + random.nextInt(15);
+            String longitude = BigDecimal.valueOf(random.nextDouble() * 360 - 180)
+                    .round(new MathContext(precision)).toPlainString();
+            String latitude = BigDecimal.valueOf(random.nextDouble() * 180 - 90)
+                    .round(new MathContext(precision)).toPlainString();
+            double[] point = GeometryCodec.parsePoint("POINT(" + longitude + " " + latitude + ")");
+            assertEquals(Double.parseDouble(longitude), point[0], longitude);
+            assertEquals(Double.parseDouble(latitude), point[1], latitude);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // WKT estricto
+    // ------------------------------------------------------------------
+
+    @Test
+    void parsesValidWkt() {
+        assertArrayEquals(new double[]{-70.6, -33.4}, GeometryCodec.parsePoint("  point ( -70.6   -33.4 )  "));
+        assertArrayEquals(new double[]{0, 0, 1, 1, 2, 0}, GeometryCodec.parseLineString("LINESTRING(0 0, 1 1,2 0)"));
+
+        double[][] rings = GeometryCodec.parsePolygon("POLYGON((0 0, 4 0, 4 4, 0 4, 0 0), (1 1, 2 1, 2 2, 1 1))");
+        assertEquals(2, rings.length);
+        assertArrayEquals(new double[]{0, 0, 4, 0, 4, 4, 0, 4, 0, 0}, rings[0]);
+        assertArrayEquals(new double[]{1, 1, 2, 1, 2, 2, 1, 1}, rings[1]);
+    }
+
+    @Test
+    void rejectsInvalidPoints() {
+        String[] invalid = {
+                null, "", ".", "-.", "POINT", "POINT()", "POINT(1)", "POINT(12)", "POINT(1 2 3)",
+                "POINT(. 1)", "POINT(-. 1)", "POINT(1 .)", "POINT(+ 1)", "POINT(1e 2)", "POINT(e5 2)",
+                "POINT(1 2) x", "POINT(1 2)(", "POINT(1 2", "POINT 1 2", "LINESTRING(1 2)",
+                "POINT(NaN 1)", "POINT(1 Infinity)", "POINT(-Infinity 1)", "POINT(1e400 1)", "POINT(1,5 2)"
+        };
+        for (String wkt : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> GeometryCodec.parsePoint(wkt), String.valueOf(wkt));
+        }
+    }
+
+    @Test
+    void rejectsInvalidLineStringsAndPolygons() {
+        assertThrows(IllegalArgumentException.class, () -> GeometryCodec.parseLineString("LINESTRING(0 0)"));
+        assertThrows(IllegalArgumentException.class, () -> GeometryCodec.parseLineString("LINESTRING(0 0, 1 1) 2"));
+
+        String[] invalid = {
+                // anillo sin cerrar
+                "POLYGON((0 0, 1 0, 1 1, 0 1))",
+                // anillo interior sin cerrar
+                "POLYGON((0 0, 4 0, 4 4, 0 0), (1 1, 2 1, 2 2, 1 2))",
+                // menos de cuatro puntos
+                "POLYGON((0 0, 1 1, 0 0))",
+                // paréntesis sin cerrar
+                "POLYGON((0 0, 1 0, 1 1, 0 0)",
+                "POLYGON(0 0, 1 0, 1 1, 0 0)",
+                "POLYGON((0 0, 1 0, 1 1, 0 0)) x",
+                "POLYGON((0 0, 1 0, NaN 1, 0 0))"
+        };
+        for (String wkt : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> GeometryCodec.parsePolygon(wkt), wkt);
+        }
+    }
+
+    @Test
+    void lenientWktRejectsNumbersWithoutDigits() {
+        assertThrows(IllegalArgumentException.class, () -> GeometryCodec.coordinates("POINT(. 1)"));
+        assertThrows(IllegalArgumentException.class, () -> GeometryCodec.coordinates("POINT(-. 1)"));
+        assertThrows(IllegalArgumentException.class, () -> GeometryCodec.coordinates("POINT(1 2"));
+        assertArrayEquals(new double[0], GeometryCodec.coordinates("POINT EMPTY"));
+    }
+
+    // ------------------------------------------------------------------
+    // EWKB hexadecimal
+    // ------------------------------------------------------------------
+
+    @Test
+    void readsPointWithSridInBothByteOrders() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            ByteBuffer wkb = wkb(order, 25);
+            wkb.putInt(EWKB_SRID | 1).putInt(SRID_4326).putDouble(-70.6).putDouble(-33.4);
+            assertArrayEquals(new double[]{-70.6, -33.4}, GeometryCodec.coordinates(hex(wkb)), order.toString());
+        }
+    }
+
+    @Test
+    void readsLineStringWithZInBothByteOrders() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            ByteBuffer wkb = wkb(order, 1 + 4 + 4 + 4 + 2 * 24);
+            wkb.putInt(EWKB_Z | EWKB_SRID | 2).putInt(SRID_4326).putInt(2)
+                    .putDouble(1.5).putDouble(2.5).putDouble(100)
+                    .putDouble(-3.25).putDouble(4.75).putDouble(200);
+            assertArrayEquals(new double[]{1.5, 2.5, -3.25, 4.75}, GeometryCodec.coordinates(hex(wkb)), order.toString());
+        }
+    }
+
+    @Test
+    void readsOnlyTheExteriorRingOfAPolygon() {
+        ByteBuffer wkb = wkb(ByteOrder.BIG_ENDIAN, 1 + 4 + 4 + 4 + 4 + 4 * 16 + 4 + 4 * 16);
+        wkb.putInt(EWKB_SRID | 3).putInt(SRID_4326).putInt(2);
+        wkb.putInt(4).putDouble(0).putDouble(0).putDouble(4).putDouble(0).putDouble(4).putDouble(4).putDouble(0).putDouble(0);
+        wkb.putInt(4).putDouble(1).putDouble(1).putDouble(2).putDouble(1).putDouble(2).putDouble(2).putDouble(1).putDouble(1);
+        assertArrayEquals(new double[]{0, 0, 4, 0, 4, 4, 0, 0}, GeometryCodec.coordinates(hex(wkb)));
+    }
+
+    @Test
+    void readsPointEmpty() {
+        // SELECT ST_SetSRID('POINT EMPTY'::geometry, 4326)
+        String pointEmpty = "0101000020E6100000000000000000F87F000000000000F87F";
+        assertArrayEquals(new double[0], GeometryCodec.coordinates(pointEmpty));
+        assertArrayEquals(new double[0], GeometryCodec.coordinates(pointEmpty.toLowerCase()));
+        assertNull(GeometryCodec.toGeoJsonPoint(pointEmpty));
+    }
+
+    @Test
+    void readsItsOwnWkb() {
+        double[] line = {-70.6, -33.4, -70.5, -33.3};
+        assertArrayEquals(line, GeometryCodec.coordinates(HexFormat.of().formatHex(GeometryCodec.lineStringToWkb(line))));
+
+        double[][] rings = {{0, 0, 1, 0, 1, 1, 0, 0}};
+        assertArrayEquals(rings[0], GeometryCodec.coordinates(HexFormat.of().formatHex(GeometryCodec.polygonToWkb(rings))));
+    }
+
+    @Test
+    void rejectsMalformedWkb() {
+        // truncado
+        assertThrows(IllegalArgumentException.class, () -> GeometryCodec.coordinates("0101000020E6100000000000"));
+        // carácter no hexadecimal
+        assertThrows(IllegalArgumentException.class, () -> GeometryCodec.coordinates("01010000zz"));
+        // MULTIPOINT no está soportado
+        ByteBuffer wkb = wkb(ByteOrder.LITTLE_ENDIAN, 9);
+        wkb.putInt(4).putInt(0);
+        assertThrows(IllegalArgumentException.class, () -> GeometryCodec.coordinates(hex(wkb)));
+    }
+
+    private static ByteBuffer wkb(ByteOrder order, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(order);
+        buffer.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 1 : 0));
+        return buffer;
+    }
+
+    private static String hex(ByteBuffer buffer) {
+        return HexFormat.of().withUpperCase().formatHex(buffer.array(), 0, buffer.position());
+    }
+}
@@ -0,0 +1,118 @@
+package bdavanzadas.lab1.services;
+
+import bdavanzadas.lab1.documentServices.DealerHistoryDocumentService;
+import bdavanzadas.lab1.documents.DealerHistoryDocument.LocationHistory;
+import bdavanzadas.lab1.dtos.PositionIngestResultDTO;
+import bdavanzadas.lab1.repositories.DealerRepository;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DealerPositionIngestionServiceTest {
+
+    private final Map<Integer, List<LocationHistory>> recorded = new HashMap<>();
+
+    /**
+     * Todos los ids se consideran repartidores; el historial escrito queda en recorded.
+     */
+    private final DealerPositionIngestionService service = new DealerPositionIngestionService(
+            new DealerRepository() {
+                @Override
+                public List<Integer> updatePositions(Integer[] ids, Double[] longitudes, Double[] latitudes) {
+                    return Arrays.asList(ids);
+                }
+            },
+            new DealerHistoryDocumentService(null, null, null, null, ChronoUnit.HOURS, 500, 30) {
+                @Override
+                public int recordLocations(Map<Integer, List<LocationHistory>> pointsByDealer) {
+                    recorded.putAll(pointsByDealer);
+                    return pointsByDealer.size();
+                }
+            },
+            new DispatchService(null, null, null, null, 0.01, 8, 1000, false, false),
+            16, 16);
+
+    @Test
+    void rejectsPayloadsThatAreNotWholeRecords() {
+        assertEquals(28, DealerPositionIngestionService.BINARY_RECORD_BYTES);
+        for (int length : new int[]{1, 27, 29, 55, 57}) {
+            assertThrows(IllegalArgumentException.class, () -> service.ingest(new byte[length]), "largo " + length);
+        }
+        assertEquals(new PositionIngestResultDTO(0, 0, 0), service.ingest(new byte[0]));
+    }
+
+    @Test
+    void rejectsInvalidIdsAndCoordinates() {
+        ByteBuffer payload = records(8);
+        record(payload, 1, -70.6, -33.4, 0);
+        record(payload, 2, 180, 90, 0);
+        record(payload, 3, 180.0001, 0, 0);
+        record(payload, 4, 0, -90.0001, 0);
+        record(payload, 5, Double.NaN, 0, 0);
+        record(payload, 6, 0, Double.POSITIVE_INFINITY, 0);
+        record(payload, 0, 0, 0, 0);
+        record(payload, -7, 0, 0, 0);
+
+        assertEquals(new PositionIngestResultDTO(2, 6, 0), service.ingest(payload.array()));
+        assertEquals(2, service.flush());
+        assertEquals(Map.of(1, 1, 2, 1), counts(recorded));
+    }
+
+    @Test
+    void replacesMissingAndFutureTimestampsWithTheReceptionTime() {
+        long before = System.currentTimeMillis();
+        long past = before - 60_000;
+        ByteBuffer payload = records(3);
+        record(payload, 1, 1, 1, past);
+        record(payload, 2, 2, 2, before + 3_600_000);
+        record(payload, 3, 3, 3, 0);
+
+        assertEquals(new PositionIngestResultDTO(3, 0, 0), service.ingest(payload.array()));
+        assertEquals(3, service.flush());
+        long after = System.currentTimeMillis();
+
+        assertEquals(past, epochMillis(recorded.get(1).get(0)));
+        for (int dealerId : new int[]{2, 3}) {
+            long time = epochMillis(recorded.get(dealerId).get(0));
+            assertTrue(time >= before && time <= after, "repartidor " + dealerId + ": " + time);
+        }
+    }
+
+    @Test
+    void dropsPositionsWhenTheBufferIsFull() {
+        ByteBuffer payload = records(20);
+        for (int i = 1; i <= 20; i++) {
+            record(payload, i, 0, 0, 0);
+        }
+        assertEquals(new PositionIngestResultDTO(16, 0, 4), service.ingest(payload.array()));
+        assertEquals(4L, (long) service.getMetrics().get("dropped"));
+    }
+
+    private static ByteBuffer records(int count) {
+        return ByteBuffer.allocate(count * DealerPositionIngestionService.BINARY_RECORD_BYTES);
+    }
+
+    private static void record(ByteBuffer payload, int dealerId, double longitude, double latitude, long epochMillis) {
+        payload.putInt(dealerId).putDouble(longitude).putDouble(latitude).putLong(epochMillis);
+    }
+
+    private static long epochMillis(LocationHistory point) {
+        return point.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Map<Integer, Integer> counts(Map<Integer, List<LocationHistory>> history) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        history.forEach((dealerId, points) -> counts.put(dealerId, points.size()));
+        return counts;
+    }
+}
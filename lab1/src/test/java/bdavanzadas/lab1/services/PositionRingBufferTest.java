@@ -0,0 +1,153 @@
+package bdavanzadas.lab1.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PositionRingBufferTest {
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new PositionRingBuffer(0));
+        assertThrows(IllegalArgumentException.class, () -> new PositionRingBuffer(1));
+        assertThrows(IllegalArgumentException.class, () -> new PositionRingBuffer(12));
+        assertEquals(16, new PositionRingBuffer(16).capacity());
+    }
+
+    @Test
+    void rejectsOffersWhenFull() {
+        PositionRingBuffer buffer = new PositionRingBuffer(8);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i, i, i, i));
+        }
+        assertFalse(buffer.offer(99, 0, 0, 0));
+        assertEquals(8, buffer.size());
+
+        List<double[]> drained = new ArrayList<>();
+        assertEquals(3, buffer.drain(collect(drained), 3));
+        assertEquals(5, buffer.size());
+        for (int i = 8; i < 11; i++) {
+            assertTrue(buffer.offer(i, i, i, i));
+        }
+        assertFalse(buffer.offer(99, 0, 0, 0));
+
+        assertEquals(8, buffer.drain(collect(drained), 100));
+        assertEquals(0, buffer.size());
+        // Se reciben en orden de llegada y la posición rechazada no aparece
+        for (int i = 0; i < 11; i++) {
+            assertEquals(i, (int) drained.get(i)[0]);
+        }
+    }
+
+    @Test
+    void wrapsAroundForSeveralLaps() {
+        PositionRingBuffer buffer = new PositionRingBuffer(4);
+        List<double[]> drained = new ArrayList<>();
+        int next = 0;
+        for (int lap = 0; lap < 25; lap++) {
+            // Lotes de 3 para que las casillas de inicio y fin cambien en cada vuelta
+            for (int i = 0; i < 3; i++, next++) {
+                assertTrue(buffer.offer(next, next + 0.5, -next, 1000L + next));
+            }
+            assertEquals(3, buffer.drain(collect(drained), Integer.MAX_VALUE));
+            assertEquals(0, buffer.drain(collect(drained), Integer.MAX_VALUE));
+        }
+        assertEquals(next, drained.size());
+        for (int i = 0; i < next; i++) {
+            double[] position = drained.get(i);
+            assertEquals(i, (int) position[0]);
+            assertEquals(i + 0.5, position[1]);
+            assertEquals(-i, position[2]);
+            assertEquals(1000L + i, (long) position[3]);
+        }
+    }
+
+    @Test
+    void keepsEachProducerInOrderUnderConcurrency() throws Exception {
+        int producers = 8;
+        int perProducer = 200_000;
+        PositionRingBuffer buffer = new PositionRingBuffer(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean producing = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 1; p <= producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int sequence = 0; sequence < perProducer; ) {
+                    // La longitud lleva la secuencia del productor y la latitud la repite para detectar lecturas mezcladas
+                    if (buffer.offer(producer, sequence, sequence, sequence)) {
+                        sequence++;
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        long[] expected = new long[producers + 1];
+        long[] received = {0};
+        AtomicReference<String> error = new AtomicReference<>();
+        PositionRingBuffer.Sink check = (dealerId, longitude, latitude, epochMillis) -> {
+            received[0]++;
+            if (dealerId < 1 || dealerId > producers) {
+                error.compareAndSet(null, "Repartidor inesperado " + dealerId);
+            } else if (longitude != expected[dealerId] || latitude != longitude || epochMillis != (long) longitude) {
+                error.compareAndSet(null, "Productor " + dealerId + ": se esperaba " + expected[dealerId] + " y llegó " + longitude);
+            }
+            if (dealerId >= 1 && dealerId <= producers) {
+                expected[dealerId] = (long) longitude + 1;
+            }
+        };
+
+        Thread watcher = new Thread(() -> {
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            producing.set(false);
+        });
+        watcher.start();
+        start.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (producing.get() || buffer.size() > 0) {
+            if (buffer.drain(check, 256) == 0) {
+                Thread.onSpinWait();
+            }
+            assertTrue(System.nanoTime() < deadline, "La prueba no terminó a tiempo");
+        }
+        buffer.drain(check, Integer.MAX_VALUE);
+
+        assertNull(error.get());
+        assertEquals((long) producers * perProducer, received[0]);
+        for (int p = 1; p <= producers; p++) {
+            assertEquals(perProducer, expected[p]);
+        }
+    }
+
+    private static PositionRingBuffer.Sink collect(List<double[]> target) {
+        return (dealerId, longitude, latitude, epochMillis) ->
+                target.add(new double[]{dealerId, longitude, latitude, epochMillis});
+    }
+}
@@ -17,16 +17,25 @@ DROP TABLE IF EXISTS users CASCADE;
 DROP TABLE IF EXISTS coverage_area CASCADE;
 DROP TABLE IF EXISTS coverage_area_company CASCADE;
 DROP TABLE IF EXISTS emergency_report CASCADE;
+DROP TABLE IF EXISTS sync_outbox CASCADE;
+DROP TABLE IF EXISTS order_coverage_crossings CASCADE;
 
 
 -- Eliminar procedimientos almacenados
 DROP PROCEDURE IF EXISTS register_order_with_products(TIMESTAMP, VARCHAR, INT, INT[], INT);
+DROP PROCEDURE IF EXISTS register_order_with_products(TIMESTAMP, VARCHAR, INT, INT[], INT, GEOMETRY);
+DROP PROCEDURE IF EXISTS register_order_with_products(TIMESTAMP, VARCHAR, INT, INT[], INT, GEOMETRY, INT);
 DROP PROCEDURE IF EXISTS change_order_status(INT, VARCHAR, TIMESTAMP);
 
 -- Eliminar funciones de triggers
 DROP FUNCTION IF EXISTS set_delivery_date_when_delivered() CASCADE;
 DROP FUNCTION IF EXISTS log_failed_order() CASCADE;
 DROP FUNCTION IF EXISTS insert_auto_rating_if_late() CASCADE;
+DROP FUNCTION IF EXISTS touch_updated_at() CASCADE;
+DROP FUNCTION IF EXISTS enqueue_sync_event() CASCADE;
+DROP FUNCTION IF EXISTS enqueue_parent_sync_event() CASCADE;
+DROP FUNCTION IF EXISTS sync_order_coverage_crossings() CASCADE;
+DROP FUNCTION IF EXISTS sync_coverage_area_crossings() CASCADE;
 
 -- Eliminar extensión si es necesario (opcional)
 -- DROP EXTENSION IF EXISTS postgis CASCADE;
@@ -86,7 +95,8 @@ CREATE TABLE orders (
                         client_id INT,
                         dealer_id INT,
                         total_price FLOAT,
-                        estimated_route  GEOMETRY(LineString, 4326)
+                        estimated_route  GEOMETRY(LineString, 4326),
+                        stop_sequence INT -- Orden de entrega dentro de un viaje con varias paradas (NULL si no es parte de un viaje)
 );
 
 CREATE TABLE order_details (
@@ -203,6 +213,130 @@ CREATE TABLE order_products (
                                 FOREIGN KEY (product_id) REFERENCES products(id)
 );
 
+-- Áreas de cobertura que toca la ruta estimada de cada pedido (mantenida por triggers)
+CREATE TABLE order_coverage_crossings (
+                                order_id INT PRIMARY KEY,
+                                coverage_ids INT[] NOT NULL,
+                                crossing_count INT NOT NULL,
+                                FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+);
+CREATE INDEX idx_order_coverage_crossings_count ON order_coverage_crossings (crossing_count, order_id);
+
+-- ========================
+-- SINCRONIZACIÓN CON MONGODB
+-- ========================
+-- Cada tabla migrada lleva la fecha de su última modificación. La migración incremental
+-- (migration_state en MongoDB) solo lee filas con id nuevo o con updated_at posterior a su watermark.
+CREATE OR REPLACE FUNCTION touch_updated_at()
+RETURNS TRIGGER AS $$
+BEGIN
+    NEW.updated_at := NOW();
+RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+    v_table TEXT;
+BEGIN
+    FOREACH v_table IN ARRAY ARRAY['users', 'companies', 'payment_methods', 'products', 'orders', 'order_details',
+                                   'clients', 'dealers', 'coverage_area', 'ratings', 'emergency_report'] LOOP
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT NOW()', v_table);
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %I (updated_at)', 'idx_' || v_table || '_updated_at', v_table);
+        EXECUTE format('CREATE TRIGGER %I BEFORE UPDATE ON %I FOR EACH ROW EXECUTE FUNCTION touch_updated_at()',
+                       'trg_' || v_table || '_updated_at', v_table);
+END LOOP;
+END $$;
+
+-- Outbox transaccional: cada cambio en pedidos, repartidores, clientes, compañías y calificaciones
+-- (y en sus tablas de relación) deja un evento en la misma transacción. OutboxRelayService lo lee
+-- por lotes y actualiza los documentos correspondientes en MongoDB.
+CREATE TABLE sync_outbox (
+                             id BIGSERIAL PRIMARY KEY,
+                             entity VARCHAR(50) NOT NULL,      -- Nombre de la migración (orders, dealers, ...)
+                             entity_id INT NOT NULL,           -- Id de la fila en PostgreSQL
+                             operation VARCHAR(10) NOT NULL CHECK (operation IN ('UPSERT', 'DELETE')),
+                             created_at TIMESTAMP NOT NULL DEFAULT clock_timestamp()
+);
+
+-- Trigger function para las tablas principales: TG_ARGV[0] es el nombre de la entidad.
+CREATE OR REPLACE FUNCTION enqueue_sync_event()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO sync_outbox (entity, entity_id, operation) VALUES (TG_ARGV[0], OLD.id, 'DELETE');
+        RETURN OLD;
+    END IF;
+    INSERT INTO sync_outbox (entity, entity_id, operation) VALUES (TG_ARGV[0], NEW.id, 'UPSERT');
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Trigger function para tablas de relación: TG_ARGV[0] es la entidad padre y TG_ARGV[1] la columna con su id.
+-- Cualquier cambio en la relación vuelve a sincronizar el documento padre. Si un UPDATE mueve la fila
+-- a otro padre, se sincronizan los dos: el anterior pierde la relación y el nuevo la gana.
+CREATE OR REPLACE FUNCTION enqueue_parent_sync_event()
+RETURNS TRIGGER AS $$
+DECLARE
+    v_old_parent INT;
+    v_new_parent INT;
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        v_old_parent := (to_jsonb(OLD) ->> TG_ARGV[1])::INT;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        v_new_parent := (to_jsonb(NEW) ->> TG_ARGV[1])::INT;
+    END IF;
+
+    IF v_new_parent IS NOT NULL THEN
+        INSERT INTO sync_outbox (entity, entity_id, operation) VALUES (TG_ARGV[0], v_new_parent, 'UPSERT');
+    END IF;
+    IF v_old_parent IS NOT NULL AND v_old_parent IS DISTINCT FROM v_new_parent THEN
+        INSERT INTO sync_outbox (entity, entity_id, operation) VALUES (TG_ARGV[0], v_old_parent, 'UPSERT');
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_orders_outbox AFTER INSERT OR UPDATE OR DELETE ON orders
+    FOR EACH ROW EXECUTE FUNCTION enqueue_sync_event('orders');
+CREATE TRIGGER trg_dealers_outbox AFTER INSERT OR UPDATE OR DELETE ON dealers
+    FOR EACH ROW EXECUTE FUNCTION enqueue_sync_event('dealers');
+CREATE TRIGGER trg_clients_outbox AFTER INSERT OR UPDATE OR DELETE ON clients
+    FOR EACH ROW EXECUTE FUNCTION enqueue_sync_event('clients');
+CREATE TRIGGER trg_companies_outbox AFTER INSERT OR UPDATE OR DELETE ON companies
+    FOR EACH ROW EXECUTE FUNCTION enqueue_sync_event('companies');
+CREATE TRIGGER trg_ratings_outbox AFTER INSERT OR UPDATE OR DELETE ON ratings
+    FOR EACH ROW EXECUTE FUNCTION enqueue_sync_event('ratings');
+CREATE TRIGGER trg_order_products_outbox AFTER INSERT OR UPDATE OR DELETE ON order_products
+    FOR EACH ROW EXECUTE FUNCTION enqueue_parent_sync_event('orders', 'order_id');
+CREATE TRIGGER trg_company_payment_methods_outbox AFTER INSERT OR UPDATE OR DELETE ON company_payment_methods
+    FOR EACH ROW EXECUTE FUNCTION enqueue_parent_sync_event('companies', 'company_id');
+CREATE TRIGGER trg_coverage_area_company_outbox AFTER INSERT OR UPDATE OR DELETE ON coverage_area_company
+    FOR EACH ROW EXECUTE FUNCTION enqueue_parent_sync_event('companies', 'company_id');
+
+-- ========================
+-- ÍNDICES ESPACIALES
+-- ========================
+-- Las distancias en metros se calculan sobre columna::geography. Los índices de expresión permiten que
+-- ST_DWithin y el orden KNN (<->) usen el índice GiST cuando la consulta usa exactamente la misma expresión.
+CREATE INDEX IF NOT EXISTS idx_clients_ubication_geog ON clients USING GIST ((ubication::geography));
+CREATE INDEX IF NOT EXISTS idx_companies_ubication_geog ON companies USING GIST ((ubication::geography));
+CREATE INDEX IF NOT EXISTS idx_dealers_ubication_geog ON dealers USING GIST ((ubication::geography));
+CREATE INDEX IF NOT EXISTS idx_orders_estimated_route_geog ON orders USING GIST ((estimated_route::geography));
+
+-- Índices geometry para ST_Within / ST_Intersects contra las áreas de cobertura
+CREATE INDEX IF NOT EXISTS idx_clients_ubication ON clients USING GIST (ubication);
+CREATE INDEX IF NOT EXISTS idx_coverage_area_coveragearea ON coverage_area USING GIST (coverageArea);
+CREATE INDEX IF NOT EXISTS idx_orders_estimated_route ON orders USING GIST (estimated_route);
+
+-- Pedidos entregados por repartidor y fecha (distancia recorrida en el mes)
+CREATE INDEX IF NOT EXISTS idx_orders_delivered_dealer_date ON orders (dealer_id, delivery_date) WHERE status = 'ENTREGADO';
+
+-- Despacho: pedido activo de cada repartidor y cola de pedidos sin repartidor
+CREATE INDEX IF NOT EXISTS idx_orders_active_dealer ON orders (dealer_id, stop_sequence) WHERE status = 'EN PROCESO';
+CREATE INDEX IF NOT EXISTS idx_orders_unassigned ON orders (order_date, id) WHERE dealer_id IS NULL AND status IN ('PENDIENTE', 'URGENTE');
+
 -- ========================
 -- PROCEDIMIENTOS ALMACENADOS
 -- ========================
@@ -212,22 +346,26 @@ CREATE OR REPLACE PROCEDURE register_order_with_products(
     p_client_id INT,
     p_product_ids INT[],
     p_dealer_id INT DEFAULT NULL,
-    p_estimated_route GEOMETRY DEFAULT NULL
+    p_estimated_route GEOMETRY DEFAULT NULL,
+    INOUT p_order_id INT DEFAULT NULL
 )
 LANGUAGE plpgsql
 AS $$
 DECLARE
-v_order_id INT;
-    v_product_id INT;
+    v_missing_product INT;
+    v_out_of_stock INT;
     v_total_price FLOAT := 0.0;
     v_client_location GEOMETRY;
     v_company_location GEOMETRY;
     v_estimated_route GEOMETRY;
 BEGIN
-    -- 1. Validar que haya productos
+    -- 1. Validar que haya productos (un id repetido cuenta como una unidad más del producto)
     IF array_length(p_product_ids, 1) IS NULL OR array_length(p_product_ids, 1) = 0 THEN
         RAISE EXCEPTION 'La orden debe contener al menos un producto';
 END IF;
+    IF array_position(p_product_ids, NULL) IS NOT NULL THEN
+        RAISE EXCEPTION 'La orden contiene un producto sin ID';
+END IF;
 
     -- 2. Obtener ubicación del cliente
 SELECT ubication INTO v_client_location
@@ -238,31 +376,52 @@ IF v_client_location IS NULL THEN
         RAISE EXCEPTION 'El cliente con ID % no tiene ubicación registrada', p_client_id;
 END IF;
 
-    -- 3. Obtener empresa del último producto
+    -- 3. Bloquear todos los productos en orden de id (dos pedidos con productos en común nunca se bloquean
+    --    en orden inverso) y, en la misma sentencia, validar existencia y stock y calcular el precio total
+WITH wanted AS (
+    SELECT id, COUNT(*)::INT AS quantity
+    FROM unnest(p_product_ids) AS t(id)
+    GROUP BY id
+), locked AS (
+    SELECT id, stock, price
+    FROM products
+    WHERE id = ANY(p_product_ids)
+    ORDER BY id
+    FOR UPDATE
+)
+SELECT MIN(w.id) FILTER (WHERE l.id IS NULL),
+       MIN(w.id) FILTER (WHERE l.stock < w.quantity),
+       COALESCE(SUM(l.price * w.quantity), 0)
+INTO v_missing_product, v_out_of_stock, v_total_price
+FROM wanted w
+         LEFT JOIN locked l ON l.id = w.id;
+
+IF v_missing_product IS NOT NULL THEN
+        RAISE EXCEPTION 'Producto con ID % no existe', v_missing_product;
+END IF;
+
+IF v_out_of_stock IS NOT NULL THEN
+        RAISE EXCEPTION 'Sin stock para el producto ID %', v_out_of_stock;
+END IF;
+
+    -- 4. Obtener empresa del último producto
 SELECT c.ubication INTO v_company_location
 FROM products p
          JOIN companies c ON p.company_id = c.id
-WHERE p.id = p_product_ids[array_length(p_product_ids, 1)]
-    LIMIT 1;
+WHERE p.id = p_product_ids[array_length(p_product_ids, 1)];
 
 IF v_company_location IS NULL THEN
         RAISE EXCEPTION 'No se pudo determinar la ubicación de la empresa para el producto ID %',
                         p_product_ids[array_length(p_product_ids, 1)];
 END IF;
 
-    -- 4. Calcular ruta estimada si no viene como parámetro
+    -- 5. Calcular ruta estimada si no viene como parámetro
     IF p_estimated_route IS NULL THEN
         v_estimated_route := ST_MakeLine(v_company_location, v_client_location);
 ELSE
         v_estimated_route := p_estimated_route;
 END IF;
 
-    -- 5. Calcular el precio total de los productos
-SELECT COALESCE(SUM(price), 0)
-INTO v_total_price
-FROM products
-WHERE id = ANY(p_product_ids);
-
 -- 6. Insertar la orden con la ruta estimada
 INSERT INTO orders (
     order_date,
@@ -280,28 +439,23 @@ VALUES (
            v_total_price,
            v_estimated_route
        )
-    RETURNING id INTO v_order_id;
+    RETURNING id INTO p_order_id;
 
--- 7. Procesar productos
-FOREACH v_product_id IN ARRAY p_product_ids LOOP
-        -- Verificar existencia
-        IF NOT EXISTS (SELECT 1 FROM products WHERE id = v_product_id) THEN
-            RAISE EXCEPTION 'Producto con ID % no existe', v_product_id;
-END IF;
-
-        -- Registrar producto en la orden
+-- 7. Registrar los productos de la orden (una fila por producto distinto) con una sola inserción
 INSERT INTO order_products (order_id, product_id)
-VALUES (v_order_id, v_product_id);
-
--- Reducir stock
-UPDATE products
-SET stock = stock - 1
-WHERE id = v_product_id AND stock > 0;
-
-IF NOT FOUND THEN
-            RAISE EXCEPTION 'Sin stock para el producto ID %', v_product_id;
-END IF;
-END LOOP;
+SELECT p_order_id, id
+FROM unnest(p_product_ids) AS t(id)
+GROUP BY id;
+
+-- 8. Descontar el stock de todos los productos con una sola actualización agrupada
+UPDATE products p
+SET stock = p.stock - w.quantity
+FROM (
+    SELECT id, COUNT(*)::INT AS quantity
+    FROM unnest(p_product_ids) AS t(id)
+    GROUP BY id
+) w
+WHERE p.id = w.id;
 END;
 $$;
 
@@ -387,6 +541,80 @@ CREATE TRIGGER trg_auto_rating_if_late
     WHEN (OLD.status IS DISTINCT FROM NEW.status)
 EXECUTE FUNCTION insert_auto_rating_if_late();
 
+-- 4. Calcular las áreas de cobertura que toca la ruta de un pedido cada vez que se escribe la ruta
+-- (procedimiento de registro, actualización por WKT o por puntos, viajes con varias paradas).
+-- ST_Crosses implica ST_Intersects, así que basta ST_Intersects, que usa el índice GiST de coverage_area.
+-- Trigger function:
+CREATE OR REPLACE FUNCTION sync_order_coverage_crossings()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.estimated_route IS NULL THEN
+        DELETE FROM order_coverage_crossings WHERE order_id = NEW.id;
+RETURN NULL;
+END IF;
+
+INSERT INTO order_coverage_crossings (order_id, coverage_ids, crossing_count)
+SELECT NEW.id, COALESCE(array_agg(ca.coverage_id ORDER BY ca.coverage_id), '{}'), COUNT(ca.coverage_id)
+FROM coverage_area ca
+WHERE ST_Intersects(NEW.estimated_route, ca.coverageArea)
+    ON CONFLICT (order_id) DO UPDATE
+    SET coverage_ids = EXCLUDED.coverage_ids, crossing_count = EXCLUDED.crossing_count;
+RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Trigger:
+CREATE TRIGGER trg_order_coverage_crossings
+    AFTER INSERT OR UPDATE OF estimated_route ON orders
+    FOR EACH ROW
+EXECUTE FUNCTION sync_order_coverage_crossings();
+
+-- 5. Recalcular los cruces de los pedidos afectados cuando se crea, modifica o elimina un área de cobertura.
+-- Trigger function:
+CREATE OR REPLACE FUNCTION sync_coverage_area_crossings()
+RETURNS TRIGGER AS $$
+DECLARE
+    v_old_area GEOMETRY;
+    v_new_area GEOMETRY;
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        v_old_area := OLD.coverageArea;
+END IF;
+    IF TG_OP <> 'DELETE' THEN
+        v_new_area := NEW.coverageArea;
+END IF;
+
+INSERT INTO order_coverage_crossings (order_id, coverage_ids, crossing_count)
+SELECT o.id,
+       COALESCE(array_agg(ca.coverage_id ORDER BY ca.coverage_id) FILTER (WHERE ca.coverage_id IS NOT NULL), '{}'),
+       COUNT(ca.coverage_id)
+FROM orders o
+         LEFT JOIN coverage_area ca ON ST_Intersects(o.estimated_route, ca.coverageArea)
+WHERE ST_Intersects(o.estimated_route, v_old_area) OR ST_Intersects(o.estimated_route, v_new_area)
+GROUP BY o.id
+    ON CONFLICT (order_id) DO UPDATE
+    SET coverage_ids = EXCLUDED.coverage_ids, crossing_count = EXCLUDED.crossing_count;
+RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Trigger:
+CREATE TRIGGER trg_coverage_area_crossings
+    AFTER INSERT OR UPDATE OF coverageArea OR DELETE ON coverage_area
+    FOR EACH ROW
+EXECUTE FUNCTION sync_coverage_area_crossings();
+
+-- Cálculo inicial para pedidos existentes (los nuevos los mantiene el trigger)
+INSERT INTO order_coverage_crossings (order_id, coverage_ids, crossing_count)
+SELECT o.id,
+       COALESCE(array_agg(ca.coverage_id ORDER BY ca.coverage_id) FILTER (WHERE ca.coverage_id IS NOT NULL), '{}'),
+       COUNT(ca.coverage_id)
+FROM orders o
+         LEFT JOIN coverage_area ca ON ST_Intersects(o.estimated_route, ca.coverageArea)
+WHERE o.estimated_route IS NOT NULL
+GROUP BY o.id
+    ON CONFLICT (order_id) DO NOTHING;
+
 -- ========================
 -- MENSAJE DE CONFIRMACIÓN
 -- ========================